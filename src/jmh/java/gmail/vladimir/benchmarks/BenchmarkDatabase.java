@@ -0,0 +1,120 @@
+package gmail.vladimir.benchmarks;
+
+import gmail.vladimir.db.AbstractRelationalDatabaseService;
+import gmail.vladimir.db.ISqlResultHandler;
+import gmail.vladimir.db.implementation.HyperSQLDatabaseService;
+import gmail.vladimir.db.implementation.SQLiteDatabaseService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+// An in-process database with a BENCH table of `rows` rows: an INTEGER key ID (0 .. rows-1) and `columns` VARCHAR
+// columns C0.. filled with `valueLength` characters.
+final class BenchmarkDatabase {
+
+    static final String TABLE = "BENCH";
+    static final String KEY = "ID";
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    final AbstractRelationalDatabaseService service;
+    final List<String> columns;
+    private final String jdbcUrl;
+    private final Path file;
+
+    private BenchmarkDatabase(AbstractRelationalDatabaseService service, List<String> columns, String jdbcUrl, Path file) {
+        this.service = service;
+        this.columns = columns;
+        this.jdbcUrl = jdbcUrl;
+        this.file = file;
+    }
+
+    static BenchmarkDatabase open(String database, int rows, int columns, int valueLength) throws SQLException, IOException {
+        AbstractRelationalDatabaseService service;
+        Map<String, String> params = new HashMap<>();
+        String jdbcUrl;
+        Path file = null;
+        if ("sqlite".equals(database)) {
+            file = Files.createTempFile("crudjava-bench", ".db");
+            jdbcUrl = "jdbc:sqlite:" + file;
+            params.put("dbFilePath", file.toString());
+            service = new SQLiteDatabaseService();
+        }
+        else if ("hsqldb".equals(database)) {
+            jdbcUrl = "jdbc:hsqldb:mem:bench" + System.nanoTime();
+            params.put("jdbcUrl", jdbcUrl);
+            params.put("username", "SA");
+            params.put("password", "");
+            service = new HyperSQLDatabaseService();
+        }
+        else
+            throw new IllegalArgumentException("Unknown benchmark database: " + database);
+
+        service.connect(params);
+        List<String> names = new ArrayList<>();
+        StringBuilder schema = new StringBuilder(KEY + " INTEGER PRIMARY KEY");
+        for (int i = 0; i < columns; i++) {
+            names.add("C" + i);
+            schema.append(", C").append(i).append(" VARCHAR(").append(Math.max(valueLength, 1)).append(")");
+        }
+        service.createTable(TABLE, schema.toString());
+
+        BenchmarkDatabase db = new BenchmarkDatabase(service, names, jdbcUrl, file);
+        List<Map<String, Object>> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int id = 0; id < rows; id++) {
+            batch.add(db.row(id, valueLength, id));
+            if (batch.size() == SEED_BATCH_SIZE || id == rows - 1) {
+                service.insertDataBatch(TABLE, batch, SEED_BATCH_SIZE);
+                batch.clear();
+            }
+        }
+        return db;
+    }
+
+    Map<String, Object> row(int id, int valueLength, int seed) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(KEY, id);
+        for (String column : columns)
+            row.put(column, value(valueLength, seed));
+        return row;
+    }
+
+    static String value(int length, int seed) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) ('a' + (seed + i) % 26);
+        return new String(chars);
+    }
+
+    // A plain JDBC connection to the same database, for benchmarks that need a ResultSet of their own.
+    Connection openConnection() throws SQLException {
+        return file != null ? DriverManager.getConnection(jdbcUrl) : DriverManager.getConnection(jdbcUrl, "SA", "");
+    }
+
+    void execute(String sql) throws SQLException {
+        service.executeSqlCommand(sql, new ISqlResultHandler() {
+            @Override
+            public void handleResultSet(ResultSet rs) {
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+            }
+
+            @Override
+            public void handleMessage(String message) {
+            }
+        });
+    }
+
+    void close() throws SQLException, IOException {
+        service.disconnect();
+        if (file != null)
+            Files.deleteIfExists(file);
+    }
+}
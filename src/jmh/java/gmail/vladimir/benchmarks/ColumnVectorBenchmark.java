@@ -0,0 +1,77 @@
+package gmail.vladimir.benchmarks;
+
+import gmail.vladimir.db.columnar.ColumnVector;
+import gmail.vladimir.db.columnar.ObjectColumnVector;
+import gmail.vladimir.db.columnar.StringColumnVector;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+// String column storage: "dictionary" is StringColumnVector, "plain" an ObjectColumnVector holding every value as
+// read. With few distinct values the dictionary is kept, with mostly unique ones it switches to plain storage after
+// the probe rows. Every value is a fresh copy, as a driver returns them. The average time is for filling a whole
+// column; -prof gc adds the bytes allocated, and the retained heap per row is printed after each trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnVectorBenchmark {
+
+    @Param({"dictionary", "plain"})
+    public String storage;
+
+    @Param({"16", "1000000"})
+    public int distinctValues;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"32"})
+    public int valueLength;
+
+    private String[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = new String[rows];
+        for (int i = 0; i < rows; i++)
+            values[i] = value(i % distinctValues);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportRetainedHeap() throws InterruptedException {
+        long before = usedHeapAfterGc();
+        ColumnVector vector = fill();
+        long retained = usedHeapAfterGc() - before;
+
+        System.out.printf("%n%s, %d distinct: %d retained bytes per row%s%n", storage, distinctValues, retained / rows,
+                vector instanceof StringColumnVector && !((StringColumnVector) vector).isDictionaryEncoded()
+                        ? ", switched to plain storage" : "");
+    }
+
+    @Benchmark
+    public ColumnVector fill() {
+        ColumnVector vector = "plain".equals(storage) ? new ObjectColumnVector("value", "VARCHAR") : new StringColumnVector("value", "VARCHAR");
+        for (String value : values)
+            vector.append(new String(value.toCharArray()));
+        return vector;
+    }
+
+    private String value(int index) {
+        StringBuilder value = new StringBuilder(valueLength).append(index).append('-');
+        while (value.length() < valueLength)
+            value.append('x');
+        return value.toString();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
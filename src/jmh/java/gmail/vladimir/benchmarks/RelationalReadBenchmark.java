@@ -0,0 +1,86 @@
+package gmail.vladimir.benchmarks;
+
+import gmail.vladimir.db.QueryResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Read paths of AbstractRelationalDatabaseService. The *Cached variants measure the page and metadata caches, the
+// others the query behind them. Run with -prof gc to see the allocation per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelationalReadBenchmark {
+
+    @Param({"hsqldb", "sqlite"})
+    public String database;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"4", "32"})
+    public int columns;
+
+    @Param({"32"})
+    public int valueLength;
+
+    @Param({"100"})
+    public int pageSize;
+
+    private BenchmarkDatabase db;
+    private Connection connection;
+    private int offset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.open(database, rows, columns, valueLength);
+        connection = db.openConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        db.close();
+    }
+
+    // Walks through the table page by page, so deep offsets are part of the average.
+    @Benchmark
+    public List<Map<String, Object>> getTableData() throws SQLException {
+        db.service.getPageCache().clear();
+        offset = offset + pageSize < rows ? offset + pageSize : 0;
+        return db.service.getTableData(BenchmarkDatabase.TABLE, pageSize, offset);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getTableDataCached() throws SQLException {
+        return db.service.getTableData(BenchmarkDatabase.TABLE, pageSize, 0);
+    }
+
+    @Benchmark
+    public QueryResult getQueryResultFromResultSet() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + BenchmarkDatabase.TABLE + " LIMIT " + pageSize)) {
+            return db.service.getQueryResultFromResultSet(rs);
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> getTableSchema() throws SQLException {
+        db.service.getMetadataCache().clear();
+        return db.service.getTableSchema(BenchmarkDatabase.TABLE);
+    }
+
+    @Benchmark
+    public Map<String, String> getTableSchemaCached() throws SQLException {
+        return db.service.getTableSchema(BenchmarkDatabase.TABLE);
+    }
+}
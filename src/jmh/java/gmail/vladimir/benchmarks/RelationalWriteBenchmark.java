@@ -0,0 +1,70 @@
+package gmail.vladimir.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Single-row write paths of AbstractRelationalDatabaseService. Rows inserted during an iteration are deleted after
+// it, so every iteration starts from the seeded table. Run with -prof gc to see the allocation per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelationalWriteBenchmark {
+
+    @Param({"hsqldb", "sqlite"})
+    public String database;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"4", "32"})
+    public int columns;
+
+    @Param({"32"})
+    public int valueLength;
+
+    private BenchmarkDatabase db;
+    private int nextKey;
+    private int updates;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.open(database, rows, columns, valueLength);
+        nextKey = rows;
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeInsertedRows() throws SQLException {
+        db.execute("DELETE FROM " + BenchmarkDatabase.TABLE + " WHERE " + BenchmarkDatabase.KEY + " >= " + rows);
+        nextKey = rows;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    public void insertData() throws SQLException {
+        db.service.insertData(BenchmarkDatabase.TABLE, db.row(nextKey++, valueLength, nextKey));
+    }
+
+    @Benchmark
+    public void updateData() throws SQLException {
+        int key = updates++ % rows;
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put(db.columns.get(0), BenchmarkDatabase.value(valueLength, updates));
+        db.service.updateData(BenchmarkDatabase.TABLE, data, BenchmarkDatabase.KEY, key);
+    }
+
+    @Benchmark
+    public int getNextId() throws SQLException {
+        return db.service.getNextId(BenchmarkDatabase.TABLE, BenchmarkDatabase.KEY);
+    }
+}
@@ -0,0 +1,283 @@
+package gmail.vladimir.benchmarks;
+
+import com.mongodb.client.model.WriteModel;
+import gmail.vladimir.db.*;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Read-only table of `rows` generated rows for driving the views without a database: a key column (0 .. rows-1) and
+// `columns` string columns C0... Rows are built on every read, as a driver would, and filters and sorts are ignored
+// (every row matches, in key order). latencyMillis is added to each read to stand in for the network.
+final class SyntheticDatabaseService implements IDocumentDatabaseService {
+
+    static final String TABLE = "SYNTHETIC";
+
+    private final String keyColumn;
+    private final int rows;
+    private final List<String> columns = new ArrayList<>();
+    private final int valueLength;
+    private final long latencyMillis;
+
+    SyntheticDatabaseService(String keyColumn, int rows, int columns, int valueLength, long latencyMillis) {
+        this.keyColumn = keyColumn;
+        this.rows = rows;
+        for (int i = 0; i < columns; i++)
+            this.columns.add("C" + i);
+        this.valueLength = valueLength;
+        this.latencyMillis = latencyMillis;
+    }
+
+    private Map<String, Object> row(int id) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(keyColumn, id);
+        for (int i = 0; i < columns.size(); i++)
+            row.put(columns.get(i), BenchmarkDatabase.value(valueLength, id + i));
+        return row;
+    }
+
+    private List<Map<String, Object>> rows(int from, int to) throws SQLException {
+        simulateLatency();
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int id = Math.max(0, from); id < Math.min(rows, to); id++)
+            data.add(row(id));
+        return data;
+    }
+
+    private void simulateLatency() throws SQLException {
+        if (latencyMillis <= 0)
+            return;
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(latencyMillis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted", e);
+        }
+    }
+
+    private static SQLException unsupported() {
+        return new SQLException("The synthetic benchmark table is read-only.");
+    }
+
+    @Override
+    public void connect(Map<String, String> connectionParams) {
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+    @Override
+    public List<String> listTables() {
+        return Collections.singletonList(TABLE);
+    }
+
+    @Override
+    public Map<String, String> getTableSchema(String tableName) {
+        Map<String, String> schema = new LinkedHashMap<>();
+        schema.put(keyColumn, "INTEGER");
+        for (String column : columns)
+            schema.put(column, "VARCHAR");
+        return schema;
+    }
+
+    @Override
+    public List<Map<String, Object>> getTableData(String tableName, int limit, int offset) throws SQLException {
+        return rows(offset, offset + limit);
+    }
+
+    @Override
+    public KeysetPage getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException {
+        if (cursor == null)
+            return KeysetPage.of(rows(offset, offset + limit), keyColumns, offset + limit < rows, offset > 0);
+
+        int key = ((Number) cursor.getKeyValues()[0]).intValue();
+        if (cursor.isForward()) {
+            int from = key + 1 + offset;
+            return KeysetPage.of(rows(from, from + limit), keyColumns, from + limit < rows, true);
+        }
+
+        int to = key - offset;
+        return KeysetPage.of(rows(to - limit, to), keyColumns, true, to - limit > 0);
+    }
+
+    @Override
+    public List<Map<String, Object>> findDocuments(String collectionName, Bson filter, Bson sort, int limit, int offset) throws SQLException {
+        return getTableData(collectionName, limit, offset);
+    }
+
+    @Override
+    public KeysetPage findDocumentPage(String collectionName, Bson filter, List<String> sortFields, KeysetCursor cursor,
+                                       Collection<String> projection, int limit, int offset, int batchSize) throws SQLException {
+        return getTableDataPage(collectionName, Collections.singletonList(keyColumn), cursor, limit, offset);
+    }
+
+    @Override
+    public long countDocuments(String collectionName, Bson filter) throws SQLException {
+        simulateLatency();
+        return rows;
+    }
+
+    @Override
+    public long estimatedDocumentCount(String collectionName) {
+        return rows;
+    }
+
+    // Answers the field index aggregation: every document has the same fields.
+    @Override
+    public List<Map<String, Object>> aggregate(String collectionName, List<? extends Bson> pipeline) throws SQLException {
+        simulateLatency();
+        List<String> keys = new ArrayList<>();
+        keys.add(keyColumn);
+        keys.addAll(columns);
+        return Collections.singletonList(new Document("_id", keys).append("count", (long) rows));
+    }
+
+    @Override
+    public AutoCloseable watch(String collectionName, Consumer<DocumentChange> listener) {
+        return () -> {};
+    }
+
+    @Override
+    public void forEachDocument(String collectionName, Bson filter, int batchSize, SqlConsumer<Map<String, Object>> action) throws SQLException {
+        for (int id = 0; id < rows; id++)
+            action.accept(row(id));
+    }
+
+    @Override
+    public long deleteMany(String collectionName, Bson filter) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public long updateMany(String collectionName, Bson filter, Bson update) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public long bulkWrite(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public CompletableFuture<Long> bulkWriteAsync(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        future.completeExceptionally(unsupported());
+        return future;
+    }
+
+    @Override
+    public void createTable(String tableName, String tableSchema) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void deleteTable(String tableName) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void insertData(String tableName, Map<String, Object> data) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public Object insertDataWithKey(String tableName, Map<String, Object> data, String primaryKeyColumn) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void deleteData(String tableName, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public BatchResult insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public BatchResult updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public BatchResult deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public ChangeSetResult applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getPrimaryKeyColumn(String tableName) {
+        return keyColumn;
+    }
+
+    @Override
+    public List<String> getPrimaryKeyColumns(String tableName) {
+        return Collections.singletonList(keyColumn);
+    }
+
+    @Override
+    public int getNextId(String tableName, String primaryKeyColumn) {
+        return rows;
+    }
+
+    @Override
+    public boolean executeSqlCommand(String sql, ISqlResultHandler handler) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                     SqlCancellationToken cancellationToken) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                        SqlCancellationToken cancellationToken) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getTableEntryCount(String tableName) throws SQLException {
+        simulateLatency();
+        return rows;
+    }
+
+    @Override
+    public RowCount estimateTableEntryCount(String tableName) {
+        return new RowCount(rows, true);
+    }
+
+    @Override
+    public void invalidateCachedData(String tableName) {
+    }
+
+    @Override
+    public QueryResult getQueryResultFromResultSet(ResultSet rs) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return "synthetic";
+    }
+}
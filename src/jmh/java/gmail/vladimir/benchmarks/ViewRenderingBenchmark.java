@@ -0,0 +1,324 @@
+package gmail.vladimir.benchmarks;
+
+import gmail.vladimir.db.AsyncDatabaseService;
+import gmail.vladimir.managers.RelationalTableManager;
+import gmail.vladimir.ui.forms.tables.AbstractTablesView;
+import gmail.vladimir.ui.forms.tables.MongoTablesView;
+import gmail.vladimir.ui.forms.tables.RelationalTablesView;
+import gmail.vladimir.ui.forms.tables.helpers.MongoTableModel;
+import gmail.vladimir.ui.forms.tables.helpers.RelationalTableModel;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import javax.swing.*;
+import javax.swing.table.TableModel;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+// Opens RelationalTablesView and MongoTablesView on a synthetic table and measures a page-size change, i.e. one
+// refresh of the page, per run: the time until the new page has been painted, a full layout of the window, the heap
+// retained per displayed row and how long the EDT was blocked. The views are windows, so a display is required; on a
+// machine without one use a virtual display:
+//
+//   xvfb-run java -cp target/benchmarks.jar gmail.vladimir.benchmarks.ViewRenderingBenchmark --pages=10,100,1000 --columns=4,16,64 --out=view-rendering.json
+//
+// Other options: --runs (per combination, default 3), --valueLength (characters per cell, default 32), --latencyMs
+// (added to every synthetic read, default 0) and --views (relational,mongo).
+public final class ViewRenderingBenchmark {
+
+    private static final long TIMEOUT_MS = 60_000;
+    // Probe waits shorter than this are ordinary scheduling; longer ones count as the EDT being blocked.
+    private static final long BLOCKED_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private ViewRenderingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        List<String> views = Arrays.asList(options.getOrDefault("views", "relational,mongo").split(","));
+        List<Integer> pageSizes = parseInts(options.getOrDefault("pages", "10,100,1000"));
+        List<Integer> columnCounts = parseInts(options.getOrDefault("columns", "4,16,64"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        int valueLength = Integer.parseInt(options.getOrDefault("valueLength", "32"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latencyMs", "0"));
+        Path out = Paths.get(options.getOrDefault("out", "view-rendering.json"));
+
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("The table views are windows and need a display. Without one, run the benchmark under a virtual display, e.g. xvfb-run java ...");
+            System.exit(2);
+        }
+
+        PaintTracker paints = new PaintTracker();
+        SwingUtilities.invokeAndWait(() -> RepaintManager.setCurrentManager(paints));
+
+        List<Document> results = new ArrayList<>();
+        for (String view : views)
+        for (int columns : columnCounts)
+        for (int pageSize : pageSizes)
+        for (int run = 1; run <= runs; run++) {
+            Document result = measure(view.trim(), pageSize, columns, valueLength, latencyMillis, paints).append("run", run);
+            System.out.println(result.toJson());
+            results.add(result);
+        }
+
+        Document report = new Document("timestamp", Instant.now().toString())
+                .append("javaVersion", System.getProperty("java.version"))
+                .append("valueLength", valueLength)
+                .append("latencyMs", latencyMillis)
+                .append("results", results);
+        String json = report.toJson(JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).indent(true).build());
+        Files.write(out, json.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Results written to " + out.toAbsolutePath());
+        // The views' timers and the async services' workers would otherwise keep the JVM alive.
+        System.exit(0);
+    }
+
+    private static Document measure(String kind, int pageSize, int columns, int valueLength, long latencyMillis,
+                                    PaintTracker paints) throws Exception {
+        boolean mongo = "mongo".equals(kind);
+        if (!mongo && !"relational".equals(kind))
+            throw new IllegalArgumentException("Unknown view: " + kind);
+
+        // Ten pages, so the view has somewhere to page to and the count is not the page size.
+        SyntheticDatabaseService service = new SyntheticDatabaseService(mongo ? "_id" : "ID", pageSize * 10, columns, valueLength, latencyMillis);
+        AsyncDatabaseService asyncService = new AsyncDatabaseService(service);
+        RelationalTableManager tableManager = mongo ? null : new RelationalTableManager(service, SyntheticDatabaseService.TABLE);
+
+        AbstractTablesView view = onEdt(() -> {
+            AbstractTablesView opened = mongo
+                    ? new MongoTablesView(asyncService, SyntheticDatabaseService.TABLE)
+                    : new RelationalTablesView(asyncService, tableManager);
+            opened.setVisible(true);
+            return opened;
+        });
+
+        try {
+            JTable table = onEdt(() -> findDataTable(view));
+            // Let the view finish its initial page at the default size before measuring the change.
+            waitFor(() -> isDisplayed(table, -1), "initial page of the " + kind + " view");
+            long heapBefore = usedHeapAfterGc();
+
+            EdtProbe probe = new EdtProbe();
+            probe.start();
+            paints.expect(() -> isDisplayed(table, pageSize));
+            long start = System.nanoTime();
+            SwingUtilities.invokeLater(() -> {
+                if (mongo)
+                    ((MongoTablesView) view).setEntriesPerPage(pageSize);
+                else
+                    ((RelationalTablesView) view).setEntriesPerPage(pageSize);
+            });
+            long paintedAt = paints.await(TIMEOUT_MS);
+            probe.finish();
+
+            long layoutNanos = onEdt(() -> {
+                invalidateTree(view.getContentPane());
+                long layoutStart = System.nanoTime();
+                view.validate();
+                return System.nanoTime() - layoutStart;
+            });
+
+            long retained = usedHeapAfterGc() - heapBefore;
+            int rowsDisplayed = onEdt(() -> table.getModel().getRowCount());
+            return new Document("view", kind)
+                    .append("pageSize", pageSize)
+                    .append("columns", columns)
+                    .append("rowsDisplayed", rowsDisplayed)
+                    .append("timeToFirstPaintMs", millis(paintedAt - start))
+                    .append("layoutMs", millis(layoutNanos))
+                    .append("retainedBytes", retained)
+                    .append("retainedBytesPerRow", rowsDisplayed == 0 ? 0 : retained / rowsDisplayed)
+                    .append("edtBlockedMs", millis(probe.blockedNanos))
+                    .append("edtMaxBlockMs", millis(probe.maxNanos))
+                    .append("edtProbes", probe.samples);
+        }
+        finally {
+            onEdt(() -> {
+                view.dispose();
+                return null;
+            });
+            asyncService.shutdown();
+        }
+    }
+
+    private static JTable findDataTable(Container container) {
+        for (Component component : container.getComponents()) {
+            if (component instanceof JTable) {
+                TableModel model = ((JTable) component).getModel();
+                if (model instanceof RelationalTableModel || model instanceof MongoTableModel)
+                    return (JTable) component;
+            }
+            if (component instanceof Container) {
+                JTable found = findDataTable((Container) component);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+
+    // The page has expectedRows rows (any number when negative) and the rows in the viewport are loaded. EDT only.
+    private static boolean isDisplayed(JTable table, int expectedRows) {
+        TableModel model = table.getModel();
+        int rowCount = model.getRowCount();
+        if (rowCount == 0 || (expectedRows >= 0 && rowCount != expectedRows))
+            return false;
+        if (!(model instanceof RelationalTableModel))
+            return true;
+
+        Rectangle visible = table.getVisibleRect();
+        int first = Math.max(0, table.rowAtPoint(visible.getLocation()));
+        int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        if (last < 0)
+            last = rowCount - 1;
+        for (int row = first; row <= last; row++)
+            if (((RelationalTableModel) model).getRow(row) == null)
+                return false;
+        return true;
+    }
+
+    private static void invalidateTree(Component component) {
+        component.invalidate();
+        if (component instanceof Container)
+            for (Component child : ((Container) component).getComponents())
+                invalidateTree(child);
+    }
+
+    private static void waitFor(BooleanSupplier condition, String description) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!onEdt(condition::getAsBoolean)) {
+            if (System.currentTimeMillis() > deadline)
+                throw new TimeoutException("Timed out waiting for the " + description);
+            Thread.sleep(5);
+        }
+    }
+
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = task.call();
+            }
+            catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null)
+            throw error[0];
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static List<Integer> parseInts(String values) {
+        List<Integer> ints = new ArrayList<>();
+        for (String value : values.split(","))
+            ints.add(Integer.parseInt(value.trim()));
+        return ints;
+    }
+
+    // Records the end of the first paint pass after which the expected page is on screen.
+    private static final class PaintTracker extends RepaintManager {
+        private volatile BooleanSupplier condition;
+        private volatile long paintedAt;
+
+        void expect(BooleanSupplier condition) {
+            paintedAt = 0;
+            this.condition = condition;
+        }
+
+        @Override
+        public void paintDirtyRegions() {
+            super.paintDirtyRegions();
+            BooleanSupplier current = condition;
+            if (current != null && current.getAsBoolean()) {
+                condition = null;
+                paintedAt = System.nanoTime();
+            }
+        }
+
+        long await(long timeoutMillis) throws InterruptedException, TimeoutException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (paintedAt == 0) {
+                if (System.currentTimeMillis() > deadline)
+                    throw new TimeoutException("Timed out waiting for the page to be painted");
+                Thread.sleep(1);
+            }
+            return paintedAt;
+        }
+    }
+
+    // Posts an empty task to the EDT about every millisecond; how long each waits to run is time the EDT was busy.
+    private static final class EdtProbe extends Thread {
+        private volatile boolean running = true;
+        private long samples;
+        private long maxNanos;
+        private long blockedNanos;
+
+        private EdtProbe() {
+            super("edt-probe");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long posted = System.nanoTime();
+                try {
+                    SwingUtilities.invokeAndWait(() -> {});
+                }
+                catch (Exception e) {
+                    return;
+                }
+                long waited = System.nanoTime() - posted;
+                samples++;
+                maxNanos = Math.max(maxNanos, waited);
+                if (waited >= BLOCKED_NANOS)
+                    blockedNanos += waited;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        // The counters are read after join, which makes the probe thread's writes visible.
+        void finish() throws InterruptedException {
+            running = false;
+            join();
+        }
+    }
+}
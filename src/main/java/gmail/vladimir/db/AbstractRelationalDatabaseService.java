@@ -2,19 +2,57 @@ package gmail.vladimir.db;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.zaxxer.hikari.HikariConfig;
+import gmail.vladimir.db.columnar.ColumnVector;
+import gmail.vladimir.db.keys.HiLoKeyGenerator;
+import gmail.vladimir.db.keys.KeyGenerator;
+import gmail.vladimir.db.keys.LocalKeyGenerator;
+import gmail.vladimir.db.metrics.PoolWaitListener;
+import gmail.vladimir.db.metrics.PoolWaitSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 // Used for similar databases that use mostly the same format, e.g., SQLite, MariaDB, etc.
-public abstract class AbstractRelationalDatabaseService implements IDatabaseService {
+public abstract class AbstractRelationalDatabaseService implements IDatabaseService, PoolWaitSource {
+
+    public static final String POOL_SIZE = "pool.size";
+    public static final String POOL_ENABLED = "pool.enabled";
+    public static final String POOL_MAXIMUM_SIZE = "pool.maximumPoolSize";
+    public static final String POOL_MINIMUM_IDLE = "pool.minimumIdle";
+    public static final String POOL_CONNECTION_TIMEOUT_MS = "pool.connectionTimeoutMs";
+    public static final String POOL_IDLE_TIMEOUT_MS = "pool.idleTimeoutMs";
+    public static final String POOL_MAX_LIFETIME_MS = "pool.maxLifetimeMs";
+    public static final String METADATA_TTL_MS = "metadata.ttlMs";
+    public static final String METADATA_PREWARM = "metadata.prewarm";
+    public static final String KEYS_CREATE_ALLOCATION_TABLE = "keys.createAllocationTable";
 
     protected static final Logger logger = LoggerFactory.getLogger(AbstractRelationalDatabaseService.class);
     protected volatile Connection connection;
+    protected volatile HikariDataSource dataSource;
     protected String jdbcUrl;
     protected String username;
     protected String password;
     protected String dbName;
+    protected final SqlCache sqlCache = new SqlCache();
+    protected final MetadataCache metadataCache = new MetadataCache();
+    protected final RowCountCache rowCountCache = new RowCountCache();
+    protected final PageCache pageCache = new PageCache();
+    protected volatile boolean createKeyAllocationTable;
+    protected volatile KeyGenerator keyGenerator = createKeyGenerator();
+    protected volatile PoolWaitListener poolWaitListener;
+    // Without a pool every worker shares one connection: ordinary statements hold the read lock, transactions the write
+    // lock, so no other worker's statement is enlisted in (or rolled back with) a transaction.
+    private final ReentrantReadWriteLock sharedConnectionLock = new ReentrantReadWriteLock();
+    // Held for the console while pooled, so its statements share one session; guarded by consoleLock.
+    private final Object consoleLock = new Object();
+    private Connection consoleConnection;
+    private boolean consoleTransaction;
 
     @Override
     public void connect(Map<String, String> connectionParams) throws SQLException {
@@ -23,21 +61,175 @@ public abstract class AbstractRelationalDatabaseService implements IDatabaseServ
         this.password = connectionParams.get("password");
 
         loadDriver();
+        configureMetadataCache(connectionParams);
+        createKeyAllocationTable = Boolean.parseBoolean(connectionParams.get(KEYS_CREATE_ALLOCATION_TABLE));
+        keyGenerator = createKeyGenerator();
 
+        Map<String, String> params = applyPoolSize(connectionParams);
         logger.info("Connecting to database...");
-        connection = DriverManager.getConnection(jdbcUrl, username, password);
-        logger.info("Connected to database.");
-        this.dbName = connection.getCatalog();
+        if (Boolean.parseBoolean(params.getOrDefault(POOL_ENABLED, "true"))) {
+            dataSource = createDataSource(params);
+            try (Connection pooled = dataSource.getConnection())
+                {this.dbName = pooled.getCatalog();}
+            logger.info("Connected to database using a pool of up to {} connections.", dataSource.getMaximumPoolSize());
+        }
+        else {
+            connection = DriverManager.getConnection(jdbcUrl, username, password);
+            this.dbName = connection.getCatalog();
+            logger.info("Connected to database.");
+        }
+
+        if (Boolean.parseBoolean(connectionParams.get(METADATA_PREWARM)))
+            startMetadataPrewarm();
+
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try { disconnect(); }
             catch (SQLException e) { logger.error(e.getMessage(), e); }
         }));
     }
 
+    protected void configureMetadataCache(Map<String, String> connectionParams) throws SQLException {
+        metadataCache.clear();
+        metadataCache.setTtlMillis(getIntParam(connectionParams, METADATA_TTL_MS, (int) MetadataCache.DEFAULT_TTL_MS));
+        rowCountCache.clear();
+        rowCountCache.setTtlMillis(metadataCache.getTtlMillis());
+        pageCache.clear();
+        pageCache.setTtlMillis(metadataCache.getTtlMillis());
+    }
+
+    protected void startMetadataPrewarm() {
+        Thread prewarm = new Thread(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                int tables = prewarmMetadata();
+                logger.info("Prewarmed metadata for {} tables in {} ms.", tables, System.currentTimeMillis() - start);
+            }
+            catch (SQLException e) {
+                logger.warn("Metadata prewarm failed: {}", e.getMessage());
+            }
+        }, "metadata-prewarm");
+        prewarm.setDaemon(true);
+        prewarm.start();
+    }
+
+    // Reads the columns of every table in one catalog query instead of one getColumns call per table.
+    protected int prewarmMetadata() throws SQLException {
+        List<String> tables = listTables();
+        Set<String> known = new HashSet<>(tables);
+        Map<String, Map<String, String>> schemas = withConnection(conn -> {
+            Map<String, Map<String, String>> byTable = new HashMap<>();
+            try (ResultSet rs = conn.getMetaData().getColumns(null, null, "%", null)) {
+                while (rs.next()) {
+                    String table = rs.getString("TABLE_NAME");
+                    if (known.contains(table))
+                        byTable.computeIfAbsent(table, t -> new LinkedHashMap<>()).put(rs.getString("COLUMN_NAME"), readColumnType(rs));
+                }
+            }
+            return byTable;
+        });
+
+        for (Map.Entry<String, Map<String, String>> entry : schemas.entrySet())
+            metadataCache.put(MetadataCache.SCHEMA, entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+        return schemas.size();
+    }
+
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    // Hook for driver-specific data source properties such as client-side statement caches.
+    protected void configureDataSource(HikariConfig config) {
+    }
+
+    protected HikariDataSource createDataSource(Map<String, String> connectionParams) throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setPoolName("CRUDJava-" + getClass().getSimpleName());
+        config.setMaximumPoolSize(getIntParam(connectionParams, POOL_MAXIMUM_SIZE, 10));
+        config.setMinimumIdle(getIntParam(connectionParams, POOL_MINIMUM_IDLE, 2));
+        config.setConnectionTimeout(getIntParam(connectionParams, POOL_CONNECTION_TIMEOUT_MS, 30_000));
+        config.setIdleTimeout(getIntParam(connectionParams, POOL_IDLE_TIMEOUT_MS, 600_000));
+        config.setMaxLifetime(getIntParam(connectionParams, POOL_MAX_LIFETIME_MS, 1_800_000));
+        configureDataSource(config);
+
+        PoolWaitListener listener = poolWaitListener;
+        if (listener != null)
+            config.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    listener.connectionAcquired(elapsedAcquiredNanos);
+                }
+
+                @Override
+                public void recordConnectionTimeout() {
+                    listener.connectionTimedOut();
+                }
+            });
+
+        try {
+            return new HikariDataSource(config);
+        }
+        catch (RuntimeException e) {
+            throw new SQLException("Failed to initialize connection pool: " + e.getMessage(), e);
+        }
+    }
+
+    // The login form's pool size: 1 keeps a single shared connection, more enables a pool of that size. Explicit pool.*
+    // parameters take precedence.
+    protected static Map<String, String> applyPoolSize(Map<String, String> connectionParams) throws SQLException {
+        String value = connectionParams.get(POOL_SIZE);
+        if (value == null || value.trim().isEmpty())
+            return connectionParams;
+
+        int size;
+        try {
+            size = Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e) {
+            size = 0;
+        }
+        if (size < 1)
+            throw new SQLException("Pool size must be a whole number of at least 1, not '" + value.trim() + "'.");
+
+        Map<String, String> params = new HashMap<>(connectionParams);
+        params.putIfAbsent(POOL_ENABLED, String.valueOf(size > 1));
+        params.putIfAbsent(POOL_MAXIMUM_SIZE, String.valueOf(size));
+        params.putIfAbsent(POOL_MINIMUM_IDLE, String.valueOf(Math.min(size, 2)));
+        return params;
+    }
+
+    protected static int getIntParam(Map<String, String> params, String key, int defaultValue) throws SQLException {
+        String value = params.get(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new SQLException("Invalid value for " + key + ": " + value, e);
+        }
+    }
+
     protected abstract void loadDriver() throws SQLException;
 
     @Override
     public void disconnect() throws SQLException {
+        HikariDataSource pool = dataSource;
+        if (pool != null || connection != null) {
+            logger.info("Generated SQL cache: {}", sqlCache);
+            logger.info("Page cache: {}", pageCache);
+        }
+
+        releaseConsoleConnection();
+        if (pool != null) {
+            dataSource = null;
+            pool.close();
+            logger.info("Closed connection pool.");
+        }
+
         if (connection == null || connection.isClosed())
             return;
 
@@ -46,58 +238,285 @@ public abstract class AbstractRelationalDatabaseService implements IDatabaseServ
         logger.info("Disconnected from database.");
     }
 
+    // Borrows a pooled connection for the duration of the action, or falls back to the single shared connection.
+    protected <T> T withConnection(SqlFunction<Connection, T> action) throws SQLException {
+        return withConnection(action, sharedConnectionLock.readLock());
+    }
+
+    // For actions that turn off auto-commit: the shared connection is theirs alone until the action returns. Must not
+    // be called while the same thread is inside withConnection.
+    protected <T> T withExclusiveConnection(SqlFunction<Connection, T> action) throws SQLException {
+        return withConnection(action, sharedConnectionLock.writeLock());
+    }
+
+    private <T> T withConnection(SqlFunction<Connection, T> action, Lock sharedLock) throws SQLException {
+        HikariDataSource pool = dataSource;
+        if (pool != null)
+            try (Connection pooled = pool.getConnection()) {
+                return action.apply(pooled);
+            }
+
+        sharedLock.lock();
+        try {
+            Connection current = connection;
+            if (current == null)
+                throw new SQLException("Not connected to database.");
+
+            return action.apply(current);
+        }
+        finally {
+            sharedLock.unlock();
+        }
+    }
+
+    // Console statements run on one session, so transactions, SET/USE, temporary tables and session variables carry over
+    // from one statement to the next. With a pool that is a connection held for the console until disconnect (and
+    // replaced, losing the session, if it breaks); without one it is the shared connection.
+    protected <T> T withConsoleConnection(SqlFunction<Connection, T> action) throws SQLException {
+        HikariDataSource pool = dataSource;
+        if (pool == null)
+            return withExclusiveConnection(action);
+
+        synchronized (consoleLock) {
+            if (consoleConnection == null || consoleConnection.isClosed()) {
+                consoleConnection = pool.getConnection();
+                consoleTransaction = false;
+            }
+
+            try {
+                return action.apply(consoleConnection);
+            }
+            catch (SQLException e) {
+                // Connection exceptions (SQLState class 08) leave the session unusable.
+                if (e.getSQLState() != null && e.getSQLState().startsWith("08"))
+                    releaseConsoleConnection();
+                throw e;
+            }
+        }
+    }
+
+    private void releaseConsoleConnection() {
+        synchronized (consoleLock) {
+            if (consoleConnection == null)
+                return;
+
+            try {
+                consoleConnection.close();
+            }
+            catch (SQLException e) {
+                logger.warn("Could not return the console connection: {}", e.getMessage());
+            }
+            consoleConnection = null;
+            consoleTransaction = false;
+        }
+    }
+
+    protected void useConnection(SqlConsumer<Connection> action) throws SQLException {
+        withConnection(conn -> {
+            action.accept(conn);
+            return null;
+        });
+    }
+
+    public boolean isPooled() {
+        return dataSource != null;
+    }
+
+    public SqlCache getSqlCache() {
+        return sqlCache;
+    }
+
+    public PageCache getPageCache() {
+        return pageCache;
+    }
+
+    // Takes effect on the next connect.
+    @Override
+    public void setPoolWaitListener(PoolWaitListener poolWaitListener) {
+        this.poolWaitListener = poolWaitListener;
+    }
+
+    public PoolStats getPoolStats() {
+        HikariDataSource pool = dataSource;
+        if (pool == null)
+            return null;
+
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean == null)
+            return null;
+
+        return new PoolStats(bean.getActiveConnections(), bean.getIdleConnections(), bean.getTotalConnections(),
+                bean.getThreadsAwaitingConnection(), pool.getMaximumPoolSize());
+    }
+
     private static final String[] types = {"TABLE"};
 
     @Override
     public List<String> listTables() throws SQLException {
-        List<String> tables = new ArrayList<>();
+        return metadataCache.get(MetadataCache.TABLES, null, () -> withConnection(conn -> {
+            List<String> tables = new ArrayList<>();
 
-        try (ResultSet rs = connection.getMetaData().getTables(null, null, "%", types)) {
-            while (rs.next())
-                tables.add(rs.getString("TABLE_NAME"));
-        }
+            try (ResultSet rs = conn.getMetaData().getTables(null, null, "%", types)) {
+                while (rs.next()) {
+                    String table = rs.getString("TABLE_NAME");
+                    if (!table.equalsIgnoreCase(HiLoKeyGenerator.ALLOCATION_TABLE))
+                        tables.add(table);
+                }
+            }
 
-        return tables;
+            return Collections.unmodifiableList(tables);
+        }));
     }
 
     @Override
     public Map<String, String> getTableSchema(String tableName) throws SQLException {
-        Map<String, String> schema = new LinkedHashMap<>();
-        DatabaseMetaData metaData = connection.getMetaData();
-        try (ResultSet rs = metaData.getColumns(null, null, tableName, null)) {
-            while (rs.next()) {
-                String columnName = rs.getString("COLUMN_NAME");
-                String dataType = rs.getString("TYPE_NAME");
-                int columnSize = rs.getInt("COLUMN_SIZE");
-                if (columnSize > 0)
-                    dataType += "(" + columnSize + ")";
+        return metadataCache.get(MetadataCache.SCHEMA, tableName, () -> withConnection(conn -> {
+            Map<String, String> schema = new LinkedHashMap<>();
+            DatabaseMetaData metaData = conn.getMetaData();
+            try (ResultSet rs = metaData.getColumns(null, null, tableName, null)) {
+                while (rs.next())
+                    schema.put(rs.getString("COLUMN_NAME"), readColumnType(rs));
+            }
+            return Collections.unmodifiableMap(schema);
+        }));
+    }
+
+    // Server databases are shared between clients, so keys come from reserved blocks when the allocation table exists
+    // or may be created, and from a fresh MAX(key) otherwise; embedded ones override this.
+    protected KeyGenerator createKeyGenerator() {
+        return new HiLoKeyGenerator(this::withExclusiveConnection, HiLoKeyGenerator.DEFAULT_BLOCK_SIZE,
+                new LocalKeyGenerator(this::withConnection, false), createKeyAllocationTable);
+    }
+
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+    }
 
-                schema.put(columnName, dataType);
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
+    // Identity, serial and AUTO_INCREMENT columns are filled in by the database and read back with getGeneratedKeys.
+    protected boolean isKeyGeneratedByDatabase(String tableName, String keyColumn) throws SQLException {
+        return metadataCache.get(MetadataCache.GENERATED_KEY, tableName, () -> withConnection(conn -> {
+            try (ResultSet rs = conn.getMetaData().getColumns(null, null, tableName, keyColumn)) {
+                return rs.next() && "YES".equalsIgnoreCase(rs.getString("IS_AUTOINCREMENT"));
             }
-        }
-        return schema;
+        }));
+    }
+
+    private static String readColumnType(ResultSet rs) throws SQLException {
+        String dataType = rs.getString("TYPE_NAME");
+        int columnSize = rs.getInt("COLUMN_SIZE");
+        if (columnSize > 0)
+            dataType += "(" + columnSize + ")";
+        return dataType;
     }
 
     @Override
     public List<Map<String, Object>> getTableData(String tableName, int limit, int offset) throws SQLException {
-        List<Map<String, Object>> data = new ArrayList<>();
-        String sql = String.format("SELECT * FROM %s LIMIT ? OFFSET ?", tableName);
+        return pageCache.get(tableName, null, null, limit, offset,
+                () -> new KeysetPage(loadTableData(tableName, limit, offset), null, null)).getData();
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, limit);
-            stmt.setInt(2, offset);
+    private List<Map<String, Object>> loadTableData(String tableName, int limit, int offset) throws SQLException {
+        String sql = sqlCache.get("select-page", tableName, null, () -> String.format("SELECT * FROM %s LIMIT ? OFFSET ?", tableName));
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                ResultSetMetaData rsMeta = rs.getMetaData();
-                int columnCount = rsMeta.getColumnCount();
+        return withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, limit);
+                stmt.setInt(2, offset);
 
-                while (rs.next()) {
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    for (int i = 1; i <= columnCount; i++)
-                        row.put(rsMeta.getColumnName(i), rs.getObject(i));
-                    data.add(row);
-                }
+                try (ResultSet rs = stmt.executeQuery())
+                    {return readRows(rs);}
             }
+        });
+    }
+
+    @Override
+    public KeysetPage getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException {
+        if (keyColumns == null || keyColumns.isEmpty())
+            throw new SQLException("Keyset paging requires at least one key column.");
+
+        return pageCache.get(tableName, keyColumns, cursor, limit, offset, () -> loadTableDataPage(tableName, keyColumns, cursor, limit, offset));
+    }
+
+    private KeysetPage loadTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException {
+
+        boolean forward = cursor == null || cursor.isForward();
+        String operation = cursor == null ? "keyset-first" : forward ? "keyset-after" : "keyset-before";
+        String sql = sqlCache.get(operation, tableName, keyColumns, () -> buildKeysetQuery(tableName, keyColumns, cursor != null, forward));
+
+        return withConnection(conn -> {
+            List<Map<String, Object>> data;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                if (cursor != null)
+                    index = setKeysetParameters(stmt, cursor.getKeyValues());
+
+                // One extra row tells us whether another page exists in the direction we are reading.
+                stmt.setInt(index++, limit + 1);
+                stmt.setInt(index, offset);
+
+                try (ResultSet rs = stmt.executeQuery())
+                    {data = readRows(rs);}
+            }
+
+            boolean hasMore = data.size() > limit;
+            if (hasMore)
+                data.remove(data.size() - 1);
+
+            if (forward)
+                return KeysetPage.of(data, keyColumns, hasMore, cursor != null || offset > 0);
+
+            Collections.reverse(data);
+            return KeysetPage.of(data, keyColumns, true, hasMore);
+        });
+    }
+
+    // Expands the row comparison (k1, k2, ...) > (?, ?, ...) so it also works on databases without row value support.
+    protected String buildKeysetQuery(String tableName, List<String> keyColumns, boolean hasCursor, boolean forward) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName);
+
+        if (hasCursor) {
+            String operator = forward ? " > ?" : " < ?";
+            List<String> alternatives = new ArrayList<>();
+            for (int i = 0; i < keyColumns.size(); i++) {
+                StringBuilder alternative = new StringBuilder("(");
+                for (int j = 0; j < i; j++)
+                    alternative.append(keyColumns.get(j)).append(" = ? AND ");
+                alternative.append(keyColumns.get(i)).append(operator).append(")");
+                alternatives.add(alternative.toString());
+            }
+            sql.append(" WHERE ").append(String.join(" OR ", alternatives));
+        }
+
+        String direction = forward ? " ASC" : " DESC";
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < keyColumns.size(); i++)
+            sql.append(i == 0 ? "" : ", ").append(keyColumns.get(i)).append(direction);
+
+        return sql.append(" LIMIT ? OFFSET ?").toString();
+    }
+
+    private int setKeysetParameters(PreparedStatement stmt, Object[] keyValues) throws SQLException {
+        int index = 1;
+        for (int i = 0; i < keyValues.length; i++)
+        for (int j = 0; j <= i; j++)
+            stmt.setObject(index++, keyValues[j]);
+        return index;
+    }
+
+    protected List<Map<String, Object>> readRows(ResultSet rs) throws SQLException {
+        List<Map<String, Object>> data = new ArrayList<>();
+        ResultSetMetaData rsMeta = rs.getMetaData();
+        int columnCount = rsMeta.getColumnCount();
+
+        while (rs.next()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 1; i <= columnCount; i++)
+                row.put(rsMeta.getColumnName(i), rs.getObject(i));
+            data.add(row);
         }
         return data;
     }
@@ -113,139 +532,625 @@ public abstract class AbstractRelationalDatabaseService implements IDatabaseServ
         else
             throw new SQLException("Table name and schema cannot both be null.");
 
-        try (Statement stmt = connection.createStatement())
-            {stmt.executeUpdate(sql);}
+        useConnection(conn -> {
+            try (Statement stmt = conn.createStatement())
+                {stmt.executeUpdate(sql);}
+        });
+
+        if (tableName != null) {
+            sqlCache.invalidate(tableName);
+            metadataCache.invalidate(tableName);
+            rowCountCache.invalidate(tableName);
+            pageCache.invalidate(tableName);
+            keyGenerator.reset(tableName);
+        }
+        else {
+            sqlCache.clear();
+            metadataCache.clear();
+            rowCountCache.clear();
+            pageCache.clear();
+            keyGenerator.resetAll();
+        }
     }
 
     @Override
     public String getPrimaryKeyColumn(String tableName) throws SQLException {
-        DatabaseMetaData metaData = connection.getMetaData();
-        try (ResultSet rs = metaData.getPrimaryKeys(null, null, tableName)) {
-            if (rs.next())
-                return rs.getString("COLUMN_NAME");
-        }
-        return null;
+        return metadataCache.get(MetadataCache.PRIMARY_KEY, tableName, () -> withConnection(conn -> {
+            DatabaseMetaData metaData = conn.getMetaData();
+            try (ResultSet rs = metaData.getPrimaryKeys(null, null, tableName)) {
+                if (rs.next())
+                    return rs.getString("COLUMN_NAME");
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public List<String> getPrimaryKeyColumns(String tableName) throws SQLException {
+        return metadataCache.get(MetadataCache.PRIMARY_KEYS, tableName, () -> withConnection(conn -> {
+            TreeMap<Short, String> columns = new TreeMap<>();
+            try (ResultSet rs = conn.getMetaData().getPrimaryKeys(null, null, tableName)) {
+                while (rs.next())
+                    columns.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+            return Collections.unmodifiableList(new ArrayList<>(columns.values()));
+        }));
     }
 
     @Override
     public void deleteTable(String tableName) throws SQLException {
         String sql = String.format("DROP TABLE %s", tableName);
-        try (Statement stmt = connection.createStatement())
-            {stmt.executeUpdate(sql);}
+        useConnection(conn -> {
+            try (Statement stmt = conn.createStatement())
+                {stmt.executeUpdate(sql);}
+        });
+        sqlCache.invalidate(tableName);
+        metadataCache.invalidate(tableName);
+        rowCountCache.invalidate(tableName);
+        pageCache.invalidate(tableName);
+        keyGenerator.reset(tableName);
     }
 
     @Override
     public void insertData(String tableName, Map<String, Object> data) throws SQLException {
-        String columns = String.join(", ", data.keySet());
-        String placeholders = String.join(", ", Collections.nCopies(data.size(), "?"));
-        String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, columns, placeholders);
+        String sql = sqlCache.get("insert", tableName, data.keySet(), () -> buildInsertSql(tableName, data.keySet()));
+
+        int inserted = withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                setPreparedStatementParameters(stmt, data.values().toArray());
+                return stmt.executeUpdate();
+            }
+        });
+        rowCountCache.adjust(tableName, inserted);
+        pageCache.invalidate(tableName);
+    }
+
+    @Override
+    public Object insertDataWithKey(String tableName, Map<String, Object> data, String primaryKeyColumn) throws SQLException {
+        if (primaryKeyColumn == null || data.get(primaryKeyColumn) != null) {
+            insertData(tableName, data);
+            return primaryKeyColumn == null ? null : data.get(primaryKeyColumn);
+        }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            setPreparedStatementParameters(stmt, data.values().toArray());
-            stmt.executeUpdate();
+        Map<String, Object> row = new LinkedHashMap<>(data);
+        row.remove(primaryKeyColumn);
+        if (!isKeyGeneratedByDatabase(tableName, primaryKeyColumn)) {
+            row.put(primaryKeyColumn, keyGenerator.nextKey(tableName, primaryKeyColumn));
+            insertData(tableName, row);
+            return row.get(primaryKeyColumn);
         }
+
+        String sql = sqlCache.get("insert", tableName, row.keySet(), () -> buildInsertSql(tableName, row.keySet()));
+        Object key = withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql, new String[]{primaryKeyColumn})) {
+                setPreparedStatementParameters(stmt, row.values().toArray());
+                stmt.executeUpdate();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    return keys.next() ? keys.getObject(1) : null;
+                }
+            }
+        });
+        rowCountCache.adjust(tableName, 1);
+        pageCache.invalidate(tableName);
+        return key;
     }
 
     @Override
     public void updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
-        String setClause = String.join(", ", data.keySet().stream().map(key -> key + " = ?").toArray(String[]::new));
-        String sql = String.format("UPDATE %s SET %s WHERE %s = ?", tableName, setClause, primaryKeyColumn);
+        List<String> columns = new ArrayList<>(data.keySet());
+        columns.add(primaryKeyColumn);
+        String sql = sqlCache.get("update", tableName, columns, () -> buildUpdateSql(tableName, data.keySet(), primaryKeyColumn));
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            Object[] params = appendToArray(data.values().toArray(), primaryKeyValue);
-            setPreparedStatementParameters(stmt, params);
-            stmt.executeUpdate();
-        }
+        useConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                Object[] params = appendToArray(data.values().toArray(), primaryKeyValue);
+                setPreparedStatementParameters(stmt, params);
+                stmt.executeUpdate();
+            }
+        });
+        pageCache.invalidate(tableName);
     }
 
     @Override
     public void deleteData(String tableName, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
-        String sql = String.format("DELETE FROM %s WHERE %s = ?", tableName, primaryKeyColumn);
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setObject(1, primaryKeyValue);
-            stmt.executeUpdate();
-        }
+        String sql = sqlCache.get("delete", tableName, Collections.singletonList(primaryKeyColumn),
+                () -> String.format("DELETE FROM %s WHERE %s = ?", tableName, primaryKeyColumn));
+        int deleted = withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setObject(1, primaryKeyValue);
+                return stmt.executeUpdate();
+            }
+        });
+        rowCountCache.adjust(tableName, -deleted);
+        pageCache.invalidate(tableName);
     }
 
     @Override
-    public int getTotalEntries(String tableName) throws SQLException {
-        String query = String.format("SELECT COUNT(*) FROM %s", tableName);
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            if (rs.next())
-                return rs.getInt(1);
-        }
-        return 0;
+    public BatchResult insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        if (rows.isEmpty())
+            return new BatchResult();
+
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = sqlCache.get("insert", tableName, columns, () -> buildInsertSql(tableName, columns));
+
+        List<Object[]> params = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows)
+            params.add(valuesInOrder(row, columns));
+        BatchResult result = executeBatch(sql, params, batchSize);
+        rowCountCache.adjust(tableName, result.getRowsAffected());
+        pageCache.invalidate(tableName);
+        return result;
     }
 
     @Override
-    public int getNextId(String tableName, String primaryKeyColumn) throws SQLException {
-        String sql = String.format("SELECT MAX(%s) FROM %s", primaryKeyColumn, tableName);
-        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if(!rs.next())
-                return 1; //tble is empty
+    public BatchResult updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) throws SQLException {
+        if (rows.isEmpty())
+            return new BatchResult();
 
-            int maxId = rs.getInt(1);
-            if (rs.wasNull())
-                return 1; //table is empty
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        columns.remove(primaryKeyColumn);
+        List<String> paramColumns = new ArrayList<>(columns);
+        paramColumns.add(primaryKeyColumn);
+        String sql = sqlCache.get("update", tableName, paramColumns, () -> buildUpdateSql(tableName, columns, primaryKeyColumn));
+        List<Object[]> params = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows)
+            params.add(valuesInOrder(row, paramColumns));
+        BatchResult result = executeBatch(sql, params, batchSize);
+        pageCache.invalidate(tableName);
+        return result;
+    }
+
+    @Override
+    public BatchResult deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) throws SQLException {
+        String sql = sqlCache.get("delete", tableName, Collections.singletonList(primaryKeyColumn),
+                () -> String.format("DELETE FROM %s WHERE %s = ?", tableName, primaryKeyColumn));
+        List<Object[]> params = new ArrayList<>(primaryKeyValues.size());
+        for (Object value : primaryKeyValues)
+            params.add(new Object[]{value});
+        BatchResult result = executeBatch(sql, params, batchSize);
+        rowCountCache.adjust(tableName, -result.getRowsAffected());
+        pageCache.invalidate(tableName);
+        return result;
+    }
+
+    // Consecutive changes with the same statement go out as one JDBC batch behind a savepoint. When a batch fails it is
+    // rolled back to that savepoint and replayed row by row, each under its own savepoint, so only the failing rows are
+    // dropped; PostgreSQL would otherwise abort the whole transaction at the first error.
+    @Override
+    public ChangeSetResult applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) throws SQLException {
+        ChangeSetResult result = new ChangeSetResult();
+        if (changes.isEmpty())
+            return result;
+
+        int size = Math.max(1, batchSize);
+        withExclusiveConnection(conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int from = 0;
+                while (from < changes.size()) {
+                    String sql = changeSql(tableName, primaryKeyColumn, changes.get(from));
+                    int to = from + 1;
+                    while (to < changes.size() && to - from < size && sql.equals(changeSql(tableName, primaryKeyColumn, changes.get(to))))
+                        to++;
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        applyChangeBatch(conn, stmt, changes, from, to, result);
+                    }
+                    from = to;
+                }
+
+                conn.commit();
+                logger.debug("Change set on {}: {}", tableName, result);
+                return null;
+            }
+            catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+            finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+
+        long deleted = 0;
+        for (int i = 0; i < changes.size(); i++)
+            if (changes.get(i).getType() == RowChange.Type.DELETE && !result.getFailures().containsKey(i))
+                deleted++;
+        rowCountCache.adjust(tableName, -deleted);
+        pageCache.invalidate(tableName);
+        return result;
+    }
+
+    private String changeSql(String tableName, String primaryKeyColumn, RowChange change) {
+        if (change.getType() == RowChange.Type.DELETE)
+            return sqlCache.get("delete", tableName, Collections.singletonList(primaryKeyColumn),
+                    () -> String.format("DELETE FROM %s WHERE %s = ?", tableName, primaryKeyColumn));
+
+        Set<String> columns = change.getData().keySet();
+        List<String> paramColumns = new ArrayList<>(columns);
+        paramColumns.add(primaryKeyColumn);
+        return sqlCache.get("update", tableName, paramColumns, () -> buildUpdateSql(tableName, columns, primaryKeyColumn));
+    }
+
+    private Object[] changeParams(RowChange change) {
+        if (change.getType() == RowChange.Type.DELETE)
+            return new Object[]{change.getKey()};
+        return appendToArray(change.getData().values().toArray(), change.getKey());
+    }
 
+    private void applyChangeBatch(Connection conn, PreparedStatement stmt, List<RowChange> changes, int from, int to,
+                                  ChangeSetResult result) throws SQLException {
+        long start = System.nanoTime();
+        Savepoint savepoint = conn.setSavepoint();
+        int[] counts;
+        try {
+            for (int i = from; i < to; i++) {
+                setPreparedStatementParameters(stmt, changeParams(changes.get(i)));
+                stmt.addBatch();
+            }
+            counts = stmt.executeBatch();
+        }
+        catch (SQLException e) {
+            conn.rollback(savepoint);
+            stmt.clearBatch();
+            replayChanges(conn, stmt, changes, from, to, result, start);
+            return;
+        }
+        releaseSavepoint(conn, savepoint);
+
+        long affected = 0;
+        for (int i = from; i < to; i++) {
+            int count = i - from < counts.length ? counts[i - from] : Statement.SUCCESS_NO_INFO;
+            if (count == 0)
+                result.recordFailure(i, rowGone(changes.get(i)));
             else
-                return maxId + 1;
+                affected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        result.recordBatch(to - from, affected, System.nanoTime() - start);
+    }
+
+    private void replayChanges(Connection conn, PreparedStatement stmt, List<RowChange> changes, int from, int to,
+                               ChangeSetResult result, long start) throws SQLException {
+        long affected = 0;
+        for (int i = from; i < to; i++) {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                setPreparedStatementParameters(stmt, changeParams(changes.get(i)));
+                int count = stmt.executeUpdate();
+                releaseSavepoint(conn, savepoint);
+                if (count == 0)
+                    result.recordFailure(i, rowGone(changes.get(i)));
+                affected += count;
+            }
+            catch (SQLException e) {
+                conn.rollback(savepoint);
+                result.recordFailure(i, e);
+            }
         }
+        result.recordBatch(to - from, affected, System.nanoTime() - start);
+    }
+
+    private static SQLException rowGone(RowChange change) {
+        return new SQLException("No row with key " + change.getKey() + " exists any more.");
+    }
+
+    // Savepoints are freed by the commit anyway; some drivers cannot release them early.
+    private static void releaseSavepoint(Connection conn, Savepoint savepoint) throws SQLException {
+        try {
+            conn.releaseSavepoint(savepoint);
+        }
+        catch (SQLFeatureNotSupportedException e) {
+            logger.trace("Driver cannot release savepoints: {}", e.getMessage());
+        }
+    }
+
+    private static String buildInsertSql(String tableName, Collection<String> columns) {
+        String placeholders = String.join(", ", Collections.nCopies(columns.size(), "?"));
+        return String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, String.join(", ", columns), placeholders);
+    }
+
+    private static String buildUpdateSql(String tableName, Collection<String> columns, String primaryKeyColumn) {
+        String setClause = String.join(", ", columns.stream().map(key -> key + " = ?").toArray(String[]::new));
+        return String.format("UPDATE %s SET %s WHERE %s = ?", tableName, setClause, primaryKeyColumn);
+    }
+
+    private static Object[] valuesInOrder(Map<String, Object> row, List<String> columns) throws SQLException {
+        if (row.size() != columns.size() || !row.keySet().containsAll(columns))
+            throw new SQLException("Batch rows must all have the same columns: expected " + columns + " but got " + row.keySet());
+
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = row.get(columns.get(i));
+        return values;
+    }
+
+    // Reuses one statement for every row and commits once, so a failed batch leaves the table untouched.
+    protected BatchResult executeBatch(String sql, List<Object[]> params, int batchSize) throws SQLException {
+        int size = Math.max(1, batchSize);
+        return withExclusiveConnection(conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                BatchResult result = new BatchResult();
+                int pending = 0;
+                for (Object[] row : params) {
+                    setPreparedStatementParameters(stmt, row);
+                    stmt.addBatch();
+                    if (++pending == size) {
+                        runBatch(stmt, pending, result);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0)
+                    runBatch(stmt, pending, result);
+
+                conn.commit();
+                logger.debug("Batch '{}': {}", sql, result);
+                return result;
+            }
+            catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private static void runBatch(PreparedStatement stmt, int rows, BatchResult result) throws SQLException {
+        long start = System.nanoTime();
+        int[] counts = stmt.executeBatch();
+        long duration = System.nanoTime() - start;
+
+        long affected = 0;
+        for (int count : counts)
+            // Rewritten batches (MySQL, PostgreSQL) report SUCCESS_NO_INFO instead of a row count.
+            affected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        result.recordBatch(rows, affected, duration);
+    }
+
+    // Reserves the key, so two callers never get the same value; a reserved key that is never inserted leaves a gap.
+    @Override
+    public int getNextId(String tableName, String primaryKeyColumn) throws SQLException {
+        long key = keyGenerator.nextKey(tableName, primaryKeyColumn);
+        if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE)
+            throw new SQLException("Next key " + key + " for " + tableName + " does not fit in an int.");
+        return (int) key;
     }
 
     @Override
     public boolean executeSqlCommand(String sql, ISqlResultHandler handler) throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            boolean hasResultSet = stmt.execute(sql);
+        try {
+            return withConnection(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    boolean hasResultSet = stmt.execute(sql);
+
+                    if (hasResultSet)
+                        try (ResultSet rs = stmt.getResultSet()) {
+                            handler.handleResultSet(rs);
+                        }
 
-            if (hasResultSet)
-                try (ResultSet rs = stmt.getResultSet()) {
-                    handler.handleResultSet(rs);
+                    else {
+                        int updateCount = stmt.getUpdateCount();
+                        handler.handleUpdateCount(updateCount);
+                    }
+                    return hasResultSet;
                 }
+            });
+        }
+        finally {
+            invalidateAfterCommand(sql);
+        }
+    }
 
-            else {
-                int updateCount = stmt.getUpdateCount();
-                handler.handleUpdateCount(updateCount);
-            }
-            return hasResultSet;
+    @Override
+    public boolean executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                     SqlCancellationToken cancellationToken) throws SQLException {
+        try {
+            SqlFunction<Connection, Boolean> statement = conn -> executeStreaming(conn, sql, handler, fetchSize, chunkSize, cancellationToken, false);
+            // The cursor transaction turns off auto-commit.
+            return requiresTransactionForCursor() ? withExclusiveConnection(statement) : withConnection(statement);
+        }
+        finally {
+            invalidateAfterCommand(sql);
         }
     }
 
     @Override
-    public int getTableEntryCount(String tableName) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM " + tableName;
-        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next())
-                return rs.getInt(1);
+    public boolean executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                         SqlCancellationToken cancellationToken) throws SQLException {
+        try {
+            return withConsoleConnection(conn -> {
+                boolean hasResultSet = executeStreaming(conn, sql, handler, fetchSize, chunkSize, cancellationToken, isConsoleTransaction());
+                trackConsoleTransaction(sql);
+                return hasResultSet;
+            });
+        }
+        finally {
+            invalidateAfterCommand(sql);
+        }
+    }
 
-            else
-                throw new SQLException("Unable to retrieve table entry count.");
+    // A transaction opened with BEGIN in the console is invisible to JDBC, which still reports auto-commit; it must not be
+    // committed by the cursor transaction of the next query.
+    private boolean isConsoleTransaction() {
+        synchronized (consoleLock) {
+            return consoleTransaction;
         }
     }
 
-    @Override
-    public QueryResult getQueryResultFromResultSet(ResultSet rs) throws SQLException {
-        List<Map<String, Object>> results = new ArrayList<>();
-        LinkedHashMap<String, String> columnTypes = new LinkedHashMap<>();
-        ResultSetMetaData metaData = rs.getMetaData();
-        int columnCount = metaData.getColumnCount();
+    private void trackConsoleTransaction(String sql) {
+        String statement = sql.trim().toUpperCase(Locale.ROOT);
+        synchronized (consoleLock) {
+            if (statement.startsWith("BEGIN") || statement.startsWith("START TRANSACTION"))
+                consoleTransaction = true;
+            else if (statement.startsWith("COMMIT") || statement.startsWith("END") || (statement.startsWith("ROLLBACK") && !statement.contains(" TO ")))
+                consoleTransaction = false;
+        }
+    }
+
+    private boolean executeStreaming(Connection conn, String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                     SqlCancellationToken cancellationToken, boolean inTransaction) throws SQLException {
+        boolean cursorTransaction = requiresTransactionForCursor() && !inTransaction && conn.getAutoCommit();
+        if (cursorTransaction)
+            conn.setAutoCommit(false);
+
+        try (Statement stmt = conn.createStatement()) {
+            configureFetchSize(stmt, fetchSize);
+            if (cancellationToken != null)
+                cancellationToken.attach(stmt);
+
+            try {
+                boolean hasResultSet = stmt.execute(sql);
+
+                if (hasResultSet)
+                    try (ResultSet rs = stmt.getResultSet()) {
+                        streamResultSet(rs, handler, chunkSize, cancellationToken);
+                    }
+
+                else
+                    handler.handleUpdateCount(stmt.getUpdateCount());
+
+                if (cursorTransaction)
+                    conn.commit();
+                return hasResultSet;
+            }
+            finally {
+                if (cancellationToken != null)
+                    cancellationToken.detach(stmt);
+            }
+        }
+        catch (SQLException e) {
+            if (cursorTransaction)
+                conn.rollback();
+            throw e;
+        }
+        finally {
+            if (cursorTransaction)
+                conn.setAutoCommit(true);
+        }
+    }
 
-        for (int i = 1; i <= columnCount; i++) {
-            String columnName = metaData.getColumnLabel(i);
-            String columnTypeName = metaData.getColumnTypeName(i);
-            columnTypes.put(columnName, columnTypeName);
+    // Console commands can change any table, so caches are dropped rather than parsing out the table name:
+    // DDL invalidates statements and metadata, anything but a SELECT may have changed rows, row counts and keys in use.
+    private void invalidateAfterCommand(String sql) {
+        String statement = sql.trim().toUpperCase(Locale.ROOT);
+        if (statement.startsWith("CREATE") || statement.startsWith("ALTER") || statement.startsWith("DROP") || statement.startsWith("RENAME")) {
+            sqlCache.clear();
+            metadataCache.clear();
+        }
+        if (!statement.startsWith("SELECT")) {
+            rowCountCache.clear();
+            pageCache.clear();
+            keyGenerator.resetAll();
         }
+    }
 
-        while (rs.next()) {
-            Map<String, Object> row = new HashMap<>();
-            for (String columnName : columnTypes.keySet()) {
-                Object value = rs.getObject(columnName);
-                row.put(columnName, value);
+    private void streamResultSet(ResultSet rs, IStreamingSqlResultHandler handler, int chunkSize,
+                                 SqlCancellationToken cancellationToken) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        LinkedHashMap<String, String> columnTypes = new LinkedHashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++)
+            columnTypes.put(metaData.getColumnLabel(i), metaData.getColumnTypeName(i));
+        handler.handleColumns(columnTypes);
+
+        long totalRows = 0;
+        boolean cancelled = false;
+        while (true) {
+            if (cancellationToken != null && cancellationToken.isCancelled()) {
+                cancelled = true;
+                break;
+            }
+
+            QueryResult chunk;
+            try {
+                chunk = QueryResult.read(rs, this::createColumnVector, chunkSize);
+            }
+            catch (SQLException e) {
+                // Drivers report a cancelled statement as an error on the next fetch.
+                if (cancellationToken != null && cancellationToken.isCancelled()) {
+                    cancelled = true;
+                    break;
+                }
+                throw e;
             }
-            results.add(row);
+
+            if (chunk.getRowCount() == 0)
+                break;
+
+            totalRows += chunk.getRowCount();
+            handler.handleRows(chunk);
+
+            if (chunk.getRowCount() < chunkSize)
+                break;
         }
-        return new QueryResult(results, columnTypes);
+        handler.handleEnd(totalRows, cancelled);
+    }
+
+    // Some drivers only honour the fetch size inside a transaction (e.g. PostgreSQL); they override this.
+    protected boolean requiresTransactionForCursor() {
+        return false;
+    }
+
+    protected void configureFetchSize(Statement stmt, int fetchSize) throws SQLException {
+        if (fetchSize > 0)
+            stmt.setFetchSize(fetchSize);
+    }
+
+    @Override
+    public int getTableEntryCount(String tableName) throws SQLException {
+        RowCount cached = rowCountCache.get(tableName);
+        if (cached != null && cached.isExact())
+            return (int) cached.getCount();
+
+        String sql = sqlCache.get("count", tableName, null, () -> String.format("SELECT COUNT(*) FROM %s", tableName));
+        int count = withConnection(conn -> {
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                if (rs.next())
+                    return rs.getInt(1);
+
+                else
+                    throw new SQLException("Unable to retrieve table entry count.");
+            }
+        });
+        rowCountCache.put(tableName, new RowCount(count, true));
+        return count;
+    }
+
+    @Override
+    public RowCount estimateTableEntryCount(String tableName) throws SQLException {
+        RowCount cached = rowCountCache.get(tableName);
+        if (cached != null)
+            return cached;
+
+        Long estimate = withConnection(conn -> estimateRowCount(conn, tableName));
+        if (estimate == null)
+            return new RowCount(getTableEntryCount(tableName), true);
+
+        RowCount count = new RowCount(estimate, false);
+        rowCountCache.put(tableName, count);
+        return count;
+    }
+
+    @Override
+    public void invalidateCachedData(String tableName) {
+        rowCountCache.invalidate(tableName);
+        pageCache.invalidate(tableName);
+    }
+
+    // Engines that keep table statistics return their row estimate here; null means there is no cheap estimate.
+    protected Long estimateRowCount(Connection conn, String tableName) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public QueryResult getQueryResultFromResultSet(ResultSet rs) throws SQLException {
+        return QueryResult.read(rs, this::createColumnVector);
+    }
+
+    protected ColumnVector createColumnVector(ResultSetMetaData metaData, int column) throws SQLException {
+        return ColumnVector.forColumn(metaData, column);
     }
 
     @Override
@@ -263,4 +1168,4 @@ public abstract class AbstractRelationalDatabaseService implements IDatabaseServ
         newArray[array.length] = value;
         return newArray;
     }
-}
\ No newline at end of file
+}
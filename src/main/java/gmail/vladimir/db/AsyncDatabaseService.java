@@ -0,0 +1,202 @@
+package gmail.vladimir.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs IDatabaseService calls on a bounded worker pool so callers (the Swing views) never block on I/O.
+public class AsyncDatabaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDatabaseService.class);
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int MONGO_WORKERS = 4;
+
+    private final IDatabaseService dbService;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncDatabaseService(IDatabaseService dbService) {
+        this.dbService = dbService;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "db-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public IDatabaseService getService() {
+        return dbService;
+    }
+
+    public <T> CompletableFuture<T> submit(SqlCallable<T> task) {
+        DatabaseTask<T> future = new DatabaseTask<>();
+        try {
+            future.worker = executor.submit(() -> {
+                if (future.isDone())
+                    return;
+                try {
+                    future.complete(task.call());
+                }
+                catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            future.completeExceptionally(new SQLException("Too many database operations are queued.", e));
+        }
+        return future;
+    }
+
+    public CompletableFuture<Void> run(SqlRunnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // Sizes the worker pool to what the connected service can run in parallel.
+    public CompletableFuture<Void> connect(Map<String, String> connectionParams) {
+        return run(() -> {
+            dbService.connect(connectionParams);
+            setWorkerCount(resolveWorkerCount());
+        });
+    }
+
+    private int resolveWorkerCount() {
+        IDatabaseService service = dbService instanceof InstrumentedDatabaseService ? ((InstrumentedDatabaseService) dbService).getDelegate() : dbService;
+        if (service instanceof AbstractRelationalDatabaseService) {
+            PoolStats stats = ((AbstractRelationalDatabaseService) service).getPoolStats();
+            return stats == null ? 1 : stats.getMaximumPoolSize();
+        }
+        return MONGO_WORKERS;
+    }
+
+    private synchronized void setWorkerCount(int workers) {
+        int count = Math.max(1, workers);
+        if (count > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(count);
+            executor.setCorePoolSize(count);
+        }
+        else {
+            executor.setCorePoolSize(count);
+            executor.setMaximumPoolSize(count);
+        }
+        logger.info("Using {} database worker thread(s).", count);
+    }
+
+    public CompletableFuture<Void> disconnect() {
+        return run(dbService::disconnect);
+    }
+
+    public CompletableFuture<List<String>> listTables() {
+        return submit(dbService::listTables);
+    }
+
+    public CompletableFuture<Map<String, String>> getTableSchema(String tableName) {
+        return submit(() -> dbService.getTableSchema(tableName));
+    }
+
+    public CompletableFuture<List<Map<String, Object>>> getTableData(String tableName, int limit, int offset) {
+        return submit(() -> dbService.getTableData(tableName, limit, offset));
+    }
+
+    public CompletableFuture<KeysetPage> getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) {
+        return submit(() -> dbService.getTableDataPage(tableName, keyColumns, cursor, limit, offset));
+    }
+
+    public CompletableFuture<Void> createTable(String tableName, String tableSchema) {
+        return run(() -> dbService.createTable(tableName, tableSchema));
+    }
+
+    public CompletableFuture<Void> deleteTable(String tableName) {
+        return run(() -> dbService.deleteTable(tableName));
+    }
+
+    public CompletableFuture<Void> insertData(String tableName, Map<String, Object> data) {
+        return run(() -> dbService.insertData(tableName, data));
+    }
+
+    public CompletableFuture<Void> updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) {
+        return run(() -> dbService.updateData(tableName, data, primaryKeyColumn, primaryKeyValue));
+    }
+
+    public CompletableFuture<Void> deleteData(String tableName, String primaryKeyColumn, Object primaryKeyValue) {
+        return run(() -> dbService.deleteData(tableName, primaryKeyColumn, primaryKeyValue));
+    }
+
+    public CompletableFuture<BatchResult> insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) {
+        return submit(() -> dbService.insertDataBatch(tableName, rows, batchSize));
+    }
+
+    public CompletableFuture<BatchResult> updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) {
+        return submit(() -> dbService.updateDataBatch(tableName, rows, primaryKeyColumn, batchSize));
+    }
+
+    public CompletableFuture<BatchResult> deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) {
+        return submit(() -> dbService.deleteDataBatch(tableName, primaryKeyColumn, primaryKeyValues, batchSize));
+    }
+
+    public CompletableFuture<ChangeSetResult> applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) {
+        return submit(() -> dbService.applyChanges(tableName, primaryKeyColumn, changes, batchSize));
+    }
+
+    public CompletableFuture<Integer> getTableEntryCount(String tableName) {
+        return submit(() -> dbService.getTableEntryCount(tableName));
+    }
+
+    public CompletableFuture<RowCount> estimateTableEntryCount(String tableName) {
+        return submit(() -> dbService.estimateTableEntryCount(tableName));
+    }
+
+    public CompletableFuture<Boolean> executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                                       SqlCancellationToken cancellationToken) {
+        DatabaseTask<Boolean> future = (DatabaseTask<Boolean>) submit(() -> dbService.executeSqlCommand(sql, handler, fetchSize, chunkSize, cancellationToken));
+        future.cancellationToken = cancellationToken;
+        return future;
+    }
+
+    public CompletableFuture<Boolean> executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                                           SqlCancellationToken cancellationToken) {
+        DatabaseTask<Boolean> future = (DatabaseTask<Boolean>) submit(() -> dbService.executeConsoleCommand(sql, handler, fetchSize, chunkSize, cancellationToken));
+        future.cancellationToken = cancellationToken;
+        return future;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+            error = error.getCause();
+        return error;
+    }
+
+    public static boolean isCancellation(Throwable error) {
+        return unwrap(error) instanceof CancellationException;
+    }
+
+    // Cancelling the future also interrupts the worker and cancels the running statement when there is one.
+    private static class DatabaseTask<T> extends CompletableFuture<T> {
+        private volatile Future<?> worker;
+        private volatile SqlCancellationToken cancellationToken;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancellationToken != null)
+                cancellationToken.cancel();
+            if (worker != null)
+                worker.cancel(mayInterruptIfRunning);
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package gmail.vladimir.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of a batched write: affected rows plus how long each executeBatch/bulkWrite round trip took.
+public class BatchResult {
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<Long> batchDurationsNanos = new ArrayList<>();
+    private long rowsAffected;
+    private long totalNanos;
+
+    public void recordBatch(int rows, long affected, long durationNanos) {
+        batchSizes.add(rows);
+        batchDurationsNanos.add(durationNanos);
+        rowsAffected += affected;
+        totalNanos += durationNanos;
+    }
+
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    public int getBatchCount() {
+        return batchSizes.size();
+    }
+
+    public List<Integer> getBatchSizes() {
+        return Collections.unmodifiableList(batchSizes);
+    }
+
+    public List<Long> getBatchDurationsNanos() {
+        return Collections.unmodifiableList(batchDurationsNanos);
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public double getRowsPerSecond() {
+        long rows = 0;
+        for (int size : batchSizes)
+            rows += size;
+        return totalNanos == 0 ? 0 : rows * 1_000_000_000.0 / totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows affected in %d batches, %.1f ms total (%.0f rows/s)",
+                rowsAffected, getBatchCount(), totalNanos / 1_000_000.0, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,6 @@
+package gmail.vladimir.db;
+
+@FunctionalInterface
+public interface BulkWriteProgressListener {
+    void onProgress(long processed, long total);
+}
@@ -0,0 +1,28 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Outcome of applyChanges: the batches that ran plus the changes that were rolled back, by their index in the list.
+public class ChangeSetResult extends BatchResult {
+    private final Map<Integer, SQLException> failures = new TreeMap<>();
+
+    public void recordFailure(int index, SQLException error) {
+        failures.put(index, error);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public Map<Integer, SQLException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    @Override
+    public String toString() {
+        return failures.isEmpty() ? super.toString() : super.toString() + ", " + failures.size() + " changes rolled back";
+    }
+}
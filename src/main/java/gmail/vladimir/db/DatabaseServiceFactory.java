@@ -2,9 +2,22 @@ package gmail.vladimir.db;
 
 import gmail.vladimir.db.implementation.*;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class DatabaseServiceFactory {
 
+    // Every service is wrapped so its calls show up in the metrics window and over JMX.
     public static IDatabaseService createDatabaseService(DatabaseType dbType) {
+        return createDatabaseService(dbType, Collections.emptyMap());
+    }
+
+    // The connection parameters pick between implementations where there is more than one, e.g. the MongoDB driver.
+    public static IDatabaseService createDatabaseService(DatabaseType dbType, Map<String, String> connectionParams) {
+        return InstrumentedDatabaseService.wrap(createService(dbType, connectionParams));
+    }
+
+    private static IDatabaseService createService(DatabaseType dbType, Map<String, String> connectionParams) {
         switch (dbType) {
             case MYSQL:
             case MARIADB:
@@ -16,6 +29,8 @@ public class DatabaseServiceFactory {
             case HYPERSQL:
                 return new HyperSQLDatabaseService();
             case MONGODB:
+                if (ReactiveMongoDBDatabaseService.REACTIVE.equals(connectionParams.get(ReactiveMongoDBDatabaseService.DRIVER)))
+                    return new ReactiveMongoDBDatabaseService();
                 return new MongoDBDatabaseService();
             default:
                 throw new IllegalArgumentException("Unsupported database type: " + dbType);
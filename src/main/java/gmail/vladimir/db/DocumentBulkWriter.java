@@ -0,0 +1,142 @@
+package gmail.vladimir.db;
+
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Buffers per-document writes and sends them as bulkWrite batches, reporting progress after every batch. Unordered
+// batches do not depend on each other, so up to MAX_IN_FLIGHT of them are left running while the next one fills; on
+// the reactive driver that overlaps their round trips.
+public class DocumentBulkWriter {
+
+    public static final int MAX_IN_FLIGHT = 4;
+    private static final Logger logger = LoggerFactory.getLogger(DocumentBulkWriter.class);
+
+    private final IDocumentDatabaseService dbService;
+    private final String collectionName;
+    private final int batchSize;
+    private final boolean ordered;
+    private final long expectedTotal;
+    private final BulkWriteProgressListener progressListener;
+    private List<WriteModel<Document>> pending;
+    private final Deque<InFlight> inFlight = new ArrayDeque<>();
+
+    private long submitted;
+    private long affected;
+
+    public DocumentBulkWriter(IDocumentDatabaseService dbService, String collectionName, int batchSize, boolean ordered,
+                              long expectedTotal, BulkWriteProgressListener progressListener) {
+        this.dbService = dbService;
+        this.collectionName = collectionName;
+        this.batchSize = Math.max(1, batchSize);
+        this.ordered = ordered;
+        this.expectedTotal = expectedTotal;
+        this.progressListener = progressListener;
+        this.pending = new ArrayList<>(this.batchSize);
+    }
+
+    public void add(WriteModel<Document> model) throws SQLException {
+        pending.add(model);
+        if (pending.size() >= batchSize)
+            send();
+    }
+
+    // Writes what is buffered and waits for every batch still in flight.
+    public void flush() throws SQLException {
+        send();
+        while (!inFlight.isEmpty())
+            awaitOldest();
+    }
+
+    private void send() throws SQLException {
+        if (pending.isEmpty())
+            return;
+
+        // Cancelling the task interrupts the worker; stop between batches instead of writing the rest.
+        if (Thread.currentThread().isInterrupted())
+            throw new SQLException("Bulk write to '" + collectionName + "' was cancelled after " + submitted + " documents.");
+
+        List<WriteModel<Document>> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        if (ordered) {
+            completed(batch.size(), dbService.bulkWrite(collectionName, batch, true));
+            return;
+        }
+
+        if (inFlight.size() >= MAX_IN_FLIGHT)
+            awaitOldest();
+        inFlight.add(new InFlight(batch.size(), dbService.bulkWriteAsync(collectionName, batch, false)));
+    }
+
+    private void awaitOldest() throws SQLException {
+        InFlight oldest = inFlight.poll();
+        try {
+            completed(oldest.size, oldest.result.get());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            awaitRemaining();
+            throw new SQLException("Bulk write to '" + collectionName + "' was cancelled after " + submitted
+                    + " documents, " + affected + " affected.", e);
+        }
+        catch (ExecutionException e) {
+            awaitRemaining();
+            Throwable cause = e.getCause();
+            String message = "Bulk write to '" + collectionName + "' failed, " + affected + " documents affected by the "
+                    + "batches that completed: " + cause.getMessage();
+            if (cause instanceof SQLException)
+                throw new SQLException(message, ((SQLException) cause).getSQLState(), ((SQLException) cause).getErrorCode(), cause);
+            throw new SQLException(message, cause);
+        }
+    }
+
+    // The other batches were already sent and may still succeed; wait for them so the affected count covers every
+    // write that reached the server, and so none is still running when the caller reports the failure.
+    private void awaitRemaining() {
+        while (!inFlight.isEmpty()) {
+            InFlight next = inFlight.poll();
+            try {
+                completed(next.size, next.result.join());
+            }
+            catch (CompletionException | CancellationException e) {
+                logger.warn("Another bulk write batch to '{}' failed: {}", collectionName, e.getMessage());
+            }
+        }
+    }
+
+    private void completed(int size, long batchAffected) {
+        affected += batchAffected;
+        submitted += size;
+        if (progressListener != null)
+            progressListener.onProgress(submitted, Math.max(submitted, expectedTotal));
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getAffected() {
+        return affected;
+    }
+
+    private static final class InFlight {
+        private final int size;
+        private final CompletableFuture<Long> result;
+
+        private InFlight(int size, CompletableFuture<Long> result) {
+            this.size = size;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package gmail.vladimir.db;
+
+import java.util.Map;
+
+// A write reported by a collection's change stream; document is the full document after inserts and updates.
+public class DocumentChange {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, OTHER
+    }
+
+    private final Type type;
+    private final Object documentId;
+    private final Map<String, Object> document;
+
+    public DocumentChange(Type type, Object documentId, Map<String, Object> document) {
+        this.type = type;
+        this.documentId = documentId;
+        this.document = document;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Object getDocumentId() {
+        return documentId;
+    }
+
+    public Map<String, Object> getDocument() {
+        return document;
+    }
+}
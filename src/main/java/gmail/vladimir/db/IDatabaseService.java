@@ -20,26 +20,55 @@ public interface IDatabaseService {
 
     List<Map<String, Object>> getTableData(String tableName, int limit, int offset) throws SQLException;
 
+    KeysetPage getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException;
+
     void createTable(String tableName, String tableSchema) throws SQLException;
 
     void deleteTable(String tableName) throws SQLException;
 
     void insertData(String tableName, Map<String, Object> data) throws SQLException;
 
+    // Fills in primaryKeyColumn when data has no value for it (database-generated or allocated) and returns the key used.
+    Object insertDataWithKey(String tableName, Map<String, Object> data, String primaryKeyColumn) throws SQLException;
+
     void updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) throws SQLException;
 
     void deleteData(String tableName, String primaryKeyColumn, Object primaryKeyValue) throws SQLException;
 
-    int getTotalEntries(String tableName) throws SQLException;
+    // All rows must have the same columns; the whole call runs in one transaction, sent batchSize rows at a time.
+    BatchResult insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) throws SQLException;
+
+    // Each row carries its own primary key value under primaryKeyColumn; the remaining columns are updated.
+    BatchResult updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) throws SQLException;
+
+    BatchResult deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) throws SQLException;
+
+    // Applies staged edits in order and commits once. A change that fails, or whose row is gone, is rolled back on its
+    // own and reported in the result; the others still commit.
+    ChangeSetResult applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) throws SQLException;
 
     String getPrimaryKeyColumn(String tableName) throws SQLException;
 
+    List<String> getPrimaryKeyColumns(String tableName) throws SQLException;
+
     int getNextId(String tableName, String primaryKeyColumn) throws SQLException;
 
     boolean executeSqlCommand(String sql, ISqlResultHandler handler) throws SQLException;
 
+    boolean executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize, SqlCancellationToken cancellationToken) throws SQLException;
+
+    // For statements typed in the console: they all run in the same session, unlike executeSqlCommand.
+    boolean executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize, SqlCancellationToken cancellationToken) throws SQLException;
+
+    // Exact count; cached and kept current by writes made through this service.
     int getTableEntryCount(String tableName) throws SQLException;
 
+    // Returns immediately from the cache or the engine's statistics where possible, falling back to the exact count.
+    RowCount estimateTableEntryCount(String tableName) throws SQLException;
+
+    // Drops cached pages and row counts of the table, so the next read also sees rows written by other clients.
+    void invalidateCachedData(String tableName);
+
     QueryResult getQueryResultFromResultSet(ResultSet rs) throws SQLException;
 
     String getDatabaseName();
@@ -0,0 +1,46 @@
+package gmail.vladimir.db;
+
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Document stores can evaluate filters and sorts themselves, so callers only receive the documents they display.
+public interface IDocumentDatabaseService extends IDatabaseService {
+
+    List<Map<String, Object>> findDocuments(String collectionName, Bson filter, Bson sort, int limit, int offset) throws SQLException;
+
+    // Range paging: documents after (or before) the cursor in sortFields order, so a deep page costs the same as the
+    // first. The last sort field must be unique, normally _id. A null projection returns whole documents; batchSize 0
+    // fetches the page in one round trip.
+    KeysetPage findDocumentPage(String collectionName, Bson filter, List<String> sortFields, KeysetCursor cursor,
+                                Collection<String> projection, int limit, int offset, int batchSize) throws SQLException;
+
+    long countDocuments(String collectionName, Bson filter) throws SQLException;
+
+    // Collection metadata count; cheap but may drift after unclean shutdowns or on sharded clusters.
+    long estimatedDocumentCount(String collectionName) throws SQLException;
+
+    List<Map<String, Object>> aggregate(String collectionName, List<? extends Bson> pipeline) throws SQLException;
+
+    // Delivers changes on a background thread until the returned handle is closed.
+    AutoCloseable watch(String collectionName, Consumer<DocumentChange> listener) throws SQLException;
+
+    // Streams matching documents in _id order without materialising the result set.
+    void forEachDocument(String collectionName, Bson filter, int batchSize, SqlConsumer<Map<String, Object>> action) throws SQLException;
+
+    long deleteMany(String collectionName, Bson filter) throws SQLException;
+
+    long updateMany(String collectionName, Bson filter, Bson update) throws SQLException;
+
+    long bulkWrite(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) throws SQLException;
+
+    // Returns once the write is sent where the driver allows it, so a caller can keep several batches in flight.
+    CompletableFuture<Long> bulkWriteAsync(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered);
+}
@@ -0,0 +1,11 @@
+package gmail.vladimir.db;
+
+import java.util.LinkedHashMap;
+
+public interface IStreamingSqlResultHandler {
+    void handleColumns(LinkedHashMap<String, String> columnTypes);
+    void handleRows(QueryResult chunk);
+    void handleEnd(long totalRows, boolean cancelled);
+    void handleUpdateCount(int updateCount);
+    void handleMessage(String message);
+}
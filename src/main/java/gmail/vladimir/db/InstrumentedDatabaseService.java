@@ -0,0 +1,314 @@
+package gmail.vladimir.db;
+
+import gmail.vladimir.db.metrics.DatabaseMetrics;
+import gmail.vladimir.db.metrics.PoolWaitSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+// Times every call on the wrapped service and records it, with the rows and bytes it returned, in a DatabaseMetrics.
+// DatabaseServiceFactory wraps every service it creates; the metrics are published over JMX while connected.
+public class InstrumentedDatabaseService implements IDatabaseService {
+
+    public static final String SLOW_QUERY_THRESHOLD_MS = "metrics.slowQueryThresholdMs";
+
+    private static final Logger logger = LoggerFactory.getLogger(InstrumentedDatabaseService.class);
+
+    protected static final ToLongFunction<Object> NONE = result -> 0;
+    protected static final ToLongFunction<List<Map<String, Object>>> ROW_COUNT = List::size;
+    protected static final ToLongFunction<List<Map<String, Object>>> ROW_BYTES = PageCache::estimateBytes;
+    protected static final ToLongFunction<KeysetPage> PAGE_ROWS = page -> page.getData().size();
+    protected static final ToLongFunction<KeysetPage> PAGE_BYTES = page -> PageCache.estimateBytes(page.getData());
+
+    private final IDatabaseService delegate;
+    protected final DatabaseMetrics metrics;
+
+    protected InstrumentedDatabaseService(IDatabaseService delegate) {
+        this.delegate = delegate;
+        this.metrics = new DatabaseMetrics(delegate.getClass().getSimpleName());
+        if (delegate instanceof PoolWaitSource)
+            ((PoolWaitSource) delegate).setPoolWaitListener(metrics);
+    }
+
+    // Document services stay IDocumentDatabaseService once wrapped.
+    public static IDatabaseService wrap(IDatabaseService service) {
+        if (service instanceof IDocumentDatabaseService)
+            return new InstrumentedDocumentDatabaseService((IDocumentDatabaseService) service);
+        return new InstrumentedDatabaseService(service);
+    }
+
+    public IDatabaseService getDelegate() {
+        return delegate;
+    }
+
+    public DatabaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    protected <T> T time(String operation, String table, String detail, SqlCallable<T> call) throws SQLException {
+        return time(operation, table, detail, call, NONE, NONE);
+    }
+
+    // Runtime exceptions count as errors too; some drivers throw them for I/O failures.
+    protected <T> T time(String operation, String table, String detail, SqlCallable<T> call,
+                         ToLongFunction<? super T> rows, ToLongFunction<? super T> bytes) throws SQLException {
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = call.call();
+            failed = false;
+            return result;
+        }
+        finally {
+            long nanos = System.nanoTime() - start;
+            metrics.record(operation, table, detail, nanos, failed || result == null ? 0 : rows.applyAsLong(result),
+                    failed || result == null ? 0 : bytes.applyAsLong(result), failed);
+        }
+    }
+
+    protected void time(String operation, String table, String detail, SqlRunnable call) throws SQLException {
+        time(operation, table, detail, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    protected static String page(int limit, int offset) {
+        return "limit=" + limit + ", offset=" + offset;
+    }
+
+    // Details end up in the slow call log, so they name key columns but never the row values in them.
+    protected static String cursor(KeysetCursor cursor) {
+        return cursor == null ? "first page" : (cursor.isForward() ? "after " : "before ") + cursor.getKeyColumns();
+    }
+
+    @Override
+    public void connect(Map<String, String> connectionParams) throws SQLException {
+        String threshold = connectionParams.get(SLOW_QUERY_THRESHOLD_MS);
+        if (threshold != null && !threshold.trim().isEmpty()) {
+            try {
+                metrics.setSlowQueryThresholdMillis(Long.parseLong(threshold.trim()));
+            }
+            catch (NumberFormatException e) {
+                throw new SQLException("Invalid value for " + SLOW_QUERY_THRESHOLD_MS + ": " + threshold, e);
+            }
+        }
+
+        time("connect", null, null, () -> delegate.connect(connectionParams));
+        metrics.registerMBean();
+    }
+
+    @Override
+    public void disconnect() throws SQLException {
+        metrics.unregisterMBean();
+        logger.info("{}", metrics);
+        delegate.disconnect();
+    }
+
+    @Override
+    public List<String> listTables() throws SQLException {
+        return time("listTables", null, null, delegate::listTables, List::size, NONE);
+    }
+
+    @Override
+    public Map<String, String> getTableSchema(String tableName) throws SQLException {
+        return time("getTableSchema", tableName, null, () -> delegate.getTableSchema(tableName));
+    }
+
+    @Override
+    public List<Map<String, Object>> getTableData(String tableName, int limit, int offset) throws SQLException {
+        return time("getTableData", tableName, page(limit, offset), () -> delegate.getTableData(tableName, limit, offset), ROW_COUNT, ROW_BYTES);
+    }
+
+    @Override
+    public KeysetPage getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException {
+        return time("getTableDataPage", tableName, page(limit, offset) + ", " + cursor(cursor),
+                () -> delegate.getTableDataPage(tableName, keyColumns, cursor, limit, offset), PAGE_ROWS, PAGE_BYTES);
+    }
+
+    @Override
+    public void createTable(String tableName, String tableSchema) throws SQLException {
+        time("createTable", tableName, tableSchema, () -> delegate.createTable(tableName, tableSchema));
+    }
+
+    @Override
+    public void deleteTable(String tableName) throws SQLException {
+        time("deleteTable", tableName, null, () -> delegate.deleteTable(tableName));
+    }
+
+    @Override
+    public void insertData(String tableName, Map<String, Object> data) throws SQLException {
+        time("insertData", tableName, null, () -> {
+            delegate.insertData(tableName, data);
+            return data;
+        }, row -> 1, row -> PageCache.estimateBytes(Collections.singletonList(row)));
+    }
+
+    @Override
+    public Object insertDataWithKey(String tableName, Map<String, Object> data, String primaryKeyColumn) throws SQLException {
+        return time("insertDataWithKey", tableName, null, () -> delegate.insertDataWithKey(tableName, data, primaryKeyColumn),
+                key -> 1, key -> PageCache.estimateBytes(Collections.singletonList(data)));
+    }
+
+    @Override
+    public void updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
+        time("updateData", tableName, "key=" + primaryKeyColumn, () -> {
+            delegate.updateData(tableName, data, primaryKeyColumn, primaryKeyValue);
+            return data;
+        }, row -> 1, row -> PageCache.estimateBytes(Collections.singletonList(row)));
+    }
+
+    @Override
+    public void deleteData(String tableName, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
+        time("deleteData", tableName, "key=" + primaryKeyColumn,
+                () -> delegate.deleteData(tableName, primaryKeyColumn, primaryKeyValue));
+    }
+
+    @Override
+    public BatchResult insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        return time("insertDataBatch", tableName, "rows=" + rows.size(), () -> delegate.insertDataBatch(tableName, rows, batchSize),
+                BatchResult::getRowsAffected, result -> PageCache.estimateBytes(rows));
+    }
+
+    @Override
+    public BatchResult updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) throws SQLException {
+        return time("updateDataBatch", tableName, "rows=" + rows.size(), () -> delegate.updateDataBatch(tableName, rows, primaryKeyColumn, batchSize),
+                BatchResult::getRowsAffected, result -> PageCache.estimateBytes(rows));
+    }
+
+    @Override
+    public BatchResult deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) throws SQLException {
+        return time("deleteDataBatch", tableName, "rows=" + primaryKeyValues.size(),
+                () -> delegate.deleteDataBatch(tableName, primaryKeyColumn, primaryKeyValues, batchSize), BatchResult::getRowsAffected, NONE);
+    }
+
+    @Override
+    public ChangeSetResult applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) throws SQLException {
+        return time("applyChanges", tableName, "changes=" + changes.size(),
+                () -> delegate.applyChanges(tableName, primaryKeyColumn, changes, batchSize), BatchResult::getRowsAffected, NONE);
+    }
+
+    @Override
+    public String getPrimaryKeyColumn(String tableName) throws SQLException {
+        return time("getPrimaryKeyColumn", tableName, null, () -> delegate.getPrimaryKeyColumn(tableName));
+    }
+
+    @Override
+    public List<String> getPrimaryKeyColumns(String tableName) throws SQLException {
+        return time("getPrimaryKeyColumns", tableName, null, () -> delegate.getPrimaryKeyColumns(tableName));
+    }
+
+    @Override
+    public int getNextId(String tableName, String primaryKeyColumn) throws SQLException {
+        return time("getNextId", tableName, null, () -> delegate.getNextId(tableName, primaryKeyColumn));
+    }
+
+    // Rows are the update counts; the result sets belong to the handler.
+    @Override
+    public boolean executeSqlCommand(String sql, ISqlResultHandler handler) throws SQLException {
+        long[] updated = new long[1];
+        ISqlResultHandler counting = new ISqlResultHandler() {
+            @Override
+            public void handleResultSet(ResultSet rs) throws SQLException {
+                handler.handleResultSet(rs);
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+                updated[0] += Math.max(0, updateCount);
+                handler.handleUpdateCount(updateCount);
+            }
+
+            @Override
+            public void handleMessage(String message) {
+                handler.handleMessage(message);
+            }
+        };
+        return time("executeSqlCommand", null, sql, () -> delegate.executeSqlCommand(sql, counting), result -> updated[0], NONE);
+    }
+
+    @Override
+    public boolean executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                     SqlCancellationToken cancellationToken) throws SQLException {
+        long[] counted = new long[2];
+        IStreamingSqlResultHandler counting = counting(handler, counted);
+        return time("executeSqlCommand", null, sql, () -> delegate.executeSqlCommand(sql, counting, fetchSize, chunkSize, cancellationToken),
+                result -> counted[0], result -> counted[1]);
+    }
+
+    @Override
+    public boolean executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                         SqlCancellationToken cancellationToken) throws SQLException {
+        long[] counted = new long[2];
+        IStreamingSqlResultHandler counting = counting(handler, counted);
+        return time("executeConsoleCommand", null, sql, () -> delegate.executeConsoleCommand(sql, counting, fetchSize, chunkSize, cancellationToken),
+                result -> counted[0], result -> counted[1]);
+    }
+
+    // Counts rows and bytes into counted[0] and counted[1] on the way through.
+    private static IStreamingSqlResultHandler counting(IStreamingSqlResultHandler handler, long[] counted) {
+        return new IStreamingSqlResultHandler() {
+            @Override
+            public void handleColumns(LinkedHashMap<String, String> columnTypes) {
+                handler.handleColumns(columnTypes);
+            }
+
+            @Override
+            public void handleRows(QueryResult chunk) {
+                counted[0] += chunk.getRowCount();
+                counted[1] += chunk.estimateMemoryBytes();
+                handler.handleRows(chunk);
+            }
+
+            @Override
+            public void handleEnd(long totalRows, boolean cancelled) {
+                handler.handleEnd(totalRows, cancelled);
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+                counted[0] += Math.max(0, updateCount);
+                handler.handleUpdateCount(updateCount);
+            }
+
+            @Override
+            public void handleMessage(String message) {
+                handler.handleMessage(message);
+            }
+        };
+    }
+
+    @Override
+    public int getTableEntryCount(String tableName) throws SQLException {
+        return time("getTableEntryCount", tableName, null, () -> delegate.getTableEntryCount(tableName));
+    }
+
+    @Override
+    public RowCount estimateTableEntryCount(String tableName) throws SQLException {
+        return time("estimateTableEntryCount", tableName, null, () -> delegate.estimateTableEntryCount(tableName));
+    }
+
+    @Override
+    public void invalidateCachedData(String tableName) {
+        delegate.invalidateCachedData(tableName);
+    }
+
+    @Override
+    public QueryResult getQueryResultFromResultSet(ResultSet rs) throws SQLException {
+        return time("getQueryResultFromResultSet", null, null, () -> delegate.getQueryResultFromResultSet(rs),
+                QueryResult::getRowCount, QueryResult::estimateMemoryBytes);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return delegate.getDatabaseName();
+    }
+}
@@ -0,0 +1,97 @@
+package gmail.vladimir.db;
+
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// InstrumentedDatabaseService for document stores; filters and pipelines are the slow-query log detail.
+public class InstrumentedDocumentDatabaseService extends InstrumentedDatabaseService implements IDocumentDatabaseService {
+
+    private final IDocumentDatabaseService delegate;
+
+    protected InstrumentedDocumentDatabaseService(IDocumentDatabaseService delegate) {
+        super(delegate);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Map<String, Object>> findDocuments(String collectionName, Bson filter, Bson sort, int limit, int offset) throws SQLException {
+        return time("findDocuments", collectionName, "filter=" + filter + ", sort=" + sort + ", " + page(limit, offset),
+                () -> delegate.findDocuments(collectionName, filter, sort, limit, offset), ROW_COUNT, ROW_BYTES);
+    }
+
+    @Override
+    public KeysetPage findDocumentPage(String collectionName, Bson filter, List<String> sortFields, KeysetCursor cursor,
+                                       Collection<String> projection, int limit, int offset, int batchSize) throws SQLException {
+        return time("findDocumentPage", collectionName, "filter=" + filter + ", sort=" + sortFields + ", " + page(limit, offset) + ", " + cursor(cursor),
+                () -> delegate.findDocumentPage(collectionName, filter, sortFields, cursor, projection, limit, offset, batchSize), PAGE_ROWS, PAGE_BYTES);
+    }
+
+    @Override
+    public long countDocuments(String collectionName, Bson filter) throws SQLException {
+        return time("countDocuments", collectionName, "filter=" + filter, () -> delegate.countDocuments(collectionName, filter));
+    }
+
+    @Override
+    public long estimatedDocumentCount(String collectionName) throws SQLException {
+        return time("estimatedDocumentCount", collectionName, null, () -> delegate.estimatedDocumentCount(collectionName));
+    }
+
+    @Override
+    public List<Map<String, Object>> aggregate(String collectionName, List<? extends Bson> pipeline) throws SQLException {
+        return time("aggregate", collectionName, "pipeline=" + pipeline, () -> delegate.aggregate(collectionName, pipeline), ROW_COUNT, ROW_BYTES);
+    }
+
+    // Only opening the stream is timed; changes arrive for as long as it stays open.
+    @Override
+    public AutoCloseable watch(String collectionName, Consumer<DocumentChange> listener) throws SQLException {
+        return time("watch", collectionName, null, () -> delegate.watch(collectionName, listener));
+    }
+
+    @Override
+    public void forEachDocument(String collectionName, Bson filter, int batchSize, SqlConsumer<Map<String, Object>> action) throws SQLException {
+        long[] counted = new long[2];
+        time("forEachDocument", collectionName, "filter=" + filter, () -> {
+            delegate.forEachDocument(collectionName, filter, batchSize, document -> {
+                counted[0]++;
+                counted[1] += PageCache.estimateBytes(Collections.singletonList(document));
+                action.accept(document);
+            });
+            return counted;
+        }, result -> result[0], result -> result[1]);
+    }
+
+    @Override
+    public long deleteMany(String collectionName, Bson filter) throws SQLException {
+        return time("deleteMany", collectionName, "filter=" + filter, () -> delegate.deleteMany(collectionName, filter), Long::longValue, NONE);
+    }
+
+    @Override
+    public long updateMany(String collectionName, Bson filter, Bson update) throws SQLException {
+        return time("updateMany", collectionName, "filter=" + filter + ", update=" + update,
+                () -> delegate.updateMany(collectionName, filter, update), Long::longValue, NONE);
+    }
+
+    @Override
+    public long bulkWrite(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) throws SQLException {
+        return time("bulkWrite", collectionName, "requests=" + requests.size(), () -> delegate.bulkWrite(collectionName, requests, ordered),
+                Long::longValue, NONE);
+    }
+
+    // Timed from the call until the write completes, so overlapping writes each count their own latency.
+    @Override
+    public CompletableFuture<Long> bulkWriteAsync(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) {
+        long start = System.nanoTime();
+        return delegate.bulkWriteAsync(collectionName, requests, ordered).whenComplete((affected, error) ->
+                metrics.record("bulkWriteAsync", collectionName, "requests=" + requests.size(), System.nanoTime() - start,
+                        error == null ? affected : 0, 0, error != null));
+    }
+}
@@ -0,0 +1,75 @@
+package gmail.vladimir.db;
+
+import java.util.*;
+
+// Opaque position inside a table ordered by its key columns. Produced by KeysetPage, consumed by getTableDataPage.
+public final class KeysetCursor {
+    private final List<String> keyColumns;
+    private final Object[] keyValues;
+    private final boolean forward;
+
+    private KeysetCursor(List<String> keyColumns, Object[] keyValues, boolean forward) {
+        this.keyColumns = Collections.unmodifiableList(new ArrayList<>(keyColumns));
+        this.keyValues = keyValues;
+        this.forward = forward;
+    }
+
+    public static KeysetCursor after(List<String> keyColumns, Map<String, Object> row) {
+        return new KeysetCursor(keyColumns, extractKey(keyColumns, row), true);
+    }
+
+    public static KeysetCursor before(List<String> keyColumns, Map<String, Object> row) {
+        return new KeysetCursor(keyColumns, extractKey(keyColumns, row), false);
+    }
+
+    public List<String> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public Object[] getKeyValues() {
+        return keyValues.clone();
+    }
+
+    public boolean isForward() {
+        return forward;
+    }
+
+    private static Object[] extractKey(List<String> keyColumns, Map<String, Object> row) {
+        Object[] values = new Object[keyColumns.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = getIgnoreCase(row, keyColumns.get(i));
+        return values;
+    }
+
+    static Object getIgnoreCase(Map<String, Object> row, String column) {
+        if (row.containsKey(column))
+            return row.get(column);
+
+        for (Map.Entry<String, Object> entry : row.entrySet())
+            if (entry.getKey().equalsIgnoreCase(column))
+                return entry.getValue();
+
+        throw new IllegalArgumentException("Row does not contain key column " + column);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof KeysetCursor))
+            return false;
+
+        KeysetCursor other = (KeysetCursor) o;
+        return forward == other.forward && keyColumns.equals(other.keyColumns) && Arrays.equals(keyValues, other.keyValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keyColumns, Arrays.hashCode(keyValues), forward);
+    }
+
+    @Override
+    public String toString() {
+        return (forward ? "after " : "before ") + keyColumns + "=" + Arrays.toString(keyValues);
+    }
+}
@@ -0,0 +1,46 @@
+package gmail.vladimir.db;
+
+import java.util.List;
+import java.util.Map;
+
+public class KeysetPage {
+    private final List<Map<String, Object>> data;
+    private final KeysetCursor nextCursor;
+    private final KeysetCursor previousCursor;
+
+    public KeysetPage(List<Map<String, Object>> data, KeysetCursor nextCursor, KeysetCursor previousCursor) {
+        this.data = data;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    // Builds the page for rows fetched in key order; hasMoreAfter/hasMoreBefore tell whether neighbouring pages exist.
+    public static KeysetPage of(List<Map<String, Object>> data, List<String> keyColumns, boolean hasMoreAfter, boolean hasMoreBefore) {
+        if (data.isEmpty())
+            return new KeysetPage(data, null, null);
+
+        KeysetCursor next = hasMoreAfter ? KeysetCursor.after(keyColumns, data.get(data.size() - 1)) : null;
+        KeysetCursor previous = hasMoreBefore ? KeysetCursor.before(keyColumns, data.get(0)) : null;
+        return new KeysetPage(data, next, previous);
+    }
+
+    public List<Map<String, Object>> getData() {
+        return data;
+    }
+
+    public KeysetCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public KeysetCursor getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+}
@@ -0,0 +1,105 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Time-limited cache for catalog lookups (table list, columns, primary keys), which are slow round trips on remote servers.
+public class MetadataCache {
+
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    public static final String TABLES = "tables";
+    public static final String SCHEMA = "schema";
+    public static final String PRIMARY_KEY = "primaryKey";
+    public static final String PRIMARY_KEYS = "primaryKeys";
+    public static final String GENERATED_KEY = "generatedKey";
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long ttlMillis = DEFAULT_TTL_MS;
+    // Bumped by every invalidation, so a lookup that started before a schema change does not cache what it read.
+    private long generation;
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    // A TTL of 0 or less disables caching; null results are cached too (e.g. tables without a primary key).
+    @SuppressWarnings("unchecked")
+    public <T> T get(String kind, String tableName, SqlCallable<T> loader) throws SQLException {
+        if (ttlMillis <= 0)
+            return loader.call();
+
+        Key key = new Key(kind, tableName);
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expiresAt > now)
+            return (T) entry.value;
+
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+
+        T value = loader.call();
+        synchronized (this) {
+            if (loadGeneration == generation)
+                entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+        }
+        return value;
+    }
+
+    public void put(String kind, String tableName, Object value) {
+        if (ttlMillis > 0)
+            entries.put(new Key(kind, tableName), new Entry(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Drops everything known about the table, and the table list since the table may have been created or dropped.
+    public synchronized void invalidate(String tableName) {
+        generation++;
+        entries.keySet().removeIf(key -> key.tableName == null || key.tableName.equalsIgnoreCase(tableName));
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    private static final class Key {
+        private final String kind;
+        private final String tableName;
+
+        private Key(String kind, String tableName) {
+            this.kind = kind;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return kind.equals(other.kind) && Objects.equals(tableName, other.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, tableName);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
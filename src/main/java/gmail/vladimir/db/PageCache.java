@@ -0,0 +1,168 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+import java.util.*;
+
+// Recently read pages keyed by (table, key columns, cursor, limit, offset), so paging back and forth and prefetched
+// neighbours are served from memory. Bounded by an estimate of the rows' size in bytes, least recently used first out.
+// Writes through the service invalidate the table's pages; the TTL bounds how long writes from other clients go
+// unnoticed, and an explicit refresh invalidates the table's pages before reading.
+public class PageCache {
+
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final LinkedHashMap<Key, Entry> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long ttlMillis = MetadataCache.DEFAULT_TTL_MS;
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    // Bumped by every invalidation, so a page read while a write was happening is not stored afterwards.
+    private long generation;
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    // Pages are not kept at all with a TTL of zero or less.
+    public synchronized void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public KeysetPage get(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset,
+                          SqlCallable<KeysetPage> loader) throws SQLException {
+        Key key = new Key(tableName, keyColumns, cursor, limit, offset);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = pages.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits++;
+                return entry.page;
+            }
+            if (entry != null) {
+                pages.remove(key);
+                totalBytes -= entry.bytes;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        KeysetPage loaded = loader.call();
+        KeysetPage page = new KeysetPage(Collections.unmodifiableList(loaded.getData()), loaded.getNextCursor(), loaded.getPreviousCursor());
+        long bytes = estimateBytes(page.getData());
+        synchronized (this) {
+            if (loadGeneration == generation && bytes <= maxBytes && ttlMillis > 0) {
+                Entry previous = pages.put(key, new Entry(page, bytes, System.currentTimeMillis() + ttlMillis));
+                totalBytes += bytes - (previous == null ? 0 : previous.bytes);
+                evict();
+            }
+        }
+        return page;
+    }
+
+    public synchronized void invalidate(String tableName) {
+        generation++;
+        Iterator<Map.Entry<Key, Entry>> iterator = pages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (entry.getKey().tableName.equalsIgnoreCase(tableName)) {
+                totalBytes -= entry.getValue().bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        pages.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PageCache{pages=" + pages.size() + ", bytes=" + totalBytes + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = pages.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            totalBytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    // Rough heap footprint: map and entry overhead per row plus the values themselves.
+    public static long estimateBytes(List<Map<String, Object>> rows) {
+        long bytes = 0;
+        for (Map<String, Object> row : rows) {
+            if (row instanceof SizedRow) {
+                bytes += ((SizedRow) row).estimateBytes();
+                continue;
+            }
+
+            bytes += 64;
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                bytes += 48;
+                Object value = entry.getValue();
+                if (value instanceof CharSequence)
+                    bytes += 40 + 2L * ((CharSequence) value).length();
+                else if (value instanceof byte[])
+                    bytes += 16 + ((byte[]) value).length;
+                else if (value != null)
+                    bytes += 24;
+            }
+        }
+        return bytes;
+    }
+
+    private static final class Key {
+        private final String tableName;
+        private final List<String> keyColumns;
+        private final KeysetCursor cursor;
+        private final int limit;
+        private final int offset;
+
+        private Key(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) {
+            this.tableName = tableName.toLowerCase(Locale.ROOT);
+            this.keyColumns = keyColumns == null ? Collections.emptyList() : new ArrayList<>(keyColumns);
+            this.cursor = cursor;
+            this.limit = limit;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return limit == other.limit && offset == other.offset && tableName.equals(other.tableName)
+                    && keyColumns.equals(other.keyColumns) && Objects.equals(cursor, other.cursor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, keyColumns, cursor, limit, offset);
+        }
+    }
+
+    private static final class Entry {
+        private final KeysetPage page;
+        private final long bytes;
+        private final long expiresAt;
+
+        private Entry(KeysetPage page, long bytes, long expiresAt) {
+            this.page = page;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,23 +1,154 @@
 package gmail.vladimir.db;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import gmail.vladimir.db.columnar.ColumnVector;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+// Column-oriented query result. getData() exposes the rows as lightweight map views for code that works row by row.
 public class QueryResult {
-    private List<Map<String, Object>> data;
-    private LinkedHashMap<String, String> columnTypes;
+    private final List<ColumnVector> columns;
+    private final LinkedHashMap<String, String> columnTypes;
+    private final Map<String, Integer> columnIndex;
+    private final int rowCount;
+
+    public QueryResult(List<ColumnVector> columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.columnTypes = new LinkedHashMap<>();
+        this.columnIndex = new HashMap<>();
+
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnVector column = columns.get(i);
+            columnTypes.putIfAbsent(column.getName(), column.getTypeName());
+            columnIndex.putIfAbsent(column.getName(), i);
+        }
+    }
 
-    public QueryResult(List<Map<String, Object>> data, LinkedHashMap<String, String> columnTypes) {
-        this.data = data;
-        this.columnTypes = columnTypes;
+    public static QueryResult read(ResultSet rs, ColumnFactory columnFactory) throws SQLException {
+        return read(rs, columnFactory, Integer.MAX_VALUE);
+    }
+
+    // Reads at most maxRows rows, leaving the ResultSet positioned for the next chunk.
+    public static QueryResult read(ResultSet rs, ColumnFactory columnFactory, int maxRows) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        ColumnVector[] vectors = new ColumnVector[columnCount];
+        for (int i = 0; i < columnCount; i++)
+            vectors[i] = columnFactory.create(metaData, i + 1);
+
+        int rows = 0;
+        while (rows < maxRows && rs.next()) {
+            for (int i = 0; i < columnCount; i++)
+                vectors[i].read(rs, i + 1);
+            rows++;
+        }
+        return new QueryResult(Arrays.asList(vectors), rows);
     }
 
     public List<Map<String, Object>> getData() {
-        return data;
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int row) {
+                if (row < 0 || row >= rowCount)
+                    throw new IndexOutOfBoundsException("Row " + row + " out of " + rowCount);
+                return new RowView(row);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
     }
 
     public LinkedHashMap<String, String> getColumnTypes() {
         return columnTypes;
     }
+
+    public List<ColumnVector> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    public ColumnVector getColumn(String name) {
+        Integer index = columnIndex.get(name);
+        return index == null ? null : columns.get(index);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public Object getValue(int row, int column) {
+        return columns.get(column).get(row);
+    }
+
+    public long estimateMemoryBytes() {
+        long bytes = 0;
+        for (ColumnVector column : columns)
+            bytes += column.estimateMemoryBytes();
+        return bytes;
+    }
+
+    @FunctionalInterface
+    public interface ColumnFactory {
+        ColumnVector create(ResultSetMetaData metaData, int column) throws SQLException;
+    }
+
+    private class RowView extends AbstractMap<String, Object> {
+        private final int row;
+
+        private RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer index = columnIndex.get(key);
+            return index == null ? null : columns.get(index).get(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columnIndex.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return columnTypes.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<String> names = columnTypes.keySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            String name = names.next();
+                            return new SimpleImmutableEntry<>(name, get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columnTypes.size();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package gmail.vladimir.db;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A staged edit of one row, identified by its primary key value; data holds the new column values of an update.
+public class RowChange {
+
+    public enum Type {
+        UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final Object key;
+    private final Map<String, Object> data;
+
+    private RowChange(Type type, Object key, Map<String, Object> data) {
+        this.type = type;
+        this.key = key;
+        this.data = data;
+    }
+
+    public static RowChange update(Object key, Map<String, Object> data) {
+        return new RowChange(Type.UPDATE, key, Collections.unmodifiableMap(new LinkedHashMap<>(data)));
+    }
+
+    public static RowChange delete(Object key) {
+        return new RowChange(Type.DELETE, key, Collections.emptyMap());
+    }
+
+    // Staging a second edit of the same row: a delete wins, later updates overwrite earlier values column by column.
+    public RowChange merge(RowChange later) {
+        if (type == Type.DELETE || later.type == Type.DELETE)
+            return later.type == Type.DELETE ? later : this;
+
+        Map<String, Object> merged = new LinkedHashMap<>(data);
+        merged.putAll(later.data);
+        return update(key, merged);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.DELETE ? "DELETE " + key : "UPDATE " + key + " " + data;
+    }
+}
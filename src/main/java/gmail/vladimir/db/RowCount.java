@@ -0,0 +1,30 @@
+package gmail.vladimir.db;
+
+// A table's row count; estimates come from the engine's statistics and can be off by a wide margin.
+public class RowCount {
+
+    private final long count;
+    private final boolean exact;
+
+    public RowCount(long count, boolean exact) {
+        this.count = count;
+        this.exact = exact;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public RowCount plus(long delta) {
+        return new RowCount(Math.max(0, count + delta), exact);
+    }
+
+    @Override
+    public String toString() {
+        return (exact ? "" : "~") + count;
+    }
+}
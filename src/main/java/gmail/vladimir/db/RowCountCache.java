@@ -0,0 +1,64 @@
+package gmail.vladimir.db;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Row counts per table, so paging does not run COUNT(*) on every page change. Writes made through the service adjust
+// the cached count; the TTL bounds how long writes from other clients go unnoticed.
+public class RowCountCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long ttlMillis = MetadataCache.DEFAULT_TTL_MS;
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public RowCount get(String tableName) {
+        Entry entry = entries.get(key(tableName));
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis())
+            return null;
+        return entry.count;
+    }
+
+    // An estimate never replaces an exact count that is still fresh.
+    public void put(String tableName, RowCount count) {
+        if (ttlMillis <= 0)
+            return;
+
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        entries.compute(key(tableName), (key, entry) -> {
+            if (!count.isExact() && entry != null && entry.count.isExact() && entry.expiresAt > System.currentTimeMillis())
+                return entry;
+            return new Entry(count, expiresAt);
+        });
+    }
+
+    public void adjust(String tableName, long delta) {
+        if (delta != 0)
+            entries.computeIfPresent(key(tableName), (key, entry) -> new Entry(entry.count.plus(delta), entry.expiresAt));
+    }
+
+    public void invalidate(String tableName) {
+        entries.remove(key(tableName));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static String key(String tableName) {
+        return tableName.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        private final RowCount count;
+        private final long expiresAt;
+
+        private Entry(RowCount count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
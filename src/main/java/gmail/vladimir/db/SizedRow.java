@@ -0,0 +1,7 @@
+package gmail.vladimir.db;
+
+// A row that knows its own size, so measuring it does not have to read (or decode) every value.
+public interface SizedRow {
+
+    long estimateBytes();
+}
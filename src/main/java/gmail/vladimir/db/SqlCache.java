@@ -0,0 +1,106 @@
+package gmail.vladimir.db;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// LRU cache of generated SQL keyed by (operation, table, columns), so hot CRUD paths skip the string building.
+public class SqlCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final Map<Key, String> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SqlCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SqlCache(int maxEntries) {
+        this.entries = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public String get(String operation, String tableName, Collection<String> columns, Supplier<String> builder) {
+        Key key = new Key(operation, tableName, columns);
+        synchronized (entries) {
+            String sql = entries.get(key);
+            if (sql != null) {
+                hits.incrementAndGet();
+                return sql;
+            }
+        }
+
+        misses.incrementAndGet();
+        String sql = builder.get();
+        synchronized (entries) {
+            entries.put(key, sql);
+        }
+        return sql;
+    }
+
+    public void invalidate(String tableName) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.tableName.equalsIgnoreCase(tableName));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SqlCache{entries=" + size() + ", hits=" + hits.get() + ", misses=" + misses.get() + "}";
+    }
+
+    private static final class Key {
+        private final String operation;
+        private final String tableName;
+        private final List<String> columns;
+        private final int hash;
+
+        private Key(String operation, String tableName, Collection<String> columns) {
+            this.operation = operation;
+            this.tableName = tableName;
+            this.columns = columns == null ? Collections.emptyList() : new ArrayList<>(columns);
+            this.hash = Objects.hash(operation, tableName, this.columns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash && operation.equals(other.operation) && tableName.equals(other.tableName) && columns.equals(other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
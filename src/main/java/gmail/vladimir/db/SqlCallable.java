@@ -0,0 +1,8 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlCallable<T> {
+    T call() throws SQLException;
+}
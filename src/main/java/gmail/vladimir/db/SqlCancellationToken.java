@@ -0,0 +1,48 @@
+package gmail.vladimir.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Lets another thread stop a running command through Statement.cancel().
+public class SqlCancellationToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlCancellationToken.class);
+
+    private volatile boolean cancelled;
+    private volatile Statement statement;
+
+    public void cancel() {
+        cancelled = true;
+        cancelStatement(statement);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void attach(Statement stmt) {
+        statement = stmt;
+        if (cancelled)
+            cancelStatement(stmt);
+    }
+
+    public void detach(Statement stmt) {
+        if (statement == stmt)
+            statement = null;
+    }
+
+    private void cancelStatement(Statement stmt) {
+        if (stmt == null)
+            return;
+
+        try {
+            stmt.cancel();
+        }
+        catch (SQLException e) {
+            logger.warn("Could not cancel statement: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlConsumer<T> {
+    void accept(T t) throws SQLException;
+}
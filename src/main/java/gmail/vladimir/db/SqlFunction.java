@@ -0,0 +1,8 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlFunction<T, R> {
+    R apply(T t) throws SQLException;
+}
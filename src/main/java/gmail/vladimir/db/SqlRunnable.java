@@ -0,0 +1,8 @@
+package gmail.vladimir.db;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlRunnable {
+    void run() throws SQLException;
+}
@@ -0,0 +1,41 @@
+package gmail.vladimir.db.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+public class BooleanColumnVector extends ColumnVector {
+    private final BitSet values = new BitSet();
+
+    public BooleanColumnVector(String name, String typeName) {
+        super(name, typeName);
+    }
+
+    public boolean getBoolean(int row) {
+        return values.get(row);
+    }
+
+    @Override
+    protected void readValue(ResultSet rs, int column, int row) throws SQLException {
+        values.set(row, rs.getBoolean(column));
+    }
+
+    @Override
+    protected void appendValue(Object value, int row) {
+        values.set(row, (Boolean) value);
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values.get(row);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return 16L + values.size() / 8 + nullBitmapBytes();
+    }
+}
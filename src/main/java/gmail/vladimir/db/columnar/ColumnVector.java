@@ -0,0 +1,102 @@
+package gmail.vladimir.db.columnar;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+// One column of a result, appended to row by row through typed ResultSet getters.
+public abstract class ColumnVector {
+
+    protected static final int INITIAL_CAPACITY = 256;
+
+    private final String name;
+    private final String typeName;
+    private final BitSet nulls = new BitSet();
+    protected int size;
+
+    protected ColumnVector(String name, String typeName) {
+        this.name = name;
+        this.typeName = typeName;
+    }
+
+    public static ColumnVector forColumn(ResultSetMetaData metaData, int column) throws SQLException {
+        String name = metaData.getColumnLabel(column);
+        String typeName = metaData.getColumnTypeName(column);
+        String className = metaData.getColumnClassName(column);
+
+        if (Integer.class.getName().equals(className))
+            return new IntColumnVector(name, typeName);
+        if (Long.class.getName().equals(className))
+            return new LongColumnVector(name, typeName);
+        if (Double.class.getName().equals(className))
+            return new DoubleColumnVector(name, typeName);
+        if (Boolean.class.getName().equals(className))
+            return new BooleanColumnVector(name, typeName);
+        if (String.class.getName().equals(className))
+            return new StringColumnVector(name, typeName);
+
+        return new ObjectColumnVector(name, typeName);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    public Object get(int row) {
+        checkIndex(row);
+        return isNull(row) ? null : getValue(row);
+    }
+
+    public void read(ResultSet rs, int column) throws SQLException {
+        ensureCapacity(size + 1);
+        readValue(rs, column, size);
+        if (rs.wasNull())
+            nulls.set(size);
+        size++;
+    }
+
+    public void append(Object value) {
+        ensureCapacity(size + 1);
+        if (value == null)
+            nulls.set(size);
+        else
+            appendValue(value, size);
+        size++;
+    }
+
+    public abstract long estimateMemoryBytes();
+
+    protected abstract void readValue(ResultSet rs, int column, int row) throws SQLException;
+
+    protected abstract void appendValue(Object value, int row);
+
+    protected abstract Object getValue(int row);
+
+    protected abstract void ensureCapacity(int capacity);
+
+    protected long nullBitmapBytes() {
+        return nulls.size() / 8;
+    }
+
+    protected static int grow(int currentCapacity, int requiredCapacity) {
+        return Math.max(requiredCapacity, Math.max(INITIAL_CAPACITY, currentCapacity + (currentCapacity >> 1)));
+    }
+
+    private void checkIndex(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+    }
+}
@@ -0,0 +1,43 @@
+package gmail.vladimir.db.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class DoubleColumnVector extends ColumnVector {
+    private double[] values = new double[0];
+
+    public DoubleColumnVector(String name, String typeName) {
+        super(name, typeName);
+    }
+
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void readValue(ResultSet rs, int column, int row) throws SQLException {
+        values[row] = rs.getDouble(column);
+    }
+
+    @Override
+    protected void appendValue(Object value, int row) {
+        values[row] = ((Number) value).doubleValue();
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length)
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return 16L + 8L * values.length + nullBitmapBytes();
+    }
+}
@@ -0,0 +1,43 @@
+package gmail.vladimir.db.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class LongColumnVector extends ColumnVector {
+    private long[] values = new long[0];
+
+    public LongColumnVector(String name, String typeName) {
+        super(name, typeName);
+    }
+
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void readValue(ResultSet rs, int column, int row) throws SQLException {
+        values[row] = rs.getLong(column);
+    }
+
+    @Override
+    protected void appendValue(Object value, int row) {
+        values[row] = ((Number) value).longValue();
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length)
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return 16L + 8L * values.length + nullBitmapBytes();
+    }
+}
@@ -0,0 +1,44 @@
+package gmail.vladimir.db.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+// Fallback for types without a primitive representation (dates, decimals, binary data, ...).
+public class ObjectColumnVector extends ColumnVector {
+    private Object[] values = new Object[0];
+
+    public ObjectColumnVector(String name, String typeName) {
+        super(name, typeName);
+    }
+
+    @Override
+    protected void readValue(ResultSet rs, int column, int row) throws SQLException {
+        values[row] = rs.getObject(column);
+    }
+
+    @Override
+    protected void appendValue(Object value, int row) {
+        values[row] = value;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length)
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long bytes = 16L + 4L * values.length + nullBitmapBytes();
+        for (int i = 0; i < size; i++)
+            if (values[i] != null)
+                bytes += 24;
+        return bytes;
+    }
+}
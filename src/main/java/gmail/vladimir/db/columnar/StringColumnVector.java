@@ -0,0 +1,117 @@
+package gmail.vladimir.db.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Stores repeated strings once through a dictionary; switches to plain storage when values turn out to be mostly unique.
+public class StringColumnVector extends ColumnVector {
+
+    private static final int DICTIONARY_PROBE_ROWS = 4096;
+
+    private Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private List<String> dictionary = new ArrayList<>();
+    private int[] codes = new int[0];
+    private String[] plainValues;
+    private boolean probed;
+
+    public StringColumnVector(String name, String typeName) {
+        super(name, typeName);
+    }
+
+    public String getString(int row) {
+        return isNull(row) ? null : (String) getValue(row);
+    }
+
+    public boolean isDictionaryEncoded() {
+        return plainValues == null;
+    }
+
+    public int getDictionarySize() {
+        return isDictionaryEncoded() ? dictionary.size() : 0;
+    }
+
+    @Override
+    protected void readValue(ResultSet rs, int column, int row) throws SQLException {
+        store(rs.getString(column), row);
+    }
+
+    @Override
+    protected void appendValue(Object value, int row) {
+        store(value.toString(), row);
+    }
+
+    private void store(String value, int row) {
+        // Probed before the null check: a null on the probe row, or nulls appended past it, must not skip the switch.
+        if (!probed && row + 1 >= DICTIONARY_PROBE_ROWS) {
+            probed = true;
+            if (dictionary.size() > row / 2)
+                switchToPlainStorage(row);
+        }
+
+        if (plainValues != null) {
+            plainValues[row] = value;
+            return;
+        }
+
+        if (value == null)
+            return;
+
+        Integer code = dictionaryIndex.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, code);
+        }
+        codes[row] = code;
+    }
+
+    private void switchToPlainStorage(int rows) {
+        plainValues = new String[codes.length];
+        for (int i = 0; i < rows; i++)
+            if (!isNull(i))
+                plainValues[i] = dictionary.get(codes[i]);
+
+        codes = null;
+        dictionary = null;
+        dictionaryIndex = null;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        if (plainValues != null)
+            return plainValues[row];
+        return dictionary.get(codes[row]);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (plainValues != null) {
+            if (capacity > plainValues.length)
+                plainValues = Arrays.copyOf(plainValues, grow(plainValues.length, capacity));
+        }
+        else if (capacity > codes.length)
+            codes = Arrays.copyOf(codes, grow(codes.length, capacity));
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long bytes = 16L + nullBitmapBytes();
+        if (plainValues != null) {
+            bytes += 4L * plainValues.length;
+            for (int i = 0; i < size; i++)
+                if (plainValues[i] != null)
+                    bytes += 40 + plainValues[i].length();
+            return bytes;
+        }
+
+        bytes += 4L * codes.length;
+        for (String value : dictionary)
+            bytes += 40 + value.length() + 48;
+        return bytes;
+    }
+}
@@ -1,8 +1,11 @@
 package gmail.vladimir.db.implementation;
 
 import gmail.vladimir.db.AbstractRelationalDatabaseService;
+import gmail.vladimir.db.keys.KeyGenerator;
+import gmail.vladimir.db.keys.LocalKeyGenerator;
 
 import java.sql.SQLException;
+import java.util.Locale;
 
 public class HyperSQLDatabaseService extends AbstractRelationalDatabaseService {
 
@@ -15,4 +18,18 @@ public class HyperSQLDatabaseService extends AbstractRelationalDatabaseService {
             throw new SQLException("HyperSQL JDBC Driver not found", e);
         }
     }
+
+    // Embedded databases (mem:, file:, res: URLs) live in this process, so counting up locally cannot collide with other
+    // clients; a HyperSQL server (hsql:, hsqls:, http:, https:) is shared like any other.
+    @Override
+    protected KeyGenerator createKeyGenerator() {
+        if (jdbcUrl != null && !isEmbedded(jdbcUrl))
+            return super.createKeyGenerator();
+        return new LocalKeyGenerator(this::withConnection, true);
+    }
+
+    static boolean isEmbedded(String jdbcUrl) {
+        String url = jdbcUrl.toLowerCase(Locale.ROOT);
+        return !url.startsWith("jdbc:hsqldb:hsql") && !url.startsWith("jdbc:hsqldb:http");
+    }
 }
@@ -1,28 +1,68 @@
 package gmail.vladimir.db.implementation;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoCommandException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoChangeStreamCursor;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
-import gmail.vladimir.db.IDatabaseService;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import gmail.vladimir.db.BatchResult;
+import gmail.vladimir.db.ChangeSetResult;
+import gmail.vladimir.db.DocumentChange;
+import gmail.vladimir.db.IDocumentDatabaseService;
 import gmail.vladimir.db.ISqlResultHandler;
+import gmail.vladimir.db.IStreamingSqlResultHandler;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
 import gmail.vladimir.db.QueryResult;
+import gmail.vladimir.db.RowChange;
+import gmail.vladimir.db.RowCount;
+import gmail.vladimir.db.SqlCancellationToken;
+import gmail.vladimir.db.SqlConsumer;
+import gmail.vladimir.db.metrics.MongoPoolWaitTracker;
+import gmail.vladimir.db.metrics.PoolWaitListener;
+import gmail.vladimir.db.metrics.PoolWaitSource;
+import org.bson.BsonDocumentReader;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
-public class MongoDBDatabaseService implements IDatabaseService {
+public class MongoDBDatabaseService implements IDocumentDatabaseService, PoolWaitSource {
 
     protected static final Logger logger = LoggerFactory.getLogger(MongoDBDatabaseService.class);
     private volatile MongoClient mongoClient;
     private MongoDatabase mongoDatabase;
     private String dbName;
+    private final MongoPoolWaitTracker poolWaitTracker = new MongoPoolWaitTracker();
 
     @Override
     public void connect(Map<String, String> connectionParams) throws SQLException {
@@ -30,7 +70,10 @@ public class MongoDBDatabaseService implements IDatabaseService {
         dbName = connectionParams.get("dbName");
 
         try {
-            mongoClient = MongoClients.create(uri);
+            mongoClient = MongoClients.create(MongoClientSettings.builder()
+                    .applyConnectionString(new ConnectionString(uri))
+                    .applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(poolWaitTracker))
+                    .build());
             mongoDatabase = mongoClient.getDatabase(dbName);
         }
         catch (Exception e) {
@@ -40,6 +83,11 @@ public class MongoDBDatabaseService implements IDatabaseService {
         Runtime.getRuntime().addShutdownHook(new Thread(this::disconnect));
     }
 
+    @Override
+    public void setPoolWaitListener(PoolWaitListener poolWaitListener) {
+        poolWaitTracker.setListener(poolWaitListener);
+    }
+
     @Override
     public void disconnect() {
         if (mongoClient == null)
@@ -63,18 +111,7 @@ public class MongoDBDatabaseService implements IDatabaseService {
     @Override
     public Map<String, String> getTableSchema(String tableName) throws SQLException {
         try {
-            MongoCollection<Document> collection = mongoDatabase.getCollection(tableName);
-            Map<String, String> schema = new LinkedHashMap<>();
-            List<Document> samples = collection.find().limit(100).into(new ArrayList<>());
-            for (Document doc : samples)
-            for (Map.Entry<String, Object> entry : doc.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                if (!schema.containsKey(key))
-                    schema.put(key, value != null ? value.getClass().getSimpleName() : "Object");
-            }
-
-            return schema;
+            return MongoQueries.sampleSchema(mongoDatabase.getCollection(tableName).find().limit(100).into(new ArrayList<>()));
         }
         catch (Exception e) {
             throw new SQLException("Error getting collection schema", e);
@@ -83,16 +120,196 @@ public class MongoDBDatabaseService implements IDatabaseService {
 
     public List<Map<String, Object>> getTableData(String tableName, int limit, int offset) throws SQLException {
         try {
-            MongoCollection<Document> collection = mongoDatabase.getCollection(tableName);
-            List<Map<String, Object>> data = new ArrayList<>();
-            collection.find().skip(offset).limit(limit).forEach((Consumer<Document>) doc -> data.add(doc));
-            return data;
+            return readLazily(rawCollection(tableName).find().skip(offset).limit(limit));
         }
         catch (Exception e) {
             throw new SQLException("Error fetching data", e);
         }
     }
 
+    @Override
+    public List<Map<String, Object>> findDocuments(String collectionName, Bson filter, Bson sort, int limit, int offset) throws SQLException {
+        try {
+            FindIterable<RawBsonDocument> find = rawCollection(collectionName).find(filter).skip(offset).limit(limit);
+            // Sorts on unindexed fields would otherwise fail once they pass the server's in-memory sort limit.
+            if (sort != null)
+                find = find.sort(sort).allowDiskUse(true);
+
+            return readLazily(find);
+        }
+        catch (Exception e) {
+            throw new SQLException("Error fetching documents", e);
+        }
+    }
+
+    @Override
+    public KeysetPage findDocumentPage(String collectionName, Bson filter, List<String> sortFields, KeysetCursor cursor,
+                                       Collection<String> projection, int limit, int offset, int batchSize) throws SQLException {
+        try {
+            boolean forward = cursor == null || cursor.isForward();
+            // One extra document tells us whether another page exists in the direction we are reading.
+            FindIterable<RawBsonDocument> find = rawCollection(collectionName).find(MongoQueries.pageFilter(filter, cursor))
+                    .sort(MongoQueries.pageSort(sortFields, forward)).allowDiskUse(true).skip(offset).limit(limit + 1)
+                    .batchSize(batchSize > 0 ? batchSize : limit + 1);
+            if (projection != null)
+                find = find.projection(MongoQueries.pageProjection(projection, sortFields));
+
+            return MongoQueries.toPage(readLazily(find), sortFields, cursor, limit, offset);
+        }
+        catch (Exception e) {
+            throw new SQLException("Error fetching documents", e);
+        }
+    }
+
+    private MongoCollection<RawBsonDocument> rawCollection(String collectionName) {
+        return mongoDatabase.getCollection(collectionName, RawBsonDocument.class);
+    }
+
+    // Documents stay in their wire format until a field is read, see RawDocumentMap.
+    private static List<Map<String, Object>> readLazily(FindIterable<RawBsonDocument> find) {
+        List<Map<String, Object>> data = new ArrayList<>();
+        try (MongoCursor<RawBsonDocument> cursor = find.iterator()) {
+            while (cursor.hasNext())
+                data.add(new RawDocumentMap(cursor.next()));
+        }
+        return data;
+    }
+
+    @Override
+    public long countDocuments(String collectionName, Bson filter) throws SQLException {
+        try {
+            return mongoDatabase.getCollection(collectionName).countDocuments(filter);
+        }
+        catch (Exception e) {
+            throw new SQLException("Error counting documents", e);
+        }
+    }
+
+    @Override
+    public long estimatedDocumentCount(String collectionName) throws SQLException {
+        try {
+            return mongoDatabase.getCollection(collectionName).estimatedDocumentCount();
+        }
+        catch (Exception e) {
+            throw new SQLException("Error estimating document count", e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> aggregate(String collectionName, List<? extends Bson> pipeline) throws SQLException {
+        try {
+            List<Map<String, Object>> results = new ArrayList<>();
+            mongoDatabase.getCollection(collectionName).aggregate(pipeline).allowDiskUse(true).forEach((Consumer<Document>) results::add);
+            return results;
+        }
+        catch (Exception e) {
+            throw new SQLException("Error running aggregation", e);
+        }
+    }
+
+    // The stream is opened on the calling thread so that servers without change streams (standalone) fail here.
+    @Override
+    public AutoCloseable watch(String collectionName, Consumer<DocumentChange> listener) throws SQLException {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+        try {
+            cursor = mongoDatabase.getCollection(collectionName).watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .cursor();
+        }
+        catch (Exception e) {
+            throw new SQLException("Error opening change stream", e);
+        }
+
+        AtomicBoolean closed = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!closed.get()) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null)
+                        listener.accept(MongoQueries.toDocumentChange(change));
+                }
+            }
+            catch (Exception e) {
+                if (!closed.get())
+                    logger.error("Change stream on {} stopped: {}", collectionName, e.getMessage());
+            }
+            finally {
+                cursor.close();
+            }
+        }, "change-stream-" + collectionName);
+        reader.setDaemon(true);
+        reader.start();
+        return () -> closed.set(true);
+    }
+
+    @Override
+    public void forEachDocument(String collectionName, Bson filter, int batchSize, SqlConsumer<Map<String, Object>> action) throws SQLException {
+        // Walking the _id index keeps documents updated during the scan from being returned twice.
+        try (MongoCursor<Document> cursor = mongoDatabase.getCollection(collectionName).find(filter)
+                .sort(Sorts.ascending("_id")).batchSize(batchSize).iterator()) {
+            while (cursor.hasNext())
+                action.accept(cursor.next());
+        }
+        catch (SQLException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new SQLException("Error reading documents", e);
+        }
+    }
+
+    @Override
+    public long deleteMany(String collectionName, Bson filter) throws SQLException {
+        try {
+            return mongoDatabase.getCollection(collectionName).deleteMany(filter).getDeletedCount();
+        }
+        catch (Exception e) {
+            throw new SQLException("Error deleting documents", e);
+        }
+    }
+
+    @Override
+    public long updateMany(String collectionName, Bson filter, Bson update) throws SQLException {
+        try {
+            return mongoDatabase.getCollection(collectionName).updateMany(filter, update).getModifiedCount();
+        }
+        catch (Exception e) {
+            throw new SQLException("Error updating documents", e);
+        }
+    }
+
+    @Override
+    public long bulkWrite(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) throws SQLException {
+        if (requests.isEmpty())
+            return 0;
+
+        try {
+            return MongoQueries.affected(mongoDatabase.getCollection(collectionName).bulkWrite(requests, new BulkWriteOptions().ordered(ordered)));
+        }
+        catch (Exception e) {
+            throw new SQLException("Error executing bulk write", e);
+        }
+    }
+
+    // The blocking driver has nothing in flight to hand back, so the write completes before this returns.
+    @Override
+    public CompletableFuture<Long> bulkWriteAsync(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        try {
+            future.complete(bulkWrite(collectionName, requests, ordered));
+        }
+        catch (SQLException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public KeysetPage getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException {
+        return findDocumentPage(tableName, new Document(), keyColumns, cursor, null, limit, offset, 0);
+    }
+
     @Override
     public void createTable(String tableName, String tableSchema) {
         try {
@@ -125,6 +342,19 @@ public class MongoDBDatabaseService implements IDatabaseService {
         }
     }
 
+    // The driver assigns an ObjectId when the document has no _id.
+    @Override
+    public Object insertDataWithKey(String tableName, Map<String, Object> data, String primaryKeyColumn) throws SQLException {
+        try {
+            Document document = new Document(data);
+            mongoDatabase.getCollection(tableName).insertOne(document);
+            return document.get("_id");
+        }
+        catch (Exception e) {
+            throw new SQLException("Error inserting data", e);
+        }
+    }
+
     @Override
     public void updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
         try {
@@ -151,14 +381,67 @@ public class MongoDBDatabaseService implements IDatabaseService {
     }
 
     @Override
-    public int getTotalEntries(String tableName) throws SQLException {
-        try {
-            MongoCollection<Document> collection = mongoDatabase.getCollection(tableName);
-            return (int) collection.countDocuments();
+    public BatchResult insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        List<WriteModel<Document>> requests = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows)
+            requests.add(new InsertOneModel<>(new Document(row)));
+        return writeInBatches(tableName, requests, batchSize);
+    }
+
+    @Override
+    public BatchResult updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) throws SQLException {
+        List<WriteModel<Document>> requests = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Document changes = new Document(row);
+            Object primaryKeyValue = changes.remove(primaryKeyColumn);
+            requests.add(new UpdateOneModel<>(new Document(primaryKeyColumn, primaryKeyValue), new Document("$set", changes)));
         }
-        catch (Exception e) {
-            throw new SQLException("Error getting total entries", e);
+        return writeInBatches(tableName, requests, batchSize);
+    }
+
+    @Override
+    public BatchResult deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) throws SQLException {
+        List<WriteModel<Document>> requests = new ArrayList<>(primaryKeyValues.size());
+        for (Object value : primaryKeyValues)
+            requests.add(new DeleteOneModel<>(new Document(primaryKeyColumn, value)));
+        return writeInBatches(tableName, requests, batchSize);
+    }
+
+    // Without a replica set there is no transaction to commit once, so each change is written on its own within an
+    // unordered bulk write; write errors come back by index. Updates that match nothing are not reported per change.
+    @Override
+    public ChangeSetResult applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) throws SQLException {
+        int size = Math.max(1, batchSize);
+        ChangeSetResult result = new ChangeSetResult();
+        MongoCollection<Document> collection = mongoDatabase.getCollection(tableName);
+        List<WriteModel<Document>> models = MongoQueries.toWriteModels(primaryKeyColumn, changes);
+        for (int from = 0; from < models.size(); from += size) {
+            List<WriteModel<Document>> batch = models.subList(from, Math.min(from + size, models.size()));
+            long start = System.nanoTime();
+            try {
+                BulkWriteResult written = collection.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+                MongoQueries.recordChangeBatch(result, from, batch.size(), written, null, System.nanoTime() - start);
+            }
+            catch (MongoBulkWriteException e) {
+                MongoQueries.recordChangeBatch(result, from, batch.size(), null, e, System.nanoTime() - start);
+            }
+            catch (Exception e) {
+                throw new SQLException("Error applying changes", e);
+            }
         }
+        return result;
+    }
+
+    private BatchResult writeInBatches(String tableName, List<WriteModel<Document>> requests, int batchSize) throws SQLException {
+        int size = Math.max(1, batchSize);
+        BatchResult result = new BatchResult();
+        for (int from = 0; from < requests.size(); from += size) {
+            List<WriteModel<Document>> batch = requests.subList(from, Math.min(from + size, requests.size()));
+            long start = System.nanoTime();
+            long affected = bulkWrite(tableName, batch, true);
+            result.recordBatch(batch.size(), affected, System.nanoTime() - start);
+        }
+        return result;
     }
 
     @Override
@@ -166,6 +449,11 @@ public class MongoDBDatabaseService implements IDatabaseService {
         return "";
     }
 
+    @Override
+    public List<String> getPrimaryKeyColumns(String tableName) {
+        return Collections.singletonList("_id");
+    }
+
     @Override
     public int getNextId(String tableName, String primaryKeyColumn) {
         return 0;
@@ -177,8 +465,28 @@ public class MongoDBDatabaseService implements IDatabaseService {
     }
 
     @Override
-    public int getTableEntryCount(String tableName) {
-        return 0;
+    public boolean executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize, SqlCancellationToken cancellationToken) {
+        return false;
+    }
+
+    @Override
+    public boolean executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize, SqlCancellationToken cancellationToken) {
+        return false;
+    }
+
+    @Override
+    public int getTableEntryCount(String tableName) throws SQLException {
+        return (int) countDocuments(tableName, new Document());
+    }
+
+    @Override
+    public RowCount estimateTableEntryCount(String tableName) throws SQLException {
+        return new RowCount(estimatedDocumentCount(tableName), false);
+    }
+
+    // Pages and counts are always read from the server.
+    @Override
+    public void invalidateCachedData(String tableName) {
     }
 
     @Override
@@ -0,0 +1,139 @@
+package gmail.vladimir.db.implementation;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import gmail.vladimir.db.ChangeSetResult;
+import gmail.vladimir.db.DocumentChange;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
+import gmail.vladimir.db.RowChange;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+
+import java.sql.SQLException;
+import java.util.*;
+
+// Query building and result mapping shared by the blocking and the reactive MongoDB services.
+final class MongoQueries {
+
+    private MongoQueries() {
+    }
+
+    // Field names and value types as found in a sample of documents.
+    static Map<String, String> sampleSchema(List<? extends Map<String, Object>> samples) {
+        Map<String, String> schema = new LinkedHashMap<>();
+        for (Map<String, Object> doc : samples)
+            for (Map.Entry<String, Object> entry : doc.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (!schema.containsKey(key))
+                    schema.put(key, value != null ? value.getClass().getSimpleName() : "Object");
+            }
+        return schema;
+    }
+
+    static Bson pageFilter(Bson filter, KeysetCursor cursor) {
+        return cursor == null ? filter : Filters.and(filter, keysetFilter(cursor));
+    }
+
+    static Bson pageSort(List<String> sortFields, boolean forward) {
+        List<Bson> sorts = new ArrayList<>();
+        for (String field : sortFields)
+            sorts.add(forward ? Sorts.ascending(field) : Sorts.descending(field));
+        return Sorts.orderBy(sorts);
+    }
+
+    // The cursor for the neighbouring pages is built from the sort fields, so they are always returned.
+    static Bson pageProjection(Collection<String> projection, List<String> sortFields) {
+        Set<String> fields = new LinkedHashSet<>(projection);
+        fields.addAll(sortFields);
+        return Projections.include(new ArrayList<>(fields));
+    }
+
+    // data holds up to limit + 1 documents in read order; the extra one tells whether another page exists that way.
+    static KeysetPage toPage(List<Map<String, Object>> data, List<String> sortFields, KeysetCursor cursor, int limit, int offset) {
+        boolean forward = cursor == null || cursor.isForward();
+        boolean hasMore = data.size() > limit;
+        if (hasMore)
+            data.remove(data.size() - 1);
+
+        if (forward)
+            return KeysetPage.of(data, sortFields, hasMore, cursor != null || offset > 0);
+
+        Collections.reverse(data);
+        return KeysetPage.of(data, sortFields, true, hasMore);
+    }
+
+    private static Bson keysetFilter(KeysetCursor cursor) {
+        List<String> keys = cursor.getKeyColumns();
+        Object[] values = cursor.getKeyValues();
+        List<Bson> alternatives = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            List<Bson> conditions = new ArrayList<>();
+            for (int j = 0; j < i; j++)
+                conditions.add(Filters.eq(keys.get(j), values[j]));
+            conditions.add(cursor.isForward() ? Filters.gt(keys.get(i), values[i]) : Filters.lt(keys.get(i), values[i]));
+            alternatives.add(Filters.and(conditions));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : Filters.or(alternatives);
+    }
+
+    static DocumentChange toDocumentChange(ChangeStreamDocument<Document> change) {
+        DocumentChange.Type type;
+        switch (change.getOperationType()) {
+            case INSERT:
+                type = DocumentChange.Type.INSERT;
+                break;
+            case UPDATE:
+            case REPLACE:
+                type = DocumentChange.Type.UPDATE;
+                break;
+            case DELETE:
+                type = DocumentChange.Type.DELETE;
+                break;
+            default:
+                type = DocumentChange.Type.OTHER;
+        }
+
+        Object documentId = null;
+        if (change.getDocumentKey() != null)
+            documentId = new DocumentCodec().decode(new BsonDocumentReader(change.getDocumentKey()), DecoderContext.builder().build()).get("_id");
+        return new DocumentChange(type, documentId, change.getFullDocument());
+    }
+
+    static List<WriteModel<Document>> toWriteModels(String primaryKeyColumn, List<RowChange> changes) {
+        List<WriteModel<Document>> models = new ArrayList<>(changes.size());
+        for (RowChange change : changes) {
+            Document filter = new Document(primaryKeyColumn, change.getKey());
+            if (change.getType() == RowChange.Type.DELETE)
+                models.add(new DeleteOneModel<>(filter));
+            else
+                models.add(new UpdateOneModel<>(filter, new Document("$set", new Document(change.getData()))));
+        }
+        return models;
+    }
+
+    static long affected(BulkWriteResult result) {
+        return result.getInsertedCount() + result.getModifiedCount() + result.getDeletedCount();
+    }
+
+    // Records an unordered change-set batch that started at index from; write errors are reported by batch index.
+    static void recordChangeBatch(ChangeSetResult result, int from, int size, BulkWriteResult written,
+                                  MongoBulkWriteException error, long durationNanos) {
+        result.recordBatch(size, affected(error != null ? error.getWriteResult() : written), durationNanos);
+        if (error != null)
+            for (BulkWriteError writeError : error.getWriteErrors())
+                result.recordFailure(from + writeError.getIndex(), new SQLException(writeError.getMessage()));
+    }
+}
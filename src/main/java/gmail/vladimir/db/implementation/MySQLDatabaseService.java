@@ -1,8 +1,13 @@
 package gmail.vladimir.db.implementation;
 
+import com.zaxxer.hikari.HikariConfig;
 import gmail.vladimir.db.AbstractRelationalDatabaseService;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 public class MySQLDatabaseService extends AbstractRelationalDatabaseService {
 
@@ -15,4 +20,34 @@ public class MySQLDatabaseService extends AbstractRelationalDatabaseService {
             throw new SQLException("MySQL JDBC Driver not found", e);
         }
     }
+
+    // Connector/J only caches prepared statements per connection when asked to; pooled connections keep them between calls.
+    @Override
+    protected void configureDataSource(HikariConfig config) {
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+    }
+
+    // Connector/J buffers the whole result for any other fetch size unless useCursorFetch is set; MIN_VALUE streams row by row.
+    @Override
+    protected void configureFetchSize(Statement stmt, int fetchSize) throws SQLException {
+        if (fetchSize > 0)
+            stmt.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    // InnoDB's TABLE_ROWS comes from index statistics sampling and may be off by 40-50%; it is NULL for views.
+    @Override
+    protected Long estimateRowCount(Connection conn, String tableName) throws SQLException {
+        String sql = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getLong(1) > 0)
+                    return rs.getLong(1);
+            }
+        }
+        return null;
+    }
 }
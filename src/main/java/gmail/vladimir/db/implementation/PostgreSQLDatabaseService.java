@@ -2,6 +2,9 @@ package gmail.vladimir.db.implementation;
 
 import gmail.vladimir.db.AbstractRelationalDatabaseService;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class PostgreSQLDatabaseService extends AbstractRelationalDatabaseService {
@@ -14,4 +17,23 @@ public class PostgreSQLDatabaseService extends AbstractRelationalDatabaseService
             throw new SQLException("PostgreSQL JDBC Driver not found", e);
         }
     }
+
+    // The PostgreSQL driver ignores the fetch size and buffers the whole result unless autocommit is off.
+    @Override
+    protected boolean requiresTransactionForCursor() {
+        return true;
+    }
+
+    // reltuples is maintained by VACUUM/ANALYZE; it is -1 (or 0 before PostgreSQL 14) until the table was first analyzed.
+    @Override
+    protected Long estimateRowCount(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)")) {
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getLong(1) > 0)
+                    return rs.getLong(1);
+            }
+        }
+        return null;
+    }
 }
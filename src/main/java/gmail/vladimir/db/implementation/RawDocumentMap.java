@@ -0,0 +1,162 @@
+package gmail.vladimir.db.implementation;
+
+import gmail.vladimir.db.SizedRow;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Read-only view of a document as it arrived from the server. A field is decoded into Java objects the first time it
+// is read, so rows the table never paints, and columns it does not show, stay as bytes.
+final class RawDocumentMap extends AbstractMap<String, Object> implements SizedRow {
+
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    private static final DecoderContext CONTEXT = DecoderContext.builder().build();
+    // ConcurrentHashMap has no null values; rows are read from the event thread and from background writes.
+    private static final Object NULL = new Object();
+
+    private final RawBsonDocument raw;
+    private final Map<String, Object> decoded = new ConcurrentHashMap<>();
+    // Field name to the start and end of its element in the buffer, in document order.
+    private volatile Map<String, int[]> fields;
+
+    RawDocumentMap(RawBsonDocument raw) {
+        this.raw = raw;
+    }
+
+    // The encoded document; decoded values add to this once read.
+    @Override
+    public long estimateBytes() {
+        return raw.getByteBuffer().remaining();
+    }
+
+    @Override
+    public int size() {
+        return fields().size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return fields().containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!containsKey(key))
+            return null;
+
+        Object value = decoded.computeIfAbsent((String) key, this::decode);
+        return value == NULL ? null : value;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(fields().keySet());
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<String> names = fields().keySet().iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return names.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        return new LazyEntry(names.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return fields().size();
+            }
+        };
+    }
+
+    // One pass over the document, skipping the values, so finding a field later does not scan it again.
+    private Map<String, int[]> fields() {
+        Map<String, int[]> index = fields;
+        if (index != null)
+            return index;
+
+        index = new LinkedHashMap<>();
+        try (BsonBinaryReader reader = new BsonBinaryReader(raw.getByteBuffer().asNIO())) {
+            reader.readStartDocument();
+            while (true) {
+                int start = reader.getBsonInput().getPosition();
+                if (reader.readBsonType() == BsonType.END_OF_DOCUMENT)
+                    break;
+                String name = reader.readName();
+                reader.skipValue();
+                index.put(name, new int[]{start, reader.getBsonInput().getPosition()});
+            }
+        }
+        fields = index;
+        return index;
+    }
+
+    // The field's element is copied into a document of its own, so decoding it gives the same types as a whole-document
+    // decode (nested Documents, Lists, Dates...).
+    private Object decode(String key) {
+        int[] element = fields().get(key);
+        int length = element[1] - element[0] + 5;
+        byte[] single = new byte[length];
+        for (int i = 0; i < 4; i++)
+            single[i] = (byte) (length >>> (8 * i));
+        raw.getByteBuffer().position(element[0]).get(single, 4, length - 5);
+
+        Object value;
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(single))) {
+            value = CODEC.decode(reader, CONTEXT).get(key);
+        }
+        return value == null ? NULL : value;
+    }
+
+    private final class LazyEntry implements Entry<String, Object> {
+        private final String key;
+
+        private LazyEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+            Entry<?, ?> other = (Entry<?, ?>) o;
+            return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package gmail.vladimir.db.implementation;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import gmail.vladimir.db.BatchResult;
+import gmail.vladimir.db.ChangeSetResult;
+import gmail.vladimir.db.DocumentChange;
+import gmail.vladimir.db.IDocumentDatabaseService;
+import gmail.vladimir.db.ISqlResultHandler;
+import gmail.vladimir.db.IStreamingSqlResultHandler;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
+import gmail.vladimir.db.QueryResult;
+import gmail.vladimir.db.RowChange;
+import gmail.vladimir.db.RowCount;
+import gmail.vladimir.db.SqlCancellationToken;
+import gmail.vladimir.db.SqlConsumer;
+import gmail.vladimir.db.metrics.MongoPoolWaitTracker;
+import gmail.vladimir.db.metrics.PoolWaitListener;
+import gmail.vladimir.db.metrics.PoolWaitSource;
+import gmail.vladimir.db.reactive.DocumentCursor;
+import gmail.vladimir.db.reactive.ReactiveMongoService;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Adapts ReactiveMongoService to the blocking IDatabaseService contract: each call sends its request and waits for
+// the future. Interrupting the waiting thread cancels the request. Callers that want several operations in flight
+// use bulkWriteAsync or getReactiveService directly. Chosen with driver=reactive in the connection parameters.
+public class ReactiveMongoDBDatabaseService implements IDocumentDatabaseService, PoolWaitSource {
+
+    public static final String DRIVER = "driver";
+    public static final String REACTIVE = "reactive";
+
+    protected static final Logger logger = LoggerFactory.getLogger(ReactiveMongoDBDatabaseService.class);
+    private final ReactiveMongoService reactive = new ReactiveMongoService();
+    private final MongoPoolWaitTracker poolWaitTracker = new MongoPoolWaitTracker();
+    private volatile boolean connected;
+    private String dbName;
+
+    @Override
+    public void connect(Map<String, String> connectionParams) throws SQLException {
+        dbName = connectionParams.get("dbName");
+        try {
+            reactive.connect(connectionParams.get("uri"), dbName, poolWaitTracker);
+            connected = true;
+        }
+        catch (Exception e) {
+            throw new SQLException("Failed to connect to MongoDB", e);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::disconnect));
+    }
+
+    @Override
+    public void disconnect() {
+        if (!connected)
+            return;
+
+        connected = false;
+        reactive.close();
+        logger.info("Disconnected from database.");
+    }
+
+    @Override
+    public void setPoolWaitListener(PoolWaitListener poolWaitListener) {
+        poolWaitTracker.setListener(poolWaitListener);
+    }
+
+    public ReactiveMongoService getReactiveService() {
+        return reactive;
+    }
+
+    private static <T> T await(CompletableFuture<T> future, String message) throws SQLException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SQLException(message + ": cancelled", e);
+        }
+        catch (ExecutionException e) {
+            throw new SQLException(message, e.getCause());
+        }
+    }
+
+    // Requests that fail before anything is sent, such as calls while disconnected, fail the future instead of throwing.
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> request) {
+        try {
+            return request.get();
+        }
+        catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static <T> T call(Supplier<CompletableFuture<T>> request, String message) throws SQLException {
+        return await(start(request), message);
+    }
+
+    private static List<Map<String, Object>> lazily(List<RawBsonDocument> documents) {
+        List<Map<String, Object>> data = new ArrayList<>(documents.size());
+        for (RawBsonDocument document : documents)
+            data.add(new RawDocumentMap(document));
+        return data;
+    }
+
+    @Override
+    public List<String> listTables() throws SQLException {
+        return call(reactive::listCollectionNames, "Error listing collections");
+    }
+
+    @Override
+    public Map<String, String> getTableSchema(String tableName) throws SQLException {
+        List<RawBsonDocument> samples = call(() -> reactive.findAll(tableName, new Document(), null, null, 0, 100, 0),
+                "Error getting collection schema");
+        return MongoQueries.sampleSchema(lazily(samples));
+    }
+
+    @Override
+    public List<Map<String, Object>> getTableData(String tableName, int limit, int offset) throws SQLException {
+        return findDocuments(tableName, new Document(), null, limit, offset);
+    }
+
+    @Override
+    public List<Map<String, Object>> findDocuments(String collectionName, Bson filter, Bson sort, int limit, int offset) throws SQLException {
+        return lazily(call(() -> reactive.findAll(collectionName, filter, sort, null, offset, limit, 0), "Error fetching documents"));
+    }
+
+    @Override
+    public KeysetPage findDocumentPage(String collectionName, Bson filter, List<String> sortFields, KeysetCursor cursor,
+                                       Collection<String> projection, int limit, int offset, int batchSize) throws SQLException {
+        boolean forward = cursor == null || cursor.isForward();
+        Bson fields = projection == null ? null : MongoQueries.pageProjection(projection, sortFields);
+        // One extra document tells us whether another page exists in the direction we are reading.
+        List<RawBsonDocument> documents = call(() -> reactive.findAll(collectionName, MongoQueries.pageFilter(filter, cursor),
+                MongoQueries.pageSort(sortFields, forward), fields, offset, limit + 1, batchSize > 0 ? batchSize : limit + 1),
+                "Error fetching documents");
+        return MongoQueries.toPage(lazily(documents), sortFields, cursor, limit, offset);
+    }
+
+    @Override
+    public long countDocuments(String collectionName, Bson filter) throws SQLException {
+        return call(() -> reactive.countDocuments(collectionName, filter), "Error counting documents");
+    }
+
+    @Override
+    public long estimatedDocumentCount(String collectionName) throws SQLException {
+        return call(() -> reactive.estimatedDocumentCount(collectionName), "Error estimating document count");
+    }
+
+    @Override
+    public List<Map<String, Object>> aggregate(String collectionName, List<? extends Bson> pipeline) throws SQLException {
+        return new ArrayList<>(call(() -> reactive.aggregate(collectionName, pipeline), "Error running aggregation"));
+    }
+
+    // Unlike the blocking service, a server without change streams (standalone) is only reported in the log.
+    @Override
+    public AutoCloseable watch(String collectionName, Consumer<DocumentChange> listener) throws SQLException {
+        try {
+            return reactive.watch(collectionName, change -> listener.accept(MongoQueries.toDocumentChange(change)));
+        }
+        catch (Exception e) {
+            throw new SQLException("Error opening change stream", e);
+        }
+    }
+
+    // The cursor stays one batch ahead of the action, which runs on the calling thread.
+    @Override
+    public void forEachDocument(String collectionName, Bson filter, int batchSize, SqlConsumer<Map<String, Object>> action) throws SQLException {
+        // Walking the _id index keeps documents updated during the scan from being returned twice.
+        try (DocumentCursor<Document> cursor = reactive.openCursor(collectionName, filter, Sorts.ascending("_id"), batchSize)) {
+            Document document;
+            while ((document = cursor.next()) != null)
+                action.accept(document);
+        }
+        catch (IllegalStateException e) {
+            throw new SQLException("Error reading documents", e);
+        }
+    }
+
+    @Override
+    public long deleteMany(String collectionName, Bson filter) throws SQLException {
+        return call(() -> reactive.deleteMany(collectionName, filter), "Error deleting documents");
+    }
+
+    @Override
+    public long updateMany(String collectionName, Bson filter, Bson update) throws SQLException {
+        return call(() -> reactive.updateMany(collectionName, filter, update), "Error updating documents");
+    }
+
+    @Override
+    public long bulkWrite(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) throws SQLException {
+        if (requests.isEmpty())
+            return 0;
+        return MongoQueries.affected(call(() -> reactive.bulkWrite(collectionName, requests, ordered), "Error executing bulk write"));
+    }
+
+    @Override
+    public CompletableFuture<Long> bulkWriteAsync(String collectionName, List<? extends WriteModel<Document>> requests, boolean ordered) {
+        if (requests.isEmpty())
+            return CompletableFuture.completedFuture(0L);
+        // Fails with a SQLException like the blocking service does, so callers can treat both drivers alike.
+        return start(() -> reactive.bulkWrite(collectionName, requests, ordered)).handle((result, error) -> {
+            if (error != null)
+                throw new CompletionException(new SQLException("Error executing bulk write",
+                        error instanceof CompletionException ? error.getCause() : error));
+            return MongoQueries.affected(result);
+        });
+    }
+
+    @Override
+    public KeysetPage getTableDataPage(String tableName, List<String> keyColumns, KeysetCursor cursor, int limit, int offset) throws SQLException {
+        return findDocumentPage(tableName, new Document(), keyColumns, cursor, null, limit, offset, 0);
+    }
+
+    @Override
+    public void createTable(String tableName, String tableSchema) throws SQLException {
+        try {
+            call(() -> reactive.createCollection(tableName), "Error creating collection");
+            logger.info("Collection '{}' created successfully.", tableName);
+        }
+        catch (SQLException e) {
+            if (!(e.getCause() instanceof MongoCommandException))
+                throw e;
+            logger.error("Error creating collection '{}': {}", tableName, ((MongoCommandException) e.getCause()).getErrorMessage());
+        }
+    }
+
+    @Override
+    public void deleteTable(String tableName) throws SQLException {
+        call(() -> reactive.dropCollection(tableName), "Error deleting collection");
+    }
+
+    @Override
+    public void insertData(String tableName, Map<String, Object> data) throws SQLException {
+        call(() -> reactive.insertOne(tableName, new Document(data)), "Error inserting data");
+    }
+
+    // The driver assigns an ObjectId when the document has no _id.
+    @Override
+    public Object insertDataWithKey(String tableName, Map<String, Object> data, String primaryKeyColumn) throws SQLException {
+        return call(() -> reactive.insertOne(tableName, new Document(data)), "Error inserting data");
+    }
+
+    @Override
+    public void updateData(String tableName, Map<String, Object> data, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
+        call(() -> reactive.updateOne(tableName, new Document(primaryKeyColumn, primaryKeyValue), new Document("$set", new Document(data))),
+                "Error updating data");
+    }
+
+    @Override
+    public void deleteData(String tableName, String primaryKeyColumn, Object primaryKeyValue) throws SQLException {
+        call(() -> reactive.deleteOne(tableName, new Document(primaryKeyColumn, primaryKeyValue)), "Error deleting data");
+    }
+
+    @Override
+    public BatchResult insertDataBatch(String tableName, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        List<WriteModel<Document>> requests = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows)
+            requests.add(new InsertOneModel<>(new Document(row)));
+        return writeInBatches(tableName, requests, batchSize);
+    }
+
+    @Override
+    public BatchResult updateDataBatch(String tableName, List<Map<String, Object>> rows, String primaryKeyColumn, int batchSize) throws SQLException {
+        List<WriteModel<Document>> requests = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Document changes = new Document(row);
+            Object primaryKeyValue = changes.remove(primaryKeyColumn);
+            requests.add(new UpdateOneModel<>(new Document(primaryKeyColumn, primaryKeyValue), new Document("$set", changes)));
+        }
+        return writeInBatches(tableName, requests, batchSize);
+    }
+
+    @Override
+    public BatchResult deleteDataBatch(String tableName, String primaryKeyColumn, List<Object> primaryKeyValues, int batchSize) throws SQLException {
+        List<WriteModel<Document>> requests = new ArrayList<>(primaryKeyValues.size());
+        for (Object value : primaryKeyValues)
+            requests.add(new DeleteOneModel<>(new Document(primaryKeyColumn, value)));
+        return writeInBatches(tableName, requests, batchSize);
+    }
+
+    // Ordered, like the blocking service: a batch is sent only after the previous one succeeded.
+    private BatchResult writeInBatches(String tableName, List<WriteModel<Document>> requests, int batchSize) throws SQLException {
+        int size = Math.max(1, batchSize);
+        BatchResult result = new BatchResult();
+        for (int from = 0; from < requests.size(); from += size) {
+            List<WriteModel<Document>> batch = requests.subList(from, Math.min(from + size, requests.size()));
+            long start = System.nanoTime();
+            long affected = bulkWrite(tableName, batch, true);
+            result.recordBatch(batch.size(), affected, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    // Staged changes touch distinct documents, so all batches are sent at once and awaited together; write errors come
+    // back by index as with the blocking service.
+    @Override
+    public ChangeSetResult applyChanges(String tableName, String primaryKeyColumn, List<RowChange> changes, int batchSize) throws SQLException {
+        int size = Math.max(1, batchSize);
+        List<WriteModel<Document>> models = MongoQueries.toWriteModels(primaryKeyColumn, changes);
+        long start = System.nanoTime();
+        List<CompletableFuture<BulkWriteResult>> batches = new ArrayList<>();
+        for (int from = 0; from < models.size(); from += size) {
+            List<WriteModel<Document>> batch = models.subList(from, Math.min(from + size, models.size()));
+            batches.add(start(() -> reactive.bulkWrite(tableName, batch, false)));
+        }
+
+        ChangeSetResult result = new ChangeSetResult();
+        for (int i = 0; i < batches.size(); i++) {
+            int from = i * size;
+            int count = Math.min(size, models.size() - from);
+            try {
+                BulkWriteResult written = await(batches.get(i), "Error applying changes");
+                MongoQueries.recordChangeBatch(result, from, count, written, null, System.nanoTime() - start);
+            }
+            catch (SQLException e) {
+                if (!(e.getCause() instanceof MongoBulkWriteException)) {
+                    for (CompletableFuture<BulkWriteResult> pending : batches)
+                        pending.cancel(true);
+                    throw e;
+                }
+                MongoQueries.recordChangeBatch(result, from, count, null, (MongoBulkWriteException) e.getCause(), System.nanoTime() - start);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getPrimaryKeyColumn(String tableName) {
+        return "";
+    }
+
+    @Override
+    public List<String> getPrimaryKeyColumns(String tableName) {
+        return Collections.singletonList("_id");
+    }
+
+    @Override
+    public int getNextId(String tableName, String primaryKeyColumn) {
+        return 0;
+    }
+
+    @Override
+    public boolean executeSqlCommand(String sql, ISqlResultHandler handler) {
+        return false;
+    }
+
+    @Override
+    public boolean executeSqlCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize, SqlCancellationToken cancellationToken) {
+        return false;
+    }
+
+    @Override
+    public boolean executeConsoleCommand(String sql, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize, SqlCancellationToken cancellationToken) {
+        return false;
+    }
+
+    @Override
+    public int getTableEntryCount(String tableName) throws SQLException {
+        return (int) countDocuments(tableName, new Document());
+    }
+
+    @Override
+    public RowCount estimateTableEntryCount(String tableName) throws SQLException {
+        return new RowCount(estimatedDocumentCount(tableName), false);
+    }
+
+    // Pages and counts are always read from the server.
+    @Override
+    public void invalidateCachedData(String tableName) {
+    }
+
+    @Override
+    public QueryResult getQueryResultFromResultSet(ResultSet rs) {
+        return null;
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return dbName;
+    }
+}
@@ -1,7 +1,14 @@
 package gmail.vladimir.db.implementation;
 
 import gmail.vladimir.db.AbstractRelationalDatabaseService;
+import gmail.vladimir.db.MetadataCache;
+import gmail.vladimir.db.columnar.ColumnVector;
+import gmail.vladimir.db.columnar.ObjectColumnVector;
+import gmail.vladimir.db.keys.KeyGenerator;
+import gmail.vladimir.db.keys.LocalKeyGenerator;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.DriverManager;
 import java.util.Map;
@@ -24,9 +31,39 @@ public class SQLiteDatabaseService extends AbstractRelationalDatabaseService {
         dbFilePath = connectionParams.get("dbFilePath");
         this.jdbcUrl = "jdbc:sqlite:" + dbFilePath;
         loadDriver();
+        configureMetadataCache(connectionParams);
         logger.info("Connecting to SQLite database...");
         connection = DriverManager.getConnection(jdbcUrl);
         logger.info("Connected to SQLite database.");
+
+        if (Boolean.parseBoolean(connectionParams.get(METADATA_PREWARM)))
+            startMetadataPrewarm();
+    }
+
+    // SQLite columns are dynamically typed, so a declared INTEGER column may still hold text; keep the driver's own objects.
+    @Override
+    protected ColumnVector createColumnVector(ResultSetMetaData metaData, int column) throws SQLException {
+        return new ObjectColumnVector(metaData.getColumnLabel(column), metaData.getColumnTypeName(column));
+    }
+
+    // Assumes no other process writes to the file while it is open here; keys are counted up in memory.
+    @Override
+    protected KeyGenerator createKeyGenerator() {
+        return new LocalKeyGenerator(this::withConnection, true);
+    }
+
+    // An INTEGER PRIMARY KEY is an alias for the rowid, which SQLite assigns itself; the driver only reports
+    // IS_AUTOINCREMENT for columns declared with the AUTOINCREMENT keyword.
+    @Override
+    protected boolean isKeyGeneratedByDatabase(String tableName, String keyColumn) throws SQLException {
+        if (getPrimaryKeyColumns(tableName).size() != 1)
+            return false;
+
+        return metadataCache.get(MetadataCache.GENERATED_KEY, tableName, () -> withConnection(conn -> {
+            try (ResultSet rs = conn.getMetaData().getColumns(null, null, tableName, keyColumn)) {
+                return rs.next() && ("INTEGER".equalsIgnoreCase(rs.getString("TYPE_NAME")) || "YES".equalsIgnoreCase(rs.getString("IS_AUTOINCREMENT")));
+            }
+        }));
     }
 
     @Override
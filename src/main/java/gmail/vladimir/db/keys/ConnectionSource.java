@@ -0,0 +1,12 @@
+package gmail.vladimir.db.keys;
+
+import gmail.vladimir.db.SqlFunction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Lends a connection for one piece of work, e.g. a pooled connection that is returned afterwards.
+@FunctionalInterface
+public interface ConnectionSource {
+    <T> T withConnection(SqlFunction<Connection, T> action) throws SQLException;
+}
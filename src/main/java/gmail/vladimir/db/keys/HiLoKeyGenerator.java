@@ -0,0 +1,206 @@
+package gmail.vladimir.db.keys;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Reserves blocks of blockSize keys per table in a shared allocation table, then hands them out from memory, so most
+// inserts need no extra round trip and clients running at the same time never receive the same key. Unused keys of a
+// block are lost when the application exits. The first reservation after a reset also moves next_hi above the table's
+// MAX(key), so rows inserted with explicit keys (console, other tools) are skipped rather than collided with.
+// The allocation table is only created when createTable is set; otherwise an existing one is used, and without one
+// keys come from the fallback generator.
+public class HiLoKeyGenerator implements KeyGenerator {
+
+    public static final String ALLOCATION_TABLE = "crudjava_key_blocks";
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    private static final Logger logger = LoggerFactory.getLogger(HiLoKeyGenerator.class);
+
+    private final ConnectionSource connections;
+    private final int blockSize;
+    private final KeyGenerator fallback;
+    private final boolean createTable;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private volatile Boolean allocationTableAvailable;
+
+    public HiLoKeyGenerator(ConnectionSource connections, int blockSize, KeyGenerator fallback, boolean createTable) {
+        this.connections = connections;
+        this.blockSize = Math.max(1, blockSize);
+        this.fallback = fallback;
+        this.createTable = createTable;
+    }
+
+    @Override
+    public long nextKey(String tableName, String keyColumn) throws SQLException {
+        if (!ensureAllocationTable())
+            return fallback.nextKey(tableName, keyColumn);
+
+        Block block = blocks.computeIfAbsent(tableName.toLowerCase(Locale.ROOT), key -> new Block());
+        synchronized (block) {
+            if (block.next >= block.end) {
+                long hi = reserveBlock(tableName, keyColumn, !block.seeded);
+                block.next = hi * blockSize;
+                block.end = block.next + blockSize;
+                block.seeded = true;
+            }
+            return block.next++;
+        }
+    }
+
+    // Dropping the block makes the next reservation re-read MAX(key).
+    @Override
+    public void reset(String tableName) {
+        blocks.remove(tableName.toLowerCase(Locale.ROOT));
+        fallback.reset(tableName);
+    }
+
+    // A missing allocation table is looked for again, in case it was created since.
+    @Override
+    public void resetAll() {
+        blocks.clear();
+        if (Boolean.FALSE.equals(allocationTableAvailable))
+            allocationTableAvailable = null;
+        fallback.resetAll();
+    }
+
+    private boolean ensureAllocationTable() {
+        Boolean available = allocationTableAvailable;
+        if (available != null)
+            return available;
+
+        synchronized (this) {
+            if (allocationTableAvailable != null)
+                return allocationTableAvailable;
+
+            try {
+                allocationTableAvailable = createTable ? createAllocationTable() : allocationTableExists();
+                if (!allocationTableAvailable)
+                    logger.info("No key allocation table {}, keys are allocated locally.", ALLOCATION_TABLE);
+            }
+            catch (SQLException e) {
+                logger.warn("Cannot use key allocation table {}, keys are allocated locally: {}", ALLOCATION_TABLE, e.getMessage());
+                allocationTableAvailable = false;
+            }
+            return allocationTableAvailable;
+        }
+    }
+
+    private boolean createAllocationTable() throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS " + ALLOCATION_TABLE
+                + " (table_name VARCHAR(128) PRIMARY KEY, next_hi BIGINT NOT NULL)";
+        connections.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.executeUpdate(sql);
+            }
+        });
+        return true;
+    }
+
+    private boolean allocationTableExists() throws SQLException {
+        return connections.withConnection(conn -> {
+            DatabaseMetaData metaData = conn.getMetaData();
+            for (String name : new String[]{ALLOCATION_TABLE, ALLOCATION_TABLE.toUpperCase(Locale.ROOT)})
+                try (ResultSet rs = metaData.getTables(null, null, name, new String[]{"TABLE"})) {
+                    if (rs.next())
+                        return true;
+                }
+            return false;
+        });
+    }
+
+    // Increments the table's next_hi in its own transaction; the row lock serialises concurrent clients.
+    // A table seen for the first time, or the first time after a reset, starts above its current MAX(key):
+    // next_hi = max(next_hi, MAX(key) / blockSize + 1).
+    private long reserveBlock(String tableName, String keyColumn, boolean reseed) throws SQLException {
+        String name = tableName.toLowerCase(Locale.ROOT);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return connections.withConnection(conn -> inTransaction(conn, () -> {
+                    try (PreparedStatement update = conn.prepareStatement("UPDATE " + ALLOCATION_TABLE + " SET next_hi = next_hi + 1 WHERE table_name = ?")) {
+                        update.setString(1, name);
+                        if (update.executeUpdate() == 1) {
+                            long hi = readReservedHi(conn, name);
+                            return reseed ? skipPastMaxKey(conn, tableName, keyColumn, name, hi) : hi;
+                        }
+                    }
+
+                    long hi = LocalKeyGenerator.readMaxKey(conn, tableName, keyColumn) / blockSize + 1;
+                    try (PreparedStatement insert = conn.prepareStatement("INSERT INTO " + ALLOCATION_TABLE + " (table_name, next_hi) VALUES (?, ?)")) {
+                        insert.setString(1, name);
+                        insert.setLong(2, hi + 1);
+                        insert.executeUpdate();
+                    }
+                    return hi;
+                }));
+            }
+            catch (SQLException e) {
+                // Another client seeded the same table first; its row now exists, so the next attempt updates it.
+                if (attempt > 0)
+                    throw e;
+            }
+        }
+    }
+
+    // Runs under the row lock taken by the increment, so concurrent clients see the raised next_hi.
+    private long skipPastMaxKey(Connection conn, String tableName, String keyColumn, String name, long hi) throws SQLException {
+        long floor = LocalKeyGenerator.readMaxKey(conn, tableName, keyColumn) / blockSize + 1;
+        if (hi >= floor)
+            return hi;
+
+        try (PreparedStatement update = conn.prepareStatement("UPDATE " + ALLOCATION_TABLE + " SET next_hi = ? WHERE table_name = ?")) {
+            update.setLong(1, floor + 1);
+            update.setString(2, name);
+            update.executeUpdate();
+        }
+        return floor;
+    }
+
+    private static long readReservedHi(Connection conn, String name) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement("SELECT next_hi FROM " + ALLOCATION_TABLE + " WHERE table_name = ?")) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next())
+                    throw new SQLException("Key allocation row for " + name + " disappeared.");
+                return rs.getLong(1) - 1;
+            }
+        }
+    }
+
+    private static long inTransaction(Connection conn, Work work) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            long result = work.run();
+            conn.commit();
+            return result;
+        }
+        catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        long run() throws SQLException;
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+        private boolean seeded;
+    }
+}
@@ -0,0 +1,14 @@
+package gmail.vladimir.db.keys;
+
+import java.sql.SQLException;
+
+// Hands out primary key values for tables whose key the database does not generate itself (no identity/serial column).
+public interface KeyGenerator {
+
+    long nextKey(String tableName, String keyColumn) throws SQLException;
+
+    // Forgets what is known about the table's keys, e.g. after it was dropped or written to outside the generator.
+    void reset(String tableName);
+
+    void resetAll();
+}
@@ -0,0 +1,63 @@
+package gmail.vladimir.db.keys;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out MAX(key) + 1, never repeating a key it already handed out to another thread of this application.
+// With singleWriter the MAX(key) is read once per table (and again after a reset) and counted up in memory; that is only
+// safe for embedded databases nobody else writes to while we are connected (SQLite files, in-process HyperSQL). Shared
+// databases re-read MAX(key) for every key, so rows inserted by other clients are seen, although one inserting between
+// the read and our insert still makes that insert fail on the primary key.
+public class LocalKeyGenerator implements KeyGenerator {
+
+    private final ConnectionSource connections;
+    private final boolean singleWriter;
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public LocalKeyGenerator(ConnectionSource connections, boolean singleWriter) {
+        this.connections = connections;
+        this.singleWriter = singleWriter;
+    }
+
+    @Override
+    public long nextKey(String tableName, String keyColumn) throws SQLException {
+        String key = tableName.toLowerCase(Locale.ROOT);
+        AtomicLong counter = counters.get(key);
+        if (counter != null && singleWriter)
+            return counter.incrementAndGet();
+
+        long max = connections.withConnection(conn -> readMaxKey(conn, tableName, keyColumn));
+        if (counter == null) {
+            AtomicLong seeded = new AtomicLong(max);
+            counter = counters.putIfAbsent(key, seeded);
+            if (counter == null)
+                counter = seeded;
+        }
+        else
+            counter.accumulateAndGet(max, Math::max);
+        return counter.incrementAndGet();
+    }
+
+    @Override
+    public void reset(String tableName) {
+        counters.remove(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public void resetAll() {
+        counters.clear();
+    }
+
+    static long readMaxKey(Connection conn, String tableName, String keyColumn) throws SQLException {
+        String sql = String.format("SELECT MAX(%s) FROM %s", keyColumn, tableName);
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+}
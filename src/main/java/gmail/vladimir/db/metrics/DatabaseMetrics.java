@@ -0,0 +1,172 @@
+package gmail.vladimir.db.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency, row and byte counts per operation and per table, connection pool waits and a slow-query log for one
+// database service. Calls slower than the threshold are logged at WARN and the most recent ones are kept in memory.
+public class DatabaseMetrics implements DatabaseMetricsMXBean, PoolWaitListener {
+
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 500;
+    private static final int SLOW_QUERY_CAPACITY = 100;
+    private static final int MAX_DETAIL_LENGTH = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMetrics.class);
+
+    private final String name;
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OperationStats> tables = new ConcurrentHashMap<>();
+    private final OperationStats poolWait = new OperationStats("pool-wait");
+    private final LongAdder poolTimeouts = new LongAdder();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+    private ObjectName objectName;
+
+    public DatabaseMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // table and detail may be null; rows and bytes are what the call returned or wrote.
+    public void record(String operation, String table, String detail, long nanos, long rows, long bytes, boolean failed) {
+        operations.computeIfAbsent(operation, OperationStats::new).record(nanos, rows, bytes, failed);
+        if (table != null)
+            tables.computeIfAbsent(table.toLowerCase(Locale.ROOT), OperationStats::new).record(nanos, rows, bytes, failed);
+
+        if (nanos < slowQueryThresholdNanos)
+            return;
+
+        double millis = nanos / 1_000_000.0;
+        String text = detail == null || detail.length() <= MAX_DETAIL_LENGTH ? detail : detail.substring(0, MAX_DETAIL_LENGTH) + "...";
+        logger.warn("Slow {}{} took {} ms{}{}", operation, table == null ? "" : " on " + table, String.format("%.1f", millis),
+                failed ? " and failed" : "", text == null ? "" : ": " + text);
+        synchronized (slowQueries) {
+            slowQueries.addFirst(new SlowQuery(System.currentTimeMillis(), operation, table, text, millis, failed));
+            if (slowQueries.size() > SLOW_QUERY_CAPACITY)
+                slowQueries.removeLast();
+        }
+    }
+
+    @Override
+    public void connectionAcquired(long waitNanos) {
+        poolWait.record(waitNanos, 0, 0, false);
+    }
+
+    @Override
+    public void connectionTimedOut() {
+        poolTimeouts.increment();
+    }
+
+    @Override
+    public List<OperationSummary> getOperations() {
+        return summarize(operations);
+    }
+
+    @Override
+    public List<OperationSummary> getTables() {
+        return summarize(tables);
+    }
+
+    private static List<OperationSummary> summarize(Map<String, OperationStats> stats) {
+        List<OperationSummary> summaries = new ArrayList<>();
+        for (OperationStats entry : stats.values())
+            summaries.add(entry.summarize());
+        summaries.sort(Comparator.comparing(OperationSummary::getName));
+        return summaries;
+    }
+
+    @Override
+    public OperationSummary getPoolWait() {
+        return poolWait.summarize();
+    }
+
+    @Override
+    public long getPoolTimeouts() {
+        return poolTimeouts.sum();
+    }
+
+    // Newest first.
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMillis));
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+        tables.clear();
+        poolWait.reset();
+        poolTimeouts.reset();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    // Several services can be connected at once, so a taken name gets a numeric suffix.
+    public synchronized void registerMBean() {
+        if (objectName != null)
+            return;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (int attempt = 1; objectName == null; attempt++) {
+                ObjectName candidate = new ObjectName("gmail.vladimir:type=DatabaseMetrics,name="
+                        + ObjectName.quote(attempt == 1 ? name : name + "-" + attempt));
+                try {
+                    server.registerMBean(this, candidate);
+                    objectName = candidate;
+                }
+                catch (InstanceAlreadyExistsException e) {
+                    // try the next suffix
+                }
+            }
+        }
+        catch (JMException e) {
+            logger.warn("Could not register database metrics with JMX: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null)
+            return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (JMException e) {
+            logger.warn("Could not unregister database metrics from JMX: {}", e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("DatabaseMetrics{").append(name);
+        for (OperationSummary summary : getOperations())
+            builder.append("\n  ").append(summary);
+        return builder.append("\n  ").append(getPoolWait()).append(", timeouts=").append(getPoolTimeouts()).append("\n}").toString();
+    }
+}
@@ -0,0 +1,23 @@
+package gmail.vladimir.db.metrics;
+
+import java.util.List;
+
+// Registered as gmail.vladimir:type=DatabaseMetrics,name=<service> while a service is connected.
+public interface DatabaseMetricsMXBean {
+
+    List<OperationSummary> getOperations();
+
+    List<OperationSummary> getTables();
+
+    OperationSummary getPoolWait();
+
+    long getPoolTimeouts();
+
+    List<SlowQuery> getSlowQueries();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long thresholdMillis);
+
+    void reset();
+}
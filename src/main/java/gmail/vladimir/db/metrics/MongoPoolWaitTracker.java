@@ -0,0 +1,32 @@
+package gmail.vladimir.db.metrics;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+
+// The MongoDB driver's counterpart of the HikariCP metrics tracker: passes checkout waits of the client's pools on to
+// a PoolWaitListener. Registered when the client is created; the listener may be set later.
+public class MongoPoolWaitTracker implements ConnectionPoolListener {
+
+    private volatile PoolWaitListener listener;
+
+    public void setListener(PoolWaitListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        PoolWaitListener current = listener;
+        if (current != null)
+            current.connectionAcquired(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        PoolWaitListener current = listener;
+        if (current != null && event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT)
+            current.connectionTimedOut();
+    }
+}
@@ -0,0 +1,49 @@
+package gmail.vladimir.db.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Running totals for one operation or one table.
+public class OperationStats {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos, long rowCount, long byteCount, boolean failed) {
+        latency.recordNanos(nanos);
+        rows.add(rowCount);
+        bytes.add(byteCount);
+        if (failed)
+            errors.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public OperationSummary summarize() {
+        long calls = latency.getCount();
+        long failed = errors.sum();
+        return new OperationSummary(name, calls, failed, calls == 0 ? 0 : (double) failed / calls, rows.sum(), bytes.sum(),
+                latency.getMeanMicros() / 1000, latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(90) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxMicros() / 1000.0);
+    }
+
+    public void reset() {
+        latency.reset();
+        errors.reset();
+        rows.reset();
+        bytes.reset();
+    }
+}
@@ -0,0 +1,92 @@
+package gmail.vladimir.db.metrics;
+
+import java.beans.ConstructorProperties;
+
+// Point-in-time view of an OperationStats; latencies are in milliseconds. Also the JMX composite type.
+public class OperationSummary {
+
+    private final String name;
+    private final long count;
+    private final long errors;
+    private final double errorRate;
+    private final long rows;
+    private final long bytes;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({"name", "count", "errors", "errorRate", "rows", "bytes", "meanMillis", "p50Millis", "p90Millis",
+            "p99Millis", "p999Millis", "maxMillis"})
+    public OperationSummary(String name, long count, long errors, double errorRate, long rows, long bytes, double meanMillis,
+                            double p50Millis, double p90Millis, double p99Millis, double p999Millis, double maxMillis) {
+        this.name = name;
+        this.count = count;
+        this.errors = errors;
+        this.errorRate = errorRate;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.p999Millis = p999Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getP999Millis() {
+        return p999Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d, errors=%d, rows=%d, bytes=%d, p50=%.2f ms, p99=%.2f ms, max=%.2f ms",
+                name, count, errors, rows, bytes, p50Millis, p99Millis, maxMillis);
+    }
+}
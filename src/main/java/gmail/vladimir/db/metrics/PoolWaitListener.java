@@ -0,0 +1,9 @@
+package gmail.vladimir.db.metrics;
+
+// Told how long each connection checkout waited on the service's pool.
+public interface PoolWaitListener {
+
+    void connectionAcquired(long waitNanos);
+
+    void connectionTimedOut();
+}
@@ -0,0 +1,7 @@
+package gmail.vladimir.db.metrics;
+
+// A service whose connection pool reports how long checkouts waited; set before connecting.
+public interface PoolWaitSource {
+
+    void setPoolWaitListener(PoolWaitListener poolWaitListener);
+}
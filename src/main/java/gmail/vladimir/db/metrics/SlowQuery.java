@@ -0,0 +1,48 @@
+package gmail.vladimir.db.metrics;
+
+import java.beans.ConstructorProperties;
+
+// One entry of the slow-query log. detail is the SQL text or the call's arguments.
+public class SlowQuery {
+
+    private final long timestamp;
+    private final String operation;
+    private final String table;
+    private final String detail;
+    private final double millis;
+    private final boolean failed;
+
+    @ConstructorProperties({"timestamp", "operation", "table", "detail", "millis", "failed"})
+    public SlowQuery(long timestamp, String operation, String table, String detail, double millis, boolean failed) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.table = table;
+        this.detail = detail;
+        this.millis = millis;
+        this.failed = failed;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public double getMillis() {
+        return millis;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+}
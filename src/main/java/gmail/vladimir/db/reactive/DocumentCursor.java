@@ -0,0 +1,101 @@
+package gmail.vladimir.db.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Pull-style reading of a publisher with bounded demand: at most prefetch items are requested ahead of the reader,
+// and more are requested once it has taken half of them. A slow reader therefore delays the driver's next getMore
+// instead of filling the heap, while a fast one finds the next batch already on its way.
+public class DocumentCursor<T> implements AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final int refill;
+    // Items, then END or the Throwable that ended the stream; never holds more than the outstanding demand plus one.
+    private final BlockingQueue<Object> buffer;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile Subscription subscription;
+    private int taken;
+    private boolean finished;
+
+    public DocumentCursor(Publisher<T> publisher, int prefetch) {
+        int demand = Math.max(1, prefetch);
+        this.refill = Math.max(1, demand / 2);
+        this.buffer = new ArrayBlockingQueue<>(demand + 1);
+        publisher.subscribe(new Subscriber<T>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                if (closed.get())
+                    s.cancel();
+                else
+                    s.request(demand);
+            }
+
+            @Override
+            public void onNext(T item) {
+                buffer.offer(item);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                buffer.offer(error);
+            }
+
+            @Override
+            public void onComplete() {
+                buffer.offer(END);
+            }
+        });
+    }
+
+    // Blocks until the next item arrives; null once the stream has ended. Interrupting the reader closes the cursor.
+    @SuppressWarnings("unchecked")
+    public T next() throws SQLException {
+        if (finished)
+            return null;
+
+        Object item;
+        try {
+            item = buffer.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new SQLException("Reading documents was cancelled.", e);
+        }
+
+        if (item == END) {
+            finished = true;
+            return null;
+        }
+        if (item instanceof Throwable) {
+            finished = true;
+            throw new SQLException("Error reading documents", (Throwable) item);
+        }
+
+        if (++taken == refill) {
+            subscription.request(taken);
+            taken = 0;
+        }
+        return (T) item;
+    }
+
+    // Cancels the subscription, which closes the server-side cursor if the stream has not ended.
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true))
+            return;
+
+        finished = true;
+        Subscription current = subscription;
+        if (current != null)
+            current.cancel();
+    }
+}
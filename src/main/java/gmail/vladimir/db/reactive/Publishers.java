@@ -0,0 +1,84 @@
+package gmail.vladimir.db.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Bridges Reactive Streams publishers to CompletableFutures. Cancelling the future cancels the subscription, which
+// stops the driver from fetching further batches or kills the server-side cursor.
+public final class Publishers {
+
+    private Publishers() {
+    }
+
+    // For publishers of at most one item, such as write results; completes with null when there is none.
+    public static <T> CompletableFuture<T> single(Publisher<T> publisher) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        publisher.subscribe(new FutureSubscriber<T>(future, 1) {
+            private T item;
+
+            @Override
+            public void onNext(T next) {
+                item = next;
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(item);
+            }
+        });
+        return future;
+    }
+
+    // Collects every item; demand is requested batchSize items at a time, so the driver fetches no further ahead.
+    public static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher, int batchSize) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        int demand = Math.max(1, batchSize);
+        publisher.subscribe(new FutureSubscriber<T>(future, demand) {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onNext(T next) {
+                items.add(next);
+                if (items.size() % demand == 0)
+                    subscription.request(demand);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(items);
+            }
+        });
+        return future;
+    }
+
+    private abstract static class FutureSubscriber<T> implements Subscriber<T> {
+        private final CompletableFuture<?> future;
+        private final long initialDemand;
+        protected Subscription subscription;
+
+        private FutureSubscriber(CompletableFuture<?> future, long initialDemand) {
+            this.future = future;
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled())
+                    subscription.cancel();
+            });
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            future.completeExceptionally(error);
+        }
+    }
+}
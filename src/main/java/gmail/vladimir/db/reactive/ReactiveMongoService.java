@@ -0,0 +1,202 @@
+package gmail.vladimir.db.reactive;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.event.ConnectionPoolListener;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// MongoDB on the Reactive Streams driver. Every call returns as soon as the request is sent; results arrive on the
+// driver's I/O threads and complete the returned future, so one thread can keep many operations in flight. Result
+// sets are read with bounded demand: collected lists request a batch at a time and cursors stay a batch ahead of the
+// reader. Callbacks must not block, since they run on the driver's threads.
+public class ReactiveMongoService implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveMongoService.class);
+    public static final int DEFAULT_BATCH_SIZE = 101;
+
+    private volatile MongoClient client;
+    private volatile MongoDatabase database;
+
+    public void connect(String uri, String dbName, ConnectionPoolListener poolListener) {
+        MongoClientSettings.Builder settings = MongoClientSettings.builder().applyConnectionString(new ConnectionString(uri));
+        if (poolListener != null)
+            settings.applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(poolListener));
+        client = MongoClients.create(settings.build());
+        database = client.getDatabase(dbName);
+    }
+
+    @Override
+    public void close() {
+        MongoClient current = client;
+        if (current == null)
+            return;
+
+        client = null;
+        current.close();
+    }
+
+    public MongoDatabase getDatabase() {
+        MongoDatabase current = database;
+        if (current == null || client == null)
+            throw new IllegalStateException("Not connected to MongoDB.");
+        return current;
+    }
+
+    private MongoCollection<Document> collection(String name) {
+        return getDatabase().getCollection(name);
+    }
+
+    public CompletableFuture<List<String>> listCollectionNames() {
+        return Publishers.collect(getDatabase().listCollectionNames(), DEFAULT_BATCH_SIZE);
+    }
+
+    public CompletableFuture<Void> createCollection(String name) {
+        return Publishers.single(getDatabase().createCollection(name));
+    }
+
+    public CompletableFuture<Void> dropCollection(String name) {
+        return Publishers.single(collection(name).drop());
+    }
+
+    // Documents stay in their wire format; a batchSize of 0 leaves it to the server.
+    public FindPublisher<RawBsonDocument> find(String name, Bson filter, Bson sort, Bson projection, int skip, int limit, int batchSize) {
+        FindPublisher<RawBsonDocument> find = getDatabase().getCollection(name, RawBsonDocument.class).find(filter).skip(skip).limit(limit);
+        // Sorts on unindexed fields would otherwise fail once they pass the server's in-memory sort limit.
+        if (sort != null)
+            find = find.sort(sort).allowDiskUse(true);
+        if (projection != null)
+            find = find.projection(projection);
+        if (batchSize > 0)
+            find = find.batchSize(batchSize);
+        return find;
+    }
+
+    public CompletableFuture<List<RawBsonDocument>> findAll(String name, Bson filter, Bson sort, Bson projection, int skip, int limit, int batchSize) {
+        return Publishers.collect(find(name, filter, sort, projection, skip, limit, batchSize),
+                batchSize > 0 ? batchSize : limit > 0 ? limit : DEFAULT_BATCH_SIZE);
+    }
+
+    // Close the cursor when done with it before the end; that kills the server-side cursor.
+    public DocumentCursor<Document> openCursor(String name, Bson filter, Bson sort, int batchSize) {
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        FindPublisher<Document> find = collection(name).find(filter).batchSize(size);
+        if (sort != null)
+            find = find.sort(sort);
+        return new DocumentCursor<>(find, size);
+    }
+
+    public CompletableFuture<Long> countDocuments(String name, Bson filter) {
+        return Publishers.single(collection(name).countDocuments(filter));
+    }
+
+    public CompletableFuture<Long> estimatedDocumentCount(String name) {
+        return Publishers.single(collection(name).estimatedDocumentCount());
+    }
+
+    public CompletableFuture<List<Document>> aggregate(String name, List<? extends Bson> pipeline) {
+        return Publishers.collect(collection(name).aggregate(pipeline).allowDiskUse(true), DEFAULT_BATCH_SIZE);
+    }
+
+    // Completes with the document's _id, which the driver assigns when the document has none.
+    public CompletableFuture<Object> insertOne(String name, Document document) {
+        return Publishers.single(collection(name).insertOne(document)).thenApply(result -> document.get("_id"));
+    }
+
+    public CompletableFuture<Long> updateOne(String name, Bson filter, Bson update) {
+        return Publishers.single(collection(name).updateOne(filter, update)).thenApply(UpdateResult::getModifiedCount);
+    }
+
+    public CompletableFuture<Long> updateMany(String name, Bson filter, Bson update) {
+        return Publishers.single(collection(name).updateMany(filter, update)).thenApply(UpdateResult::getModifiedCount);
+    }
+
+    public CompletableFuture<Long> deleteOne(String name, Bson filter) {
+        return Publishers.single(collection(name).deleteOne(filter)).thenApply(DeleteResult::getDeletedCount);
+    }
+
+    public CompletableFuture<Long> deleteMany(String name, Bson filter) {
+        return Publishers.single(collection(name).deleteMany(filter)).thenApply(DeleteResult::getDeletedCount);
+    }
+
+    public CompletableFuture<BulkWriteResult> bulkWrite(String name, List<? extends WriteModel<Document>> requests, boolean ordered) {
+        return Publishers.single(collection(name).bulkWrite(requests, new BulkWriteOptions().ordered(ordered)));
+    }
+
+    // Changes are requested one at a time, so a listener that falls behind holds the stream back rather than queueing
+    // changes in memory. The stream ends on close or on an error, which is logged.
+    public AutoCloseable watch(String name, Consumer<ChangeStreamDocument<Document>> listener) {
+        ChangeSubscriber subscriber = new ChangeSubscriber(name, listener);
+        collection(name).watch().fullDocument(FullDocument.UPDATE_LOOKUP).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private static final class ChangeSubscriber implements Subscriber<ChangeStreamDocument<Document>>, AutoCloseable {
+        private final String name;
+        private final Consumer<ChangeStreamDocument<Document>> listener;
+        private Subscription subscription;
+        private boolean closed;
+
+        private ChangeSubscriber(String name, Consumer<ChangeStreamDocument<Document>> listener) {
+            this.name = name;
+            this.listener = listener;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Subscription s) {
+            subscription = s;
+            if (closed)
+                s.cancel();
+            else
+                s.request(1);
+        }
+
+        @Override
+        public void onNext(ChangeStreamDocument<Document> change) {
+            try {
+                listener.accept(change);
+            }
+            finally {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            logger.error("Change stream on {} stopped: {}", name, error.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            logger.debug("Change stream on {} ended.", name);
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (subscription != null)
+                subscription.cancel();
+        }
+    }
+}
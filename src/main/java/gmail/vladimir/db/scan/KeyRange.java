@@ -0,0 +1,44 @@
+package gmail.vladimir.db.scan;
+
+// Rows whose leading key column is >= lower and < upper; a null bound is open. The first range of a split has no lower
+// bound and the last no upper bound, so together the ranges cover every row, including rows written during the scan.
+public class KeyRange {
+
+    private final int index;
+    private final String keyColumn;
+    private final Object lower;
+    private final Object upper;
+
+    public KeyRange(int index, String keyColumn, Object lower, Object upper) {
+        this.index = index;
+        this.keyColumn = keyColumn;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    // Position in key order, starting at 0.
+    public int getIndex() {
+        return index;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public Object getLower() {
+        return lower;
+    }
+
+    public Object getUpper() {
+        return upper;
+    }
+
+    public boolean isUnbounded() {
+        return lower == null && upper == null;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + (lower == null ? "" : lower) + ", " + (upper == null ? "" : upper) + ")";
+    }
+}
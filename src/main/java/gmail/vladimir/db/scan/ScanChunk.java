@@ -0,0 +1,61 @@
+package gmail.vladimir.db.scan;
+
+import gmail.vladimir.db.QueryResult;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// A batch of rows from one key range. Relational chunks are columnar QueryResults and each range starts with an empty
+// chunk carrying the column types, so consumers see the columns of empty tables too. Document chunks have no column
+// types.
+public class ScanChunk {
+
+    private final KeyRange range;
+    private final LinkedHashMap<String, String> columnTypes;
+    private final QueryResult result;
+    private final List<Map<String, Object>> documents;
+
+    private ScanChunk(KeyRange range, LinkedHashMap<String, String> columnTypes, QueryResult result, List<Map<String, Object>> documents) {
+        this.range = range;
+        this.columnTypes = columnTypes;
+        this.result = result;
+        this.documents = documents;
+    }
+
+    static ScanChunk columns(KeyRange range, LinkedHashMap<String, String> columnTypes) {
+        return new ScanChunk(range, columnTypes, null, Collections.<Map<String, Object>>emptyList());
+    }
+
+    static ScanChunk rows(KeyRange range, QueryResult result) {
+        return new ScanChunk(range, result.getColumnTypes(), result, null);
+    }
+
+    static ScanChunk documents(KeyRange range, List<Map<String, Object>> documents) {
+        return new ScanChunk(range, null, null, documents);
+    }
+
+    public KeyRange getRange() {
+        return range;
+    }
+
+    // Null for documents.
+    public LinkedHashMap<String, String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    // Null for documents and for the leading column chunk.
+    public QueryResult getQueryResult() {
+        return result;
+    }
+
+    // Row views over the columns for relational chunks, so nothing is copied.
+    public List<Map<String, Object>> getRows() {
+        return result != null ? result.getData() : documents;
+    }
+
+    public int getRowCount() {
+        return result != null ? result.getRowCount() : documents.size();
+    }
+}
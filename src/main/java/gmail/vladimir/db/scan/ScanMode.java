@@ -0,0 +1,11 @@
+package gmail.vladimir.db.scan;
+
+public enum ScanMode {
+    // Chunks reach the consumer on the calling thread in primary key order; later ranges read ahead a little.
+    ORDERED,
+    // Chunks reach the consumer on the calling thread as the ranges produce them.
+    UNORDERED,
+    // Each range calls the consumer on its own thread, so the consumer's work runs in parallel too; it must be
+    // thread-safe.
+    CONCURRENT
+}
@@ -0,0 +1,418 @@
+package gmail.vladimir.db.scan;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import gmail.vladimir.db.*;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Reads a whole table as key ranges scanned concurrently, each on its own pooled connection (or Mongo cursor):
+//
+//   range 0 --chunks--\
+//   range 1 --chunks---> merge (ORDERED / UNORDERED) --> consumer on the calling thread
+//   range 2 --chunks--/        or the consumer on each range thread (CONCURRENT)
+//
+// Relational tables are split on the leading primary key column when it is an integer: MIN and MAX give equal-width
+// ranges. Collections are split on _id at quantiles of a $sample. Tables without such a key, small tables and
+// connections without a pool are read as one range. Each range streams through a forward-only cursor fetchSize rows
+// at a time and the merge queues are bounded, so memory stays at a few chunks per range however large the table.
+public class TableScanEngine {
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    // Below this many rows per range the extra queries cost more than they save.
+    public static final long MIN_ROWS_PER_RANGE = 10_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(TableScanEngine.class);
+    private static final int SAMPLES_PER_RANGE = 100;
+    // Chunks an ordered scan reads ahead per range while an earlier range is being consumed.
+    private static final int ORDERED_READ_AHEAD = 2;
+    private static final Object RANGE_END = new Object();
+
+    private final IDatabaseService dbService;
+    private final boolean documentStore;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    public TableScanEngine(IDatabaseService dbService) {
+        this.dbService = dbService;
+        this.documentStore = dbService instanceof IDocumentDatabaseService;
+    }
+
+    // Upper bound on the ranges; relational scans also leave one pooled connection free for everything else.
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    // Returns the number of rows delivered.
+    public long scan(String tableName, ScanMode mode, SqlConsumer<ScanChunk> consumer) throws SQLException {
+        List<KeyRange> ranges = planRanges(tableName);
+        boolean ordered = mode == ScanMode.ORDERED;
+        ScanRun run = new ScanRun();
+
+        if (ranges.size() == 1) {
+            try {
+                scanRange(run, tableName, ranges.get(0), ordered, chunk -> run.deliver(consumer, chunk));
+            }
+            catch (SQLException | RuntimeException e) {
+                run.fail(e);
+            }
+        }
+        else if (mode == ScanMode.CONCURRENT)
+            runConcurrently(run, tableName, ranges, consumer);
+        else
+            runMerged(run, tableName, ranges, ordered, consumer);
+
+        run.throwIfFailed();
+        return run.rows.get();
+    }
+
+    public List<KeyRange> planRanges(String tableName) throws SQLException {
+        List<String> keyColumns = dbService.getPrimaryKeyColumns(tableName);
+        String keyColumn = keyColumns.isEmpty() ? null : keyColumns.get(0);
+        long rows = dbService.estimateTableEntryCount(tableName).getCount();
+        int count = (int) Math.min(Math.min(parallelism, maxRanges()), rows / MIN_ROWS_PER_RANGE);
+
+        List<KeyRange> ranges = null;
+        if (keyColumn != null && count > 1)
+            ranges = documentStore ? planDocumentRanges(tableName, keyColumn, count) : planKeyRanges(tableName, keyColumn, count);
+        if (ranges == null)
+            ranges = Collections.singletonList(new KeyRange(0, keyColumn, null, null));
+
+        logger.debug("Scanning {} as {} range(s): {}", tableName, ranges.size(), ranges);
+        return ranges;
+    }
+
+    private int maxRanges() {
+        IDatabaseService service = dbService instanceof InstrumentedDatabaseService ? ((InstrumentedDatabaseService) dbService).getDelegate() : dbService;
+        if (service instanceof AbstractRelationalDatabaseService) {
+            PoolStats stats = ((AbstractRelationalDatabaseService) service).getPoolStats();
+            return stats == null ? 1 : stats.getMaximumPoolSize() - 1;
+        }
+        return parallelism;
+    }
+
+    private List<KeyRange> planKeyRanges(String tableName, String keyColumn, int count) throws SQLException {
+        Object[] bounds = new Object[2];
+        dbService.executeSqlCommand("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + tableName, new ISqlResultHandler() {
+            @Override
+            public void handleResultSet(ResultSet rs) throws SQLException {
+                if (rs.next()) {
+                    bounds[0] = rs.getObject(1);
+                    bounds[1] = rs.getObject(2);
+                }
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+            }
+
+            @Override
+            public void handleMessage(String message) {
+            }
+        });
+
+        Long min = integralValue(bounds[0]);
+        Long max = integralValue(bounds[1]);
+        if (min == null || max == null)
+            return null;
+
+        long step;
+        try {
+            step = Math.subtractExact(max, min) / count;
+        }
+        catch (ArithmeticException e) {
+            return null;
+        }
+        if (step == 0)
+            return null;
+
+        List<Object> splits = new ArrayList<>();
+        for (int i = 1; i < count; i++)
+            splits.add(min + step * i);
+        return toRanges(keyColumn, splits);
+    }
+
+    // Range filters on _id only match values of the split points' BSON type, so the first range takes everything
+    // below the first split point and every _id of another type.
+    private List<KeyRange> planDocumentRanges(String collectionName, String keyColumn, int count) throws SQLException {
+        List<Map<String, Object>> sample = ((IDocumentDatabaseService) dbService).aggregate(collectionName, Arrays.asList(
+                Aggregates.sample(count * SAMPLES_PER_RANGE),
+                Aggregates.project(Projections.include(keyColumn)),
+                Aggregates.sort(Sorts.ascending(keyColumn))));
+        if (sample.size() < count)
+            return null;
+
+        Object kind = null;
+        for (Map<String, Object> document : sample) {
+            Object id = document.get(keyColumn);
+            Object idKind = id instanceof Number ? Number.class : id == null ? null : id.getClass();
+            if (idKind == null || (kind != null && kind != idKind))
+                return null;
+            kind = idKind;
+        }
+
+        List<Object> splits = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            Object split = sample.get(i * sample.size() / count).get(keyColumn);
+            if (splits.isEmpty() || !splits.get(splits.size() - 1).equals(split))
+                splits.add(split);
+        }
+        return splits.isEmpty() ? null : toRanges(keyColumn, splits);
+    }
+
+    private static List<KeyRange> toRanges(String keyColumn, List<Object> splits) {
+        List<KeyRange> ranges = new ArrayList<>();
+        Object lower = null;
+        for (Object split : splits) {
+            ranges.add(new KeyRange(ranges.size(), keyColumn, lower, split));
+            lower = split;
+        }
+        ranges.add(new KeyRange(ranges.size(), keyColumn, lower, null));
+        return ranges;
+    }
+
+    private static Long integralValue(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return ((Number) value).longValue();
+
+        try {
+            if (value instanceof BigInteger)
+                return ((BigInteger) value).longValueExact();
+            if (value instanceof BigDecimal)
+                return ((BigDecimal) value).longValueExact();
+        }
+        catch (ArithmeticException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private void runConcurrently(ScanRun run, String tableName, List<KeyRange> ranges, SqlConsumer<ScanChunk> consumer) throws SQLException {
+        ExecutorService executor = startRanges(run, tableName, ranges, false,
+                range -> chunk -> run.deliver(consumer, chunk), range -> {});
+        try {
+            executor.shutdown();
+            while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS))
+                if (run.failure != null)
+                    break;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(new SQLException("Scan cancelled."));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // An ordered merge gives every range its own small queue and drains them in key order; an unordered one shares a
+    // single queue between all ranges.
+    private void runMerged(ScanRun run, String tableName, List<KeyRange> ranges, boolean ordered, SqlConsumer<ScanChunk> consumer) {
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        BlockingQueue<Object> shared = new ArrayBlockingQueue<>(ranges.size() * 2);
+        for (int i = 0; i < ranges.size(); i++)
+            queues.add(ordered ? new ArrayBlockingQueue<>(ORDERED_READ_AHEAD) : shared);
+
+        ExecutorService executor = startRanges(run, tableName, ranges, ordered, range -> chunk -> {
+            if (!run.put(queues.get(range.getIndex()), chunk))
+                throw new SQLException("Scan stopped.");
+        }, range -> run.put(queues.get(range.getIndex()), RANGE_END));
+
+        try {
+            int finished = 0;
+            while (finished < ranges.size() && run.failure == null) {
+                Object item = queues.get(ordered ? finished : 0).poll(100, TimeUnit.MILLISECONDS);
+                if (item == RANGE_END)
+                    finished++;
+                else if (item != null)
+                    run.deliver(consumer, (ScanChunk) item);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(new SQLException("Scan cancelled."));
+        }
+        catch (SQLException | RuntimeException e) {
+            run.fail(e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService startRanges(ScanRun run, String tableName, List<KeyRange> ranges, boolean ordered,
+                                        Function<KeyRange, SqlConsumer<ScanChunk>> sinks, Consumer<KeyRange> onEnd) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(ranges.size(), runnable -> {
+            Thread thread = new Thread(runnable, "scan-range-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (KeyRange range : ranges)
+            executor.execute(() -> {
+                try {
+                    scanRange(run, tableName, range, ordered, sinks.apply(range));
+                    onEnd.accept(range);
+                }
+                catch (SQLException | RuntimeException e) {
+                    run.fail(e);
+                }
+            });
+        return executor;
+    }
+
+    private void scanRange(ScanRun run, String tableName, KeyRange range, boolean ordered, SqlConsumer<ScanChunk> sink) throws SQLException {
+        if (documentStore)
+            scanDocuments(run, tableName, range, sink);
+        else
+            scanRows(run, tableName, range, ordered, sink);
+    }
+
+    private void scanRows(ScanRun run, String tableName, KeyRange range, boolean ordered, SqlConsumer<ScanChunk> sink) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName);
+        String key = range.getKeyColumn();
+        if (range.getLower() != null && range.getUpper() != null)
+            sql.append(" WHERE ").append(key).append(" >= ").append(range.getLower()).append(" AND ").append(key).append(" < ").append(range.getUpper());
+        else if (range.getLower() != null)
+            sql.append(" WHERE ").append(key).append(" >= ").append(range.getLower());
+        else if (range.getUpper() != null)
+            sql.append(" WHERE ").append(key).append(" < ").append(range.getUpper());
+        if (ordered && key != null)
+            sql.append(" ORDER BY ").append(String.join(", ", dbService.getPrimaryKeyColumns(tableName)));
+
+        // The handler cannot throw, so a failing sink fails the run, which cancels the statement through its token.
+        dbService.executeSqlCommand(sql.toString(), new IStreamingSqlResultHandler() {
+            @Override
+            public void handleColumns(LinkedHashMap<String, String> columnTypes) {
+                accept(ScanChunk.columns(range, columnTypes));
+            }
+
+            @Override
+            public void handleRows(QueryResult chunk) {
+                accept(ScanChunk.rows(range, chunk));
+            }
+
+            private void accept(ScanChunk chunk) {
+                if (run.failure != null)
+                    return;
+                try {
+                    sink.accept(chunk);
+                }
+                catch (SQLException | RuntimeException e) {
+                    run.fail(e);
+                }
+            }
+
+            @Override
+            public void handleEnd(long totalRows, boolean cancelled) {
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+            }
+
+            @Override
+            public void handleMessage(String message) {
+            }
+        }, fetchSize, fetchSize, run.newToken());
+    }
+
+    private void scanDocuments(ScanRun run, String collectionName, KeyRange range, SqlConsumer<ScanChunk> sink) throws SQLException {
+        String key = range.getKeyColumn();
+        Bson filter;
+        if (range.getLower() != null && range.getUpper() != null)
+            filter = Filters.and(Filters.gte(key, range.getLower()), Filters.lt(key, range.getUpper()));
+        else if (range.getLower() != null)
+            filter = Filters.gte(key, range.getLower());
+        else if (range.getUpper() != null)
+            filter = Filters.not(Filters.gte(key, range.getUpper()));
+        else
+            filter = new Document();
+
+        List<Map<String, Object>> batch = new ArrayList<>(fetchSize);
+        ((IDocumentDatabaseService) dbService).forEachDocument(collectionName, filter, fetchSize, document -> {
+            if (run.failure != null)
+                throw new SQLException("Scan stopped.");
+            batch.add(document);
+            if (batch.size() >= fetchSize) {
+                sink.accept(ScanChunk.documents(range, new ArrayList<>(batch)));
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty())
+            sink.accept(ScanChunk.documents(range, batch));
+    }
+
+    // State shared by the ranges and the consumer of one scan.
+    private static final class ScanRun {
+        private final List<SqlCancellationToken> tokens = new CopyOnWriteArrayList<>();
+        private final AtomicLong rows = new AtomicLong();
+        private volatile Exception failure;
+
+        private SqlCancellationToken newToken() {
+            SqlCancellationToken token = new SqlCancellationToken();
+            tokens.add(token);
+            if (failure != null)
+                token.cancel();
+            return token;
+        }
+
+        // The first failure wins; it stops every range.
+        private void fail(Exception e) {
+            synchronized (this) {
+                if (failure != null)
+                    return;
+                failure = e;
+            }
+            for (SqlCancellationToken token : tokens)
+                token.cancel();
+        }
+
+        private void deliver(SqlConsumer<ScanChunk> consumer, ScanChunk chunk) throws SQLException {
+            if (failure != null)
+                throw new SQLException("Scan stopped.");
+            consumer.accept(chunk);
+            rows.addAndGet(chunk.getRowCount());
+        }
+
+        // Waits while the consumer is behind; false once the scan has failed or been cancelled.
+        private boolean put(BlockingQueue<Object> queue, Object item) {
+            try {
+                while (failure == null)
+                    if (queue.offer(item, 100, TimeUnit.MILLISECONDS))
+                        return true;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new SQLException("Scan cancelled."));
+            }
+            return false;
+        }
+
+        private void throwIfFailed() throws SQLException {
+            if (failure instanceof SQLException)
+                throw (SQLException) failure;
+            if (failure != null)
+                throw new SQLException("Scan failed: " + failure.getMessage(), failure);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package gmail.vladimir.managers;
 
+import gmail.vladimir.db.AbstractRelationalDatabaseService;
 import gmail.vladimir.db.DatabaseType;
+import gmail.vladimir.db.implementation.ReactiveMongoDBDatabaseService;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -49,24 +51,74 @@ public class ConnectionManager {
                 String password = inputValues.get("password");
                 String extraParams = inputValues.get("extraParams");
 
-                String jdbcUrl = buildJdbcUrl(dbType, host, port, dbName, extraParams);
+                String jdbcUrl = enableBatchRewrites(dbType, buildJdbcUrl(dbType, host, port, dbName, extraParams));
                 connectionParams.put("jdbcUrl", jdbcUrl);
                 connectionParams.put("username", username);
                 connectionParams.put("password", password);
+                copyPoolParams(inputValues, connectionParams);
+                copyMetadataParams(inputValues, connectionParams);
+                copyKeyParams(inputValues, connectionParams);
                 break;
             case SQLITE:
                 String dbFilePath = inputValues.get("dbFilePath");
                 connectionParams.put("dbFilePath", dbFilePath);
+                copyMetadataParams(inputValues, connectionParams);
                 break;
             case MONGODB:
                 String uri = inputValues.get("uri");
                 String mongoDbName = inputValues.get("dbName");
                 connectionParams.put("uri", uri);
                 connectionParams.put("dbName", mongoDbName);
+                if (inputValues.containsKey(ReactiveMongoDBDatabaseService.DRIVER))
+                    connectionParams.put(ReactiveMongoDBDatabaseService.DRIVER, inputValues.get(ReactiveMongoDBDatabaseService.DRIVER));
                 break;
             default:
                 throw new IllegalArgumentException("Unsupported database type: " + dbType);
         }
         return connectionParams;
     }
-}
\ No newline at end of file
+
+    // Lets the driver collapse batched statements into multi-row statements, unless the user already set the option.
+    public String enableBatchRewrites(DatabaseType dbType, String url) {
+        String param;
+        switch (dbType) {
+            case MYSQL:
+            case MARIADB:
+                param = "rewriteBatchedStatements";
+                break;
+            case POSTGRESQL:
+                param = "reWriteBatchedInserts";
+                break;
+            default:
+                return url;
+        }
+
+        if (url.contains(param + "="))
+            return url;
+
+        return url + (url.contains("?") ? "&" : "?") + param + "=true";
+    }
+
+    private void copyPoolParams(Map<String, String> inputValues, Map<String, String> connectionParams) {
+        // Checked when connecting, so an invalid value is reported like any other connection error.
+        String poolSize = inputValues.get("poolSize");
+        if (poolSize != null && !poolSize.trim().isEmpty())
+            connectionParams.put(AbstractRelationalDatabaseService.POOL_SIZE, poolSize.trim());
+
+        for (Map.Entry<String, String> entry : inputValues.entrySet())
+            if (entry.getKey().startsWith("pool."))
+                connectionParams.put(entry.getKey(), entry.getValue());
+    }
+
+    private void copyMetadataParams(Map<String, String> inputValues, Map<String, String> connectionParams) {
+        for (Map.Entry<String, String> entry : inputValues.entrySet())
+            if (entry.getKey().startsWith("metadata."))
+                connectionParams.put(entry.getKey(), entry.getValue());
+    }
+
+    private void copyKeyParams(Map<String, String> inputValues, Map<String, String> connectionParams) {
+        for (Map.Entry<String, String> entry : inputValues.entrySet())
+            if (entry.getKey().startsWith("keys."))
+                connectionParams.put(entry.getKey(), entry.getValue());
+    }
+}
@@ -0,0 +1,82 @@
+package gmail.vladimir.managers;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Field names and field combinations used in a collection, with the number of documents using each one, so that
+// single-document writes can keep the sort/filter options current without re-reading the collection.
+// Written from database workers and change streams and read on the EDT, hence the locking and copying getters.
+public class MongoFieldIndex {
+    private static final String ID_FIELD = "_id";
+
+    private final Map<String, Long> fieldCounts = new TreeMap<>();
+    private final Map<String, Long> combinationCounts = new TreeMap<>();
+    private final boolean sampled;
+
+    // A sampled index counts documents of a random sample, so rare fields may be missing until a write adds them.
+    public MongoFieldIndex(boolean sampled) {
+        this.sampled = sampled;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public void add(Map<String, Object> document) {
+        if (document != null)
+            adjust(document.keySet(), 1);
+    }
+
+    public void remove(Map<String, Object> document) {
+        if (document != null)
+            adjust(document.keySet(), -1);
+    }
+
+    public synchronized void replace(Map<String, Object> oldDocument, Map<String, Object> newDocument) {
+        remove(oldDocument);
+        add(newDocument);
+    }
+
+    // count documents whose fields are exactly the given keys, as returned by the summary aggregation.
+    public void add(Collection<String> keys, long count) {
+        adjust(keys, count);
+    }
+
+    public synchronized Set<String> getFields() {
+        return new TreeSet<>(fieldCounts.keySet());
+    }
+
+    public synchronized Set<String> getCombinations() {
+        return new TreeSet<>(combinationCounts.keySet());
+    }
+
+    public synchronized long getFieldCount(String field) {
+        return fieldCounts.getOrDefault(field, 0L);
+    }
+
+    public synchronized long getCombinationCount(String combination) {
+        return combinationCounts.getOrDefault(combination, 0L);
+    }
+
+    // Sorted field names other than _id, joined the way the "Fields: " options show them.
+    public static String combinationOf(Collection<String> fields) {
+        return fields.stream()
+                .filter(field -> !field.equals(ID_FIELD))
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private synchronized void adjust(Collection<String> keys, long delta) {
+        for (String field : keys)
+            if (!field.equals(ID_FIELD))
+                merge(fieldCounts, field, delta);
+        merge(combinationCounts, combinationOf(keys), delta);
+    }
+
+    // Entries are dropped once no document uses them any more.
+    private static void merge(Map<String, Long> counts, String key, long delta) {
+        Long count = counts.merge(key, delta, Long::sum);
+        if (count != null && count <= 0)
+            counts.remove(key);
+    }
+}
@@ -1,118 +1,378 @@
 package gmail.vladimir.managers;
 
-import gmail.vladimir.db.IDatabaseService;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import gmail.vladimir.db.BulkWriteProgressListener;
+import gmail.vladimir.db.DocumentBulkWriter;
+import gmail.vladimir.db.DocumentChange;
+import gmail.vladimir.db.IDocumentDatabaseService;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
+import gmail.vladimir.db.SqlRunnable;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.bson.conversions.Bson;
 
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class MongoTableManager {
-    private final IDatabaseService dbService;
+    public static final int DEFAULT_BULK_BATCH_SIZE = 1000;
+    // Above this many documents the field index is built from a random sample of FIELD_INDEX_SAMPLE_SIZE documents.
+    public static final long FIELD_INDEX_SAMPLE_THRESHOLD = 100_000;
+    public static final int FIELD_INDEX_SAMPLE_SIZE = 10_000;
+    public static final int TEMPLATE_ENTRY_LIMIT = 100;
+
+    private final IDocumentDatabaseService dbService;
     private final String tableName;
     private final String primaryKeyColumn = "_id";
+    private int bulkBatchSize = DEFAULT_BULK_BATCH_SIZE;
+    // Documents per round trip when reading pages; 0 reads a page in one.
+    private int readBatchSize;
+    private volatile MongoFieldIndex fieldIndex;
+    // Ids written through this manager while a change stream is open, so their events are not applied twice.
+    private final Set<Object> localWrites = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean watching;
 
-    public MongoTableManager(IDatabaseService dbService, String tableName) {
+    public MongoTableManager(IDocumentDatabaseService dbService, String tableName) {
         this.dbService = dbService;
         this.tableName = tableName;
     }
 
-    public List<Map<String, Object>> getSortedData(String selectedSort) throws SQLException {
-        List<Map<String, Object>> tableData = dbService.getTableData(tableName, Integer.MAX_VALUE, 0);
-
-        if (selectedSort != null && !"ALL".equals(selectedSort)) {
-            if (selectedSort.startsWith("Field: ")) {
-                String fieldToSort = selectedSort.substring("Field: ".length());
-                tableData = tableData.stream()
-                        .filter(row -> row.containsKey(fieldToSort))
-                        .sorted(Comparator.comparing(row -> {
-                            Object val = row.get(fieldToSort);
-                            return val != null ? val.toString() : "";
-                        }))
-                        .collect(Collectors.toList());
-            } else if (selectedSort.startsWith("Fields: ")) {
-                String fieldsCombination = selectedSort.substring("Fields: ".length());
-                Set<String> fieldsSet = new HashSet<>(Arrays.asList(fieldsCombination.split(", ")));
-                tableData = tableData.stream()
-                        .filter(row -> {
-                            Set<String> rowFields = row.keySet().stream()
-                                    .filter(field -> !field.equals(primaryKeyColumn))
-                                    .collect(Collectors.toSet());
-                            return rowFields.equals(fieldsSet);
-                        })
-                        .collect(Collectors.toList());
-            }
+    // "Field: x" keeps documents that have x, ordered by it; "Fields: a, b" keeps documents whose fields are exactly a and b.
+    // Pages ordered by _id alone continue from the cursor of a neighbouring page. "Field: x" pages skip from the start:
+    // x can hold values of different BSON types, and a range filter on it would only match values of the cursor's type.
+    public KeysetPage getSortedPage(String selectedSort, KeysetCursor cursor, int limit, int offset) throws SQLException {
+        List<String> sortFields = buildSortFields(selectedSort);
+        boolean ranged = sortFields.size() == 1;
+        KeysetPage page = dbService.findDocumentPage(tableName, buildFilter(selectedSort), sortFields, ranged ? cursor : null,
+                buildProjection(selectedSort), limit, offset, readBatchSize);
+        return ranged ? page : new KeysetPage(page.getData(), null, null);
+    }
+
+    // Whether getSortedPage leaves out fields of the documents it returns; see getDocument.
+    public boolean returnsPartialDocuments(String selectedSort) {
+        return selectedSort != null && selectedSort.startsWith("Field: ");
+    }
+
+    public Map<String, Object> getDocument(Object primaryKeyValue) throws SQLException {
+        List<Map<String, Object>> documents = dbService.findDocuments(tableName, Filters.eq(primaryKeyColumn, primaryKeyValue), null, 1, 0);
+        if (documents.isEmpty())
+            throw new SQLException("The document no longer exists.");
+        return documents.get(0);
+    }
+
+    public int getReadBatchSize() {
+        return readBatchSize;
+    }
+
+    public void setReadBatchSize(int readBatchSize) {
+        this.readBatchSize = Math.max(0, readBatchSize);
+    }
+
+    public long getSortedCount(String selectedSort) throws SQLException {
+        return dbService.countDocuments(tableName, buildFilter(selectedSort));
+    }
+
+    // Count without scanning: collection metadata for ALL, the field index for field options; -1 when neither applies.
+    public long estimateSortedCount(String selectedSort) throws SQLException {
+        if (selectedSort == null || "ALL".equals(selectedSort))
+            return dbService.estimatedDocumentCount(tableName);
+
+        MongoFieldIndex index = fieldIndex;
+        if (index == null || index.isSampled())
+            return -1;
+        if (selectedSort.startsWith("Field: "))
+            return index.getFieldCount(selectedSort.substring("Field: ".length()));
+        if (selectedSort.startsWith("Fields: "))
+            return index.getCombinationCount(selectedSort.substring("Fields: ".length()));
+        return -1;
+    }
+
+    private Bson buildFilter(String selectedSort) {
+        if (selectedSort == null || "ALL".equals(selectedSort))
+            return new Document();
+
+        if (selectedSort.startsWith("Field: "))
+            return Filters.exists(selectedSort.substring("Field: ".length()));
+
+        if (selectedSort.startsWith("Fields: ")) {
+            List<String> fields = new ArrayList<>();
+            for (String field : selectedSort.substring("Fields: ".length()).split(", "))
+                if (!field.isEmpty())
+                    fields.add(field);
+
+            Document properties = new Document(primaryKeyColumn, new Document());
+            for (String field : fields)
+                properties.append(field, new Document());
+
+            Document schema = new Document("bsonType", "object")
+                    .append("properties", properties)
+                    .append("additionalProperties", false);
+            if (!fields.isEmpty())
+                schema.append("required", fields);
+            return Filters.jsonSchema(schema);
         }
 
-        return tableData;
+        return new Document();
+    }
+
+    // Evaluates the selection's filter locally, so a document written from this view can be placed without a query.
+    public boolean matchesSelection(String selectedSort, Map<String, Object> document) {
+        if (selectedSort == null || "ALL".equals(selectedSort))
+            return true;
+
+        if (selectedSort.startsWith("Field: "))
+            return document.containsKey(selectedSort.substring("Field: ".length()));
+
+        if (selectedSort.startsWith("Fields: "))
+            return MongoFieldIndex.combinationOf(document.keySet()).equals(selectedSort.substring("Fields: ".length()));
+
+        return true;
+    }
+
+    // _id breaks ties so that consecutive pages never overlap or skip documents.
+    private List<String> buildSortFields(String selectedSort) {
+        if (selectedSort != null && selectedSort.startsWith("Field: "))
+            return Arrays.asList(selectedSort.substring("Field: ".length()), primaryKeyColumn);
+        return Collections.singletonList(primaryKeyColumn);
+    }
+
+    // The view only shows the selected fields, so only those (and _id) are transferred. "Fields: a, b" documents have
+    // no other fields, so only "Field: x" pages actually get smaller.
+    private List<String> buildProjection(String selectedSort) {
+        if (selectedSort == null || "ALL".equals(selectedSort))
+            return null;
+
+        List<String> fields = new ArrayList<>();
+        fields.add(primaryKeyColumn);
+        if (selectedSort.startsWith("Field: ")) {
+            fields.add(selectedSort.substring("Field: ".length()));
+            return fields;
+        }
+
+        if (selectedSort.startsWith("Fields: ")) {
+            for (String field : selectedSort.substring("Fields: ".length()).split(", "))
+                if (!field.isEmpty())
+                    fields.add(field);
+            return fields;
+        }
+
+        return null;
+    }
+
+    // Null until refreshFieldIndex has run; afterwards it is kept current by the writes made through this manager.
+    public MongoFieldIndex getFieldIndex() {
+        return fieldIndex;
+    }
+
+    // Groups documents by their key list on the server, so only one row per distinct key list reaches the client.
+    // The same list in a different key order is a separate group and is merged by the index.
+    public MongoFieldIndex refreshFieldIndex() throws SQLException {
+        boolean sampled = dbService.estimatedDocumentCount(tableName) > FIELD_INDEX_SAMPLE_THRESHOLD;
+        List<Bson> pipeline = new ArrayList<>();
+        if (sampled)
+            pipeline.add(Aggregates.sample(FIELD_INDEX_SAMPLE_SIZE));
+        Document keys = new Document("$map", new Document("input", new Document("$objectToArray", "$$ROOT")).append("in", "$$this.k"));
+        pipeline.add(Aggregates.project(Projections.computed("keys", keys)));
+        pipeline.add(Aggregates.group("$keys", Accumulators.sum("count", 1)));
+
+        MongoFieldIndex index = new MongoFieldIndex(sampled);
+        for (Map<String, Object> group : dbService.aggregate(tableName, pipeline)) {
+            List<String> names = new ArrayList<>();
+            for (Object name : (List<?>) group.get("_id"))
+                names.add(String.valueOf(name));
+            index.add(names, ((Number) group.get("count")).longValue());
+        }
+        fieldIndex = index;
+        return index;
+    }
+
+    // Keeps the field index current with writes from other clients. Inserts carry the whole document and are applied
+    // directly; updates and deletes do not say which fields the document had before, so onChange is told the index
+    // is stale and decides when to refresh it. Needs a replica set or sharded cluster.
+    public AutoCloseable watchFieldIndex(Consumer<Boolean> onChange) throws SQLException {
+        AutoCloseable stream = dbService.watch(tableName, change -> {
+            if (localWrites.remove(change.getDocumentId()))
+                return;
+
+            MongoFieldIndex index = fieldIndex;
+            if (index == null)
+                return;
+
+            if (change.getType() == DocumentChange.Type.INSERT && change.getDocument() != null) {
+                index.add(change.getDocument());
+                onChange.accept(false);
+            }
+            else
+                onChange.accept(true);
+        });
+        watching = true;
+        return () -> {
+            watching = false;
+            localWrites.clear();
+            stream.close();
+        };
     }
 
     public Set<String> getAllFieldNames() throws SQLException {
-        List<Map<String, Object>> tableData = dbService.getTableData(tableName, Integer.MAX_VALUE, 0);
+        MongoFieldIndex index = fieldIndex != null ? fieldIndex : refreshFieldIndex();
         Set<String> allFields = new LinkedHashSet<>();
-        for (Map<String, Object> row : tableData) {
-            allFields.addAll(row.keySet());
-        }
+        allFields.add(primaryKeyColumn);
+        allFields.addAll(index.getFields());
         return allFields;
     }
 
-    public void deleteEntry(Object primaryKeyValue) throws SQLException {
-        dbService.deleteData(tableName, primaryKeyColumn, primaryKeyValue);
+    public void deleteEntry(Map<String, Object> document) throws SQLException {
+        Object primaryKeyValue = document.get(primaryKeyColumn);
+        writeLocally(primaryKeyValue, () -> dbService.deleteData(tableName, primaryKeyColumn, primaryKeyValue));
+        MongoFieldIndex index = fieldIndex;
+        if (index != null)
+            index.remove(document);
     }
 
-    public void saveEntry(Map<String, Object> entryData, Map<String, Object> existingData) throws SQLException {
+    private void writeLocally(Object primaryKeyValue, SqlRunnable write) throws SQLException {
+        if (watching)
+            localWrites.add(primaryKeyValue);
+        try {
+            write.run();
+        }
+        catch (SQLException e) {
+            localWrites.remove(primaryKeyValue);
+            throw e;
+        }
+    }
+
+    // Returns the document as stored: new documents get their _id here, updates are $set on top of the existing fields.
+    public Map<String, Object> saveEntry(Map<String, Object> entryData, Map<String, Object> existingData) throws SQLException {
+        Map<String, Object> saved = new LinkedHashMap<>();
         if (existingData == null) {
-            dbService.insertData(tableName, entryData);
+            saved.put(primaryKeyColumn, new ObjectId());
+            saved.putAll(entryData);
+            writeLocally(saved.get(primaryKeyColumn), () -> dbService.insertData(tableName, saved));
         } else {
-            dbService.updateData(tableName, entryData, primaryKeyColumn, existingData.get(primaryKeyColumn));
+            Object primaryKeyValue = existingData.get(primaryKeyColumn);
+            writeLocally(primaryKeyValue, () -> dbService.updateData(tableName, entryData, primaryKeyColumn, primaryKeyValue));
+            saved.putAll(existingData);
+            saved.putAll(entryData);
         }
+
+        MongoFieldIndex index = fieldIndex;
+        if (index != null)
+            index.replace(existingData, saved);
+        return saved;
     }
 
-    public List<Map<String, Object>> getTableData() throws SQLException {
-        return dbService.getTableData(tableName, Integer.MAX_VALUE, 0);
+    // The first documents in _id order, enough to pick a template entry from without reading the whole collection.
+    public List<Map<String, Object>> getFirstEntries(int limit) throws SQLException {
+        return dbService.findDocuments(tableName, new Document(), new Document(primaryKeyColumn, 1), limit, 0);
     }
 
-    public void massDeleteEntries(String selectedField, String condition) throws SQLException {
-        List<Map<String, Object>> tableData = getTableData();
+    public int getBulkBatchSize() {
+        return bulkBatchSize;
+    }
 
-        for (Map<String, Object> row : tableData) {
-            if (selectedField == null || "ALL".equals(selectedField) || row.containsKey(selectedField)) {
-                if (condition.isEmpty() || (row.get(selectedField) != null && row.get(selectedField).toString().equals(condition))) {
-                    deleteEntry(row.get(primaryKeyColumn));
-                }
-            }
-        }
+    public void setBulkBatchSize(int bulkBatchSize) {
+        this.bulkBatchSize = Math.max(1, bulkBatchSize);
     }
 
-    public void massAddField(String newFieldName, String prefillValue) throws SQLException {
-        List<Map<String, Object>> tableData = getTableData();
+    // An empty condition removes every document that has the field (or every document for ALL).
+    // A condition only applies to a chosen field; with ALL it removes nothing.
+    public long massDeleteEntries(String selectedField, String condition) throws SQLException {
+        Bson filter = massDeleteFilter(selectedField, condition);
+        return filter == null ? 0 : dbService.deleteMany(tableName, filter);
+    }
 
-        for (Map<String, Object> row : tableData) {
-            if (!row.containsKey(newFieldName)) {
-                row.put(newFieldName, prefillValue);
-                dbService.updateData(tableName, row, primaryKeyColumn, row.get(primaryKeyColumn));
-            }
-        }
+    // How many documents massDeleteEntries would remove, counted with the same filter.
+    public long countMassDelete(String selectedField, String condition) throws SQLException {
+        Bson filter = massDeleteFilter(selectedField, condition);
+        return filter == null ? 0 : dbService.countDocuments(tableName, filter);
     }
 
-    public void massModifyField(String selectedField, String newValue, boolean onlyIfEmpty) throws SQLException {
-        List<Map<String, Object>> tableData = getTableData();
+    private Bson massDeleteFilter(String selectedField, String condition) throws SQLException {
+        boolean allFields = selectedField == null || "ALL".equals(selectedField);
+        if (condition.isEmpty())
+            return allFields ? new Document() : Filters.exists(selectedField);
+        if (allFields)
+            return null;
+        return Filters.eq(selectedField, parseCondition(selectedField, condition));
+    }
 
-        for (Map<String, Object> row : tableData) {
-            if (selectedField == null || "ALL".equals(selectedField)) {
-                for (String field : row.keySet()) {
-                    if (field.equals(primaryKeyColumn)) continue;
-                    if (onlyIfEmpty && row.get(field) != null && !row.get(field).toString().isEmpty())
-                        continue;
-                    row.put(field, newValue);
+    // Reads the condition as the type the field holds in a sample document, so it is compared as a BSON value.
+    // Numbers match across int, long and double; text that does not parse as the sampled type is compared as a string.
+    private Object parseCondition(String field, String condition) throws SQLException {
+        List<Map<String, Object>> sample = dbService.findDocuments(tableName, Filters.ne(field, null), null, 1, 0);
+        Object example = sample.isEmpty() ? null : sample.get(0).get(field);
+
+        if (example instanceof Number) {
+            try {
+                return Long.parseLong(condition);
+            }
+            catch (NumberFormatException e) {
+                try {
+                    return Double.parseDouble(condition);
                 }
-            } else {
-                if (row.containsKey(selectedField)) {
-                    if (onlyIfEmpty && row.get(selectedField) != null && !row.get(selectedField).toString().isEmpty())
-                        continue;
-                    row.put(selectedField, newValue);
+                catch (NumberFormatException ignored) {
+                    return condition;
                 }
             }
-            dbService.updateData(tableName, row, primaryKeyColumn, row.get(primaryKeyColumn));
         }
+        if (example instanceof Boolean && ("true".equalsIgnoreCase(condition) || "false".equalsIgnoreCase(condition)))
+            return Boolean.parseBoolean(condition);
+        if (example instanceof ObjectId && ObjectId.isValid(condition))
+            return new ObjectId(condition);
+        return condition;
+    }
+
+    public long massAddField(String newFieldName, String prefillValue) throws SQLException {
+        return dbService.updateMany(tableName, Filters.exists(newFieldName, false), Updates.set(newFieldName, prefillValue));
+    }
+
+    public long massModifyField(String selectedField, String newValue, boolean onlyIfEmpty, BulkWriteProgressListener progressListener) throws SQLException {
+        if (selectedField != null && !"ALL".equals(selectedField)) {
+            Bson filter = Filters.exists(selectedField);
+            if (onlyIfEmpty)
+                filter = Filters.and(filter, Filters.or(Filters.eq(selectedField, null), Filters.eq(selectedField, "")));
+            return dbService.updateMany(tableName, filter, Updates.set(selectedField, newValue));
+        }
+
+        // Every document has its own set of fields, so each one gets its own $set, written in bulk batches.
+        Bson filter = onlyIfEmpty ? anyFieldMatches(isEmpty("$$this.v")) : new Document();
+        long expectedTotal = dbService.countDocuments(tableName, filter);
+        DocumentBulkWriter writer = new DocumentBulkWriter(dbService, tableName, bulkBatchSize, false, expectedTotal, progressListener);
+
+        dbService.forEachDocument(tableName, filter, bulkBatchSize, row -> {
+            Document changes = new Document();
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                if (entry.getKey().equals(primaryKeyColumn))
+                    continue;
+                Object value = entry.getValue();
+                if (onlyIfEmpty && value != null && !value.toString().isEmpty())
+                    continue;
+                changes.append(entry.getKey(), newValue);
+            }
+
+            if (!changes.isEmpty())
+                writer.add(new UpdateOneModel<>(Filters.eq(primaryKeyColumn, row.get(primaryKeyColumn)), new Document("$set", changes)));
+        });
+        writer.flush();
+        return writer.getAffected();
+    }
+
+    private static Document isEmpty(String expression) {
+        return new Document("$in", Arrays.asList(expression, Arrays.asList(null, "")));
+    }
+
+    // Matches documents where the predicate holds for at least one field other than _id; $$this is the {k, v} pair.
+    private Bson anyFieldMatches(Document predicate) {
+        Document notId = new Document("$ne", Arrays.asList("$$this.k", primaryKeyColumn));
+        Document perField = new Document("$map", new Document("input", new Document("$objectToArray", "$$ROOT"))
+                .append("in", new Document("$and", Arrays.asList(notId, predicate))));
+        return Filters.expr(new Document("$anyElementTrue", Collections.singletonList(perField)));
     }
 }
\ No newline at end of file
@@ -1,20 +1,36 @@
 package gmail.vladimir.managers;
 
+import gmail.vladimir.db.ChangeSetResult;
 import gmail.vladimir.db.IDatabaseService;
 import gmail.vladimir.db.ISqlResultHandler;
+import gmail.vladimir.db.IStreamingSqlResultHandler;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
 import gmail.vladimir.db.QueryResult;
+import gmail.vladimir.db.RowChange;
+import gmail.vladimir.db.RowCount;
+import gmail.vladimir.db.SqlCancellationToken;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
 public class RelationalTableManager {
+    public static final int FLUSH_BATCH_SIZE = 500;
+
     private final IDatabaseService dbService;
     private final String tableName;
     private final String primaryKeyColumn;
-    private Map<String, String> tableSchema;
+    private final List<String> keyColumns;
+    private volatile Map<String, String> tableSchema;
     private final Set<String> numericDataTypes;
 
+    // With a unit of work, edits and deletes are staged here by primary key value and written in one transaction by
+    // flushPendingChanges; inserts still go straight to the database because they need the generated key.
+    private volatile boolean unitOfWork;
+    private final Map<Object, RowChange> pendingChanges = new LinkedHashMap<>();
+    private final Map<Object, String> pendingErrors = new LinkedHashMap<>();
+
     public RelationalTableManager(IDatabaseService dbService, String tableName) throws SQLException {
         this.dbService = dbService;
         this.tableName = tableName;
@@ -23,6 +39,7 @@ public class RelationalTableManager {
             this.tableSchema = Collections.emptyMap();
         }
         this.primaryKeyColumn = dbService.getPrimaryKeyColumn(tableName);
+        this.keyColumns = primaryKeyColumn == null ? Collections.emptyList() : dbService.getPrimaryKeyColumns(tableName);
         this.numericDataTypes = new HashSet<>(Arrays.asList(
                 "INT", "INTEGER", "SMALLINT", "BIGINT", "DOUBLE", "FLOAT",
                 "REAL", "DECIMAL", "NUMERIC"
@@ -33,6 +50,13 @@ public class RelationalTableManager {
         return tableSchema;
     }
 
+    // Picks up columns changed through the console; served from the service's metadata cache while it is fresh.
+    public Map<String, String> refreshTableSchema() throws SQLException {
+        Map<String, String> schema = dbService.getTableSchema(tableName);
+        tableSchema = schema == null ? Collections.emptyMap() : schema;
+        return tableSchema;
+    }
+
     public String getPrimaryKeyColumn() {
         return primaryKeyColumn;
     }
@@ -45,30 +69,122 @@ public class RelationalTableManager {
         return dbService.getTableEntryCount(tableName);
     }
 
+    public RowCount estimateTotalEntries() throws SQLException {
+        return dbService.estimateTableEntryCount(tableName);
+    }
+
+    public void invalidateCachedData() {
+        dbService.invalidateCachedData(tableName);
+    }
+
     public List<Map<String, Object>> getTableData(int entriesPerPage, int offset) throws SQLException {
         return dbService.getTableData(tableName, entriesPerPage, offset);
     }
 
+    public boolean isKeysetPagingAvailable() {
+        return !keyColumns.isEmpty();
+    }
+
+    // Seeks from the cursor when the table has a primary key; tables without one fall back to LIMIT/OFFSET.
+    public KeysetPage getPage(KeysetCursor cursor, int entriesPerPage, int offset) throws SQLException {
+        if (isKeysetPagingAvailable())
+            return dbService.getTableDataPage(tableName, keyColumns, cursor, entriesPerPage, offset);
+
+        return new KeysetPage(dbService.getTableData(tableName, entriesPerPage, offset), null, null);
+    }
+
     public void deleteEntry(Object primaryKeyValue) throws SQLException {
-        dbService.deleteData(tableName, primaryKeyColumn, primaryKeyValue);
+        if (unitOfWork)
+            stage(RowChange.delete(primaryKeyValue));
+        else
+            dbService.deleteData(tableName, primaryKeyColumn, primaryKeyValue);
     }
 
     public void saveEntry(Map<String, Object> newData, Map<String, Object> existingData) throws SQLException {
         if (existingData == null) {
-            dbService.insertData(tableName, newData);
+            dbService.insertDataWithKey(tableName, newData, primaryKeyColumn);
+        } else if (unitOfWork) {
+            stage(RowChange.update(existingData.get(primaryKeyColumn), newData));
         } else {
             dbService.updateData(tableName, newData, primaryKeyColumn, existingData.get(primaryKeyColumn));
         }
     }
 
-    public int getNextPrimaryKeyValue() throws SQLException {
-        return dbService.getNextId(tableName, primaryKeyColumn);
+    // Rows are staged by key, so only tables with a primary key can use a unit of work.
+    public boolean isUnitOfWorkAvailable() {
+        return primaryKeyColumn != null && !primaryKeyColumn.isEmpty();
+    }
+
+    public boolean isUnitOfWork() {
+        return unitOfWork;
+    }
+
+    // Turning it off leaves staged changes pending until they are flushed or discarded.
+    public void setUnitOfWork(boolean unitOfWork) {
+        if (unitOfWork && !isUnitOfWorkAvailable())
+            throw new IllegalStateException("Table " + tableName + " has no primary key.");
+        this.unitOfWork = unitOfWork;
+    }
+
+    private synchronized void stage(RowChange change) {
+        pendingChanges.merge(change.getKey(), change, RowChange::merge);
+        pendingErrors.remove(change.getKey());
+    }
+
+    public synchronized RowChange getPendingChange(Object primaryKeyValue) {
+        return pendingChanges.get(primaryKeyValue);
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingChanges.size();
+    }
+
+    // Why the last flush could not write a change that is still pending, by primary key value.
+    public synchronized Map<Object, String> getPendingErrors() {
+        return new LinkedHashMap<>(pendingErrors);
+    }
+
+    public synchronized void discardPendingChanges() {
+        pendingChanges.clear();
+        pendingErrors.clear();
+    }
+
+    // Changes that failed stay pending so they can be corrected or discarded; the result says why each one failed.
+    // Edits staged while the flush runs are kept as well.
+    public ChangeSetResult flushPendingChanges() throws SQLException {
+        List<RowChange> changes;
+        synchronized (this) {
+            changes = new ArrayList<>(pendingChanges.values());
+        }
+        ChangeSetResult result = dbService.applyChanges(tableName, primaryKeyColumn, changes, FLUSH_BATCH_SIZE);
+
+        synchronized (this) {
+            pendingErrors.clear();
+            for (int i = 0; i < changes.size(); i++) {
+                RowChange change = changes.get(i);
+                SQLException error = result.getFailures().get(i);
+                if (error == null)
+                    pendingChanges.remove(change.getKey(), change);
+                else if (pendingChanges.get(change.getKey()) == change)
+                    pendingErrors.put(change.getKey(), error.getMessage());
+            }
+        }
+        return result;
     }
 
     public boolean executeSqlCommand(String sqlCommand, ISqlResultHandler handler) throws SQLException {
         return dbService.executeSqlCommand(sqlCommand, handler);
     }
 
+    public boolean executeSqlCommand(String sqlCommand, IStreamingSqlResultHandler handler, int fetchSize, int chunkSize,
+                                     SqlCancellationToken cancellationToken) throws SQLException {
+        return dbService.executeSqlCommand(sqlCommand, handler, fetchSize, chunkSize, cancellationToken);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
     public QueryResult getQueryResultFromResultSet(ResultSet rs) throws SQLException {
         return dbService.getQueryResultFromResultSet(rs);
     }
@@ -0,0 +1,105 @@
+package gmail.vladimir.transfer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Cuts a file into chunks of whole records (lines) without decoding it: '\n' never occurs inside a multi-byte UTF-8
+// character, so splitting on the byte is safe. For CSV a newline between double quotes belongs to the field, not the
+// record. Reads through one direct buffer, so memory stays at the buffer plus the chunks in flight.
+final class ChunkReader {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int INITIAL_CHUNK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final boolean quoted;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long offset;
+    private long nextRecord;
+    private boolean eof;
+
+    ChunkReader(FileChannel channel, long startOffset, long firstRecord, boolean quoted) throws IOException {
+        this.channel = channel;
+        this.quoted = quoted;
+        this.offset = startOffset;
+        this.nextRecord = firstRecord;
+        channel.position(startOffset);
+        // Called through Buffer: the ByteBuffer overrides returning ByteBuffer only exist since Java 9.
+        ((Buffer) buffer).flip();
+    }
+
+    // Up to maxRecords records, or null at the end of the file.
+    RecordChunk next(int maxRecords) throws IOException {
+        byte[] data = new byte[INITIAL_CHUNK_SIZE];
+        int length = 0;
+        int records = 0;
+        boolean inQuotes = false;
+
+        while (records < maxRecords) {
+            if (!buffer.hasRemaining()) {
+                if (eof)
+                    break;
+                ((Buffer) buffer).clear();
+                eof = channel.read(buffer) < 0;
+                ((Buffer) buffer).flip();
+                continue;
+            }
+
+            int start = buffer.position();
+            int limit = buffer.limit();
+            int end = start;
+            boolean recordEnded = false;
+            while (end < limit) {
+                byte b = buffer.get(end++);
+                if (b == '"' && quoted)
+                    inQuotes = !inQuotes;
+                else if (b == '\n' && !inQuotes) {
+                    recordEnded = true;
+                    break;
+                }
+            }
+
+            int count = end - start;
+            if (length + count > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            buffer.get(data, length, count);
+            length += count;
+            offset += count;
+            if (recordEnded)
+                records++;
+        }
+
+        // A last line without a trailing newline is still a record.
+        if (records < maxRecords && eof && length > 0 && data[length - 1] != '\n')
+            records++;
+        if (length == 0)
+            return null;
+
+        RecordChunk chunk = new RecordChunk(data, length, nextRecord, offset);
+        nextRecord += records;
+        return chunk;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    static final class RecordChunk {
+        final byte[] data;
+        final int length;
+        // Zero-based index of the chunk's first record in the file, for error messages.
+        final long firstRecord;
+        // File offset just past the chunk's last record.
+        final long endOffset;
+
+        RecordChunk(byte[] data, int length, long firstRecord, long endOffset) {
+            this.data = data;
+            this.length = length;
+            this.firstRecord = firstRecord;
+            this.endOffset = endOffset;
+        }
+    }
+}
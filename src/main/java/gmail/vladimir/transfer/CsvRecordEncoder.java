@@ -0,0 +1,99 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.QueryResult;
+
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+// Writes what CsvRecordParser reads: NULL is an empty field, the empty string is "", and fields holding the delimiter,
+// a quote or a line break are quoted. Timestamps use JDBC escape format, document dates ISO-8601 instants, binary
+// values Base64 and nested documents or arrays JSON.
+final class CsvRecordEncoder implements RecordEncoder {
+
+    private final char delimiter;
+    private final List<String> columns;
+
+    CsvRecordEncoder(char delimiter, List<String> columns) {
+        this.delimiter = delimiter;
+        this.columns = columns;
+    }
+
+    @Override
+    public void writeHeader(StringBuilder out) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0)
+                out.append(delimiter);
+            appendText(columns.get(i), out);
+        }
+        out.append('\n');
+    }
+
+    @Override
+    public void writeRow(QueryResult chunk, int row, StringBuilder out) {
+        for (int column = 0; column < columns.size(); column++) {
+            if (column > 0)
+                out.append(delimiter);
+            appendValue(chunk.getValue(row, column), out);
+        }
+        out.append('\n');
+    }
+
+    @Override
+    public void writeDocument(Map<String, Object> document, StringBuilder out) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0)
+                out.append(delimiter);
+            appendValue(document.get(columns.get(i)), out);
+        }
+        out.append('\n');
+    }
+
+    private void appendValue(Object value, StringBuilder out) {
+        if (value == null)
+            return;
+
+        if (value instanceof String)
+            appendText((String) value, out);
+        else if (value instanceof BigDecimal)
+            out.append(((BigDecimal) value).toPlainString());
+        else if (value instanceof byte[])
+            appendText(Base64.getEncoder().encodeToString((byte[]) value), out);
+        else if (value instanceof Map || value instanceof List)
+            appendText(JsonLinesRecordEncoder.toJson(value), out);
+        else if (value.getClass() == Date.class)
+            out.append(((Date) value).toInstant());
+        else
+            appendText(value.toString(), out);
+    }
+
+    private void appendText(String text, StringBuilder out) {
+        if (!needsQuotes(text)) {
+            out.append(text);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"')
+                out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private boolean needsQuotes(String text) {
+        if (text.isEmpty())
+            return true;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r')
+                return true;
+        }
+        return false;
+    }
+}
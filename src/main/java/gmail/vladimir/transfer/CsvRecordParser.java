@@ -0,0 +1,94 @@
+package gmail.vladimir.transfer;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.*;
+
+// RFC 4180 CSV: fields may be quoted, quotes inside quoted fields are doubled and quoted fields may span lines. An
+// empty unquoted field is NULL, an empty quoted one ("") the empty string. Blank lines are skipped.
+final class CsvRecordParser implements RecordParser {
+
+    private final char delimiter;
+    private final List<String> columns;
+    private final List<String> types;
+    private final List<ValueConverters.Converter> converters;
+
+    CsvRecordParser(char delimiter, List<String> columns, List<String> types, boolean documentStore) {
+        this.delimiter = delimiter;
+        this.columns = columns;
+        this.types = types;
+        this.converters = new ArrayList<>(types.size());
+        for (String type : types)
+            converters.add(ValueConverters.forType(type, documentStore));
+    }
+
+    @Override
+    public List<Map<String, Object>> parse(ChunkReader.RecordChunk chunk) throws SQLException {
+        String text = new String(chunk.data, 0, chunk.length, StandardCharsets.UTF_8);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<String> fields = new ArrayList<>(columns.size());
+        long record = chunk.firstRecord;
+        for (int index = 0; index < text.length(); record++) {
+            index = readRecord(text, index, delimiter, fields);
+            if (fields.size() == 1 && fields.get(0) == null)
+                continue;
+            if (fields.size() != columns.size())
+                throw new SQLException("Record " + (record + 1) + " has " + fields.size() + " fields but the header has " + columns.size() + ".");
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++)
+                row.put(columns.get(i), convert(fields.get(i), i, record));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private Object convert(String value, int column, long record) throws SQLException {
+        if (value == null)
+            return null;
+
+        try {
+            return converters.get(column).convert(value);
+        }
+        catch (SQLException | RuntimeException e) {
+            throw new SQLException("Record " + (record + 1) + ", column " + columns.get(column) + ": cannot read '" + value + "' as " + types.get(column) + ".", e);
+        }
+    }
+
+    // Reads the record starting at start into fields and returns the index just past its line break.
+    static int readRecord(String text, int start, char delimiter, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        int i = start;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inQuotes) {
+                if (c != '"')
+                    field.append(c);
+                else if (i + 1 < text.length() && text.charAt(i + 1) == '"')
+                    field.append(text.charAt(++i));
+                else
+                    inQuotes = false;
+            }
+            else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            }
+            else if (c == delimiter) {
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+                quoted = false;
+            }
+            else if (c == '\n') {
+                i++;
+                break;
+            }
+            else if (c != '\r')
+                field.append(c);
+        }
+        fields.add(quoted || field.length() > 0 ? field.toString() : null);
+        return i;
+    }
+}
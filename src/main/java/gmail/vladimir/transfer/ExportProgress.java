@@ -0,0 +1,51 @@
+package gmail.vladimir.transfer;
+
+// Rows written so far. bytesWritten counts the encoded text before compression; expectedRows is the table's estimated
+// row count, or -1 when it is not known (query exports).
+public class ExportProgress {
+
+    private final long rows;
+    private final long expectedRows;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+
+    public ExportProgress(long rows, long expectedRows, long bytesWritten, long elapsedNanos) {
+        this.rows = rows;
+        this.expectedRows = expectedRows;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getExpectedRows() {
+        return expectedRows;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    // Estimates can be stale, so this is capped at 1; -1 when the row count is not known.
+    public double getFraction() {
+        if (expectedRows < 0)
+            return -1;
+        return expectedRows == 0 ? 1 : Math.min(1, (double) rows / expectedRows);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows (%.1f MB) in %.1f s, %.0f rows/s",
+                rows, bytesWritten / (1024.0 * 1024.0), elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,29 @@
+package gmail.vladimir.transfer;
+
+import java.util.Locale;
+
+public enum FileFormat {
+    CSV("csv"),
+    // One JSON object per line, also known as NDJSON.
+    JSON_LINES("jsonl", "ndjson");
+
+    private final String[] extensions;
+
+    FileFormat(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    public String[] getExtensions() {
+        return extensions.clone();
+    }
+
+    // Null when the extension is not one of ours.
+    public static FileFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        for (FileFormat format : values())
+            for (String extension : format.extensions)
+                if (lower.endsWith("." + extension))
+                    return format;
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+package gmail.vladimir.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.Properties;
+
+// How far an import got: every record before offset is committed. Kept next to the source file and only trusted while
+// the file's size and modification time and the target table are unchanged.
+public class ImportCheckpoint {
+
+    static final String SUFFIX = ".import-checkpoint";
+
+    private final String tableName;
+    private final long fileSize;
+    private final long lastModified;
+    private final long offset;
+    private final long rows;
+
+    ImportCheckpoint(String tableName, long fileSize, long lastModified, long offset, long rows) {
+        this.tableName = tableName;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.offset = offset;
+        this.rows = rows;
+    }
+
+    static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    // Null when there is no checkpoint for this file and table or the file changed since it was written.
+    static ImportCheckpoint load(Path file, String tableName) throws IOException {
+        Path path = pathFor(file);
+        if (!Files.isRegularFile(path))
+            return null;
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+
+        try {
+            ImportCheckpoint checkpoint = new ImportCheckpoint(properties.getProperty("table"),
+                    Long.parseLong(properties.getProperty("fileSize")), Long.parseLong(properties.getProperty("lastModified")),
+                    Long.parseLong(properties.getProperty("offset")), Long.parseLong(properties.getProperty("rows")));
+            return checkpoint.matches(file, tableName) ? checkpoint : null;
+        }
+        catch (NumberFormatException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    private boolean matches(Path file, String tableName) throws IOException {
+        return tableName.equalsIgnoreCase(this.tableName) && Files.size(file) == fileSize
+                && Files.getLastModifiedTime(file).toMillis() == lastModified && offset <= fileSize;
+    }
+
+    // Written to a temporary file and moved into place, so a crash leaves either the old or the new checkpoint.
+    void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("table", tableName);
+        properties.setProperty("fileSize", Long.toString(fileSize));
+        properties.setProperty("lastModified", Long.toString(lastModified));
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("rows", Long.toString(rows));
+
+        Path path = pathFor(file);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "CRUDJava import of " + file.getFileName() + " into " + tableName);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static void delete(Path file) throws IOException {
+        Files.deleteIfExists(pathFor(file));
+    }
+
+    ImportCheckpoint advance(long newOffset, long newRows) {
+        return new ImportCheckpoint(tableName, fileSize, lastModified, newOffset, newRows);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+}
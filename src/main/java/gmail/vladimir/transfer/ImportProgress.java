@@ -0,0 +1,54 @@
+package gmail.vladimir.transfer;
+
+// Rows committed so far and how far into the file they reach. rows and elapsed cover this run only; totalRows also
+// counts the rows a resumed import had already committed.
+public class ImportProgress {
+
+    private final long rows;
+    private final long totalRows;
+    private final long bytesCommitted;
+    private final long fileSize;
+    private final long elapsedNanos;
+
+    public ImportProgress(long rows, long totalRows, long bytesCommitted, long fileSize, long elapsedNanos) {
+        this.rows = rows;
+        this.totalRows = totalRows;
+        this.bytesCommitted = bytesCommitted;
+        this.fileSize = fileSize;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getBytesCommitted() {
+        return bytesCommitted;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public double getFraction() {
+        return fileSize == 0 ? 1 : (double) bytesCommitted / fileSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows (%.0f%% of the file) in %.1f s, %.0f rows/s",
+                totalRows, getFraction() * 100, elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+    }
+}
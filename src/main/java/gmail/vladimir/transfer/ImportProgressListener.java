@@ -0,0 +1,6 @@
+package gmail.vladimir.transfer;
+
+@FunctionalInterface
+public interface ImportProgressListener {
+    void onProgress(ImportProgress progress);
+}
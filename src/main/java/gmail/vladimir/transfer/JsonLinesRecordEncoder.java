@@ -0,0 +1,73 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.QueryResult;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+// One relaxed Extended JSON object per line, which JsonLinesRecordParser and mongoimport read back with their types:
+// dates become {"$date": ...}, decimals {"$numberDecimal": ...}. Relational values the BSON codecs do not know are
+// written as strings.
+final class JsonLinesRecordEncoder implements RecordEncoder {
+
+    private static final JsonWriterSettings SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+    // Decimal128 holds at most 34 significant digits.
+    private static final int MAX_DECIMAL_DIGITS = 34;
+
+    private final List<String> columns;
+    private final Document scratch = new Document();
+
+    JsonLinesRecordEncoder(List<String> columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void writeHeader(StringBuilder out) {
+    }
+
+    @Override
+    public void writeRow(QueryResult chunk, int row, StringBuilder out) {
+        scratch.clear();
+        for (int column = 0; column < columns.size(); column++)
+            scratch.put(columns.get(column), jsonValue(chunk.getValue(row, column)));
+        out.append(scratch.toJson(SETTINGS)).append('\n');
+    }
+
+    @Override
+    public void writeDocument(Map<String, Object> document, StringBuilder out) {
+        Document json = document instanceof Document ? (Document) document : new Document(document);
+        out.append(json.toJson(SETTINGS)).append('\n');
+    }
+
+    // JSON text of a nested document or array. The writer only starts at a document, so arrays are wrapped and unwrapped.
+    static String toJson(Object value) {
+        if (value instanceof Map)
+            return new Document(castToMap(value)).toJson(SETTINGS);
+
+        String json = new Document("v", value).toJson(SETTINGS);
+        return json.substring(json.indexOf(':') + 1, json.length() - 1).trim();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castToMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static Object jsonValue(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Double || value instanceof Float || value instanceof Short || value instanceof Byte || value instanceof byte[])
+            return value;
+        if (value instanceof BigDecimal)
+            return ((BigDecimal) value).precision() <= MAX_DECIMAL_DIGITS ? value : ((BigDecimal) value).toPlainString();
+        if (value instanceof java.sql.Time)
+            return value.toString();
+        if (value instanceof Date)
+            return new Date(((Date) value).getTime());
+        return value.toString();
+    }
+}
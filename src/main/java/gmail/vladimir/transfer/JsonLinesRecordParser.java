@@ -0,0 +1,94 @@
+package gmail.vladimir.transfer;
+
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.*;
+
+// One JSON object per line; MongoDB extended JSON ({"$date": ...}, {"$oid": ...}) is understood. Documents go to a
+// collection as they are. For a table, keys are matched to columns ignoring case and values converted to the column
+// types; keys missing from some rows of a chunk become NULL, since a batch needs the same columns in every row.
+final class JsonLinesRecordParser implements RecordParser {
+
+    // Lower-cased key -> column name and type; null for document stores.
+    private final Map<String, String> columnNames;
+    private final Map<String, ValueConverters.Converter> converters;
+    private final Map<String, String> types;
+
+    JsonLinesRecordParser(Map<String, String> schema, boolean documentStore) {
+        if (documentStore) {
+            columnNames = null;
+            converters = null;
+            types = null;
+            return;
+        }
+
+        columnNames = new HashMap<>();
+        converters = new HashMap<>();
+        types = schema;
+        for (Map.Entry<String, String> column : schema.entrySet()) {
+            columnNames.put(column.getKey().toLowerCase(Locale.ROOT), column.getKey());
+            converters.put(column.getKey(), ValueConverters.forType(column.getValue(), false));
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> parse(ChunkReader.RecordChunk chunk) throws SQLException {
+        String text = new String(chunk.data, 0, chunk.length, StandardCharsets.UTF_8);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Set<String> keys = new LinkedHashSet<>();
+        boolean uniform = true;
+        long record = chunk.firstRecord;
+        for (int start = 0; start < text.length(); record++) {
+            int end = text.indexOf('\n', start);
+            if (end < 0)
+                end = text.length();
+            String line = text.substring(start, end).trim();
+            start = end + 1;
+            if (line.isEmpty())
+                continue;
+
+            Document document;
+            try {
+                document = Document.parse(line);
+            }
+            catch (JsonParseException e) {
+                throw new SQLException("Record " + (record + 1) + " is not a JSON object: " + e.getMessage(), e);
+            }
+
+            Map<String, Object> row = columnNames == null ? document : toRow(document, record);
+            if (!rows.isEmpty() && !keys.equals(row.keySet()))
+                uniform = false;
+            keys.addAll(row.keySet());
+            rows.add(row);
+        }
+
+        if (!uniform && columnNames != null)
+            for (Map<String, Object> row : rows)
+                for (String key : keys)
+                    row.putIfAbsent(key, null);
+        return rows;
+    }
+
+    private Map<String, Object> toRow(Document document, long record) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            String column = columnNames.get(entry.getKey().toLowerCase(Locale.ROOT));
+            if (column == null)
+                throw new SQLException("Record " + (record + 1) + ": the table has no column " + entry.getKey() + ".");
+
+            Object value = entry.getValue();
+            if (value instanceof Document)
+                value = ((Document) value).toJson();
+            try {
+                row.put(column, value == null ? null : converters.get(column).convert(value));
+            }
+            catch (SQLException | RuntimeException e) {
+                throw new SQLException("Record " + (record + 1) + ", column " + column + ": cannot read '" + value + "' as " + types.get(column) + ".", e);
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,16 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.QueryResult;
+
+import java.util.Map;
+
+// Appends rows to a text buffer in one file format. Encoders keep per-row scratch state, so each producing thread
+// needs its own.
+interface RecordEncoder {
+
+    void writeHeader(StringBuilder out);
+
+    void writeRow(QueryResult chunk, int row, StringBuilder out);
+
+    void writeDocument(Map<String, Object> document, StringBuilder out);
+}
@@ -0,0 +1,11 @@
+package gmail.vladimir.transfer;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+// Decodes a chunk of records into rows ready for insertDataBatch. Runs on the import's parser threads, so
+// implementations must be stateless.
+interface RecordParser {
+    List<Map<String, Object>> parse(ChunkReader.RecordChunk chunk) throws SQLException;
+}
@@ -0,0 +1,394 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.*;
+import gmail.vladimir.db.scan.KeyRange;
+import gmail.vladimir.db.scan.ScanChunk;
+import gmail.vladimir.db.scan.ScanMode;
+import gmail.vladimir.db.scan.TableScanEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+// Streams a table, collection or query result into a CSV or JSON Lines file:
+//
+//   cursor thread(s) --encoded blocks--> writer thread --(gzip)--> file
+//
+// Rows come off a forward-only cursor (a Mongo cursor for collections) fetchSize at a time and are encoded straight
+// into text blocks, so no more than a fetch of rows is ever held. The writer thread does the file I/O and, when
+// enabled, the compression; the queue in between is bounded, so a slow disk stalls the cursor instead of filling the
+// heap. Tables and collections are read through TableScanEngine, so with parallelism above 1 a large table is read as
+// key ranges on separate connections and its rows come out in no particular order. The file is written under a .part
+// name and only moved into place once complete.
+public class TableExporter {
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final char DEFAULT_DELIMITER = ',';
+
+    private static final Logger logger = LoggerFactory.getLogger(TableExporter.class);
+    // Encoded text is handed to the writer in blocks of about this many characters.
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String PART_SUFFIX = ".part";
+    private static final Block END = new Block(new byte[0], 0);
+
+    private final IDatabaseService dbService;
+    private final boolean documentStore;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int parallelism = 1;
+    private boolean compress;
+    private char delimiter = DEFAULT_DELIMITER;
+    private ExportProgressListener progressListener;
+
+    public TableExporter(IDatabaseService dbService) {
+        this.dbService = dbService;
+        this.documentStore = dbService instanceof IDocumentDatabaseService;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    // Key ranges read at once by exportTable; query results are always read on one cursor.
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Gzips the file on the writer thread.
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    // Called on the writer thread, at most every 100 ms.
+    public void setProgressListener(ExportProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public ExportProgress exportTable(String tableName, Path file, FileFormat format) throws SQLException {
+        long expectedRows = dbService.estimateTableEntryCount(tableName).getCount();
+        return run(file, expectedRows, run -> scanTable(run, tableName, format));
+    }
+
+    // The query is run as written, so it should be a SELECT.
+    public ExportProgress exportQuery(String sql, Path file, FileFormat format) throws SQLException {
+        if (documentStore)
+            throw new SQLException("Query export needs a relational database.");
+        return run(file, -1, run -> streamQuery(run, sql, format));
+    }
+
+    private ExportProgress run(Path file, long expectedRows, SqlConsumer<ExportRun> producer) throws SQLException {
+        Path part = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        ExportRun run = new ExportRun(file, expectedRows);
+        OutputStream out;
+        try {
+            out = openOutput(part);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not create " + part + ": " + e.getMessage(), e);
+        }
+
+        Thread writer = new Thread(() -> run.writeBlocks(out, part), "export-writer");
+        writer.setDaemon(true);
+        writer.start();
+        try {
+            try {
+                producer.accept(run);
+                run.put(END);
+            }
+            catch (SQLException | RuntimeException e) {
+                run.fail(e);
+            }
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(new SQLException("Export cancelled."));
+        }
+
+        Exception failure = run.failure;
+        if (failure instanceof SQLException)
+            throw (SQLException) failure;
+        if (failure != null)
+            throw new SQLException("Export failed: " + failure.getMessage(), failure);
+
+        try {
+            moveIntoPlace(part, file);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not rename " + part + " to " + file.getFileName() + ": " + e.getMessage(), e);
+        }
+        ExportProgress progress = run.progress();
+        logger.info("Exported {}: {}", file, progress);
+        return progress;
+    }
+
+    private OutputStream openOutput(Path part) throws IOException {
+        OutputStream out = Channels.newOutputStream(FileChannel.open(part,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        return compress ? new GZIPOutputStream(out, WRITE_BUFFER_SIZE) : new BufferedOutputStream(out, WRITE_BUFFER_SIZE);
+    }
+
+    private static void moveIntoPlace(Path part, Path file) throws IOException {
+        try {
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private RecordEncoder createEncoder(FileFormat format, List<String> columns) {
+        return format == FileFormat.CSV ? new CsvRecordEncoder(delimiter, columns) : new JsonLinesRecordEncoder(columns);
+    }
+
+    // Each key range is encoded on its own scan thread, so encoding runs in parallel as well and rows from different
+    // ranges interleave in the file. CSV columns of a collection are the fields getTableSchema samples; fields only
+    // later documents have are left out.
+    private void scanTable(ExportRun run, String tableName, FileFormat format) throws SQLException {
+        List<String> documentColumns = null;
+        if (documentStore) {
+            documentColumns = format == FileFormat.CSV ? new ArrayList<>(dbService.getTableSchema(tableName).keySet()) : Collections.<String>emptyList();
+            run.writeHeader(createEncoder(format, documentColumns));
+        }
+
+        TableScanEngine engine = new TableScanEngine(dbService);
+        engine.setParallelism(parallelism);
+        engine.setFetchSize(fetchSize);
+        Map<KeyRange, ChunkEncoder> encoders = new ConcurrentHashMap<>();
+        List<String> columns = documentColumns;
+        engine.scan(tableName, ScanMode.CONCURRENT, chunk -> {
+            if (!encoders.computeIfAbsent(chunk.getRange(), range -> new ChunkEncoder(run, format, columns)).encode(chunk))
+                throw new SQLException("Export stopped.");
+        });
+        for (ChunkEncoder encoder : encoders.values())
+            encoder.flush();
+    }
+
+    // A failed or cancelled export cancels the statement through its token, which ends the stream at the next fetch.
+    private void streamQuery(ExportRun run, String sql, FileFormat format) throws SQLException {
+        ChunkEncoder encoder = new ChunkEncoder(run, format, null);
+        boolean hasResultSet = dbService.executeSqlCommand(sql, new IStreamingSqlResultHandler() {
+            @Override
+            public void handleColumns(LinkedHashMap<String, String> columnTypes) {
+                encoder.columns(columnTypes);
+            }
+
+            @Override
+            public void handleRows(QueryResult chunk) {
+                encoder.rows(chunk);
+            }
+
+            @Override
+            public void handleEnd(long totalRows, boolean cancelled) {
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+            }
+
+            @Override
+            public void handleMessage(String message) {
+            }
+        }, fetchSize, fetchSize, run.newToken());
+        if (!hasResultSet)
+            throw new SQLException("The statement did not return rows to export.");
+        encoder.flush();
+    }
+
+    // Encodes the rows of one key range or query into blocks for the writer. Used by one thread at a time.
+    private final class ChunkEncoder {
+        private final ExportRun run;
+        private final FileFormat format;
+        private final StringBuilder text = new StringBuilder(BLOCK_SIZE + BLOCK_SIZE / 4);
+        private int rows;
+        private RecordEncoder encoder;
+
+        // Relational rows bring their own columns, so documentColumns is null for them.
+        private ChunkEncoder(ExportRun run, FileFormat format, List<String> documentColumns) {
+            this.run = run;
+            this.format = format;
+            if (documentColumns != null)
+                encoder = createEncoder(format, documentColumns);
+        }
+
+        private void columns(LinkedHashMap<String, String> columnTypes) {
+            encoder = createEncoder(format, new ArrayList<>(columnTypes.keySet()));
+            run.writeHeader(encoder);
+        }
+
+        private boolean encode(ScanChunk chunk) {
+            if (encoder == null)
+                columns(chunk.getColumnTypes());
+            if (chunk.getQueryResult() != null)
+                return rows(chunk.getQueryResult());
+
+            for (Map<String, Object> document : chunk.getRows()) {
+                encoder.writeDocument(document, text);
+                if (!rowWritten())
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean rows(QueryResult chunk) {
+            for (int row = 0; row < chunk.getRowCount(); row++) {
+                encoder.writeRow(chunk, row, text);
+                if (!rowWritten())
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean rowWritten() {
+            rows++;
+            return text.length() < BLOCK_SIZE ? run.failure == null : flush();
+        }
+
+        private boolean flush() {
+            if (rows == 0)
+                return run.failure == null;
+
+            Block block = new Block(text.toString().getBytes(StandardCharsets.UTF_8), rows);
+            text.setLength(0);
+            rows = 0;
+            return run.put(block);
+        }
+    }
+
+    // State shared by the producers and the writer of one export.
+    private final class ExportRun {
+        private final Path file;
+        private final long expectedRows;
+        private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final List<SqlCancellationToken> tokens = new CopyOnWriteArrayList<>();
+        private final long start = System.nanoTime();
+        private final Object headerLock = new Object();
+        private volatile Exception failure;
+        private boolean headerWritten;
+        // Only touched by the writer until it has finished.
+        private long rows;
+        private long bytes;
+
+        private ExportRun(Path file, long expectedRows) {
+            this.file = file;
+            this.expectedRows = expectedRows;
+        }
+
+        private SqlCancellationToken newToken() {
+            SqlCancellationToken token = new SqlCancellationToken();
+            tokens.add(token);
+            if (failure != null)
+                token.cancel();
+            return token;
+        }
+
+        // The first failure wins; it stops the writer and every running statement.
+        private void fail(Exception e) {
+            synchronized (this) {
+                if (failure != null)
+                    return;
+                failure = e;
+            }
+            for (SqlCancellationToken token : tokens)
+                token.cancel();
+        }
+
+        // Parallel ranges all report their columns; only the first writes the header, before any range can queue rows.
+        private void writeHeader(RecordEncoder encoder) {
+            synchronized (headerLock) {
+                if (headerWritten)
+                    return;
+
+                StringBuilder header = new StringBuilder();
+                encoder.writeHeader(header);
+                if (header.length() > 0)
+                    put(new Block(header.toString().getBytes(StandardCharsets.UTF_8), 0));
+                headerWritten = true;
+            }
+        }
+
+        // Waits while the writer is behind; false once the export has failed or been cancelled.
+        private boolean put(Block block) {
+            try {
+                while (failure == null)
+                    if (blocks.offer(block, 100, TimeUnit.MILLISECONDS))
+                        return true;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new SQLException("Export cancelled."));
+            }
+            return false;
+        }
+
+        // Runs on the writer thread until the end marker or a failure; a failed export leaves no file behind.
+        private void writeBlocks(OutputStream out, Path part) {
+            long lastReport = 0;
+            try (OutputStream stream = out) {
+                while (failure == null) {
+                    Block block = blocks.poll(100, TimeUnit.MILLISECONDS);
+                    if (block == END)
+                        break;
+                    if (block == null)
+                        continue;
+
+                    stream.write(block.data);
+                    rows += block.rows;
+                    bytes += block.data.length;
+                    long now = System.nanoTime();
+                    if (progressListener != null && now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        progressListener.onProgress(progress());
+                        lastReport = now;
+                    }
+                }
+            }
+            catch (IOException e) {
+                fail(new SQLException("Could not write " + file + ": " + e.getMessage(), e));
+            }
+            catch (InterruptedException e) {
+                fail(new SQLException("Export cancelled."));
+            }
+            catch (RuntimeException e) {
+                fail(e);
+            }
+
+            if (failure != null)
+                try {
+                    Files.deleteIfExists(part);
+                }
+                catch (IOException e) {
+                    logger.warn("Could not delete {}: {}", part, e.getMessage());
+                }
+        }
+
+        private ExportProgress progress() {
+            return new ExportProgress(rows, expectedRows, bytes, System.nanoTime() - start);
+        }
+    }
+
+    private static final class Block {
+        private final byte[] data;
+        private final int rows;
+
+        private Block(byte[] data, int rows) {
+            this.data = data;
+            this.rows = rows;
+        }
+    }
+}
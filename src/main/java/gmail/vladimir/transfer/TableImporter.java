@@ -0,0 +1,253 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.IDatabaseService;
+import gmail.vladimir.db.IDocumentDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streams a CSV or JSON Lines file into a table or collection:
+//
+//   reader thread --chunks--> parser threads --rows--> calling thread --insertDataBatch--> database
+//
+// The reader cuts the file into chunks of batchSize records and queues each chunk's parse as a future. The queue is
+// bounded, so a slow database stalls the reader instead of filling the heap, and the calling thread takes the
+// futures in file order. Each chunk is one insertDataBatch call, i.e. one transaction on relational databases; after
+// it commits the checkpoint moves past it, so an import that fails or is cancelled resumes after the last committed
+// chunk. Document stores have no such transaction: a chunk that failed halfway is written again on resume.
+public class TableImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final char DEFAULT_DELIMITER = ',';
+
+    private static final Logger logger = LoggerFactory.getLogger(TableImporter.class);
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final IDatabaseService dbService;
+    private final String tableName;
+    private final boolean documentStore;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private char delimiter = DEFAULT_DELIMITER;
+    private ImportProgressListener progressListener;
+
+    public TableImporter(IDatabaseService dbService, String tableName) {
+        this.dbService = dbService;
+        this.tableName = tableName;
+        this.documentStore = dbService instanceof IDocumentDatabaseService;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = Math.max(1, parserThreads);
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    // Called on the importing thread after every committed chunk.
+    public void setProgressListener(ImportProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    // A checkpoint left by an earlier import of this file into this table, or null.
+    public ImportCheckpoint findCheckpoint(Path file) throws SQLException {
+        try {
+            return ImportCheckpoint.load(file, tableName);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not read the import checkpoint for " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    // With resume, continues after the checkpoint when there is a valid one; otherwise starts over and drops it.
+    public ImportProgress importFile(Path file, FileFormat format, boolean resume) throws SQLException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return importFile(file, channel, format, resume);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not read " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ImportProgress importFile(Path file, FileChannel channel, FileFormat format, boolean resume) throws SQLException, IOException {
+        long fileSize = channel.size();
+        Map<String, String> schema = dbService.getTableSchema(tableName);
+        if (!documentStore && schema.isEmpty())
+            throw new SQLException("Table " + tableName + " has no columns.");
+
+        long dataStart = startsWithBom(channel) ? UTF8_BOM.length : 0;
+        RecordParser parser;
+        long firstRecord = 0;
+        if (format == FileFormat.CSV) {
+            ChunkReader headerReader = new ChunkReader(channel, dataStart, 0, true);
+            ChunkReader.RecordChunk header = headerReader.next(1);
+            if (header == null)
+                throw new SQLException(file.getFileName() + " is empty.");
+            parser = csvParser(new String(header.data, 0, header.length, StandardCharsets.UTF_8), schema);
+            dataStart = header.endOffset;
+            firstRecord = 1;
+        }
+        else
+            parser = new JsonLinesRecordParser(schema, documentStore);
+
+        ImportCheckpoint checkpoint = resume ? ImportCheckpoint.load(file, tableName) : null;
+        if (checkpoint == null) {
+            ImportCheckpoint.delete(file);
+            checkpoint = new ImportCheckpoint(tableName, fileSize, Files.getLastModifiedTime(file).toMillis(), dataStart, 0);
+        }
+        else
+            logger.info("Resuming import of {} into {} after {} rows.", file, tableName, checkpoint.getRows());
+
+        ImportProgress progress = run(file, channel, parser, checkpoint, firstRecord, fileSize);
+        ImportCheckpoint.delete(file);
+        logger.info("Imported {} into {}: {}", file, tableName, progress);
+        return progress;
+    }
+
+    private boolean startsWithBom(FileChannel channel) throws IOException {
+        if (channel.size() < UTF8_BOM.length)
+            return false;
+
+        ByteBuffer start = ByteBuffer.allocate(UTF8_BOM.length);
+        channel.read(start, 0);
+        return Arrays.equals(start.array(), UTF8_BOM);
+    }
+
+    private RecordParser csvParser(String headerLine, Map<String, String> schema) throws SQLException {
+        List<String> header = new ArrayList<>();
+        CsvRecordParser.readRecord(headerLine, 0, delimiter, header);
+
+        Map<String, String> namesByLowerCase = new HashMap<>();
+        for (String column : schema.keySet())
+            namesByLowerCase.put(column.toLowerCase(Locale.ROOT), column);
+
+        List<String> columns = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (String name : header) {
+            String trimmed = name == null ? "" : name.trim();
+            String column = namesByLowerCase.get(trimmed.toLowerCase(Locale.ROOT));
+            if (trimmed.isEmpty())
+                throw new SQLException("The header has an empty column name.");
+            if (column == null && !documentStore)
+                throw new SQLException("The file has a column " + trimmed + " that table " + tableName + " does not have.");
+            columns.add(column != null ? column : trimmed);
+            types.add(column != null ? schema.get(column) : null);
+        }
+        return new CsvRecordParser(delimiter, columns, types, documentStore);
+    }
+
+    private ImportProgress run(Path file, FileChannel channel, RecordParser parser, ImportCheckpoint checkpoint,
+                               long firstRecord, long fileSize) throws SQLException, IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, runnable -> {
+            Thread thread = new Thread(runnable, "import-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Parsed chunks waiting to be written, in file order; a null chunk marks the end of the file.
+        BlockingQueue<CompletableFuture<ParsedChunk>> pending = new ArrayBlockingQueue<>(parserThreads * 2);
+        ChunkReader chunks = new ChunkReader(channel, checkpoint.getOffset(), firstRecord + checkpoint.getRows(),
+                parser instanceof CsvRecordParser);
+        Thread reader = new Thread(() -> readChunks(chunks, parser, parsers, pending), "import-reader");
+        reader.setDaemon(true);
+
+        long start = System.nanoTime();
+        long rows = 0;
+        ImportCheckpoint committed = checkpoint;
+        try {
+            reader.start();
+            while (true) {
+                ParsedChunk chunk = pending.take().get();
+                if (chunk == null)
+                    break;
+
+                if (!chunk.rows.isEmpty())
+                    dbService.insertDataBatch(tableName, chunk.rows, chunk.rows.size());
+                rows += chunk.rows.size();
+                committed = committed.advance(chunk.endOffset, committed.getRows() + chunk.rows.size());
+                committed.save(file);
+
+                if (progressListener != null)
+                    progressListener.onProgress(new ImportProgress(rows, committed.getRows(), chunk.endOffset, fileSize, System.nanoTime() - start));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Import cancelled after " + committed.getRows() + " rows; it can be resumed.", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new SQLException("Import failed: " + cause.getMessage(), cause);
+        }
+        finally {
+            reader.interrupt();
+            parsers.shutdownNow();
+        }
+
+        return new ImportProgress(rows, committed.getRows(), committed.getOffset(), fileSize, System.nanoTime() - start);
+    }
+
+    // Runs on the reader thread until the end of the file, an error (handed to the writer as a failed future) or an
+    // interrupt from the writer.
+    private void readChunks(ChunkReader chunks, RecordParser parser, ExecutorService parsers,
+                            BlockingQueue<CompletableFuture<ParsedChunk>> pending) {
+        try {
+            ChunkReader.RecordChunk chunk;
+            while ((chunk = chunks.next(batchSize)) != null) {
+                ChunkReader.RecordChunk toParse = chunk;
+                pending.put(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new ParsedChunk(parser.parse(toParse), toParse.endOffset);
+                    }
+                    catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, parsers));
+            }
+            pending.put(CompletableFuture.completedFuture(null));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException | RuntimeException e) {
+            CompletableFuture<ParsedChunk> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                pending.put(failed);
+            }
+            catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class ParsedChunk {
+        private final List<Map<String, Object>> rows;
+        private final long endOffset;
+
+        private ParsedChunk(List<Map<String, Object>> rows, long endOffset) {
+            this.rows = rows;
+            this.endOffset = endOffset;
+        }
+    }
+}
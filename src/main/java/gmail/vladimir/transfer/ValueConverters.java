@@ -0,0 +1,157 @@
+package gmail.vladimir.transfer;
+
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// Turns text from a file into the Java type getTableSchema reports for a column: SQL type names for relational tables,
+// value class names (Integer, Date, ObjectId, ...) for collections. JSON values that already have the right type pass
+// through. Document stores get java.util.Date rather than the java.sql subclasses, which the driver has no codec for.
+final class ValueConverters {
+
+    interface Converter {
+        Object convert(Object value) throws SQLException;
+    }
+
+    private static final Converter TEXT = value -> value instanceof String || value == null ? value : value.toString();
+    private static final Converter PASS_THROUGH = value -> value;
+    private static final Map<String, Converter> BY_TYPE = new HashMap<>();
+
+    static {
+        Converter integer = value -> value instanceof Number ? (Object) ((Number) value).intValue() : Integer.valueOf(text(value));
+        Converter bigint = value -> value instanceof Number ? (Object) ((Number) value).longValue() : Long.valueOf(text(value));
+        Converter floating = value -> value instanceof Number ? (Object) ((Number) value).doubleValue() : Double.valueOf(text(value));
+        Converter decimal = value -> value instanceof BigDecimal ? value : new BigDecimal(text(value));
+        Converter bool = ValueConverters::toBoolean;
+        Converter binary = ValueConverters::toBytes;
+
+        for (String type : new String[]{"INT", "INTEGER", "SMALLINT", "TINYINT", "MEDIUMINT", "INT2", "INT4", "SERIAL"})
+            BY_TYPE.put(type, integer);
+        for (String type : new String[]{"BIGINT", "INT8", "BIGSERIAL", "LONG"})
+            BY_TYPE.put(type, bigint);
+        for (String type : new String[]{"DOUBLE", "FLOAT", "REAL", "FLOAT4", "FLOAT8"})
+            BY_TYPE.put(type, floating);
+        for (String type : new String[]{"DECIMAL", "NUMERIC", "DECIMAL128"})
+            BY_TYPE.put(type, decimal);
+        for (String type : new String[]{"BOOLEAN", "BOOL", "BIT"})
+            BY_TYPE.put(type, bool);
+        for (String type : new String[]{"BINARY", "VARBINARY", "LONGVARBINARY", "BLOB", "BYTEA"})
+            BY_TYPE.put(type, binary);
+        for (String type : new String[]{"VARCHAR", "CHAR", "TEXT", "CLOB", "NVARCHAR", "NCHAR", "LONGVARCHAR", "STRING"})
+            BY_TYPE.put(type, TEXT);
+    }
+
+    private ValueConverters() {
+    }
+
+    // Unknown types are passed through unchanged and left to the driver.
+    static Converter forType(String typeName, boolean documentStore) {
+        if (typeName == null)
+            return documentStore ? PASS_THROUGH : TEXT;
+
+        String type = baseType(typeName);
+        switch (type) {
+            case "DATE":
+                return value -> toDate(value, documentStore);
+            case "TIMESTAMP":
+            case "DATETIME":
+                return value -> toTimestamp(value, documentStore);
+            case "OBJECTID":
+                return value -> value instanceof String && ObjectId.isValid((String) value) ? new ObjectId((String) value) : value;
+            default:
+                return BY_TYPE.getOrDefault(type, PASS_THROUGH);
+        }
+    }
+
+    // "DOUBLE PRECISION" -> DOUBLE, "VARCHAR(255)" -> VARCHAR, "Integer" -> INTEGER.
+    private static String baseType(String typeName) {
+        String type = typeName.trim().toUpperCase(Locale.ROOT);
+        int end = 0;
+        while (end < type.length() && (Character.isLetterOrDigit(type.charAt(end)) || type.charAt(end) == '_'))
+            end++;
+        return type.substring(0, end);
+    }
+
+    private static String text(Object value) {
+        return value.toString().trim();
+    }
+
+    private static Object toBoolean(Object value) throws SQLException {
+        if (value instanceof Boolean)
+            return value;
+        if (value instanceof Number)
+            return ((Number) value).intValue() != 0;
+
+        String text = text(value).toLowerCase(Locale.ROOT);
+        switch (text) {
+            case "true": case "t": case "yes": case "y": case "1":
+                return Boolean.TRUE;
+            case "false": case "f": case "no": case "n": case "0":
+                return Boolean.FALSE;
+            default:
+                throw new SQLException("not a boolean");
+        }
+    }
+
+    // Exports write binary values as Base64 text (CSV) or Extended JSON $binary, which parses to a Binary.
+    private static Object toBytes(Object value) {
+        if (value instanceof byte[])
+            return value;
+        if (value instanceof Binary)
+            return ((Binary) value).getData();
+        return Base64.getDecoder().decode(text(value));
+    }
+
+    private static Object toDate(Object value, boolean documentStore) throws SQLException {
+        if (value instanceof Date)
+            return documentStore ? new Date(((Date) value).getTime()) : value;
+
+        String text = text(value);
+        if (text.length() > 10 || isEpochMillis(value, text))
+            return toTimestamp(value, documentStore);
+
+        java.sql.Date date = java.sql.Date.valueOf(text);
+        return documentStore ? new Date(date.getTime()) : date;
+    }
+
+    // Accepts JDBC escape format (2024-01-31 12:00:00[.fff]), ISO-8601 instants (2024-01-31T12:00:00Z) and epoch
+    // milliseconds, which is how SQLite stores dates and so how its tables export them.
+    private static Object toTimestamp(Object value, boolean documentStore) throws SQLException {
+        if (value instanceof Date)
+            return documentStore ? new Date(((Date) value).getTime()) : new Timestamp(((Date) value).getTime());
+
+        String text = text(value);
+        Timestamp timestamp = isEpochMillis(value, text)
+                ? new Timestamp(value instanceof Number ? ((Number) value).longValue() : Long.parseLong(text))
+                : parseTimestamp(text);
+        return documentStore ? new Date(timestamp.getTime()) : timestamp;
+    }
+
+    private static Timestamp parseTimestamp(String text) {
+        try {
+            return Timestamp.from(Instant.parse(text));
+        }
+        catch (DateTimeParseException e) {
+            return Timestamp.valueOf(text.replace('T', ' '));
+        }
+    }
+
+    private static boolean isEpochMillis(Object value, String text) {
+        if (value instanceof Number)
+            return true;
+
+        int start = text.startsWith("-") ? 1 : 0;
+        if (start == text.length())
+            return false;
+        for (int i = start; i < text.length(); i++)
+            if (!Character.isDigit(text.charAt(i)))
+                return false;
+        return true;
+    }
+}
@@ -1,26 +1,30 @@
 package gmail.vladimir.ui.forms;
 
 import gmail.vladimir.Constants;
+import gmail.vladimir.db.AsyncDatabaseService;
 import gmail.vladimir.db.DatabaseType;
 import gmail.vladimir.db.IDatabaseService;
+import gmail.vladimir.db.InstrumentedDatabaseService;
+import gmail.vladimir.db.SqlRunnable;
+import gmail.vladimir.managers.RelationalTableManager;
 import gmail.vladimir.managers.SchemaBuilder;
 import gmail.vladimir.managers.TableManager;
-import gmail.vladimir.ui.forms.tables.AbstractTablesView;
 import gmail.vladimir.ui.forms.tables.MongoTablesView;
 import gmail.vladimir.ui.forms.tables.RelationalTablesView;
+import gmail.vladimir.ui.utils.BusyIndicator;
+import gmail.vladimir.ui.utils.SwingExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.sql.SQLException;
-import java.util.List;
 
 public class CrudForm extends JFrame {
 
     private static final Logger logger = LoggerFactory.getLogger(CrudForm.class);
 
+    private final AsyncDatabaseService asyncService;
     private final IDatabaseService dbService;
     private final DatabaseType dbType;
     private final JPanel tablesPanel;
@@ -29,9 +33,11 @@ public class CrudForm extends JFrame {
     private final SchemaBuilder schemaBuilder = new SchemaBuilder();
 
     private DefaultTableModel schemaTableModel;
+    private final BusyIndicator busyIndicator = new BusyIndicator();
 
-    public CrudForm(IDatabaseService dbService, DatabaseType dbType) {
-        this.dbService = dbService;
+    public CrudForm(AsyncDatabaseService asyncService, DatabaseType dbType) {
+        this.asyncService = asyncService;
+        this.dbService = asyncService.getService();
         this.dbType = dbType;
         this.tableManager = new TableManager(dbService);
 
@@ -52,9 +58,13 @@ public class CrudForm extends JFrame {
         // Buttons panel
         JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton addTableButton = new JButton("Add Table");
+        JButton metricsButton = new JButton("Metrics");
         JButton disconnectButton = new JButton("Disconnect");
         buttonsPanel.add(addTableButton);
+        if (dbService instanceof InstrumentedDatabaseService)
+            buttonsPanel.add(metricsButton);
         buttonsPanel.add(disconnectButton);
+        buttonsPanel.add(busyIndicator);
         topPanel.add(buttonsPanel, BorderLayout.SOUTH);
 
         add(topPanel, BorderLayout.NORTH);
@@ -66,6 +76,7 @@ public class CrudForm extends JFrame {
 
         // Event listeners for buttons
         addTableButton.addActionListener(e -> openTableForm());
+        metricsButton.addActionListener(e -> new MetricsView(this, (InstrumentedDatabaseService) dbService).setVisible(true));
         disconnectButton.addActionListener(e -> disconnect());
 
         refreshTables();
@@ -118,28 +129,14 @@ public class CrudForm extends JFrame {
                     if (tableSchema == null || tableSchema.isEmpty()) {
                         return;
                     }
-                    try {
-                        tableManager.createTable(null, tableSchema);
-                        refreshTables();
-                        dialog.dispose();
-                    } catch (SQLException ex) {
-                        JOptionPane.showMessageDialog(dialog, "Error creating table: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                        logger.error("Error creating table: {}", ex.getMessage());
-                    }
+                    createTable(dialog, () -> tableManager.createTable(null, tableSchema), "table");
                 } else if (rawSchemaOption.isSelected()) {
                     String tableSchema = tableSchemaArea.getText().trim();
                     if (tableSchema.isEmpty()) {
                         JOptionPane.showMessageDialog(dialog, "Table schema cannot be empty.", "Error", JOptionPane.ERROR_MESSAGE);
                         return;
                     }
-                    try {
-                        tableManager.createTable(null, tableSchema);
-                        refreshTables();
-                        dialog.dispose();
-                    } catch (SQLException ex) {
-                        JOptionPane.showMessageDialog(dialog, "Error creating table: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                        logger.error("Error creating table: {}", ex.getMessage());
-                    }
+                    createTable(dialog, () -> tableManager.createTable(null, tableSchema), "table");
                 }
             });
         } else {
@@ -161,14 +158,7 @@ public class CrudForm extends JFrame {
                     return;
                 }
 
-                try {
-                    tableManager.createTable(collectionName, null);
-                    refreshTables();
-                    dialog.dispose();
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(dialog, "Error creating collection: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    logger.error("Error creating collection {}: {}", collectionName, ex.getMessage());
-                }
+                createTable(dialog, () -> tableManager.createTable(collectionName, null), "collection");
             });
         }
 
@@ -176,6 +166,23 @@ public class CrudForm extends JFrame {
         dialog.setVisible(true);
     }
 
+    private void createTable(JDialog dialog, SqlRunnable task, String kind) {
+        busyIndicator.track(asyncService.run(task), "Creating " + kind + "...")
+                .whenCompleteAsync((ignored, error) -> {
+                    if (error == null) {
+                        refreshTables();
+                        dialog.dispose();
+                        return;
+                    }
+                    if (AsyncDatabaseService.isCancellation(error))
+                        return;
+
+                    Throwable cause = AsyncDatabaseService.unwrap(error);
+                    JOptionPane.showMessageDialog(dialog, "Error creating " + kind + ": " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    logger.error("Error creating {}: {}", kind, cause.getMessage());
+                }, SwingExecutor.INSTANCE);
+    }
+
     private String buildSchemaFromGUI() {
         // Deprecated, now using SchemaBuilder class
         return null;
@@ -229,27 +236,34 @@ public class CrudForm extends JFrame {
     }
 
     private void refreshTables() {
-        tablesPanel.removeAll();
-        try {
-            List<String> tables = tableManager.listTables();
-            GridBagConstraints gbc = new GridBagConstraints();
-            gbc.gridx = 0;
-            gbc.gridy = 0;
-            gbc.insets = new Insets(5, 5, 5, 5);
-            gbc.fill = GridBagConstraints.HORIZONTAL;
-
-            for (String table : tables) {
-                JPanel tableRow = createTableRow(table);
-                tablesPanel.add(tableRow, gbc);
-                gbc.gridy++;
-            }
+        busyIndicator.track(asyncService.submit(tableManager::listTables), "Loading tables...")
+                .whenCompleteAsync((tables, error) -> {
+                    if (error != null) {
+                        if (AsyncDatabaseService.isCancellation(error))
+                            return;
+
+                        Throwable cause = AsyncDatabaseService.unwrap(error);
+                        JOptionPane.showMessageDialog(this, "Error fetching tables: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        logger.error("Error refreshing tables: {}", cause.getMessage());
+                        return;
+                    }
 
-            tablesPanel.revalidate();
-            tablesPanel.repaint();
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error fetching tables: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            logger.error("Error refreshing tables: {}", ex.getMessage());
-        }
+                    tablesPanel.removeAll();
+                    GridBagConstraints gbc = new GridBagConstraints();
+                    gbc.gridx = 0;
+                    gbc.gridy = 0;
+                    gbc.insets = new Insets(5, 5, 5, 5);
+                    gbc.fill = GridBagConstraints.HORIZONTAL;
+
+                    for (String table : tables) {
+                        JPanel tableRow = createTableRow(table);
+                        tablesPanel.add(tableRow, gbc);
+                        gbc.gridy++;
+                    }
+
+                    tablesPanel.revalidate();
+                    tablesPanel.repaint();
+                }, SwingExecutor.INSTANCE);
     }
 
     private JPanel createTableRow(String tableName) {
@@ -280,13 +294,19 @@ public class CrudForm extends JFrame {
             if (confirmation != JOptionPane.YES_OPTION)
                 return;
 
-            try {
-                tableManager.deleteTable(tableName);
-                refreshTables();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "Error deleting table: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                logger.error("Error deleting table {}: {}", tableName, ex.getMessage());
-            }
+            busyIndicator.track(asyncService.run(() -> tableManager.deleteTable(tableName)), "Deleting " + tableName + "...")
+                    .whenCompleteAsync((ignored, error) -> {
+                        if (error == null) {
+                            refreshTables();
+                            return;
+                        }
+                        if (AsyncDatabaseService.isCancellation(error))
+                            return;
+
+                        Throwable cause = AsyncDatabaseService.unwrap(error);
+                        JOptionPane.showMessageDialog(this, "Error deleting table: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        logger.error("Error deleting table {}: {}", tableName, cause.getMessage());
+                    }, SwingExecutor.INSTANCE);
         });
 
         return rowPanel;
@@ -297,26 +317,32 @@ public class CrudForm extends JFrame {
     }
 
     private void openTableView(String tableName) {
-        try {
-            AbstractTablesView tableView;
-            if (dbType == DatabaseType.MONGODB)
-                tableView = new MongoTablesView(dbService, tableName);
-            else
-                tableView = new RelationalTablesView(dbService, tableName);
-
-            tableView.setVisible(true);
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error opening table view: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            logger.error("Error opening table view for {}: {}", tableName, ex.getMessage());
+        if (dbType == DatabaseType.MONGODB) {
+            new MongoTablesView(asyncService, tableName).setVisible(true);
+            return;
         }
+
+        busyIndicator.track(asyncService.submit(() -> new RelationalTableManager(dbService, tableName)), "Opening " + tableName + "...")
+                .whenCompleteAsync((relationalTableManager, error) -> {
+                    if (error == null) {
+                        new RelationalTablesView(asyncService, relationalTableManager).setVisible(true);
+                        return;
+                    }
+                    if (AsyncDatabaseService.isCancellation(error))
+                        return;
+
+                    Throwable cause = AsyncDatabaseService.unwrap(error);
+                    JOptionPane.showMessageDialog(this, "Error opening table view: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    logger.error("Error opening table view for {}: {}", tableName, cause.getMessage());
+                }, SwingExecutor.INSTANCE);
     }
 
     private void disconnect() {
-        try {
-            dbService.disconnect();
-        } catch (SQLException ex) {
-            logger.error("Error disconnecting: {}", ex.getMessage());
-        }
+        asyncService.disconnect().whenComplete((ignored, error) -> {
+            if (error != null)
+                logger.error("Error disconnecting: {}", AsyncDatabaseService.unwrap(error).getMessage());
+            asyncService.shutdown();
+        });
         dispose();
         new LoginView().setVisible(true);
     }
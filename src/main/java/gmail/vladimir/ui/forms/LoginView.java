@@ -1,17 +1,25 @@
 package gmail.vladimir.ui.forms;
 
+import gmail.vladimir.db.AbstractRelationalDatabaseService;
+import gmail.vladimir.db.AsyncDatabaseService;
 import gmail.vladimir.db.DatabaseServiceFactory;
 import gmail.vladimir.db.DatabaseType;
 import gmail.vladimir.db.IDatabaseService;
+import gmail.vladimir.db.implementation.ReactiveMongoDBDatabaseService;
 import gmail.vladimir.managers.ConnectionManager;
+import gmail.vladimir.ui.utils.BusyIndicator;
+import gmail.vladimir.ui.utils.SwingExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
 public class LoginView extends JFrame {
+    private static final Logger logger = LoggerFactory.getLogger(LoginView.class);
+
     private JComboBox<DatabaseType> dbTypeComboBox;
     private JPanel inputPanel;
     private CardLayout inputCardLayout;
@@ -23,17 +31,24 @@ public class LoginView extends JFrame {
     private JTextField portField;
     private JTextField dbNameField;
     private JTextField extraParamsField;
+    private JTextField poolSizeField;
+    private JCheckBox prewarmMetadataCheckBox;
+    private JCheckBox keyAllocationTableCheckBox;
 
     private JTextField filePathField;
 
     private JTextField mongoUriField;
     private JTextField mongoDbNameField;
+    private JCheckBox mongoReactiveCheckBox;
 
     private ConnectionManager connectionManager = new ConnectionManager();
 
+    private JButton connectButton;
+    private final BusyIndicator busyIndicator = new BusyIndicator();
+
     public LoginView() {
         setTitle("Database Login");
-        setSize(400, 400);
+        setSize(400, 430);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
@@ -58,11 +73,12 @@ public class LoginView extends JFrame {
 
         mainPanel.add(inputPanel, BorderLayout.CENTER);
 
-        JButton connectButton = new JButton("Connect");
+        connectButton = new JButton("Connect");
         JButton cancelButton = new JButton("Cancel");
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(connectButton);
         buttonPanel.add(cancelButton);
+        buttonPanel.add(busyIndicator);
 
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -86,6 +102,9 @@ public class LoginView extends JFrame {
                         inputValues.put("username", usernameField.getText());
                         inputValues.put("password", new String(passwordField.getPassword()));
                         inputValues.put("extraParams", extraParamsField.getText());
+                        inputValues.put("poolSize", poolSizeField.getText());
+                        inputValues.put(AbstractRelationalDatabaseService.METADATA_PREWARM, String.valueOf(prewarmMetadataCheckBox.isSelected()));
+                        inputValues.put(AbstractRelationalDatabaseService.KEYS_CREATE_ALLOCATION_TABLE, String.valueOf(keyAllocationTableCheckBox.isSelected()));
                         break;
                     case SQLITE:
                         inputValues.put("dbFilePath", filePathField.getText());
@@ -93,6 +112,8 @@ public class LoginView extends JFrame {
                     case MONGODB:
                         inputValues.put("uri", mongoUriField.getText());
                         inputValues.put("dbName", mongoDbNameField.getText());
+                        if (mongoReactiveCheckBox.isSelected())
+                            inputValues.put(ReactiveMongoDBDatabaseService.DRIVER, ReactiveMongoDBDatabaseService.REACTIVE);
                         break;
                     default:
                         throw new IllegalArgumentException("Unsupported database type: " + dbType);
@@ -176,6 +197,26 @@ public class LoginView extends JFrame {
                     JOptionPane.INFORMATION_MESSAGE);
         });
 
+        gbc.gridx = 0;
+        gbc.gridy++;
+        panel.add(new JLabel("Pool Size:"), gbc);
+
+        gbc.gridx = 1;
+        poolSizeField = new JTextField("10");
+        poolSizeField.setToolTipText("Maximum number of pooled connections. Use 1 to keep a single connection.");
+        panel.add(poolSizeField, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy++;
+        prewarmMetadataCheckBox = new JCheckBox("Prewarm table metadata");
+        prewarmMetadataCheckBox.setToolTipText("Load the table list and all column definitions in the background after connecting.");
+        panel.add(prewarmMetadataCheckBox, gbc);
+
+        gbc.gridy++;
+        keyAllocationTableCheckBox = new JCheckBox("Create key allocation table");
+        keyAllocationTableCheckBox.setToolTipText("Create the crudjava_key_blocks table in this database, so several users can add entries without key clashes.");
+        panel.add(keyAllocationTableCheckBox, gbc);
+
         return panel;
     }
 
@@ -226,6 +267,12 @@ public class LoginView extends JFrame {
         mongoDbNameField = new JTextField();
         panel.add(mongoDbNameField, gbc);
 
+        gbc.gridx = 1;
+        gbc.gridy++;
+        mongoReactiveCheckBox = new JCheckBox("Use the asynchronous driver");
+        mongoReactiveCheckBox.setToolTipText("Reactive Streams driver: requests do not hold a thread while waiting, and bulk edits keep several batches in flight.");
+        panel.add(mongoReactiveCheckBox, gbc);
+
         return panel;
     }
 
@@ -254,13 +301,30 @@ public class LoginView extends JFrame {
         }
     }
 
-    private void connect(DatabaseType dbType, Map<String, String> connectionParams) throws SQLException {
-        IDatabaseService dbService = DatabaseServiceFactory.createDatabaseService(dbType);
-        dbService.connect(connectionParams);
-
-        CrudForm crudForm = new CrudForm(dbService, dbType);
-        crudForm.setVisible(true);
-        dispose();
+    private void connect(DatabaseType dbType, Map<String, String> connectionParams) {
+        IDatabaseService dbService = DatabaseServiceFactory.createDatabaseService(dbType, connectionParams);
+        AsyncDatabaseService asyncService = new AsyncDatabaseService(dbService);
+
+        connectButton.setEnabled(false);
+        busyIndicator.track(asyncService.connect(connectionParams), "Connecting...")
+                .whenCompleteAsync((ignored, error) -> {
+                    connectButton.setEnabled(true);
+                    if (error == null) {
+                        CrudForm crudForm = new CrudForm(asyncService, dbType);
+                        crudForm.setVisible(true);
+                        dispose();
+                        return;
+                    }
+
+                    // A cancelled attempt may still finish connecting on the worker, so close it behind us.
+                    asyncService.disconnect().whenComplete((result, disconnectError) -> asyncService.shutdown());
+                    if (AsyncDatabaseService.isCancellation(error))
+                        return;
+
+                    Throwable cause = AsyncDatabaseService.unwrap(error);
+                    JOptionPane.showMessageDialog(this, "Failed to connect: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    logger.error("Failed to connect", cause);
+                }, SwingExecutor.INSTANCE);
     }
 
     private GridBagConstraints createGbc() {
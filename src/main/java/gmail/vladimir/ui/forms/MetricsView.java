@@ -0,0 +1,120 @@
+package gmail.vladimir.ui.forms;
+
+import gmail.vladimir.db.AbstractRelationalDatabaseService;
+import gmail.vladimir.db.InstrumentedDatabaseService;
+import gmail.vladimir.db.PoolStats;
+import gmail.vladimir.db.metrics.DatabaseMetrics;
+import gmail.vladimir.db.metrics.OperationSummary;
+import gmail.vladimir.db.metrics.SlowQuery;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+
+// Live view of an InstrumentedDatabaseService's metrics: latency percentiles per operation and per table, pool waits
+// and the slow-query log. Everything is read from memory, so refreshing on the event thread is cheap.
+public class MetricsView extends JDialog {
+
+    private static final int REFRESH_MS = 1000;
+    private static final String[] SUMMARY_COLUMNS = {"Name", "Calls", "Errors", "Error %", "Rows", "Bytes", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "Max ms"};
+    private static final String[] SLOW_QUERY_COLUMNS = {"Time", "Operation", "Table", "ms", "Failed", "Detail"};
+
+    private final InstrumentedDatabaseService service;
+    private final DatabaseMetrics metrics;
+    private final DefaultTableModel operationsModel = readOnlyModel(SUMMARY_COLUMNS);
+    private final DefaultTableModel tablesModel = readOnlyModel(SUMMARY_COLUMNS);
+    private final DefaultTableModel slowQueriesModel = readOnlyModel(SLOW_QUERY_COLUMNS);
+    private final JLabel poolLabel = new JLabel();
+    private final Timer refreshTimer;
+
+    public MetricsView(Frame owner, InstrumentedDatabaseService service) {
+        super(owner, "Metrics - " + service.getDatabaseName(), false);
+        this.service = service;
+        this.metrics = service.getMetrics();
+
+        setSize(1000, 500);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controlsPanel.add(new JLabel("Slow query threshold (ms):"));
+        JSpinner thresholdSpinner = new JSpinner(new SpinnerNumberModel(metrics.getSlowQueryThresholdMillis(), 0L, Long.MAX_VALUE, 50L));
+        thresholdSpinner.setPreferredSize(new Dimension(90, thresholdSpinner.getPreferredSize().height));
+        thresholdSpinner.addChangeListener(e -> metrics.setSlowQueryThresholdMillis(((Number) thresholdSpinner.getValue()).longValue()));
+        controlsPanel.add(thresholdSpinner);
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refresh();
+        });
+        controlsPanel.add(resetButton);
+        add(controlsPanel, BorderLayout.NORTH);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Operations", new JScrollPane(new JTable(operationsModel)));
+        tabs.addTab("Tables", new JScrollPane(new JTable(tablesModel)));
+        JTable slowQueriesTable = new JTable(slowQueriesModel);
+        slowQueriesTable.getColumnModel().getColumn(5).setPreferredWidth(500);
+        tabs.addTab("Slow queries", new JScrollPane(slowQueriesTable));
+        add(tabs, BorderLayout.CENTER);
+
+        JPanel poolPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        poolPanel.add(poolLabel);
+        add(poolPanel, BorderLayout.SOUTH);
+
+        refreshTimer = new Timer(REFRESH_MS, e -> refresh());
+        refreshTimer.start();
+        refresh();
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+
+    private void refresh() {
+        fillSummaries(operationsModel, metrics.getOperations());
+        fillSummaries(tablesModel, metrics.getTables());
+
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+        slowQueriesModel.setRowCount(0);
+        for (SlowQuery query : metrics.getSlowQueries())
+            slowQueriesModel.addRow(new Object[]{format.format(new Date(query.getTimestamp())), query.getOperation(),
+                    query.getTable(), String.format("%.1f", query.getMillis()), query.isFailed() ? "yes" : "", query.getDetail()});
+
+        OperationSummary poolWait = metrics.getPoolWait();
+        String text = String.format("Pool waits: %d, p50 %.2f ms, p99 %.2f ms, max %.2f ms, timeouts %d",
+                poolWait.getCount(), poolWait.getP50Millis(), poolWait.getP99Millis(), poolWait.getMaxMillis(), metrics.getPoolTimeouts());
+        if (service.getDelegate() instanceof AbstractRelationalDatabaseService) {
+            PoolStats stats = ((AbstractRelationalDatabaseService) service.getDelegate()).getPoolStats();
+            if (stats != null)
+                text += "  |  Pool: " + stats;
+        }
+        poolLabel.setText(text);
+    }
+
+    private static void fillSummaries(DefaultTableModel model, List<OperationSummary> summaries) {
+        model.setRowCount(0);
+        for (OperationSummary summary : summaries)
+            model.addRow(new Object[]{summary.getName(), summary.getCount(), summary.getErrors(),
+                    String.format("%.1f", summary.getErrorRate() * 100), summary.getRows(), summary.getBytes(),
+                    String.format("%.2f", summary.getMeanMillis()), String.format("%.2f", summary.getP50Millis()),
+                    String.format("%.2f", summary.getP90Millis()), String.format("%.2f", summary.getP99Millis()),
+                    String.format("%.2f", summary.getP999Millis()), String.format("%.2f", summary.getMaxMillis())});
+    }
+
+    private static DefaultTableModel readOnlyModel(String[] columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+}
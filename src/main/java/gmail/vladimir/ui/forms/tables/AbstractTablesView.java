@@ -1,20 +1,43 @@
 package gmail.vladimir.ui.forms.tables;
 
 import gmail.vladimir.Constants;
+import gmail.vladimir.db.AsyncDatabaseService;
 import gmail.vladimir.db.IDatabaseService;
+import gmail.vladimir.db.SqlCallable;
+import gmail.vladimir.transfer.FileFormat;
+import gmail.vladimir.transfer.ImportCheckpoint;
+import gmail.vladimir.transfer.TableExporter;
+import gmail.vladimir.transfer.TableImporter;
+import gmail.vladimir.ui.utils.BusyIndicator;
+import gmail.vladimir.ui.utils.SwingExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public abstract class AbstractTablesView extends JFrame {
 
+    private static final Logger logger = LoggerFactory.getLogger(AbstractTablesView.class);
+
+    protected final AsyncDatabaseService asyncService;
     protected final IDatabaseService dbService;
     protected final String tableName;
 
     protected final JPanel dataPanel;
+    protected final BusyIndicator busyIndicator = new BusyIndicator();
 
-    public AbstractTablesView(IDatabaseService dbService, String tableName) {
-        this.dbService = dbService;
+    public AbstractTablesView(AsyncDatabaseService asyncService, String tableName) {
+        this.asyncService = asyncService;
+        this.dbService = asyncService.getService();
         this.tableName = tableName;
 
         setTitle("CRUD Operations for Table: " + tableName);
@@ -43,6 +66,95 @@ public abstract class AbstractTablesView extends JFrame {
         addButton.addActionListener(e -> openEntryForm(null));
     }
 
+    // Runs the task on a database worker and hands the result back on the EDT; cancelled tasks are dropped silently.
+    protected <T> CompletableFuture<T> runAsync(SqlCallable<T> task, String progressMessage, Consumer<T> onSuccess, String errorMessage) {
+        CompletableFuture<T> future = busyIndicator.track(asyncService.submit(task), progressMessage);
+        future.whenCompleteAsync((result, error) -> {
+            if (error == null)
+                onSuccess.accept(result);
+            else if (!AsyncDatabaseService.isCancellation(error))
+                showError(this, errorMessage, AsyncDatabaseService.unwrap(error));
+        }, SwingExecutor.INSTANCE);
+        return future;
+    }
+
+    // Offers to resume when an earlier import of the same file into this table stopped part way.
+    protected void openImportDialog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV or JSON Lines (*.csv, *.jsonl, *.ndjson)", "csv", "jsonl", "ndjson"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        Path file = chooser.getSelectedFile().toPath();
+        FileFormat format = FileFormat.fromFileName(file.getFileName().toString());
+        if (format == null) {
+            JOptionPane.showMessageDialog(this, "Choose a .csv, .jsonl or .ndjson file.", "Import", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        TableImporter importer = new TableImporter(dbService, tableName);
+        boolean resume = false;
+        try {
+            ImportCheckpoint checkpoint = importer.findCheckpoint(file);
+            if (checkpoint != null) {
+                int choice = JOptionPane.showConfirmDialog(this, "An earlier import of " + file.getFileName() + " stopped after "
+                        + checkpoint.getRows() + " rows. Continue from there?\nChoose No to import the whole file again.",
+                        "Resume Import", JOptionPane.YES_NO_CANCEL_OPTION);
+                if (choice != JOptionPane.YES_OPTION && choice != JOptionPane.NO_OPTION)
+                    return;
+                resume = choice == JOptionPane.YES_OPTION;
+            }
+        }
+        catch (SQLException e) {
+            showError(this, "Error reading the import checkpoint", e);
+            return;
+        }
+
+        importer.setProgressListener(progress -> SwingUtilities.invokeLater(() -> busyIndicator.setMessage(
+                String.format("Imported %d rows (%.0f%%, %.0f rows/s)...", progress.getTotalRows(), progress.getFraction() * 100, progress.getRowsPerSecond()))));
+        boolean resumeImport = resume;
+        runAsync(() -> importer.importFile(file, format, resumeImport), "Importing " + file.getFileName() + "...", progress -> {
+            refreshData();
+            JOptionPane.showMessageDialog(this, "Imported " + progress, "Import", JOptionPane.INFORMATION_MESSAGE);
+        }, "Import stopped (import the same file again to resume)");
+    }
+
+    // A .gz suffix (data.csv.gz) compresses the file; tables with an integer key are read in parallel key ranges.
+    protected void openExportDialog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV or JSON Lines, optionally gzipped (*.csv, *.jsonl, *.ndjson, *.gz)", "csv", "jsonl", "ndjson", "gz"));
+        chooser.setSelectedFile(new File(tableName + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        Path file = chooser.getSelectedFile().toPath();
+        String fileName = file.getFileName().toString();
+        boolean compress = fileName.toLowerCase(Locale.ROOT).endsWith(".gz");
+        FileFormat format = FileFormat.fromFileName(compress ? fileName.substring(0, fileName.length() - 3) : fileName);
+        if (format == null) {
+            JOptionPane.showMessageDialog(this, "Name the file .csv, .jsonl or .ndjson, optionally followed by .gz.", "Export", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (Files.exists(file) && JOptionPane.showConfirmDialog(this, fileName + " already exists. Replace it?", "Export",
+                JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+            return;
+
+        TableExporter exporter = new TableExporter(dbService);
+        exporter.setCompress(compress);
+        exporter.setParallelism(Runtime.getRuntime().availableProcessors());
+        exporter.setProgressListener(progress -> SwingUtilities.invokeLater(() -> busyIndicator.setMessage(progress.getFraction() < 0
+                ? String.format("Exported %d rows (%.0f rows/s)...", progress.getRows(), progress.getRowsPerSecond())
+                : String.format("Exported %d rows (%.0f%%, %.0f rows/s)...", progress.getRows(), progress.getFraction() * 100, progress.getRowsPerSecond()))));
+        runAsync(() -> exporter.exportTable(tableName, file, format), "Exporting to " + fileName + "...",
+                progress -> JOptionPane.showMessageDialog(this, "Exported " + progress, "Export", JOptionPane.INFORMATION_MESSAGE),
+                "Export failed");
+    }
+
+    protected void showError(Component parent, String message, Throwable cause) {
+        JOptionPane.showMessageDialog(parent, message + ": " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        logger.error("{}: {}", message, cause.getMessage());
+    }
+
     protected abstract void refreshData();
 
     protected abstract void openEntryForm(Object existingData);
@@ -1,34 +1,90 @@
 package gmail.vladimir.ui.forms.tables;
 
-import gmail.vladimir.db.IDatabaseService;
+import gmail.vladimir.db.AsyncDatabaseService;
+import gmail.vladimir.db.IDocumentDatabaseService;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
+import gmail.vladimir.db.SqlRunnable;
+import gmail.vladimir.managers.MongoFieldIndex;
 import gmail.vladimir.managers.MongoTableManager;
 import gmail.vladimir.ui.forms.tables.helpers.ButtonEditor;
 import gmail.vladimir.ui.forms.tables.helpers.ButtonRenderer;
+import gmail.vladimir.ui.forms.tables.helpers.MongoTableModel;
+import gmail.vladimir.ui.utils.SwingExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import java.awt.*;
-import java.sql.SQLException;
 import java.util.*;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class MongoTablesView extends AbstractTablesView {
     public static final Logger logger = LoggerFactory.getLogger(MongoTablesView.class);
     private final MongoTableManager tableManager;
     private JComboBox<String> sortDropdown;
+    private boolean updatingSortDropdown;
+    private int loadGeneration;
+    private AutoCloseable fieldWatch;
+    private final Timer fieldIndexRefreshTimer;
+    private final MongoTableModel tableModel = new MongoTableModel();
+    private final JTable table;
+    private final ButtonEditor editButtonEditor;
+    private final ButtonEditor removeButtonEditor;
+
+    private int entriesPerPage = 50;
+    private int currentPage = 1;
+    private long totalEntries;
+    // Selection that totalEntries is the exact count for; local writes keep it current, so paging does not recount.
+    private String countedSort;
+    // Resume points for the neighbouring pages, and the one the displayed page was read from (null when it was skipped to).
+    private String pageSort;
+    private KeysetCursor pageCursor;
+    private KeysetCursor nextPageCursor;
+    private KeysetCursor previousPageCursor;
+    private boolean partialRows;
+    private JTextField entriesPerPageField;
+    private JButton prevPageButton;
+    private JButton nextPageButton;
+    private JTextField pageNumberField;
+
+    public MongoTablesView(AsyncDatabaseService asyncService, String tableName) {
+        super(asyncService, tableName);
+        this.tableManager = new MongoTableManager((IDocumentDatabaseService) dbService, tableName);
+
+        editButtonEditor = new ButtonEditor("Edit", row -> withFullDocument(tableModel.getRow(row), this::openEntryForm));
+        removeButtonEditor = new ButtonEditor("Remove", row -> withFullDocument(tableModel.getRow(row), this::confirmDeleteEntry));
+        table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        table.setRowHeight(30);
+        tableModel.addTableModelListener(e -> {
+            if (e.getFirstRow() == TableModelEvent.HEADER_ROW)
+                configureColumns();
+        });
+        dataPanel.setLayout(new BorderLayout());
+        dataPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        // Collapses bursts of foreign updates/deletes into a single index refresh.
+        fieldIndexRefreshTimer = new Timer(2000, e -> refreshFieldIndex());
+        fieldIndexRefreshTimer.setRepeats(false);
 
-    public MongoTablesView(IDatabaseService dbService, String tableName) {
-        super(dbService, tableName);
-        this.tableManager = new MongoTableManager(dbService, tableName);
         setupSortDropdown();
         setupButtonPanel();
-        updateSortDropdown();
-        refreshData();
+        reloadAll();
+    }
+
+    @Override
+    public void dispose() {
+        stopWatchingFields();
+        fieldIndexRefreshTimer.stop();
+        super.dispose();
     }
 
     public MongoTableManager getTableManager() {
@@ -43,138 +99,329 @@ public class MongoTablesView extends AbstractTablesView {
         JButton massActionButton = new JButton("Mass Action");
         massActionButton.addActionListener(e -> openMassActionDialog());
 
+        JButton importButton = new JButton("Import...");
+        importButton.addActionListener(e -> openImportDialog());
+
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> openExportDialog());
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> reloadAll());
+
+        entriesPerPageField = new JTextField(String.valueOf(entriesPerPage), 5);
+        entriesPerPageField.addActionListener(e -> {
+            try {
+                setEntriesPerPage(Math.max(1, Integer.parseInt(entriesPerPageField.getText())));
+            }
+            catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter a valid number.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                entriesPerPageField.setText(String.valueOf(entriesPerPage));
+            }
+        });
+
+        prevPageButton = new JButton("<");
+        nextPageButton = new JButton(">");
+        pageNumberField = new JTextField(String.valueOf(currentPage), 3);
+
+        prevPageButton.addActionListener(e -> {
+            if (currentPage > 1)
+                goToPage(currentPage - 1, previousPageCursor);
+        });
+
+        nextPageButton.addActionListener(e -> {
+            if (currentPage < getTotalPages())
+                goToPage(currentPage + 1, nextPageCursor);
+        });
+
+        pageNumberField.addActionListener(e -> {
+            try {
+                int page = Integer.parseInt(pageNumberField.getText());
+                goToPage(Math.max(1, Math.min(page, getTotalPages())));
+            }
+            catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter a valid page number.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                pageNumberField.setText(String.valueOf(currentPage));
+            }
+        });
+
         buttonPanel.add(addEntryButton);
         buttonPanel.add(massActionButton);
+        buttonPanel.add(importButton);
+        buttonPanel.add(exportButton);
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(new JLabel("Entries per page:"));
+        buttonPanel.add(entriesPerPageField);
+        buttonPanel.add(prevPageButton);
+        buttonPanel.add(pageNumberField);
+        buttonPanel.add(nextPageButton);
+        buttonPanel.add(busyIndicator);
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
     private void setupSortDropdown() {
         sortDropdown = new JComboBox<>();
-        sortDropdown.addActionListener(e -> refreshData());
+        sortDropdown.addActionListener(e -> {
+            if (!updatingSortDropdown)
+                goToPage(1);
+        });
+        sortDropdown.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, describeSortOption((String) value), index, isSelected, cellHasFocus);
+            }
+        });
+
+        JCheckBox watchCheckBox = new JCheckBox("Watch for changes");
+        watchCheckBox.setToolTipText("Update the field list from a change stream (requires a replica set)");
+        watchCheckBox.addActionListener(e -> {
+            if (watchCheckBox.isSelected())
+                startWatchingFields(watchCheckBox);
+            else
+                stopWatchingFields();
+        });
+
         JPanel sortPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         sortPanel.add(new JLabel("Sort/Filter By: "));
         sortPanel.add(sortDropdown);
+        sortPanel.add(watchCheckBox);
         add(sortPanel, BorderLayout.NORTH);
     }
 
-    public void updateSortDropdown() {
-        sortDropdown.removeAllItems();
+    // Shows how many documents use each option; "~" marks counts taken from a sample.
+    private String describeSortOption(String option) {
+        MongoFieldIndex index = tableManager.getFieldIndex();
+        if (option == null || index == null || option.equals("ALL"))
+            return option;
+
+        long count = option.startsWith("Field: ")
+                ? index.getFieldCount(option.substring("Field: ".length()))
+                : index.getCombinationCount(option.substring("Fields: ".length()));
+        return option + " (" + (index.isSampled() ? "~" : "") + count + ")";
+    }
+
+    private void startWatchingFields(JCheckBox watchCheckBox) {
+        runAsync(() -> tableManager.watchFieldIndex(stale -> SwingUtilities.invokeLater(() -> {
+            if (stale)
+                fieldIndexRefreshTimer.restart();
+            else if (!updateSortDropdown())
+                goToPage(1);
+        })), "Opening change stream...", watch -> {
+            // The box may have been cleared or the window closed while the stream was opening.
+            if (!watchCheckBox.isSelected() || !isDisplayable()) {
+                closeQuietly(watch);
+                return;
+            }
+            fieldWatch = watch;
+        }, "Error watching collection").whenCompleteAsync((watch, error) -> {
+            if (error != null)
+                watchCheckBox.setSelected(false);
+        }, SwingExecutor.INSTANCE);
+    }
+
+    private void stopWatchingFields() {
+        if (fieldWatch == null)
+            return;
+
+        closeQuietly(fieldWatch);
+        fieldWatch = null;
+    }
+
+    private void closeQuietly(AutoCloseable watch) {
         try {
-            Set<String> individualFields = new TreeSet<>();
-            Set<String> fieldCombinations = new TreeSet<>();
-            fieldCombinations.add("ALL");
+            watch.close();
+        }
+        catch (Exception e) {
+            logger.error("Error closing change stream: {}", e.getMessage());
+        }
+    }
 
-            List<Map<String, Object>> tableData = tableManager.getTableData();
+    private void refreshFieldIndex() {
+        runAsync(tableManager::refreshFieldIndex, "Refreshing fields...", index -> {
+            if (!updateSortDropdown())
+                goToPage(1);
+        }, "Error fetching entries for sort dropdown");
+    }
 
-            for (Map<String, Object> entry : tableData) {
-            for (String field : entry.keySet())
-                if (!field.equals("_id"))
-                    individualFields.add(field);
+    // Full reload: re-reads the field index and the current page. Single-document writes go through applyLocalWrite instead.
+    public void reloadAll() {
+        countedSort = null;
+        runAsync(tableManager::refreshFieldIndex, "Loading fields...", index -> {
+            updateSortDropdown();
+            refreshData();
+        }, "Error fetching entries for sort dropdown");
+    }
 
-                String combination = entry.keySet().stream()
-                        .filter(field -> !field.equals("_id"))
-                        .sorted()
-                        .collect(Collectors.joining(", "));
-                fieldCombinations.add(combination);
-            }
+    // Rebuilds the options from the field index, keeping the selection; returns false if the selected option is gone.
+    private boolean updateSortDropdown() {
+        MongoFieldIndex fieldIndex = tableManager.getFieldIndex();
+        if (fieldIndex == null)
+            return true;
 
+        Object previousSelection = sortDropdown.getSelectedItem();
+        updatingSortDropdown = true;
+        try {
+            sortDropdown.removeAllItems();
             sortDropdown.addItem("ALL");
-            individualFields.forEach(field -> sortDropdown.addItem("Field: " + field));
-            fieldCombinations.stream()
-                    .filter(combination -> !combination.equals("ALL"))
-                    .forEach(combination -> sortDropdown.addItem("Fields: " + combination));
+            fieldIndex.getFields().forEach(field -> sortDropdown.addItem("Field: " + field));
+            fieldIndex.getCombinations().forEach(combination -> sortDropdown.addItem("Fields: " + combination));
+            if (previousSelection != null)
+                sortDropdown.setSelectedItem(previousSelection);
         }
-        catch (SQLException ex) {
-            logger.error("Error fetching entries for sort dropdown: {}", ex.getMessage());
+        finally {
+            updatingSortDropdown = false;
         }
+        return previousSelection == null || previousSelection.equals(sortDropdown.getSelectedItem());
     }
 
-    @Override
-    public void refreshData() {
+    // Patches the sort options, the counts and the displayed page after a single-document write, without a query;
+    // the manager has already updated the field index. Until the next refresh an inserted row is appended rather than
+    // placed in sort order, and a removed row leaves the page one row short instead of pulling in the next page's first.
+    private void applyLocalWrite(Map<String, Object> oldDocument, Map<String, Object> newDocument) {
+        if (!updateSortDropdown()) {
+            goToPage(1);
+            return;
+        }
+
         String selectedSort = (String) sortDropdown.getSelectedItem();
-        dataPanel.removeAll();
-        DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
-        centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
-        try {
-            List<Map<String, Object>> tableData = tableManager.getSortedData(selectedSort);
-            LinkedHashSet<String> allFields = new LinkedHashSet<>();
-            for (Map<String, Object> row : tableData)
-                allFields.addAll(row.keySet());
-
-            if (selectedSort != null && !selectedSort.equals("ALL")) {
-                List<String> selectedFields = parseSelectedSortFields(selectedSort);
-                allFields.retainAll(selectedFields);
-            }
+        boolean wasShown = oldDocument != null && tableManager.matchesSelection(selectedSort, oldDocument);
+        boolean isShown = newDocument != null && tableManager.matchesSelection(selectedSort, newDocument);
+        if (wasShown)
+            totalEntries--;
+        if (isShown)
+            totalEntries++;
+
+        int row = oldDocument != null ? tableModel.indexOf(oldDocument.get("_id")) : -1;
+        if (row >= 0 && isShown)
+            tableModel.updateRow(row, newDocument);
+        else if (row >= 0)
+            tableModel.removeRow(row);
+        else if (isShown && tableModel.getRowCount() < entriesPerPage)
+            tableModel.addRow(newDocument);
+
+        updatePaginationControls();
+    }
 
-            List<String> fieldList = new ArrayList<>(allFields);
+    public void setEntriesPerPage(int entriesPerPage) {
+        this.entriesPerPage = entriesPerPage;
+        entriesPerPageField.setText(String.valueOf(entriesPerPage));
+        goToPage(1);
+    }
 
-            DefaultTableModel tableModel = new DefaultTableModel() {
-                @Override
-                public boolean isCellEditable(int row, int column) {
-                    return column >= fieldList.size();
-                }
-            };
-
-            fieldList.forEach(tableModel::addColumn);
-            tableModel.addColumn("Edit");
-            tableModel.addColumn("Remove");
-
-            for (Map<String, Object> rowData : tableData) {
-                Object[] rowValues = new Object[fieldList.size() + 2];
-                int i = 0;
-                for (String field : fieldList) {
-                    Object value = rowData.get(field);
-                    rowValues[i++] = value != null ? value.toString() : "-";
-                }
-                rowValues[i++] = "Edit";
-                rowValues[i++] = "Remove";
-                tableModel.addRow(rowValues);
-            }
+    private void goToPage(int page) {
+        goToPage(page, null);
+    }
 
-            JTable table = new JTable(tableModel);
-            table.setFillsViewportHeight(true);
-            table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+    private void goToPage(int page, KeysetCursor cursor) {
+        currentPage = page;
+        pageCursor = cursor;
+        refreshData();
+    }
 
-            for (int i = 0; i < fieldList.size(); i++) {
-                TableColumn column = table.getColumnModel().getColumn(i);
-                column.setPreferredWidth(100);
+    // Only the requested page is fetched; filtering and sorting happen on the server.
+    @Override
+    public void refreshData() {
+        String selectedSort = (String) sortDropdown.getSelectedItem();
+        int limit = entriesPerPage;
+        int page = currentPage;
+        int generation = ++loadGeneration;
+        boolean countKnown = selectedSort != null && selectedSort.equals(countedSort);
+        long knownCount = totalEntries;
+        KeysetCursor cursor = Objects.equals(selectedSort, pageSort) ? pageCursor : null;
+
+        runAsync(() -> {
+            PageLoad load = new PageLoad();
+            load.exactCount = true;
+            if (countKnown)
+                load.totalEntries = knownCount;
+            else {
+                load.totalEntries = tableManager.estimateSortedCount(selectedSort);
+                load.exactCount = load.totalEntries < 0;
+                if (load.exactCount)
+                    load.totalEntries = tableManager.getSortedCount(selectedSort);
             }
+            load.page = page;
+            load.cursor = cursor;
+            if (cursor != null)
+                load.documents = tableManager.getSortedPage(selectedSort, cursor, limit, 0);
+            if (load.documents == null || load.documents.getData().isEmpty()) {
+                // The page may have disappeared after deletes, fall back to the last one that still exists.
+                long lastPage = Math.max(1, (load.totalEntries + limit - 1) / limit);
+                if (load.page > lastPage)
+                    load.page = (int) lastPage;
+                load.cursor = null;
+                load.documents = tableManager.getSortedPage(selectedSort, null, limit, (load.page - 1) * limit);
+            }
+            return load;
+        }, "Loading page " + page + "...", load -> {
+            if (generation != loadGeneration)
+                return;
 
-            int buttonColumnIndex = fieldList.size();
-            int removeColumnIndex = buttonColumnIndex + 1;
-
-            TableColumn editColumn = table.getColumnModel().getColumn(buttonColumnIndex);
-            TableColumn removeColumn = table.getColumnModel().getColumn(removeColumnIndex);
+            totalEntries = load.totalEntries;
+            countedSort = load.exactCount ? selectedSort : null;
+            currentPage = load.page;
+            pageSort = selectedSort;
+            pageCursor = load.cursor;
+            nextPageCursor = load.documents.getNextCursor();
+            previousPageCursor = load.documents.getPreviousCursor();
+            partialRows = tableManager.returnsPartialDocuments(selectedSort);
+            updatePaginationControls();
+            List<String> selectedFields = selectedSort == null || selectedSort.equals("ALL") ? null : parseSelectedSortFields(selectedSort);
+            tableModel.setData(selectedFields, load.documents.getData());
+            if (!load.exactCount)
+                refineCount(generation, selectedSort);
+        }, "Error fetching data");
+    }
 
-            editColumn.setPreferredWidth(75);
-            removeColumn.setPreferredWidth(75);
+    private void refineCount(int generation, String selectedSort) {
+        runAsync(() -> tableManager.getSortedCount(selectedSort), "Counting documents...", count -> {
+            if (generation != loadGeneration)
+                return;
 
-            table.getColumnModel().getColumn(buttonColumnIndex).setCellRenderer(new ButtonRenderer());
-            table.getColumnModel().getColumn(buttonColumnIndex).setCellEditor(new ButtonEditor(new JCheckBox(), "Edit", tableData, this));
+            totalEntries = count;
+            countedSort = selectedSort;
+            updatePaginationControls();
+        }, "Error counting documents");
+    }
 
-            table.getColumnModel().getColumn(removeColumnIndex).setCellRenderer(new ButtonRenderer());
-            table.getColumnModel().getColumn(removeColumnIndex).setCellEditor(new ButtonEditor(new JCheckBox(), "Remove", tableData, this));
+    private static class PageLoad {
+        private long totalEntries;
+        private boolean exactCount;
+        private int page;
+        private KeysetCursor cursor;
+        private KeysetPage documents;
+    }
 
-            table.setRowHeight(30);
+    private void updatePaginationControls() {
+        prevPageButton.setEnabled(currentPage > 1);
+        nextPageButton.setEnabled(currentPage < getTotalPages());
+        pageNumberField.setText(String.valueOf(currentPage));
+    }
 
-            JScrollPane scrollPane = new JScrollPane(table);
-            dataPanel.setLayout(new BorderLayout());
-            dataPanel.add(scrollPane, BorderLayout.CENTER);
+    private int getTotalPages() {
+        return (int) Math.max(1, (totalEntries + entriesPerPage - 1) / entriesPerPage);
+    }
 
-            for (int i = 0; i < table.getColumnCount(); i++) {
-                String columnName = table.getColumnName(i);
-                if (!columnName.equals("Edit") && !columnName.equals("Remove") && !columnName.isEmpty())
-                    table.getColumnModel().getColumn(i).setCellRenderer(centerRenderer);
-            }
+    // Column objects are recreated whenever the model's columns change, so renderers and the shared editors are reattached.
+    private void configureColumns() {
+        DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
+        centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
+        ButtonRenderer buttonRenderer = new ButtonRenderer();
 
-        }
-        catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error fetching data: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            logger.error("Error fetching data: {}", ex.getMessage());
+        int dataColumns = tableModel.getDataColumnCount();
+        for (int i = 0; i < dataColumns; i++) {
+            TableColumn column = table.getColumnModel().getColumn(i);
+            column.setPreferredWidth(100);
+            column.setCellRenderer(centerRenderer);
         }
 
-        dataPanel.revalidate();
-        dataPanel.repaint();
+        TableColumn editColumn = table.getColumnModel().getColumn(dataColumns);
+        TableColumn removeColumn = table.getColumnModel().getColumn(dataColumns + 1);
+        editColumn.setPreferredWidth(75);
+        removeColumn.setPreferredWidth(75);
+        editColumn.setCellRenderer(buttonRenderer);
+        editColumn.setCellEditor(editButtonEditor);
+        removeColumn.setCellRenderer(buttonRenderer);
+        removeColumn.setCellEditor(removeButtonEditor);
     }
 
     private List<String> parseSelectedSortFields(String selectedSort) {
@@ -224,28 +471,24 @@ public class MongoTablesView extends AbstractTablesView {
 
         loadFromEntryButton.setEnabled(false);
         if (entryData == null) {
-            try {
-                List<Map<String, Object>> dataForLoadButton = tableManager.getTableData();
-                if (!dataForLoadButton.isEmpty())
-                    loadFromEntryButton.setEnabled(true);
-            }
-            catch (SQLException ex) {
-                logger.error("Error fetching entries for 'Load from Existing Entry' button: {}", ex.getMessage());
-            }
+            asyncService.submit(() -> dbService.estimateTableEntryCount(tableName).getCount() > 0)
+                    .whenCompleteAsync((hasEntries, error) -> {
+                        if (error != null)
+                            logger.error("Error fetching entries for 'Load from Existing Entry' button: {}", AsyncDatabaseService.unwrap(error).getMessage());
+                        else
+                            loadFromEntryButton.setEnabled(hasEntries);
+                    }, SwingExecutor.INSTANCE);
         }
 
-        loadFromEntryButton.addActionListener(e -> {
-            Map<String, Object> selectedEntry = selectExistingEntry();
-            if (selectedEntry != null) {
-                fieldMap.clear();
-                removeButtonMap.clear();
-                formPanel.removeAll();
-                row[0] = 0;
-                populateFormWithData(formPanel, fieldMap, removeButtonMap, selectedEntry, row);
-                formPanel.revalidate();
-                formPanel.repaint();
-            }
-        });
+        loadFromEntryButton.addActionListener(e -> selectExistingEntry(dialog, selectedEntry -> {
+            fieldMap.clear();
+            removeButtonMap.clear();
+            formPanel.removeAll();
+            row[0] = 0;
+            populateFormWithData(formPanel, fieldMap, removeButtonMap, selectedEntry, row);
+            formPanel.revalidate();
+            formPanel.repaint();
+        }));
 
         saveButton.addActionListener(e -> {
             Map<String, Object> newData = new HashMap<>();
@@ -255,16 +498,17 @@ public class MongoTablesView extends AbstractTablesView {
                 newData.put(fieldName, value);
             }
 
-            try {
-                tableManager.saveEntry(newData, entryData);
-                updateSortDropdown();
-                refreshData();
-                dialog.dispose();
-            }
-            catch (SQLException ex) {
-                JOptionPane.showMessageDialog(dialog, "Error saving data: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                logger.error("Error saving data: {}", ex.getMessage());
-            }
+            saveButton.setEnabled(false);
+            busyIndicator.track(asyncService.submit(() -> tableManager.saveEntry(newData, entryData)), "Saving entry...")
+                    .whenCompleteAsync((saved, error) -> {
+                        saveButton.setEnabled(true);
+                        if (error == null) {
+                            applyLocalWrite(entryData, saved);
+                            dialog.dispose();
+                        }
+                        else if (!AsyncDatabaseService.isCancellation(error))
+                            showError(dialog, "Error saving data", AsyncDatabaseService.unwrap(error));
+                    }, SwingExecutor.INSTANCE);
         });
 
         dialog.setVisible(true);
@@ -283,12 +527,11 @@ public class MongoTablesView extends AbstractTablesView {
         }
     }
 
-    private Map<String, Object> selectExistingEntry() {
-        try {
-            List<Map<String, Object>> tableData = tableManager.getTableData();
+    private void selectExistingEntry(Component parent, Consumer<Map<String, Object>> onSelected) {
+        runAsync(() -> tableManager.getFirstEntries(MongoTableManager.TEMPLATE_ENTRY_LIMIT), "Loading entries...", tableData -> {
             if (tableData.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "No existing entries to load.", "Information", JOptionPane.INFORMATION_MESSAGE);
-                return null;
+                JOptionPane.showMessageDialog(parent, "No existing entries to load.", "Information", JOptionPane.INFORMATION_MESSAGE);
+                return;
             }
 
             Map<String, Map<String, Object>> entryMap = new HashMap<>();
@@ -302,17 +545,33 @@ public class MongoTablesView extends AbstractTablesView {
                 entryMap.put(identifier, entry);
             }
 
-            String selectedIdentifier = (String) JOptionPane.showInputDialog(this, "Select an entry to load as template:", "Load from Existing Entry",
+            String selectedIdentifier = (String) JOptionPane.showInputDialog(parent, "Select an entry to load as template:", "Load from Existing Entry",
                     JOptionPane.PLAIN_MESSAGE, null, entryIdentifiers.toArray(new String[0]), entryIdentifiers.get(0));
 
             if (selectedIdentifier != null)
-                return entryMap.get(selectedIdentifier);
-        }
-        catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error fetching entries: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            logger.error("Error fetching entries: {}", ex.getMessage());
+                onSelected.accept(entryMap.get(selectedIdentifier));
+        }, "Error fetching entries");
+    }
+
+    // Rows of a "Field: x" page only carry x; the form and the field counts need every field of the document.
+    private void withFullDocument(Map<String, Object> rowData, Consumer<Map<String, Object>> action) {
+        if (!partialRows) {
+            action.accept(rowData);
+            return;
         }
-        return null;
+
+        runAsync(() -> tableManager.getDocument(rowData.get("_id")), "Loading entry...", action, "Error loading entry");
+    }
+
+    private void confirmDeleteEntry(Map<String, Object> rowData) {
+        int confirmation = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this entry?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        if (confirmation != JOptionPane.YES_OPTION)
+            return;
+
+        runAsync(() -> {
+            tableManager.deleteEntry(rowData);
+            return null;
+        }, "Deleting entry...", ignored -> applyLocalWrite(rowData, null), "Error deleting entry");
     }
 
     private void addFieldToForm(JPanel formPanel, Map<String, JTextField> fieldMap, Map<String, JButton> removeButtonMap, String fieldName, String value, int[] row) {
@@ -376,22 +635,17 @@ public class MongoTablesView extends AbstractTablesView {
         JLabel fieldLabel = new JLabel("Field:");
         JComboBox<String> fieldDropdown = new JComboBox<>();
 
-        Set<String> fieldNames = new LinkedHashSet<>();
-        fieldNames.add("ALL");
-        try {
-            List<Map<String, Object>> tableData = tableManager.getTableData();
-            for (Map<String, Object> entry : tableData)
-            for (String field : entry.keySet())
-                if (!field.equals("_id"))
-                    fieldNames.add(field);
-        }
-        catch (SQLException ex) {
-            logger.error("Error fetching fields for mass action: {}", ex.getMessage());
-        }
-        fieldNames.forEach(fieldDropdown::addItem);
+        fieldDropdown.addItem("ALL");
+        MongoFieldIndex fieldIndex = tableManager.getFieldIndex();
+        if (fieldIndex != null)
+            fieldIndex.getFields().forEach(fieldDropdown::addItem);
+
+        JTextField batchSizeField = new JTextField(String.valueOf(tableManager.getBulkBatchSize()), 6);
 
         topPanel.add(fieldLabel);
         topPanel.add(fieldDropdown);
+        topPanel.add(new JLabel("Batch size:"));
+        topPanel.add(batchSizeField);
 
         mainPanel.add(topPanel, BorderLayout.NORTH);
 
@@ -478,40 +732,78 @@ public class MongoTablesView extends AbstractTablesView {
         cancelButton.addActionListener(e -> dialog.dispose());
 
         executeButton.addActionListener(e -> {
-            String selectedField = (String) fieldDropdown.getSelectedItem();
             try {
-                if (removeEntriesRadio.isSelected()) {
-                    String condition = conditionField.getText().trim();
-                    tableManager.massDeleteEntries(selectedField, condition);
+                tableManager.setBulkBatchSize(Integer.parseInt(batchSizeField.getText().trim()));
+            }
+            catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(dialog, "Please enter a valid batch size.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                batchSizeField.setText(String.valueOf(tableManager.getBulkBatchSize()));
+                return;
+            }
+
+            String selectedField = (String) fieldDropdown.getSelectedItem();
+            if (removeEntriesRadio.isSelected()) {
+                String condition = conditionField.getText().trim();
+                if (!condition.isEmpty() && (selectedField == null || "ALL".equals(selectedField))) {
+                    JOptionPane.showMessageDialog(dialog, "Choose a field for the condition to apply to.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
-                else if (addFieldRadio.isSelected()) {
-                    String newFieldName = newFieldNameField.getText().trim();
-                    String prefillValue = prefillValueField.getText();
 
-                    if (newFieldName.isEmpty()) {
-                        JOptionPane.showMessageDialog(dialog, "Field name cannot be empty.", "Error", JOptionPane.ERROR_MESSAGE);
+                // Deletions cannot be undone, so the user sees how many documents the filter matches first.
+                runAsync(() -> tableManager.countMassDelete(selectedField, condition), "Counting documents...", count -> {
+                    if (count == 0) {
+                        JOptionPane.showMessageDialog(dialog, "No documents match.", "Information", JOptionPane.INFORMATION_MESSAGE);
                         return;
                     }
 
-                    tableManager.massAddField(newFieldName, prefillValue);
-                }
-                else if (modifyFieldRadio.isSelected()) {
-                    String newValue = newValueField.getText();
-                    boolean onlyIfEmpty = onlyIfEmptyCheckbox.isSelected();
+                    int confirmation = JOptionPane.showConfirmDialog(dialog, "Delete " + count + " document" + (count == 1 ? "" : "s") + "?",
+                            "Confirm Delete", JOptionPane.YES_NO_OPTION);
+                    if (confirmation == JOptionPane.YES_OPTION)
+                        runMassAction(dialog, executeButton, () -> tableManager.massDeleteEntries(selectedField, condition));
+                }, "Error counting documents");
+                return;
+            }
 
-                    tableManager.massModifyField(selectedField, newValue, onlyIfEmpty);
+            SqlRunnable action;
+            if (addFieldRadio.isSelected()) {
+                String newFieldName = newFieldNameField.getText().trim();
+                String prefillValue = prefillValueField.getText();
+
+                if (newFieldName.isEmpty()) {
+                    JOptionPane.showMessageDialog(dialog, "Field name cannot be empty.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
 
-                updateSortDropdown();
-                refreshData();
-                dialog.dispose();
+                action = () -> tableManager.massAddField(newFieldName, prefillValue);
             }
-            catch (SQLException ex) {
-                JOptionPane.showMessageDialog(dialog, "Error executing mass action: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                logger.error("Error executing mass action: {}", ex.getMessage());
+            else if (modifyFieldRadio.isSelected()) {
+                String newValue = newValueField.getText();
+                boolean onlyIfEmpty = onlyIfEmptyCheckbox.isSelected();
+
+                action = () -> tableManager.massModifyField(selectedField, newValue, onlyIfEmpty, (processed, total) ->
+                        SwingUtilities.invokeLater(() -> busyIndicator.setMessage("Updated " + processed + " of " + total + " documents...")));
             }
+            else
+                return;
+
+            runMassAction(dialog, executeButton, action);
         });
 
         dialog.setVisible(true);
     }
+
+    private void runMassAction(JDialog dialog, JButton executeButton, SqlRunnable action) {
+        executeButton.setEnabled(false);
+        busyIndicator.track(asyncService.run(action), "Executing mass action...")
+                .whenCompleteAsync((ignored, error) -> {
+                    executeButton.setEnabled(true);
+                    // Mass actions touch an unknown set of documents, so they are followed by a full reload.
+                    if (error == null) {
+                        reloadAll();
+                        dialog.dispose();
+                    }
+                    else if (!AsyncDatabaseService.isCancellation(error))
+                        showError(dialog, "Error executing mass action", AsyncDatabaseService.unwrap(error));
+                }, SwingExecutor.INSTANCE);
+    }
 }
\ No newline at end of file
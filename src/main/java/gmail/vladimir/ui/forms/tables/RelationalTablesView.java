@@ -1,16 +1,28 @@
 package gmail.vladimir.ui.forms.tables;
 
-import gmail.vladimir.db.IDatabaseService;
+import gmail.vladimir.db.AsyncDatabaseService;
+import gmail.vladimir.db.ChangeSetResult;
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
-import gmail.vladimir.db.ISqlResultHandler;
+import gmail.vladimir.db.IStreamingSqlResultHandler;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
 import gmail.vladimir.db.QueryResult;
+import gmail.vladimir.db.RowCount;
+import gmail.vladimir.db.SqlCancellationToken;
 import gmail.vladimir.managers.RelationalTableManager;
+import gmail.vladimir.ui.forms.tables.helpers.ButtonEditor;
+import gmail.vladimir.ui.forms.tables.helpers.ButtonRenderer;
+import gmail.vladimir.ui.forms.tables.helpers.PendingRowRenderer;
+import gmail.vladimir.ui.forms.tables.helpers.RelationalTableModel;
 import gmail.vladimir.ui.utils.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,9 +31,17 @@ public class RelationalTablesView extends AbstractTablesView {
 
     private static final Logger logger = LoggerFactory.getLogger(RelationalTablesView.class);
 
+    // Console results are streamed; only the first rows are kept for display so large SELECTs run in bounded memory.
+    private static final int FETCH_SIZE = 500;
+    private static final int MAX_DISPLAYED_ROWS = 1000;
+    private static final int MAX_LISTED_ERRORS = 10;
+
     private final RelationalTableManager tableManager;
     private Map<String, String> displaySchema;
-    private List<Map<String, Object>> displayData;
+    private final RelationalTableModel tableModel;
+    private final JTable table;
+    private final ButtonEditor editButtonEditor;
+    private final ButtonEditor removeButtonEditor;
 
     private JTextArea consoleOutputArea;
     private JTextArea sqlInputArea;
@@ -33,14 +53,38 @@ public class RelationalTablesView extends AbstractTablesView {
     private int currentPage;
     private int totalEntries;
 
+    // Where the displayed page starts: after pageCursor, skipping pageOffset rows. Earlier anchors allow paging back.
+    private KeysetCursor pageCursor;
+    private int pageOffset;
+    private final Deque<PageAnchor> previousPages = new ArrayDeque<>();
+    private int loadGeneration;
+
     private final JTextField entriesPerPageField;
     private final JButton prevPageButton;
     private final JButton nextPageButton;
     private final JTextField pageNumberField;
+    private final JCheckBox unitOfWorkBox;
+    private final JButton saveChangesButton;
+    private final JButton discardChangesButton;
+
+    public RelationalTablesView(AsyncDatabaseService asyncService, RelationalTableManager tableManager) {
+        super(asyncService, tableManager.getTableName());
+        this.tableManager = tableManager;
+
+        tableModel = new RelationalTableModel(asyncService, tableManager::getPage, error -> showError(this, "Error fetching data", error));
+        table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        table.setRowHeight(30);
+        table.setDefaultRenderer(Object.class, new PendingRowRenderer());
+        tableModel.setPendingChanges(row -> tableManager.getPendingChange(row.get(tableManager.getPrimaryKeyColumn())));
+        editButtonEditor = new ButtonEditor("Edit", row -> openEntryForm(tableModel.getDisplayedRow(row)));
+        removeButtonEditor = new ButtonEditor("Remove", this::confirmDeleteRow);
+        tableModel.addTableModelListener(e -> {
+            if (e.getFirstRow() == TableModelEvent.HEADER_ROW)
+                configureColumns();
+        });
 
-    public RelationalTablesView(IDatabaseService dbService, String tableName) throws SQLException {
-        super(dbService, tableName);
-        this.tableManager = new RelationalTableManager(dbService, tableName);
 
         this.displaySchema = tableManager.getTableSchema();
         if (displaySchema == null || displaySchema.isEmpty()) {
@@ -62,14 +106,33 @@ public class RelationalTablesView extends AbstractTablesView {
         addEntryButton.addActionListener(e -> openEntryForm(null));
 
         JButton resetSortButton = new JButton("Reset Sort");
-        resetSortButton.addActionListener(e -> resetData());
+        resetSortButton.addActionListener(e -> refreshData());
+
+        JButton importButton = new JButton("Import...");
+        importButton.addActionListener(e -> openImportDialog());
+
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> openExportDialog());
+
+        // Staged edits and deletes are written together by Save Changes: one transaction and one commit.
+        unitOfWorkBox = new JCheckBox("Stage edits");
+        unitOfWorkBox.setToolTipText("Keep edits and deletes pending until Save Changes writes them in one transaction");
+        unitOfWorkBox.setEnabled(tableManager.isUnitOfWorkAvailable());
+        unitOfWorkBox.addActionListener(e -> {
+            tableManager.setUnitOfWork(unitOfWorkBox.isSelected());
+            updatePendingControls();
+        });
+
+        saveChangesButton = new JButton();
+        saveChangesButton.addActionListener(e -> savePendingChanges());
+
+        discardChangesButton = new JButton("Discard");
+        discardChangesButton.addActionListener(e -> discardPendingChanges());
 
         entriesPerPageField = new JTextField(String.valueOf(entriesPerPage), 5);
         entriesPerPageField.addActionListener(e -> {
             try {
-                entriesPerPage = Integer.parseInt(entriesPerPageField.getText());
-                currentPage = 1;
-                resetData();
+                setEntriesPerPage(Integer.parseInt(entriesPerPageField.getText()));
             }
             catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Please enter a valid number.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
@@ -85,6 +148,11 @@ public class RelationalTablesView extends AbstractTablesView {
             if (currentPage <= 1)
                 return;
 
+            PageAnchor previous = previousPageAnchor();
+            if (!previousPages.isEmpty())
+                previousPages.pop();
+            pageCursor = previous.cursor;
+            pageOffset = previous.offset;
             currentPage--;
             resetData();
         });
@@ -93,6 +161,10 @@ public class RelationalTablesView extends AbstractTablesView {
             if (currentPage >= getTotalPages())
                 return;
 
+            PageAnchor next = nextPageAnchor();
+            previousPages.push(new PageAnchor(pageCursor, pageOffset));
+            pageCursor = next.cursor;
+            pageOffset = next.offset;
             currentPage++;
             resetData();
         });
@@ -104,10 +176,8 @@ public class RelationalTablesView extends AbstractTablesView {
                 page = Math.max(page, 1);
                 page = Math.min(page, getTotalPages());
 
-                if (page >= 1 && page <= getTotalPages()) {
-                    currentPage = page;
-                    resetData();
-                }
+                if (page >= 1 && page <= getTotalPages())
+                    goToPage(page);
             }
             catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Please enter a valid page number.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
@@ -118,17 +188,36 @@ public class RelationalTablesView extends AbstractTablesView {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         buttonPanel.add(addEntryButton);
         buttonPanel.add(resetSortButton);
+        buttonPanel.add(importButton);
+        buttonPanel.add(exportButton);
+        buttonPanel.add(unitOfWorkBox);
+        buttonPanel.add(saveChangesButton);
+        buttonPanel.add(discardChangesButton);
         buttonPanel.add(new JLabel("Entries per page:"));
         buttonPanel.add(entriesPerPageField);
         buttonPanel.add(prevPageButton);
         buttonPanel.add(pageNumberField);
         buttonPanel.add(nextPageButton);
+        buttonPanel.add(busyIndicator);
 
         mainDataPanel.add(buttonPanel, BorderLayout.NORTH);
+        updatePendingControls();
 
-        JScrollPane dataScrollPane = new JScrollPane(dataPanel);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                int pending = tableManager.getPendingCount();
+                if (pending == 0 || JOptionPane.showConfirmDialog(RelationalTablesView.this,
+                        "Close and discard " + pending + " unsaved changes?", "Unsaved Changes", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION)
+                    dispose();
+            }
+        });
 
-        mainDataPanel.add(dataScrollPane, BorderLayout.CENTER);
+        // The table scrolls itself; wrapping dataPanel in another scroll pane would make every row "visible" and load them all.
+        dataPanel.setLayout(new BorderLayout());
+        dataPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+        mainDataPanel.add(dataPanel, BorderLayout.CENTER);
 
         consoleOutputArea = new JTextArea();
         consoleOutputArea.setEditable(false);
@@ -205,21 +294,142 @@ public class RelationalTablesView extends AbstractTablesView {
             sqlInputArea.setText(commandHistory.get(historyIndex));
     }
 
+    // Seeks from the end of the displayed page once its last row is loaded, otherwise skips past it.
+    private PageAnchor nextPageAnchor() {
+        KeysetCursor next = tableModel.getCursorAfterPage();
+        if (next != null)
+            return new PageAnchor(next, 0);
+        return new PageAnchor(pageCursor, pageOffset + entriesPerPage);
+    }
+
+    // Returns to where the previous page was read from, or skips from the start when it was reached by a jump.
+    private PageAnchor previousPageAnchor() {
+        if (!previousPages.isEmpty())
+            return previousPages.peek();
+        if (pageOffset >= entriesPerPage)
+            return new PageAnchor(pageCursor, pageOffset - entriesPerPage);
+        return new PageAnchor(null, (currentPage - 2) * entriesPerPage);
+    }
+
+    // Loads the first block of the neighbouring pages in the background so the service's page cache can answer the
+    // next click. Failures are ignored here, the page is fetched again (and the error shown) if it is opened.
+    private void prefetchNeighbours() {
+        int limit = Math.min(entriesPerPage, RelationalTableModel.BLOCK_SIZE);
+        List<PageAnchor> anchors = new ArrayList<>(2);
+        if (currentPage < getTotalPages())
+            anchors.add(nextPageAnchor());
+        if (currentPage > 1)
+            anchors.add(previousPageAnchor());
+
+        for (PageAnchor anchor : anchors)
+            asyncService.submit(() -> tableManager.getPage(anchor.cursor, limit, anchor.offset));
+    }
+
+    public void setEntriesPerPage(int entriesPerPage) {
+        this.entriesPerPage = entriesPerPage;
+        entriesPerPageField.setText(String.valueOf(entriesPerPage));
+        goToPage(1);
+    }
+
+    // Direct page jumps have no cursor to seek from, so they skip from the start once and continue seeking from there.
+    private void goToPage(int page) {
+        currentPage = page;
+        pageCursor = null;
+        pageOffset = (page - 1) * entriesPerPage;
+        previousPages.clear();
+        resetData();
+    }
+
     private void resetData() {
-        try {
-            totalEntries = tableManager.getTotalEntries();
-            int offset = (currentPage - 1) * entriesPerPage;
-            displayData = tableManager.getTableData(entriesPerPage, offset);
-            displaySchema = tableManager.getTableSchema();
+        resetData(false);
+    }
+
+    // Loads the schema, the row count and the first block of the page; the table model fetches the rest as it is scrolled.
+    // A reload drops the table's cached pages and count first, so rows written by other clients show up.
+    private void resetData(boolean reload) {
+        KeysetCursor cursor = pageCursor;
+        int offset = pageOffset;
+        int limit = entriesPerPage;
+        int page = currentPage;
+        int generation = ++loadGeneration;
+
+        runAsync(() -> {
+            if (reload)
+                tableManager.invalidateCachedData();
+            PageLoad load = new PageLoad();
+            load.schema = tableManager.refreshTableSchema();
+            // An estimate keeps page changes instant on large tables; the exact count follows in refineEntryCount.
+            RowCount count = tableManager.estimateTotalEntries();
+            load.totalEntries = (int) count.getCount();
+            load.exactCount = count.isExact();
+            load.cursor = cursor;
+            load.offset = offset;
+            int firstBlockSize = Math.min(limit, RelationalTableModel.BLOCK_SIZE);
+            load.firstBlock = tableManager.getPage(cursor, firstBlockSize, offset);
+            if (load.firstBlock.getData().isEmpty() && page > 1 && cursor != null) {
+                // The rows the cursor pointed at are gone, re-anchor by position.
+                load.cursor = null;
+                load.offset = (page - 1) * limit;
+                load.firstBlock = tableManager.getPage(null, firstBlockSize, load.offset);
+            }
+            return load;
+        }, "Loading page " + page + "...", load -> {
+            // A newer request superseded this one while it was running.
+            if (generation != loadGeneration)
+                return;
 
+            totalEntries = load.totalEntries;
+            pageCursor = load.cursor;
+            pageOffset = load.offset;
+            displaySchema = load.schema;
+
+            int rowsOnPage = Math.max(0, Math.min(limit, totalEntries - (page - 1) * limit));
+            if (load.firstBlock.getData().size() < Math.min(rowsOnPage, RelationalTableModel.BLOCK_SIZE))
+                rowsOnPage = load.firstBlock.getData().size();
+
+            tableModel.showPage(new ArrayList<>(displaySchema.keySet()), isPrimaryKeyDisplayed(), pageCursor, pageOffset, rowsOnPage, load.firstBlock);
             updatePaginationControls();
-            refreshData();
-        }
-        catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error fetching data: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            logger.error("Error fetching data: {}", ex.getMessage());
-            consoleOutputArea.append("Error fetching data: " + ex.getMessage() + "\n");
-            consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
+            prefetchNeighbours();
+            if (!load.exactCount)
+                refineEntryCount(generation, page, limit);
+        }, "Error fetching data");
+    }
+
+    // The service caches the exact count, so later page changes in this table get it without counting again.
+    private void refineEntryCount(int generation, int page, int limit) {
+        runAsync(tableManager::getTotalEntries, "Counting rows...", count -> {
+            if (generation != loadGeneration)
+                return;
+
+            totalEntries = count;
+            tableModel.setPageRowCount(Math.max(0, Math.min(limit, count - (page - 1) * limit)));
+            updatePaginationControls();
+        }, "Error counting rows");
+    }
+
+    @Override
+    protected void showError(Component parent, String message, Throwable cause) {
+        super.showError(parent, message, cause);
+        consoleOutputArea.append(message + ": " + cause.getMessage() + "\n");
+        consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
+    }
+
+    private static class PageLoad {
+        private Map<String, String> schema;
+        private int totalEntries;
+        private boolean exactCount;
+        private KeysetCursor cursor;
+        private int offset;
+        private KeysetPage firstBlock;
+    }
+
+    private static class PageAnchor {
+        private final KeysetCursor cursor;
+        private final int offset;
+
+        private PageAnchor(KeysetCursor cursor, int offset) {
+            this.cursor = cursor;
+            this.offset = offset;
         }
     }
 
@@ -234,120 +444,108 @@ public class RelationalTablesView extends AbstractTablesView {
         return (int) Math.ceil((double) totalEntries / entriesPerPage);
     }
 
+    private boolean isPrimaryKeyDisplayed() {
+        return displaySchema != null && displaySchema.containsKey(tableManager.getPrimaryKeyColumn());
+    }
+
     @Override
     protected void refreshData() {
-        dataPanel.removeAll();
+        resetData(true);
+    }
 
-        try {
-            if (displaySchema == null || displaySchema.isEmpty()) {
-                dataPanel.add(new JLabel("No data to display"));
-                return;
-            }
+    // Column objects are recreated whenever the model's columns change, so the shared button renderer/editors are reattached.
+    private void configureColumns() {
+        int dataColumns = tableModel.getDataColumnCount();
+        ButtonRenderer buttonRenderer = new ButtonRenderer();
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            TableColumn column = table.getColumnModel().getColumn(i);
+            column.setPreferredWidth(i < dataColumns ? 100 : 75);
+            if (i >= dataColumns)
+                column.setCellRenderer(buttonRenderer);
+        }
 
-            GridBagConstraints gbc = new GridBagConstraints();
-            gbc.gridx = 0;
-            gbc.gridy = 0;
-            gbc.insets = new Insets(2, 2, 2, 2);
-            gbc.anchor = GridBagConstraints.NORTH;
-
-            int columnCount = displaySchema.size();
-            int baseCellWidth = 100;
-            int buttonWidth = 75;
-            int totalRowWidth = columnCount * baseCellWidth + 2 * buttonWidth + 30;
-
-            JPanel headerPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 2));
-            headerPanel.setPreferredSize(new Dimension(totalRowWidth, 35));
-            headerPanel.setBackground(Color.DARK_GRAY);
-
-            for (String column : displaySchema.keySet()) {
-                JLabel headerLabel = new JLabel(column);
-                headerLabel.setForeground(Color.WHITE);
-                headerLabel.setPreferredSize(new Dimension(baseCellWidth, 25));
-                headerPanel.add(headerLabel);
-            }
+        if (table.getColumnCount() == dataColumns + 2) {
+            table.getColumnModel().getColumn(dataColumns).setCellEditor(editButtonEditor);
+            table.getColumnModel().getColumn(dataColumns + 1).setCellEditor(removeButtonEditor);
+        }
+    }
 
-            dataPanel.add(headerPanel, gbc);
-            gbc.gridy++;
+    private void confirmDeleteRow(int row) {
+        Map<String, Object> rowData = tableModel.getRow(row);
+        if (rowData == null)
+            return;
 
-            JSeparator separator = new JSeparator(SwingConstants.HORIZONTAL);
-            separator.setPreferredSize(new Dimension(totalRowWidth, 5));
-            dataPanel.add(separator, gbc);
-            gbc.gridy++;
+        // A staged delete can still be discarded, so it needs no confirmation.
+        boolean staged = tableManager.isUnitOfWork();
+        if (!staged) {
+            int confirmation = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this entry?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
+            if (confirmation != JOptionPane.YES_OPTION)
+                return;
+        }
 
-            if (displayData != null && !displayData.isEmpty()) {
-                for (Map<String, Object> row : displayData) {
-                    JPanel rowPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 2));
-                    rowPanel.setPreferredSize(new Dimension(totalRowWidth, 35));
+        Object primaryKeyValue = rowData.get(tableManager.getPrimaryKeyColumn());
+        runAsync(() -> {
+            tableManager.deleteEntry(primaryKeyValue);
+            return null;
+        }, "Deleting entry...", ignored -> afterEdit(staged), "Error deleting entry");
+    }
 
-                    for (String column : displaySchema.keySet()) {
-                        Object value = row.get(column);
-                        JLabel cell = new JLabel(value != null ? value.toString() : "");
-                        cell.setPreferredSize(new Dimension(baseCellWidth, 25));
-                        rowPanel.add(cell);
-                    }
+    // A staged change only needs a repaint; a written one changes the page.
+    private void afterEdit(boolean staged) {
+        if (!staged) {
+            resetData();
+            return;
+        }
 
-                    JButton editButton = new JButton("Edit");
-                    editButton.setPreferredSize(new Dimension(buttonWidth, 25));
-                    JButton removeButton = new JButton("Remove");
-                    removeButton.setPreferredSize(new Dimension(buttonWidth, 25));
-
-                    boolean pkAvailable = displaySchema.containsKey(tableManager.getPrimaryKeyColumn());
-
-                    if (pkAvailable) {
-                        editButton.addActionListener(e -> openEntryForm(row));
-                        removeButton.addActionListener(e -> {
-                            int confirmation = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this entry?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
-                            if (confirmation != JOptionPane.YES_OPTION)
-                                return;
-
-                            try {
-                                Object primaryKeyValue = row.get(tableManager.getPrimaryKeyColumn());
-                                tableManager.deleteEntry(primaryKeyValue);
-                                resetData();
-                            } catch (SQLException ex) {
-                                JOptionPane.showMessageDialog(this, "Error deleting entry: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                                logger.error("Error deleting entry: {}", ex.getMessage());
-                                consoleOutputArea.append("Error deleting entry: " + ex.getMessage() + "\n");
-                                consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
-                            }
-                        });
-                    } else {
-                        editButton.setEnabled(false);
-                        removeButton.setEnabled(false);
-                    }
+        updatePendingControls();
+        table.repaint();
+    }
 
-                    rowPanel.add(editButton);
-                    rowPanel.add(Box.createRigidArea(new Dimension(10, 0)));
-                    rowPanel.add(removeButton);
+    private void updatePendingControls() {
+        int pending = tableManager.getPendingCount();
+        boolean visible = tableManager.isUnitOfWork() || pending > 0;
+        saveChangesButton.setText("Save Changes (" + pending + ")");
+        saveChangesButton.setVisible(visible);
+        saveChangesButton.setEnabled(pending > 0);
+        discardChangesButton.setVisible(visible);
+        discardChangesButton.setEnabled(pending > 0);
+    }
 
-                    dataPanel.add(rowPanel, gbc);
-                    gbc.gridy++;
-                    gbc.fill = GridBagConstraints.HORIZONTAL;
-                    dataPanel.add(new JSeparator(SwingConstants.HORIZONTAL), gbc);
-                    gbc.gridy++;
-                }
-            }
-            else {
-                JPanel noDataPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 2));
-                noDataPanel.setPreferredSize(new Dimension(totalRowWidth, 35));
-                JLabel noDataLabel = new JLabel("No data available");
-                noDataLabel.setPreferredSize(new Dimension(totalRowWidth - 20, 25));
-                noDataPanel.add(noDataLabel);
-                dataPanel.add(noDataPanel, gbc);
-                gbc.gridy++;
-            }
+    private void savePendingChanges() {
+        int pending = tableManager.getPendingCount();
+        saveChangesButton.setEnabled(false);
+        runAsync(tableManager::flushPendingChanges, "Saving " + pending + " changes...", result -> {
+            updatePendingControls();
+            resetData();
+            if (result.hasFailures())
+                showFailedChanges(result);
+        }, "Error saving changes").whenCompleteAsync((result, error) -> updatePendingControls(), SwingExecutor.INSTANCE);
+    }
 
-            gbc.weighty = 1;
-            dataPanel.add(new JPanel(), gbc);
-        }
-        catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error displaying data: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            logger.error("Error displaying data: {}", ex.getMessage());
-            consoleOutputArea.append("Error displaying data: " + ex.getMessage() + "\n");
-            consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
+    private void showFailedChanges(ChangeSetResult result) {
+        StringBuilder message = new StringBuilder();
+        message.append(result.getFailures().size()).append(" changes could not be saved and are still pending:\n");
+        int listed = 0;
+        for (Map.Entry<Object, String> error : tableManager.getPendingErrors().entrySet()) {
+            if (listed++ == MAX_LISTED_ERRORS) {
+                message.append("...\n");
+                break;
+            }
+            message.append(tableManager.getPrimaryKeyColumn()).append(" = ").append(error.getKey())
+                    .append(": ").append(error.getValue()).append('\n');
         }
-        dataPanel.revalidate();
-        dataPanel.repaint();
+        JOptionPane.showMessageDialog(this, message.toString(), "Changes Not Saved", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void discardPendingChanges() {
+        int pending = tableManager.getPendingCount();
+        int confirmation = JOptionPane.showConfirmDialog(this, "Discard " + pending + " unsaved changes?", "Discard Changes", JOptionPane.YES_NO_OPTION);
+        if (confirmation != JOptionPane.YES_OPTION)
+            return;
+
+        tableManager.discardPendingChanges();
+        updatePendingControls();
+        table.repaint();
     }
 
     @Override
@@ -386,24 +584,21 @@ public class RelationalTablesView extends AbstractTablesView {
                 isEditable = data == null;
 
 
+            // New numeric keys are assigned when the row is inserted, so the field is left out of the saved data.
+            if (data == null && column.equalsIgnoreCase(primaryKeyColumn) && numericDataTypes.contains(type)) {
+                JTextField generatedField = new JTextField("Generated on save");
+                generatedField.setEnabled(false);
+                formPanel.add(generatedField, gbc);
+                row++;
+                continue;
+            }
+
             JComponent inputField = editor.createComponent(isEditable);
 
             if (data != null && data.containsKey(column)) {
                 Object value = data.get(column);
                 editor.setValue(inputField, value);
             }
-            else if (data == null && column.equalsIgnoreCase(primaryKeyColumn) && numericDataTypes.contains(type)) {
-                try {
-                    int nextId = tableManager.getNextPrimaryKeyValue();
-                    editor.setValue(inputField, nextId);
-                }
-                catch (SQLException ex) {
-                    logger.error("Error getting next ID for primary key column: {}", ex.getMessage());
-                    JOptionPane.showMessageDialog(this, "Error getting next ID: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    consoleOutputArea.append("Error getting next ID: " + ex.getMessage() + "\n");
-                    consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
-                }
-            }
 
             formPanel.add(inputField, gbc);
             fieldMap.put(column, inputField);
@@ -428,17 +623,18 @@ public class RelationalTablesView extends AbstractTablesView {
                 newData.put(column, value);
             }
 
-            try {
-                tableManager.saveEntry(newData, data);
-                resetData();
-                dialog.dispose();
-            }
-            catch (SQLException ex) {
-                JOptionPane.showMessageDialog(dialog, "Error saving data: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                logger.error("Error saving data: {}", ex.getMessage());
-                consoleOutputArea.append("Error saving data: " + ex.getMessage() + "\n");
-                consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
-            }
+            saveButton.setEnabled(false);
+            boolean staged = data != null && tableManager.isUnitOfWork();
+            busyIndicator.track(asyncService.run(() -> tableManager.saveEntry(newData, data)), "Saving entry...")
+                    .whenCompleteAsync((ignored, error) -> {
+                        saveButton.setEnabled(true);
+                        if (error == null) {
+                            afterEdit(staged);
+                            dialog.dispose();
+                        }
+                        else if (!AsyncDatabaseService.isCancellation(error))
+                            showError(dialog, "Error saving data", AsyncDatabaseService.unwrap(error));
+                    }, SwingExecutor.INSTANCE);
         });
 
         JScrollPane scrollPane = new JScrollPane(formPanel);
@@ -469,72 +665,107 @@ public class RelationalTablesView extends AbstractTablesView {
         String singleLineCommand = sqlCommand.replace("\n", " ").replace("\r", " ");
         consoleOutputArea.append("-> " + singleLineCommand + "\n");
 
-        try {
-            String finalSqlCommand = sqlCommand;
-            boolean hasResultSet = tableManager.executeSqlCommand(sqlCommand, new ISqlResultHandler() {
-                @Override
-                public void handleResultSet(ResultSet rs) throws SQLException {
-                    QueryResult queryResult = tableManager.getQueryResultFromResultSet(rs);
-                    displayResultInConsole(queryResult);
-
-                    String trimmedSql = finalSqlCommand.trim().toLowerCase();
-                    if (trimmedSql.startsWith("select") && !trimmedSql.startsWith("explain") && !trimmedSql.startsWith("analyze")) {
-                        displayData = queryResult.getData();
-                        displaySchema = queryResult.getColumnTypes();
-
-                        totalEntries = displayData.size();
-                        currentPage = 1;
-                        entriesPerPage = totalEntries > 0 ? totalEntries : 1;
-                        entriesPerPageField.setText(String.valueOf(entriesPerPage));
-                        pageNumberField.setText(String.valueOf(currentPage));
-                        prevPageButton.setEnabled(false);
-                        nextPageButton.setEnabled(false);
-
-                        refreshData();
-                    }
-                }
+        String finalSqlCommand = sqlCommand;
+        String trimmedSql = finalSqlCommand.trim().toLowerCase();
+        boolean updatesTableView = trimmedSql.startsWith("select");
+        List<Map<String, Object>> keptRows = new ArrayList<>();
+        AtomicReference<LinkedHashMap<String, String>> resultColumns = new AtomicReference<>();
+        sqlInputArea.setText("");
 
-                @Override
-                public void handleUpdateCount(int updateCount) {
-                    consoleOutputArea.append("Query executed successfully. Rows affected: " + updateCount + "\n");
-                    if (finalSqlCommand.toLowerCase().contains(tableName.toLowerCase()) || finalSqlCommand.contains("{}"))
-                        resetData();
-                }
+        // Handler callbacks run on the database worker; everything that touches Swing is posted back to the EDT.
+        IStreamingSqlResultHandler handler = new IStreamingSqlResultHandler() {
+            @Override
+            public void handleColumns(LinkedHashMap<String, String> columnTypes) {
+                resultColumns.set(columnTypes);
+                appendToConsole(String.join("\t", columnTypes.keySet()) + "\n");
+            }
 
-                @Override
-                public void handleMessage(String message) {
-                    consoleOutputArea.append(message + "\n");
-                }
-            });
+            @Override
+            public void handleRows(QueryResult chunk) {
+                int remaining = MAX_DISPLAYED_ROWS - keptRows.size();
+                if (remaining <= 0)
+                    return;
 
-            if (!hasResultSet)
-                consoleOutputArea.append("Command executed successfully.\n");
-        }
-        catch (SQLException ex) {
-            consoleOutputArea.append("Error executing SQL command: " + ex.getMessage() + "\n");
-            logger.error("Error executing SQL command: {}", ex.getMessage());
-        }
+                List<Map<String, Object>> rows = chunk.getData();
+                if (rows.size() > remaining)
+                    rows = rows.subList(0, remaining);
 
-        consoleOutputArea.append("\n");
-        consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
-        sqlInputArea.setText("");
-    }
+                keptRows.addAll(rows);
+                appendToConsole(formatRows(rows, resultColumns.get().keySet()));
+            }
 
-    private void displayResultInConsole(QueryResult queryResult) {
-        List<Map<String, Object>> result = queryResult.getData();
-        if (result == null || result.isEmpty()) {
-            consoleOutputArea.append("Query executed successfully. No results returned.\n");
-            return;
-        }
-        StringBuilder sb = new StringBuilder();
-        Set<String> columns = queryResult.getColumnTypes().keySet();
+            @Override
+            public void handleEnd(long totalRows, boolean cancelled) {
+                if (totalRows == 0 && !cancelled)
+                    appendToConsole("Query executed successfully. No results returned.\n");
+                else if (totalRows > keptRows.size())
+                    appendToConsole("... " + totalRows + " rows " + (cancelled ? "read before cancelling" : "in total")
+                            + ", showing the first " + keptRows.size() + ".\n");
+
+                if (!updatesTableView)
+                    return;
+
+                SwingExecutor.INSTANCE.execute(() -> {
+                    loadGeneration++;
+                    displaySchema = resultColumns.get();
+
+                    totalEntries = keptRows.size();
+                    currentPage = 1;
+                    pageCursor = null;
+                    pageOffset = 0;
+                    previousPages.clear();
+                    entriesPerPage = totalEntries > 0 ? totalEntries : 1;
+                    entriesPerPageField.setText(String.valueOf(entriesPerPage));
+                    pageNumberField.setText(String.valueOf(currentPage));
+                    prevPageButton.setEnabled(false);
+                    nextPageButton.setEnabled(false);
+
+                    tableModel.showRows(new ArrayList<>(displaySchema.keySet()), isPrimaryKeyDisplayed(), keptRows);
+                });
+            }
+
+            @Override
+            public void handleUpdateCount(int updateCount) {
+                appendToConsole("Query executed successfully. Rows affected: " + updateCount + "\n");
+                if (finalSqlCommand.toLowerCase().contains(tableName.toLowerCase()) || finalSqlCommand.contains("{}"))
+                    SwingExecutor.INSTANCE.execute(RelationalTablesView.this::resetData);
+            }
 
-        for (String column : columns)
-            sb.append(column).append("\t");
+            @Override
+            public void handleMessage(String message) {
+                appendToConsole(message + "\n");
+            }
+        };
 
-        sb.append("\n");
+        busyIndicator.track(asyncService.executeConsoleCommand(sqlCommand, handler, FETCH_SIZE, FETCH_SIZE, new SqlCancellationToken()), "Running query...")
+                .whenCompleteAsync((hasResultSet, error) -> {
+                    if (error == null) {
+                        if (!hasResultSet)
+                            consoleOutputArea.append("Command executed successfully.\n");
+                    }
+                    else if (AsyncDatabaseService.isCancellation(error))
+                        consoleOutputArea.append("Query cancelled.\n");
+                    else {
+                        Throwable cause = AsyncDatabaseService.unwrap(error);
+                        consoleOutputArea.append("Error executing SQL command: " + cause.getMessage() + "\n");
+                        logger.error("Error executing SQL command: {}", cause.getMessage());
+                    }
 
-        for (Map<String, Object> row : result) {
+                    consoleOutputArea.append("\n");
+                    consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
+                }, SwingExecutor.INSTANCE);
+    }
+
+    private void appendToConsole(String text) {
+        SwingExecutor.INSTANCE.execute(() -> {
+            consoleOutputArea.append(text);
+            consoleOutputArea.setCaretPosition(consoleOutputArea.getDocument().getLength());
+        });
+    }
+
+    private static String formatRows(List<Map<String, Object>> rows, Set<String> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (Map<String, Object> row : rows) {
             for (String column : columns) {
                 Object value = row.get(column);
                 sb.append(value != null ? value.toString() : "NULL").append("\t");
@@ -542,7 +773,7 @@ public class RelationalTablesView extends AbstractTablesView {
             sb.append("\n");
         }
 
-        consoleOutputArea.append(sb.toString());
+        return sb.toString();
     }
 
     private static final Map<String, FieldEditor> fieldEditorMap = new HashMap<>();
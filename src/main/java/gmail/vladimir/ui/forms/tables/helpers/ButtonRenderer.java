@@ -12,6 +12,7 @@ public class ButtonRenderer extends JButton implements TableCellRenderer {
     public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
         setText((value == null) ? "" : value.toString());
         setPreferredSize(new Dimension(75, 25));
+        setEnabled(table.isCellEditable(row, column));
         return this;
     }
 }
@@ -0,0 +1,115 @@
+package gmail.vladimir.ui.forms.tables.helpers;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+// The displayed page of a collection. Documents written from the view are patched in place, so only an explicit
+// refresh has to rebuild it from the database.
+public class MongoTableModel extends AbstractTableModel {
+
+    private static final String ID_FIELD = "_id";
+    private static final String EDIT = "Edit";
+    private static final String REMOVE = "Remove";
+
+    private List<String> fields = new ArrayList<>();
+    private List<String> selectedFields;
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+
+    // selectedFields limits the columns to the filtered fields; null shows every field the page contains.
+    public void setData(List<String> selectedFields, List<Map<String, Object>> data) {
+        List<String> previousFields = fields;
+        this.selectedFields = selectedFields;
+        rows.clear();
+        rows.addAll(data);
+
+        LinkedHashSet<String> allFields = new LinkedHashSet<>();
+        for (Map<String, Object> row : rows)
+            allFields.addAll(row.keySet());
+        if (selectedFields != null)
+            allFields.retainAll(selectedFields);
+        fields = new ArrayList<>(allFields);
+
+        if (fields.equals(previousFields))
+            fireTableDataChanged();
+        else
+            fireTableStructureChanged();
+    }
+
+    public void addRow(Map<String, Object> document) {
+        rows.add(document);
+        if (!addMissingFields(document))
+            fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+    }
+
+    public void updateRow(int row, Map<String, Object> document) {
+        rows.set(row, document);
+        if (!addMissingFields(document))
+            fireTableRowsUpdated(row, row);
+    }
+
+    public void removeRow(int row) {
+        rows.remove(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    public int indexOf(Object id) {
+        for (int i = 0; i < rows.size(); i++)
+            if (Objects.equals(rows.get(i).get(ID_FIELD), id))
+                return i;
+        return -1;
+    }
+
+    public Map<String, Object> getRow(int row) {
+        return rows.get(row);
+    }
+
+    public int getDataColumnCount() {
+        return fields.size();
+    }
+
+    // Columns are only ever added here; fields no row uses any more disappear on the next full reload.
+    private boolean addMissingFields(Map<String, Object> document) {
+        boolean added = false;
+        for (String field : document.keySet()) {
+            if (fields.contains(field) || (selectedFields != null && !selectedFields.contains(field)))
+                continue;
+            fields.add(field);
+            added = true;
+        }
+
+        if (added)
+            fireTableStructureChanged();
+        return added;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return fields.size() + 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column < fields.size())
+            return fields.get(column);
+        return column == fields.size() ? EDIT : REMOVE;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (columnIndex >= fields.size())
+            return columnIndex == fields.size() ? EDIT : REMOVE;
+
+        Object value = rows.get(rowIndex).get(fields.get(columnIndex));
+        return value != null ? value.toString() : "-";
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return columnIndex >= fields.size();
+    }
+}
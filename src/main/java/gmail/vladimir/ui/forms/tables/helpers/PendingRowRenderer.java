@@ -0,0 +1,27 @@
+package gmail.vladimir.ui.forms.tables.helpers;
+
+import gmail.vladimir.db.RowChange;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+
+// Marks rows with a staged update or delete that has not been saved yet.
+public class PendingRowRenderer extends DefaultTableCellRenderer {
+    private static final Color UPDATED = new Color(255, 243, 196);
+    private static final Color DELETED = new Color(255, 214, 214);
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        if (isSelected || !(table.getModel() instanceof RelationalTableModel))
+            return this;
+
+        RowChange change = ((RelationalTableModel) table.getModel()).getPendingChange(table.convertRowIndexToModel(row));
+        if (change == null)
+            setBackground(table.getBackground());
+        else
+            setBackground(change.getType() == RowChange.Type.DELETE ? DELETED : UPDATED);
+        return this;
+    }
+}
@@ -0,0 +1,232 @@
+package gmail.vladimir.ui.forms.tables.helpers;
+
+import gmail.vladimir.db.AsyncDatabaseService;
+import gmail.vladimir.db.KeysetCursor;
+import gmail.vladimir.db.KeysetPage;
+import gmail.vladimir.db.RowChange;
+import gmail.vladimir.ui.utils.SwingExecutor;
+
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// One page of a relational table. Rows are fetched in blocks the first time the JTable paints them and only the most
+// recently used blocks are kept, so memory and layout cost do not grow with the page size.
+public class RelationalTableModel extends AbstractTableModel {
+
+    public static final int BLOCK_SIZE = 100;
+    private static final int MAX_CACHED_BLOCKS = 32;
+    private static final String LOADING = "...";
+    private static final String EDIT = "Edit";
+    private static final String REMOVE = "Remove";
+
+    @FunctionalInterface
+    public interface BlockLoader {
+        KeysetPage load(KeysetCursor cursor, int limit, int offset) throws SQLException;
+    }
+
+    private final AsyncDatabaseService asyncService;
+    private final BlockLoader loader;
+    private final Consumer<Throwable> errorHandler;
+
+    private final Map<Integer, KeysetPage> blocks = new LinkedHashMap<Integer, KeysetPage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, KeysetPage> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+    private final Set<Integer> requestedBlocks = new HashSet<>();
+
+    private List<String> columns = Collections.emptyList();
+    private List<String> previousColumns;
+    private boolean actionsEnabled;
+    private KeysetCursor anchorCursor;
+    private int anchorOffset;
+    private int rowCount;
+    private List<Map<String, Object>> fixedRows;
+    private int generation;
+    private Function<Map<String, Object>, RowChange> pendingChanges = row -> null;
+
+    public RelationalTableModel(AsyncDatabaseService asyncService, BlockLoader loader, Consumer<Throwable> errorHandler) {
+        this.asyncService = asyncService;
+        this.loader = loader;
+        this.errorHandler = errorHandler;
+    }
+
+    // The page starts after anchorCursor (or at anchorOffset without a key); further blocks are loaded on demand.
+    public void showPage(List<String> columns, boolean actionsEnabled, KeysetCursor anchorCursor, int anchorOffset,
+                         int rowCount, KeysetPage firstBlock) {
+        reset(columns, actionsEnabled);
+        this.anchorCursor = anchorCursor;
+        this.anchorOffset = anchorOffset;
+        this.rowCount = rowCount;
+        if (firstBlock != null)
+            blocks.put(0, firstBlock);
+        fireChanged(columns);
+    }
+
+    // Rows that are already in memory, such as console query results.
+    public void showRows(List<String> columns, boolean actionsEnabled, List<Map<String, Object>> rows) {
+        reset(columns, actionsEnabled);
+        this.fixedRows = rows;
+        this.rowCount = rows.size();
+        fireChanged(columns);
+    }
+
+    private void reset(List<String> columns, boolean actionsEnabled) {
+        generation++;
+        previousColumns = this.columns;
+        this.columns = new ArrayList<>(columns);
+        this.actionsEnabled = actionsEnabled;
+        this.anchorCursor = null;
+        this.anchorOffset = 0;
+        this.fixedRows = null;
+        blocks.clear();
+        requestedBlocks.clear();
+    }
+
+    private void fireChanged(List<String> columns) {
+        if (columns.equals(previousColumns))
+            fireTableDataChanged();
+        else
+            fireTableStructureChanged();
+    }
+
+    // Applies a corrected row count, e.g. once an estimated table count has been replaced by the exact one.
+    public void setPageRowCount(int rowCount) {
+        if (fixedRows != null || rowCount == this.rowCount)
+            return;
+
+        this.rowCount = rowCount;
+        fireTableDataChanged();
+    }
+
+    // Looks up the staged edit of a table row; staged updates are shown in place of the stored values.
+    public void setPendingChanges(Function<Map<String, Object>, RowChange> pendingChanges) {
+        this.pendingChanges = pendingChanges;
+    }
+
+    // Console results are not table pages, so they are shown as returned.
+    public RowChange getPendingChange(int row) {
+        Map<String, Object> data = fixedRows == null ? getRow(row) : null;
+        return data == null ? null : pendingChanges.apply(data);
+    }
+
+    // The row as it will be once its staged update is written.
+    public Map<String, Object> getDisplayedRow(int row) {
+        Map<String, Object> data = getRow(row);
+        RowChange change = getPendingChange(row);
+        if (change == null || change.getType() != RowChange.Type.UPDATE)
+            return data;
+
+        Map<String, Object> displayed = new LinkedHashMap<>(data);
+        displayed.putAll(change.getData());
+        return displayed;
+    }
+
+    public int getDataColumnCount() {
+        return columns.size();
+    }
+
+    // Null while the row's block is still loading.
+    public Map<String, Object> getRow(int row) {
+        if (fixedRows != null)
+            return fixedRows.get(row);
+
+        KeysetPage block = blocks.get(row / BLOCK_SIZE);
+        if (block == null)
+            return null;
+
+        List<Map<String, Object>> data = block.getData();
+        int index = row % BLOCK_SIZE;
+        return index < data.size() ? data.get(index) : null;
+    }
+
+    // Cursor just past the last row of the page, if that row has been loaded; lets the next page seek instead of skip.
+    public KeysetCursor getCursorAfterPage() {
+        if (fixedRows != null || rowCount == 0)
+            return null;
+
+        KeysetPage lastBlock = blocks.get((rowCount - 1) / BLOCK_SIZE);
+        return lastBlock == null ? null : lastBlock.getNextCursor();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size() + 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column < columns.size())
+            return columns.get(column);
+        return column == columns.size() ? EDIT : REMOVE;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (columnIndex >= columns.size())
+            return columnIndex == columns.size() ? EDIT : REMOVE;
+
+        Map<String, Object> row = getRow(rowIndex);
+        if (row == null) {
+            requestBlock(rowIndex / BLOCK_SIZE);
+            return LOADING;
+        }
+
+        RowChange change = fixedRows == null ? pendingChanges.apply(row) : null;
+        String column = columns.get(columnIndex);
+        Object value = change != null && change.getData().containsKey(column) ? change.getData().get(column) : row.get(column);
+        return value != null ? value : "";
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return actionsEnabled && columnIndex >= columns.size() && getRow(rowIndex) != null;
+    }
+
+    // Seeks from the end of the previous block when it is cached, otherwise skips from the page anchor (at most one page).
+    private void requestBlock(int block) {
+        if (fixedRows != null || !requestedBlocks.add(block))
+            return;
+
+        KeysetPage previous = block > 0 ? blocks.get(block - 1) : null;
+        boolean seek = previous != null && previous.getNextCursor() != null;
+        KeysetCursor cursor = seek ? previous.getNextCursor() : anchorCursor;
+        int offset = seek ? 0 : anchorOffset + block * BLOCK_SIZE;
+        int limit = Math.min(BLOCK_SIZE, rowCount - block * BLOCK_SIZE);
+        int requestGeneration = generation;
+
+        asyncService.submit(() -> loader.load(cursor, limit, offset)).whenCompleteAsync((page, error) -> {
+            if (requestGeneration != generation)
+                return;
+
+            // A failed block stays marked as requested so repaints do not retry it in a loop.
+            if (error != null) {
+                if (!AsyncDatabaseService.isCancellation(error))
+                    errorHandler.accept(AsyncDatabaseService.unwrap(error));
+                return;
+            }
+
+            requestedBlocks.remove(block);
+            blocks.put(block, page);
+
+            int firstRow = block * BLOCK_SIZE;
+            int loaded = page.getData().size();
+            if (loaded < limit) {
+                // Rows were deleted since the page was counted.
+                rowCount = firstRow + loaded;
+                fireTableDataChanged();
+            }
+            else if (loaded > 0)
+                fireTableRowsUpdated(firstRow, firstRow + loaded - 1);
+        }, SwingExecutor.INSTANCE);
+    }
+}
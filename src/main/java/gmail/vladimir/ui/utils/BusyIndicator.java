@@ -0,0 +1,57 @@
+package gmail.vladimir.ui.utils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// Shows a progress bar and a Cancel button while any tracked database operation is running.
+public class BusyIndicator extends JPanel {
+
+    private final JProgressBar progressBar;
+    private final JLabel messageLabel;
+    private final JButton cancelButton;
+    private final Set<CompletableFuture<?>> running = new LinkedHashSet<>();
+
+    public BusyIndicator() {
+        super(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setPreferredSize(new Dimension(80, 12));
+        messageLabel = new JLabel();
+        cancelButton = new JButton("Cancel");
+        cancelButton.setMargin(new Insets(1, 6, 1, 6));
+        cancelButton.addActionListener(e -> cancelAll());
+
+        add(progressBar);
+        add(messageLabel);
+        add(cancelButton);
+        setVisible(false);
+    }
+
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future, String message) {
+        running.add(future);
+        messageLabel.setText(message);
+        setVisible(true);
+        future.whenCompleteAsync((result, error) -> {
+            running.remove(future);
+            if (running.isEmpty())
+                setVisible(false);
+        }, SwingExecutor.INSTANCE);
+        return future;
+    }
+
+    public void setMessage(String message) {
+        messageLabel.setText(message);
+    }
+
+    public boolean isBusy() {
+        return !running.isEmpty();
+    }
+
+    private void cancelAll() {
+        for (CompletableFuture<?> future : new LinkedHashSet<>(running))
+            future.cancel(true);
+    }
+}
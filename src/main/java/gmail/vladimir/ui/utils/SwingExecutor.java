@@ -0,0 +1,21 @@
+package gmail.vladimir.ui.utils;
+
+import javax.swing.*;
+import java.util.concurrent.Executor;
+
+// Executor for CompletableFuture callbacks that have to touch Swing components.
+public final class SwingExecutor implements Executor {
+
+    public static final SwingExecutor INSTANCE = new SwingExecutor();
+
+    private SwingExecutor() {
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (SwingUtilities.isEventDispatchThread())
+            command.run();
+        else
+            SwingUtilities.invokeLater(command);
+    }
+}
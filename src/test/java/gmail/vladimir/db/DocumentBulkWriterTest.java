@@ -0,0 +1,74 @@
+package gmail.vladimir.db;
+
+import com.mongodb.client.model.InsertOneModel;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentBulkWriterTest {
+
+    private final List<CompletableFuture<Long>> batches = new ArrayList<>();
+
+    // Only bulkWriteAsync is used by unordered writers; each call returns a future the test completes.
+    private final IDocumentDatabaseService service = (IDocumentDatabaseService) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{IDocumentDatabaseService.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("bulkWriteAsync"))
+                    throw new UnsupportedOperationException(method.getName());
+                CompletableFuture<Long> batch = new CompletableFuture<>();
+                batches.add(batch);
+                return batch;
+            });
+
+    private DocumentBulkWriter writerWithBatches(int count) throws SQLException {
+        DocumentBulkWriter writer = new DocumentBulkWriter(service, "items", 2, false, count * 2L, null);
+        for (int i = 0; i < count * 2; i++)
+            writer.add(new InsertOneModel<>(new Document("n", i)));
+        return writer;
+    }
+
+    @Test
+    void keepsBatchesInFlightAndCountsAll() throws SQLException {
+        DocumentBulkWriter writer = writerWithBatches(3);
+        assertEquals(3, batches.size());
+
+        for (CompletableFuture<Long> batch : batches)
+            batch.complete(2L);
+        writer.flush();
+
+        assertEquals(6, writer.getSubmitted());
+        assertEquals(6, writer.getAffected());
+    }
+
+    @Test
+    void waitsForRemainingBatchesWhenOneFails() throws Exception {
+        DocumentBulkWriter writer = writerWithBatches(3);
+        batches.get(0).complete(2L);
+        batches.get(1).completeExceptionally(new SQLException("duplicate key", "23000"));
+
+        Thread late = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.get(2).complete(1L);
+        });
+        late.start();
+
+        SQLException error = assertThrows(SQLException.class, writer::flush);
+        late.join();
+
+        assertEquals(3, writer.getAffected());
+        assertEquals(4, writer.getSubmitted());
+        assertEquals("23000", error.getSQLState());
+        assertTrue(error.getMessage().contains("3 documents affected"), error.getMessage());
+    }
+}
@@ -0,0 +1,54 @@
+package gmail.vladimir.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MetadataCacheTest {
+
+    private final MetadataCache cache = new MetadataCache();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Integer schema(String table) throws SQLException {
+        return cache.get(MetadataCache.SCHEMA, table, loads::incrementAndGet);
+    }
+
+    @Test
+    void cachesUntilTableIsInvalidated() throws SQLException {
+        assertEquals(1, (int) schema("items"));
+        assertEquals(1, (int) schema("items"));
+        assertEquals(2, (int) schema("orders"));
+
+        cache.invalidate("ITEMS");
+
+        assertEquals(3, (int) schema("items"));
+        assertEquals(2, (int) schema("orders"));
+    }
+
+    @Test
+    void cachesNullResults() throws SQLException {
+        assertNull(cache.get(MetadataCache.PRIMARY_KEY, "items", () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get(MetadataCache.PRIMARY_KEY, "items", loads::incrementAndGet));
+        assertEquals(1, loads.get());
+    }
+
+    // A DDL statement that lands while a lookup is running must not leave the lookup's stale result cached.
+    @Test
+    void doesNotStoreResultLoadedAcrossInvalidation() throws SQLException {
+        Integer stale = cache.get(MetadataCache.SCHEMA, "items", () -> {
+            cache.invalidate("items");
+            return loads.incrementAndGet();
+        });
+        assertEquals(1, (int) stale);
+
+        assertEquals(2, (int) schema("items"));
+        assertEquals(2, (int) schema("items"));
+    }
+}
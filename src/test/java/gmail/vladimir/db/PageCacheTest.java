@@ -0,0 +1,82 @@
+package gmail.vladimir.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PageCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private KeysetPage read(PageCache cache, String table, int offset) throws SQLException {
+        return cache.get(table, Collections.singletonList("id"), null, 10, offset, () -> {
+            List<Map<String, Object>> rows = Collections.singletonList(Collections.singletonMap("id", loads.incrementAndGet()));
+            return new KeysetPage(rows, null, null);
+        });
+    }
+
+    @Test
+    void servesRepeatedReadsFromMemory() throws SQLException {
+        PageCache cache = new PageCache();
+        read(cache, "items", 0);
+        read(cache, "ITEMS", 0);
+        read(cache, "items", 10);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void invalidateDropsOnlyThatTable() throws SQLException {
+        PageCache cache = new PageCache();
+        read(cache, "items", 0);
+        read(cache, "orders", 0);
+
+        cache.invalidate("Items");
+        read(cache, "items", 0);
+        read(cache, "orders", 0);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void expiredPagesAreReadAgain() throws SQLException, InterruptedException {
+        PageCache cache = new PageCache();
+        cache.setTtlMillis(20);
+        assertEquals(1, read(cache, "items", 0).getData().get(0).get("id"));
+        assertEquals(1, read(cache, "items", 0).getData().get(0).get("id"));
+
+        Thread.sleep(40);
+        assertEquals(2, read(cache, "items", 0).getData().get(0).get("id"));
+    }
+
+    @Test
+    void zeroTtlDisablesCaching() throws SQLException {
+        PageCache cache = new PageCache();
+        cache.setTtlMillis(0);
+        read(cache, "items", 0);
+        read(cache, "items", 0);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPagesOverTheByteLimit() throws SQLException {
+        PageCache cache = new PageCache();
+        long pageBytes = PageCache.estimateBytes(read(cache, "items", 0).getData());
+        cache.setMaxBytes(2 * pageBytes);
+        read(cache, "items", 10);
+        read(cache, "items", 0);
+        read(cache, "items", 20);
+
+        int before = loads.get();
+        read(cache, "items", 0);
+        read(cache, "items", 10);
+        assertEquals(before + 1, loads.get());
+    }
+}
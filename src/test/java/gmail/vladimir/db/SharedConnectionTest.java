@@ -0,0 +1,83 @@
+package gmail.vladimir.db;
+
+import gmail.vladimir.db.implementation.HyperSQLDatabaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedConnectionTest {
+
+    private final HyperSQLDatabaseService service = new HyperSQLDatabaseService();
+    private final ExecutorService workers = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void connect() throws SQLException {
+        Map<String, String> params = new HashMap<>();
+        params.put("jdbcUrl", "jdbc:hsqldb:mem:shared-" + UUID.randomUUID());
+        params.put("username", "SA");
+        params.put("password", "");
+        params.put(AbstractRelationalDatabaseService.POOL_ENABLED, "false");
+        service.connect(params);
+        execute("CREATE TABLE items (id BIGINT PRIMARY KEY, name VARCHAR(50))");
+    }
+
+    @AfterEach
+    void disconnect() throws SQLException {
+        workers.shutdownNow();
+        service.disconnect();
+    }
+
+    private void execute(String sql) throws SQLException {
+        service.useConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(sql);
+            }
+        });
+    }
+
+    @Test
+    void statementsWaitForTransactionOnSharedConnection() throws Exception {
+        CountDownLatch open = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Void> transaction = workers.submit(() -> service.withExclusiveConnection(conn -> {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO items VALUES (1, 'rolled back')");
+                open.countDown();
+                release.await();
+                conn.rollback();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                conn.setAutoCommit(true);
+            }
+            return null;
+        }));
+        assertTrue(open.await(5, TimeUnit.SECONDS));
+
+        Future<Void> insert = workers.submit(() -> {
+            service.insertData("items", Collections.<String, Object>singletonMap("id", 2));
+            return null;
+        });
+        assertThrows(TimeoutException.class, () -> insert.get(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        transaction.get(5, TimeUnit.SECONDS);
+        insert.get(5, TimeUnit.SECONDS);
+
+        // Run inside the transaction, the insert would have been rolled back with it.
+        assertEquals(1, service.getTableEntryCount("items"));
+    }
+}
@@ -0,0 +1,50 @@
+package gmail.vladimir.db.columnar;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringColumnVectorTest {
+
+    private static final int PROBE_ROWS = 4096;
+
+    @Test
+    void keepsDictionaryForRepeatedValues() {
+        StringColumnVector vector = new StringColumnVector("status", "VARCHAR");
+        for (int i = 0; i < PROBE_ROWS * 2; i++)
+            vector.append(i % 3 == 0 ? null : "status-" + i % 5);
+
+        assertTrue(vector.isDictionaryEncoded());
+        assertEquals(5, vector.getDictionarySize());
+        assertNull(vector.getString(0));
+        assertEquals("status-1", vector.getString(1));
+        assertEquals("status-4", vector.getString(PROBE_ROWS * 2 - 3));
+    }
+
+    @Test
+    void switchesToPlainStorageForUniqueValues() {
+        StringColumnVector vector = new StringColumnVector("name", "VARCHAR");
+        for (int i = 0; i < PROBE_ROWS * 2; i++)
+            vector.append(i % 7 == 0 ? null : "name-" + i);
+
+        assertFalse(vector.isDictionaryEncoded());
+        for (int i = 0; i < PROBE_ROWS * 2; i++)
+            assertEquals(i % 7 == 0 ? null : "name-" + i, vector.getString(i));
+    }
+
+    @Test
+    void switchesWhenProbeRowIsNull() {
+        StringColumnVector vector = new StringColumnVector("name", "VARCHAR");
+        for (int i = 0; i < PROBE_ROWS - 1; i++)
+            vector.append("name-" + i);
+        vector.append(null);
+        vector.append(null);
+        assertTrue(vector.isDictionaryEncoded());
+
+        vector.append("last");
+        assertFalse(vector.isDictionaryEncoded());
+        assertEquals("name-" + (PROBE_ROWS - 2), vector.getString(PROBE_ROWS - 2));
+        assertNull(vector.getString(PROBE_ROWS - 1));
+        assertEquals("last", vector.getString(PROBE_ROWS + 1));
+    }
+}
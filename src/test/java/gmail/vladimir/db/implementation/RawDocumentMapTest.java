@@ -0,0 +1,57 @@
+package gmail.vladimir.db.implementation;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawDocumentMapTest {
+
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private static Document sample() {
+        return new Document("_id", new ObjectId())
+                .append("name", "Ada")
+                .append("age", 36)
+                .append("missing", null)
+                .append("joined", new Date(1_000_000L))
+                .append("tags", Arrays.asList("a", "b"))
+                .append("address", new Document("city", "London").append("zip", 12345L));
+    }
+
+    @Test
+    void readsFieldsAsWholeDocumentDecodeWould() {
+        Document document = sample();
+        RawBsonDocument raw = new RawBsonDocument(document, CODEC);
+        RawDocumentMap map = new RawDocumentMap(raw);
+
+        assertEquals(new ArrayList<>(document.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(new HashMap<>(raw.decode(CODEC)), map);
+        assertEquals("London", ((Document) map.get("address")).getString("city"));
+        assertTrue(map.containsKey("missing"));
+        assertNull(map.get("missing"));
+        assertFalse(map.containsKey("other"));
+        assertNull(map.get("other"));
+    }
+
+    @Test
+    void readsDocumentInsideLargerBuffer() {
+        Document document = sample();
+        byte[] encoded = new RawBsonDocument(document, CODEC).getByteBuffer().array();
+        byte[] padded = new byte[encoded.length + 20];
+        System.arraycopy(encoded, 0, padded, 7, encoded.length);
+
+        RawDocumentMap map = new RawDocumentMap(new RawBsonDocument(padded, 7, encoded.length));
+
+        assertEquals(new HashMap<>(document), map);
+        assertEquals(Arrays.asList("a", "b"), map.get("tags"));
+    }
+}
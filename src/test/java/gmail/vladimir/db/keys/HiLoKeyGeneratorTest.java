@@ -0,0 +1,104 @@
+package gmail.vladimir.db.keys;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HiLoKeyGeneratorTest {
+
+    private static final int BLOCK_SIZE = 50;
+
+    private KeyGeneratorTestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = new KeyGeneratorTestDatabase();
+        db.insert(120);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        db.close();
+    }
+
+    private HiLoKeyGenerator generator(boolean createTable) {
+        return new HiLoKeyGenerator(db, BLOCK_SIZE, new LocalKeyGenerator(db, false), createTable);
+    }
+
+    @Test
+    void firstBlockStartsAboveMaxKey() throws SQLException {
+        HiLoKeyGenerator generator = generator(true);
+        assertEquals(150, generator.nextKey("items", "id"));
+        assertEquals(151, generator.nextKey("items", "id"));
+        assertTrue(db.hasAllocationTable());
+    }
+
+    @Test
+    void resetSkipsPastKeysInsertedOutsideTheGenerator() throws SQLException {
+        HiLoKeyGenerator generator = generator(true);
+        assertEquals(150, generator.nextKey("items", "id"));
+
+        // e.g. an INSERT with an explicit key typed in the console
+        db.insert(151);
+        db.insert(420);
+        generator.resetAll();
+
+        assertEquals(450, generator.nextKey("items", "id"));
+        assertEquals(451, generator.nextKey("items", "id"));
+    }
+
+    @Test
+    void resetOfOneTableReseedsIt() throws SQLException {
+        HiLoKeyGenerator generator = generator(true);
+        generator.nextKey("items", "id");
+        db.insert(199);
+
+        generator.reset("ITEMS");
+        assertEquals(200, generator.nextKey("items", "id"));
+    }
+
+    @Test
+    void reseedNeverMovesBelowReservedBlocks() throws SQLException {
+        HiLoKeyGenerator generator = generator(true);
+        generator.nextKey("items", "id");
+        db.execute("DELETE FROM items");
+
+        generator.resetAll();
+        assertEquals(200, generator.nextKey("items", "id"));
+    }
+
+    @Test
+    void clientsSharingTheTableGetDisjointBlocks() throws SQLException {
+        HiLoKeyGenerator first = generator(true);
+        HiLoKeyGenerator second = generator(true);
+
+        long a = first.nextKey("items", "id");
+        long b = second.nextKey("items", "id");
+        assertNotEquals(a / BLOCK_SIZE, b / BLOCK_SIZE);
+        assertEquals(a + 1, first.nextKey("items", "id"));
+    }
+
+    @Test
+    void doesNotCreateAllocationTableUnlessAsked() throws SQLException {
+        HiLoKeyGenerator generator = generator(false);
+        assertEquals(121, generator.nextKey("items", "id"));
+        assertFalse(db.hasAllocationTable());
+    }
+
+    @Test
+    void usesAllocationTableCreatedElsewhere() throws SQLException {
+        HiLoKeyGenerator generator = generator(false);
+        assertEquals(121, generator.nextKey("items", "id"));
+
+        generator(true).nextKey("items", "id");
+        generator.resetAll();
+        assertEquals(200, generator.nextKey("items", "id"));
+    }
+}
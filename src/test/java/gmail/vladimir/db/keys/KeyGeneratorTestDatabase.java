@@ -0,0 +1,48 @@
+package gmail.vladimir.db.keys;
+
+import gmail.vladimir.db.SqlFunction;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+// A private in-memory HyperSQL database with an "items" table keyed by id.
+final class KeyGeneratorTestDatabase implements ConnectionSource, AutoCloseable {
+
+    final Connection connection;
+
+    KeyGeneratorTestDatabase() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:keys-" + UUID.randomUUID(), "SA", "");
+        execute("CREATE TABLE items (id BIGINT PRIMARY KEY, name VARCHAR(20))");
+    }
+
+    @Override
+    public <T> T withConnection(SqlFunction<Connection, T> action) throws SQLException {
+        return action.apply(connection);
+    }
+
+    void insert(long id) throws SQLException {
+        execute("INSERT INTO items (id, name) VALUES (" + id + ", 'row')");
+    }
+
+    void execute(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    boolean hasAllocationTable() throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(null, null, "CRUDJAVA_KEY_BLOCKS", null)) {
+            return rs.next();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        execute("SHUTDOWN");
+        connection.close();
+    }
+}
@@ -0,0 +1,67 @@
+package gmail.vladimir.db.keys;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalKeyGeneratorTest {
+
+    private KeyGeneratorTestDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = new KeyGeneratorTestDatabase();
+        db.insert(1);
+        db.insert(3);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    void singleWriterCountsUpInMemoryUntilReset() throws SQLException {
+        LocalKeyGenerator generator = new LocalKeyGenerator(db, true);
+        assertEquals(4, generator.nextKey("items", "id"));
+        assertEquals(5, generator.nextKey("items", "id"));
+
+        db.insert(10);
+        assertEquals(6, generator.nextKey("items", "id"));
+
+        generator.resetAll();
+        assertEquals(11, generator.nextKey("items", "id"));
+    }
+
+    @Test
+    void sharedRereadsMaxForEveryKey() throws SQLException {
+        LocalKeyGenerator generator = new LocalKeyGenerator(db, false);
+        assertEquals(4, generator.nextKey("items", "id"));
+
+        db.insert(10);
+        assertEquals(11, generator.nextKey("items", "id"));
+        // Not inserted yet, but already handed out.
+        assertEquals(12, generator.nextKey("items", "id"));
+    }
+
+    @Test
+    void emptyTableStartsAtOne() throws SQLException {
+        db.execute("DELETE FROM items");
+        assertEquals(1, new LocalKeyGenerator(db, true).nextKey("items", "id"));
+    }
+
+    @Test
+    void tableNamesAreCaseInsensitive() throws SQLException {
+        LocalKeyGenerator generator = new LocalKeyGenerator(db, true);
+        assertEquals(4, generator.nextKey("items", "id"));
+        assertEquals(5, generator.nextKey("ITEMS", "id"));
+
+        db.insert(20);
+        generator.reset("Items");
+        assertEquals(21, generator.nextKey("items", "id"));
+    }
+}
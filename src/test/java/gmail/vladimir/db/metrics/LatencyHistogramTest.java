@@ -0,0 +1,76 @@
+package gmail.vladimir.db.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void keepsSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 60; micros++)
+            histogram.record(micros);
+
+        assertEquals(60, histogram.getCount());
+        assertEquals(30.5, histogram.getMeanMicros(), 1e-9);
+        assertEquals(30, histogram.getValueAtPercentile(50));
+        assertEquals(57, histogram.getValueAtPercentile(95));
+        assertEquals(60, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100_000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform between 1 us and about 10 s.
+            values[i] = (long) Math.pow(10, 7 * random.nextDouble());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact, percentile + ": " + reported + " < " + exact);
+            assertTrue(reported <= exact * 1.04 + 1, percentile + ": " + reported + " too far above " + exact);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxMicros());
+    }
+
+    @Test
+    void capsAtMaxAndCountsHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getValueAtPercentile(99));
+
+        long twoHours = TimeUnit.HOURS.toMicros(2);
+        histogram.record(twoHours);
+        histogram.record(-5);
+        histogram.recordNanos(3_000);
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(twoHours, histogram.getMaxMicros());
+        assertEquals(twoHours, histogram.getValueAtPercentile(100));
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(3, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(123);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getMeanMicros(), 0);
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
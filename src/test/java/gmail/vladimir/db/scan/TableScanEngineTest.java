@@ -0,0 +1,117 @@
+package gmail.vladimir.db.scan;
+
+import gmail.vladimir.db.AbstractRelationalDatabaseService;
+import gmail.vladimir.db.implementation.HyperSQLDatabaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableScanEngineTest {
+
+    private static final int ROWS = 4 * (int) TableScanEngine.MIN_ROWS_PER_RANGE;
+
+    private final HyperSQLDatabaseService service = new HyperSQLDatabaseService();
+    private final String jdbcUrl = "jdbc:hsqldb:mem:scan-" + UUID.randomUUID();
+    private TableScanEngine engine;
+
+    @BeforeEach
+    void connect() throws SQLException {
+        Map<String, String> params = new HashMap<>();
+        params.put("jdbcUrl", jdbcUrl);
+        params.put("username", "SA");
+        params.put("password", "");
+        params.put(AbstractRelationalDatabaseService.POOL_SIZE, "5");
+        service.connect(params);
+
+        engine = new TableScanEngine(service);
+        engine.setParallelism(4);
+        engine.setFetchSize(500);
+    }
+
+    @AfterEach
+    void disconnect() throws SQLException {
+        service.disconnect();
+    }
+
+    // Names as HyperSQL stores them, the way the table list passes them in.
+    private void createTable(String name, String keyType, long firstKey, long lastKey, int rows) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, "SA", "")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE " + name + " (id " + keyType + " PRIMARY KEY, name VARCHAR(20))");
+            }
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO " + name + " VALUES (?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    long key = i == rows - 1 ? lastKey : firstKey + i;
+                    if (keyType.startsWith("VARCHAR"))
+                        insert.setString(1, String.format("k%08d", key));
+                    else
+                        insert.setLong(1, key);
+                    insert.setString(2, "row " + i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        service.invalidateCachedData(name);
+    }
+
+    @Test
+    void splitsIntegerKeysIntoEqualWidthRanges() throws SQLException {
+        createTable("ITEMS", "BIGINT", 1, ROWS, ROWS);
+
+        List<KeyRange> ranges = engine.planRanges("ITEMS");
+
+        assertEquals(4, ranges.size());
+        assertNull(ranges.get(0).getLower());
+        long step = (ROWS - 1) / 4;
+        for (int i = 1; i < 4; i++) {
+            assertEquals(1 + step * i, ((Number) ranges.get(i).getLower()).longValue());
+            assertEquals(ranges.get(i).getLower(), ranges.get(i - 1).getUpper());
+        }
+        assertNull(ranges.get(3).getUpper());
+    }
+
+    @Test
+    void readsSmallOrUnsplittableTablesAsOneRange() throws SQLException {
+        createTable("SMALL", "BIGINT", 1, 100, 100);
+        createTable("NAMED", "VARCHAR(20)", 1, ROWS, ROWS);
+        // MAX - MIN does not fit in a long.
+        createTable("WIDE", "BIGINT", Long.MIN_VALUE, Long.MAX_VALUE, ROWS);
+
+        for (String table : new String[]{"SMALL", "NAMED", "WIDE"}) {
+            List<KeyRange> ranges = engine.planRanges(table);
+            assertEquals(1, ranges.size(), table);
+            assertTrue(ranges.get(0).isUnbounded(), table);
+        }
+    }
+
+    @Test
+    void deliversEveryRowOnceInEachMode() throws SQLException {
+        createTable("ITEMS", "BIGINT", 1, ROWS, ROWS);
+
+        for (ScanMode mode : ScanMode.values()) {
+            List<Long> keys = Collections.synchronizedList(new ArrayList<>());
+            Set<Integer> ranges = Collections.synchronizedSet(new HashSet<>());
+            long delivered = engine.scan("ITEMS", mode, chunk -> {
+                ranges.add(chunk.getRange().getIndex());
+                for (Map<String, Object> row : chunk.getRows())
+                    keys.add(((Number) row.get("ID")).longValue());
+            });
+
+            assertEquals(ROWS, delivered, mode.name());
+            assertEquals(4, ranges.size(), mode.name());
+            List<Long> sorted = new ArrayList<>(keys);
+            Collections.sort(sorted);
+            if (mode == ScanMode.ORDERED)
+                assertEquals(sorted, keys);
+            assertEquals(ROWS, new HashSet<>(sorted).size(), mode.name());
+            assertEquals(1L, (long) sorted.get(0));
+            assertEquals(ROWS, (long) sorted.get(ROWS - 1));
+        }
+    }
+}
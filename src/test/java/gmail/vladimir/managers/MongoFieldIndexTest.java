@@ -0,0 +1,46 @@
+package gmail.vladimir.managers;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoFieldIndexTest {
+
+    @Test
+    void mergesGroupsWithKeysInDifferentOrder() {
+        MongoFieldIndex index = new MongoFieldIndex(false);
+        index.add(Arrays.asList("_id", "name", "age"), 3);
+        index.add(Arrays.asList("_id", "age", "name"), 2);
+        index.add(Arrays.asList("_id", "name"), 4);
+
+        assertEquals(new TreeSet<>(Arrays.asList("age", "name")), index.getFields());
+        assertEquals(9, index.getFieldCount("name"));
+        assertEquals(5, index.getFieldCount("age"));
+        assertEquals(5, index.getCombinationCount("age, name"));
+        assertEquals(4, index.getCombinationCount("name"));
+        assertEquals(0, index.getFieldCount("_id"));
+    }
+
+    @Test
+    void dropsEntriesNoDocumentUsesAnyMore() {
+        MongoFieldIndex index = new MongoFieldIndex(false);
+        Document before = new Document("_id", 1).append("name", "Ada").append("email", "ada@example.com");
+        Document after = new Document("_id", 1).append("name", "Ada");
+        index.add(before);
+
+        index.replace(before, after);
+
+        assertEquals(Collections.singleton("name"), index.getFields());
+        assertEquals(Collections.singleton("name"), index.getCombinations());
+        assertEquals(0, index.getCombinationCount("email, name"));
+
+        index.remove(after);
+        assertTrue(index.getFields().isEmpty());
+        assertTrue(index.getCombinations().isEmpty());
+    }
+}
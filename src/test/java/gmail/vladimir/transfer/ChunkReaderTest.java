@@ -0,0 +1,105 @@
+package gmail.vladimir.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkReaderTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(String text) throws IOException {
+        Path file = dir.resolve("data.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String text(ChunkReader.RecordChunk chunk) {
+        return new String(chunk.data, 0, chunk.length, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void cutsWholeRecordsAndTracksPosition() throws IOException {
+        Path file = write("a\nb\nc\nd\ne");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChunkReader reader = new ChunkReader(channel, 0, 0, true);
+
+            ChunkReader.RecordChunk first = reader.next(2);
+            assertEquals("a\nb\n", text(first));
+            assertEquals(0, first.firstRecord);
+            assertEquals(4, first.endOffset);
+
+            ChunkReader.RecordChunk second = reader.next(2);
+            assertEquals("c\nd\n", text(second));
+            assertEquals(2, second.firstRecord);
+
+            // The last line has no newline but is still a record.
+            ChunkReader.RecordChunk last = reader.next(2);
+            assertEquals("e", text(last));
+            assertEquals(4, last.firstRecord);
+            assertEquals(Files.size(file), last.endOffset);
+            assertNull(reader.next(2));
+        }
+    }
+
+    @Test
+    void keepsQuotedLineBreaksInCsvRecords() throws IOException {
+        Path file = write("1,\"two\nlines\"\n2,x\n");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals("1,\"two\nlines\"\n", text(new ChunkReader(channel, 0, 0, true).next(1)));
+            assertEquals("1,\"two\n", text(new ChunkReader(channel, 0, 0, false).next(1)));
+        }
+    }
+
+    @Test
+    void resumesFromOffset() throws IOException {
+        Path file = write("header\nr1\nr2\n");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChunkReader.RecordChunk chunk = new ChunkReader(channel, 10, 2, true).next(10);
+
+            assertEquals("r2\n", text(chunk));
+            assertEquals(2, chunk.firstRecord);
+        }
+    }
+
+    // More than the 1 MB read buffer, so records straddle refills.
+    @Test
+    void readsRecordsAcrossBufferRefills() throws IOException {
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; text.length() < 3 << 20; i++) {
+            String record = i + ",\"value " + i + "\nü\"\n";
+            expected.add(record);
+            text.append(record);
+        }
+        Path file = write(text.toString());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChunkReader reader = new ChunkReader(channel, 0, 0, true);
+            StringBuilder read = new StringBuilder();
+            long records = 0;
+            ChunkReader.RecordChunk chunk;
+            while ((chunk = reader.next(1000)) != null) {
+                assertEquals(records, chunk.firstRecord);
+                assertTrue(text(chunk).endsWith("\"\n"));
+                records += text(chunk).split("\"\n", -1).length - 1;
+                read.append(text(chunk));
+            }
+
+            assertEquals(expected.size(), records);
+            assertEquals(text.toString(), read.toString());
+            assertEquals(Files.size(file), reader.getOffset());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.QueryResult;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordParserTest {
+
+    private static CsvRecordParser parser(char delimiter) {
+        return new CsvRecordParser(delimiter, TransferTestData.COLUMNS, new ArrayList<>(TransferTestData.schema().values()), false);
+    }
+
+    @Test
+    void readsBackWhatTheEncoderWrites() throws SQLException {
+        for (char delimiter : new char[]{',', ';', '\t'}) {
+            QueryResult rows = TransferTestData.rows();
+            ChunkReader.RecordChunk chunk = TransferTestData.encode(new CsvRecordEncoder(delimiter, TransferTestData.COLUMNS), rows, false);
+
+            TransferTestData.assertSameRows(rows, parser(delimiter).parse(chunk));
+        }
+    }
+
+    @Test
+    void headerSurvivesRoundTrip() {
+        StringBuilder out = new StringBuilder();
+        List<String> columns = Arrays.asList("id", "first, last", "say \"hi\"");
+        new CsvRecordEncoder(',', columns).writeHeader(out);
+
+        List<String> fields = new ArrayList<>();
+        int end = CsvRecordParser.readRecord(out.toString(), 0, ',', fields);
+
+        assertEquals(columns, fields);
+        assertEquals(out.length(), end);
+    }
+
+    @Test
+    void distinguishesNullFromEmptyString() throws SQLException {
+        CsvRecordParser parser = new CsvRecordParser(',', Arrays.asList("a", "b"), Arrays.asList("VARCHAR", "VARCHAR"), false);
+
+        List<Map<String, Object>> rows = parser.parse(TransferTestData.chunk(",\"\"\r\n\n\"x\",y"));
+
+        assertEquals(2, rows.size());
+        assertNull(rows.get(0).get("a"));
+        assertEquals("", rows.get(0).get("b"));
+        assertEquals("x", rows.get(1).get("a"));
+        assertEquals("y", rows.get(1).get("b"));
+    }
+
+    @Test
+    void reportsRecordNumberOfBadRows() {
+        CsvRecordParser parser = new CsvRecordParser(',', Arrays.asList("id", "name"), Arrays.asList("INTEGER", "VARCHAR"), false);
+
+        SQLException fields = assertThrows(SQLException.class, () -> parser.parse(TransferTestData.chunk("1,a\n2,b,c\n")));
+        assertTrue(fields.getMessage().startsWith("Record 2 has 3 fields"), fields.getMessage());
+
+        SQLException value = assertThrows(SQLException.class, () -> parser.parse(TransferTestData.chunk("1,a\nx,b\n")));
+        assertTrue(value.getMessage().startsWith("Record 2, column id"), value.getMessage());
+    }
+}
@@ -0,0 +1,73 @@
+package gmail.vladimir.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    private ImportCheckpoint saveFor(String text) throws IOException {
+        file = dir.resolve("data.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        ImportCheckpoint checkpoint = new ImportCheckpoint("items", Files.size(file), Files.getLastModifiedTime(file).toMillis(), 0, 0)
+                .advance(4, 1);
+        checkpoint.save(file);
+        return checkpoint;
+    }
+
+    @Test
+    void loadsWhatWasSaved() throws IOException {
+        saveFor("id\n1\n2\n");
+
+        ImportCheckpoint loaded = ImportCheckpoint.load(file, "ITEMS");
+
+        assertNotNull(loaded);
+        assertEquals("items", loaded.getTableName());
+        assertEquals(4, loaded.getOffset());
+        assertEquals(1, loaded.getRows());
+        assertFalse(Files.exists(dir.resolve("data.csv" + ImportCheckpoint.SUFFIX + ".tmp")));
+    }
+
+    @Test
+    void ignoresCheckpointForOtherTable() throws IOException {
+        saveFor("id\n1\n2\n");
+
+        assertNull(ImportCheckpoint.load(file, "orders"));
+    }
+
+    @Test
+    void ignoresCheckpointOnceFileChanged() throws IOException {
+        saveFor("id\n1\n2\n");
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.write(file, "id\n1\n3\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertNull(ImportCheckpoint.load(file, "items"));
+
+        saveFor("id\n1\n2\n");
+        Files.write(file, "id\n1\n2\n3\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, modified);
+        assertNull(ImportCheckpoint.load(file, "items"));
+    }
+
+    @Test
+    void ignoresMissingOrDamagedCheckpoint() throws IOException {
+        saveFor("id\n1\n");
+        ImportCheckpoint.delete(file);
+        assertNull(ImportCheckpoint.load(file, "items"));
+
+        Files.write(ImportCheckpoint.pathFor(file), "table=items\noffset=x\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(ImportCheckpoint.load(file, "items"));
+    }
+}
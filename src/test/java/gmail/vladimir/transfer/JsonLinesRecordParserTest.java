@@ -0,0 +1,65 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.QueryResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLinesRecordParserTest {
+
+    @Test
+    void readsBackWhatTheEncoderWrites() throws SQLException {
+        QueryResult rows = TransferTestData.rows();
+        ChunkReader.RecordChunk chunk = TransferTestData.encode(new JsonLinesRecordEncoder(TransferTestData.COLUMNS), rows, true);
+
+        TransferTestData.assertSameRows(rows, new JsonLinesRecordParser(TransferTestData.schema(), false).parse(chunk));
+    }
+
+    @Test
+    void keepsDocumentsAsTheyAreForCollections() throws SQLException {
+        Document document = new Document("_id", new ObjectId())
+                .append("name", "Ada")
+                .append("created", new Date(1_000_000L))
+                .append("tags", Arrays.asList("a", "b"))
+                .append("address", new Document("city", "London"));
+        StringBuilder out = new StringBuilder();
+        new JsonLinesRecordEncoder(new ArrayList<>(document.keySet())).writeDocument(document, out);
+
+        List<Map<String, Object>> rows = new JsonLinesRecordParser(null, true).parse(TransferTestData.chunk(out.toString()));
+
+        assertEquals(Collections.singletonList(document), rows);
+    }
+
+    @Test
+    void matchesKeysToColumnsAndFillsMissingOnes() throws SQLException {
+        Map<String, String> schema = new LinkedHashMap<>();
+        schema.put("ID", "INTEGER");
+        schema.put("Name", "VARCHAR");
+
+        List<Map<String, Object>> rows = new JsonLinesRecordParser(schema, false)
+                .parse(TransferTestData.chunk("{\"id\": \"1\", \"NAME\": \"a\"}\n\n{\"id\": 2}\n"));
+
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).get("ID"));
+        assertEquals("a", rows.get(0).get("Name"));
+        assertEquals(2, rows.get(1).get("ID"));
+        assertTrue(rows.get(1).containsKey("Name"));
+        assertNull(rows.get(1).get("Name"));
+    }
+
+    @Test
+    void reportsRecordNumberOfBadRows() {
+        JsonLinesRecordParser parser = new JsonLinesRecordParser(Collections.singletonMap("id", "INTEGER"), false);
+
+        SQLException json = assertThrows(SQLException.class, () -> parser.parse(TransferTestData.chunk("{\"id\": 1}\n{id:\n")));
+        assertTrue(json.getMessage().startsWith("Record 2 is not a JSON object"), json.getMessage());
+
+        SQLException column = assertThrows(SQLException.class, () -> parser.parse(TransferTestData.chunk("{\"other\": 1}\n")));
+        assertTrue(column.getMessage().startsWith("Record 1: the table has no column other"), column.getMessage());
+    }
+}
@@ -0,0 +1,83 @@
+package gmail.vladimir.transfer;
+
+import gmail.vladimir.db.QueryResult;
+import gmail.vladimir.db.columnar.ColumnVector;
+import gmail.vladimir.db.columnar.IntColumnVector;
+import gmail.vladimir.db.columnar.ObjectColumnVector;
+import gmail.vladimir.db.columnar.StringColumnVector;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Rows with the values exports have to escape or convert, as a query would return them.
+final class TransferTestData {
+
+    static final List<String> COLUMNS = Arrays.asList("id", "name", "price", "created", "data");
+
+    private TransferTestData() {
+    }
+
+    static LinkedHashMap<String, String> schema() {
+        LinkedHashMap<String, String> schema = new LinkedHashMap<>();
+        schema.put("id", "INTEGER");
+        schema.put("name", "VARCHAR(100)");
+        schema.put("price", "DECIMAL(10,2)");
+        schema.put("created", "TIMESTAMP");
+        schema.put("data", "VARBINARY");
+        return schema;
+    }
+
+    static QueryResult rows() {
+        Object[][] rows = {
+                {1, "plain", new BigDecimal("12.50"), Timestamp.valueOf("2024-01-31 12:00:00.123"), new byte[]{1, 2, 3}},
+                {2, "comma, \"quotes\" and\nline break", new BigDecimal("-0.01"), Timestamp.valueOf("1999-12-31 23:59:59"), new byte[0]},
+                {3, "", null, null, null},
+                {4, null, new BigDecimal("1E+3"), Timestamp.valueOf("2024-06-01 00:00:00"), new byte[]{(byte) 0xff}},
+                {5, "naïve café ✓", new BigDecimal("0"), Timestamp.valueOf("2024-02-29 08:30:00"), new byte[]{0}}
+        };
+
+        List<ColumnVector> columns = Arrays.asList(new IntColumnVector("id", "INTEGER"), new StringColumnVector("name", "VARCHAR"),
+                new ObjectColumnVector("price", "DECIMAL"), new ObjectColumnVector("created", "TIMESTAMP"),
+                new ObjectColumnVector("data", "VARBINARY"));
+        for (Object[] row : rows)
+            for (int i = 0; i < row.length; i++)
+                columns.get(i).append(row[i]);
+        return new QueryResult(columns, rows.length);
+    }
+
+    static ChunkReader.RecordChunk encode(RecordEncoder encoder, QueryResult rows, boolean header) {
+        StringBuilder out = new StringBuilder();
+        if (header)
+            encoder.writeHeader(out);
+        for (int row = 0; row < rows.getRowCount(); row++)
+            encoder.writeRow(rows, row, out);
+        return chunk(out.toString());
+    }
+
+    static ChunkReader.RecordChunk chunk(String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return new ChunkReader.RecordChunk(data, data.length, 0, data.length);
+    }
+
+    static void assertSameRows(QueryResult expected, List<Map<String, Object>> actual) {
+        assertEquals(expected.getRowCount(), actual.size());
+        for (int row = 0; row < expected.getRowCount(); row++) {
+            assertEquals(COLUMNS, new ArrayList<>(actual.get(row).keySet()));
+            for (int column = 0; column < COLUMNS.size(); column++) {
+                Object value = expected.getValue(row, column);
+                Object parsed = actual.get(row).get(COLUMNS.get(column));
+                if (value instanceof byte[])
+                    assertArrayEquals((byte[]) value, (byte[]) parsed, "row " + row);
+                else if (value instanceof BigDecimal)
+                    assertEquals(0, ((BigDecimal) value).compareTo((BigDecimal) parsed), "row " + row);
+                else
+                    assertEquals(value, parsed, "row " + row + ", " + COLUMNS.get(column));
+            }
+        }
+    }
+}